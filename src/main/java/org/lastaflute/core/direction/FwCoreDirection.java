@@ -20,6 +20,7 @@ import org.lastaflute.core.direction.exception.FwRequiredAssistNotFoundException
 import org.lastaflute.core.exception.ExceptionTranslationProvider;
 import org.lastaflute.core.json.JsonResourceProvider;
 import org.lastaflute.core.magic.async.ConcurrentAsyncExecutorProvider;
+import org.lastaflute.core.mail.outbox.MailOutboxOption;
 import org.lastaflute.core.security.SecurityResourceProvider;
 import org.lastaflute.core.time.TimeResourceProvider;
 
@@ -96,6 +97,9 @@ public class FwCoreDirection {
     /** The delivery department of send mail. (NullAllowed) */
     protected SMailDeliveryDepartment mailDeliveryDepartment;
 
+    /** The option of mail outbox, mails are sent via durable outbox if specified. (NullAllowed) */
+    protected MailOutboxOption mailOutboxOption;
+
     // ===================================================================================
     //                                                                     Direct Property
     //                                                                     ===============
@@ -176,6 +180,11 @@ public class FwCoreDirection {
         this.mailDeliveryDepartment = mailDeliveryDepartment;
     }
 
+    public void directMailOutbox(MailOutboxOption mailOutboxOption) {
+        assertArgumentNotNull("mailOutboxOption", mailOutboxOption);
+        this.mailOutboxOption = mailOutboxOption;
+    }
+
     // ===================================================================================
     //                                                                              Assist
     //                                                                              ======
@@ -249,6 +258,10 @@ public class FwCoreDirection {
         return mailDeliveryDepartment; // not required, big optional function
     }
 
+    public MailOutboxOption assistMailOutboxOption() {
+        return mailOutboxOption; // not required, sending directly if null
+    }
+
     // ===================================================================================
     //                                                                       Assert Helper
     //                                                                       =============
@@ -63,6 +63,9 @@ public class ObjectiveConfig implements AccessibleConfig, Serializable {
     /** The objective properties in DBFlute library. (NotNull: after initialization) */
     protected ObjectiveProperties prop;
 
+    /** The compiled snapshot of the properties, swapped when reload. (NotNull: after initialization) */
+    protected volatile ObjectiveConfigSnapshot snapshot;
+
     /** The filter of configuration value. (NotNull: after initialization) */
     protected PropertyFilter propertyFilter;
 
@@ -82,6 +85,7 @@ public class ObjectiveConfig implements AccessibleConfig, Serializable {
         final ObjectiveProperties makingProp = prepareObjectiveProperties();
         makingProp.load();
         prop = makingProp; // prop always be complete object for HotDeploy get() might be called in initialize()
+        snapshot = createSnapshot(makingProp); // swapped atomically so readers see old or new
         prepareHotDeploy();
         showBootLogging();
     }
@@ -131,6 +135,16 @@ public class ObjectiveConfig implements AccessibleConfig, Serializable {
         };
     }
 
+    /**
+     * Create the immutable snapshot compiled from the loaded properties. <br>
+     * The property filter is applied here only once, so it should be stateless.
+     * @param loadedProp The loaded objective properties. (NotNull)
+     * @return The new-created snapshot. (NotNull)
+     */
+    protected ObjectiveConfigSnapshot createSnapshot(ObjectiveProperties loadedProp) {
+        return new ObjectiveConfigSnapshot(loadedProp);
+    }
+
     protected void verifyPropertyValue(String propertyKey, final String propertyValue) {
         if (propertyValue == null) {
             final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
@@ -169,37 +183,37 @@ public class ObjectiveConfig implements AccessibleConfig, Serializable {
     @Override
     public String get(String propertyKey) {
         reloadIfNeeds();
-        return prop.get(propertyKey);
+        return snapshot.get(propertyKey);
     }
 
     @Override
     public Integer getAsInteger(String propertyKey) {
         reloadIfNeeds();
-        return prop.getAsInteger(propertyKey);
+        return snapshot.getAsInteger(propertyKey);
     }
 
     @Override
     public Long getAsLong(String propertyKey) {
         reloadIfNeeds();
-        return prop.getAsLong(propertyKey);
+        return snapshot.getAsLong(propertyKey);
     }
 
     @Override
     public BigDecimal getAsDecimal(String propertyKey) {
         reloadIfNeeds();
-        return prop.getAsDecimal(propertyKey);
+        return snapshot.getAsDecimal(propertyKey);
     }
 
     @Override
     public LocalDate getAsDate(String propertyKey) {
         reloadIfNeeds();
-        return DfTypeUtil.toLocalDate(prop.getAsDate(propertyKey));
+        return snapshot.getAsDate(propertyKey);
     }
 
     @Override
     public boolean is(String propertyKey) {
         reloadIfNeeds();
-        return prop.is(propertyKey);
+        return snapshot.is(propertyKey);
     }
 
     // ===================================================================================
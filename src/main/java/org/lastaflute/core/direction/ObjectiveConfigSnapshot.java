@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.direction;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.dbflute.helper.jprop.JavaPropertiesProperty;
+import org.dbflute.helper.jprop.ObjectiveProperties;
+import org.dbflute.util.DfTypeUtil;
+
+/**
+ * The immutable snapshot of objective config, compiled when initialization. <br>
+ * The values are already filtered and trimmed, and typed values are parsed in advance
+ * so getting property is just map lookup. (also typed)
+ * <pre>
+ * The snapshot is re-created and swapped when hot-deploy reload.
+ * Unknown key or unparsable typed value is delegated to the properties
+ * to keep the same exception as no snapshot.
+ * </pre>
+ * @author jflute
+ */
+public class ObjectiveConfigSnapshot implements Serializable {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final long serialVersionUID = 1L;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final ObjectiveProperties prop; // for delegation
+    protected final Map<String, CompiledProperty> propertyMap; // read-only
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param prop The loaded objective properties whose get() is already filtered. (NotNull)
+     */
+    public ObjectiveConfigSnapshot(ObjectiveProperties prop) {
+        this.prop = prop;
+        this.propertyMap = compile(prop);
+    }
+
+    protected Map<String, CompiledProperty> compile(ObjectiveProperties prop) {
+        final Map<String, CompiledProperty> map = new HashMap<String, CompiledProperty>();
+        for (JavaPropertiesProperty property : prop.getJavaPropertiesResult().getPropertyList()) {
+            final String key = property.getPropertyKey();
+            map.put(key, new CompiledProperty(property, prop.get(key))); // get() means filtered value
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    // ===================================================================================
+    //                                                                        Get Property
+    //                                                                        ============
+    public String get(String propertyKey) {
+        final CompiledProperty compiled = propertyMap.get(propertyKey);
+        return compiled != null ? compiled.getValue() : prop.get(propertyKey); // exception if not found
+    }
+
+    public Integer getAsInteger(String propertyKey) {
+        final CompiledProperty compiled = propertyMap.get(propertyKey);
+        if (compiled != null && compiled.isIntegerCompiled()) {
+            return compiled.getIntegerValue();
+        }
+        return prop.getAsInteger(propertyKey);
+    }
+
+    public Long getAsLong(String propertyKey) {
+        final CompiledProperty compiled = propertyMap.get(propertyKey);
+        if (compiled != null && compiled.isLongCompiled()) {
+            return compiled.getLongValue();
+        }
+        return prop.getAsLong(propertyKey);
+    }
+
+    public BigDecimal getAsDecimal(String propertyKey) {
+        final CompiledProperty compiled = propertyMap.get(propertyKey);
+        if (compiled != null && compiled.isDecimalCompiled()) {
+            return compiled.getDecimalValue();
+        }
+        return prop.getAsDecimal(propertyKey);
+    }
+
+    public LocalDate getAsDate(String propertyKey) {
+        final CompiledProperty compiled = propertyMap.get(propertyKey);
+        if (compiled != null && compiled.isDateCompiled()) {
+            return compiled.getDateValue();
+        }
+        return DfTypeUtil.toLocalDate(prop.getAsDate(propertyKey));
+    }
+
+    public boolean is(String propertyKey) {
+        final CompiledProperty compiled = propertyMap.get(propertyKey);
+        return compiled != null ? compiled.isTrue() : prop.is(propertyKey);
+    }
+
+    public int size() {
+        return propertyMap.size();
+    }
+
+    // ===================================================================================
+    //                                                                   Compiled Property
+    //                                                                   =================
+    protected static class CompiledProperty implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        protected static final Object UNCOMPILED = UncompiledMark.INSTANCE;
+
+        protected final String value; // filtered, trimmed (NullAllowed: filtered as null)
+        protected final Object integerValue; // or uncompiled mark
+        protected final Object longValue;
+        protected final Object decimalValue;
+        protected final Object dateValue;
+        protected final boolean trueValue;
+
+        public CompiledProperty(JavaPropertiesProperty property, String value) {
+            this.value = value;
+            // parse only promising type (judged by plain value), others are delegated to properties
+            this.integerValue = property.mayBeIntegerProperty() ? parse(value, DfTypeUtil::toInteger) : UNCOMPILED;
+            this.longValue = property.mayBeLongProperty() ? parse(value, DfTypeUtil::toLong) : UNCOMPILED;
+            this.decimalValue = property.mayBeDecimalProperty() ? parse(value, DfTypeUtil::toBigDecimal) : UNCOMPILED;
+            this.dateValue = property.mayBeDateProperty() ? parse(value, vl -> DfTypeUtil.toLocalDate(DfTypeUtil.toDate(vl))) : UNCOMPILED;
+            this.trueValue = value != null && "true".equalsIgnoreCase(value.trim()); // same as objective properties
+        }
+
+        protected static Object parse(String value, Function<String, Object> parser) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                return parser.apply(value);
+            } catch (RuntimeException e) { // the same exception will be thrown by properties
+                return UNCOMPILED;
+            }
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isIntegerCompiled() {
+            return integerValue != UNCOMPILED;
+        }
+
+        public Integer getIntegerValue() {
+            return (Integer) integerValue;
+        }
+
+        public boolean isLongCompiled() {
+            return longValue != UNCOMPILED;
+        }
+
+        public Long getLongValue() {
+            return (Long) longValue;
+        }
+
+        public boolean isDecimalCompiled() {
+            return decimalValue != UNCOMPILED;
+        }
+
+        public BigDecimal getDecimalValue() {
+            return (BigDecimal) decimalValue;
+        }
+
+        public boolean isDateCompiled() {
+            return dateValue != UNCOMPILED;
+        }
+
+        public LocalDate getDateValue() {
+            return (LocalDate) dateValue;
+        }
+
+        public boolean isTrue() {
+            return trueValue;
+        }
+    }
+
+    protected static enum UncompiledMark { // enum keeps identity in serialization
+        INSTANCE
+    }
+}
@@ -15,6 +15,15 @@
  */
 package org.lastaflute.core.magic.async;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.lastaflute.core.magic.async.ConcurrentFork.ConcurrentForkDispatcher;
+
 /**
  * @author jflute
  */
@@ -27,6 +36,7 @@ public interface AsyncManager {
      * o ThreadCacheContext (copied plainly)
      * o AccessContext (copied as fixed value)
      * o CallbackContext (optional)
+     * o RequestDeadline (optional, inherited as default)
      * 
      * *attention: possibility of multiply threads access
      * </pre>
@@ -34,4 +44,102 @@ public interface AsyncManager {
      * @param noArgLambda The callback for asynchronous process. (NotNull)
      */
     void async(ConcurrentAsyncCall noArgLambda);
+
+    /**
+     * Create the executor for asynchronous process inheriting the current thread's contexts. <br>
+     * The contexts are captured when this method is called (not when executing) as same as async(),
+     * so you can use it for the process that runs after the caller's process ends.
+     * <pre>
+     * e.g. completion of CompletableFuture
+     *  future.whenCompleteAsync((result, cause) -&gt; {
+     *      ... <span style="color: #3F7E5E">// can use e.g. ThreadCacheContext of the caller thread</span>
+     *  }, asyncManager.inheritingExecutor());
+     * </pre>
+     * <p>The default implementation delegates to async() when each command is executed,
+     * so the contexts are captured at that time. Override it if the contexts should be captured here.</p>
+     * @return The executor to run the command by other thread with inherited contexts. (NotNull)
+     */
+    default Executor inheritingExecutor() {
+        return command -> async(() -> command.run());
+    }
+
+    /**
+     * Create the fork for structured parallel processes that return results. <br>
+     * The contexts are inherited from the current thread as same as async(), captured when this method is called.
+     * <pre>
+     * try (ConcurrentFork fork = asyncManager.fork(op -&gt; op.timeout(3000).limitParallelism(4))) {
+     *     ConcurrentForked&lt;Member&gt; member = fork.call(() -&gt; selectMember(...));
+     *     ConcurrentForked&lt;Integer&gt; count = fork.call(() -&gt; selectPurchaseCount(...));
+     *     fork.join(); <span style="color: #3F7E5E">// waits all, or throws the first failure cancelling the others</span>
+     *     ... member.get(), count.get()
+     * }
+     * </pre>
+     * <p>The processes run out of the caller's transaction (the transaction is bound to the caller thread),
+     * so use childTransaction() of the option if they need their own transaction.</p>
+     * <p>The default implementation dispatches the processes by inheritingExecutor(),
+     * without child transaction, failure logging and latency recording. Override it if they are needed.</p>
+     * @param opLambda The callback for option of fork e.g. timeout, parallelism. (NotNull)
+     * @return The new-created fork, should be closed. (NotNull)
+     */
+    default ConcurrentFork fork(Consumer<ConcurrentForkOption> opLambda) {
+        if (opLambda == null) {
+            throw new IllegalArgumentException("The argument 'opLambda' should not be null.");
+        }
+        final ConcurrentForkOption option = new ConcurrentForkOption();
+        opLambda.accept(option);
+        final Executor executor = inheritingExecutor(); // captured here
+        return new ConcurrentFork(option, new ConcurrentForkDispatcher() {
+            public Future<?> dispatch(Runnable childProcess) {
+                return CompletableFuture.runAsync(childProcess, executor);
+            }
+
+            public <RESULT> RESULT invoke(ConcurrentParallelCall<RESULT> call) {
+                return call.callback(); // no child transaction as default
+            }
+
+            public void handleFailure(ConcurrentForked<?> forked, Throwable cause) { // ignored as default
+            }
+
+            public void recordLatency(long elapsedMillis) { // no record as default
+            }
+        });
+    }
+
+    /**
+     * Create the fork for structured parallel processes with default option (no timeout, no limit, no transaction).
+     * @return The new-created fork, should be closed. (NotNull)
+     */
+    default ConcurrentFork fork() {
+        return fork(op -> {});
+    }
+
+    /**
+     * Execute the parallel processes and return their results in the order of the list.
+     * @param <RESULT> The type of result.
+     * @param callList The list of parallel calls. (NotNull)
+     * @return The list of results in the order of the calls. (NotNull, EmptyAllowed)
+     */
+    default <RESULT> List<RESULT> parallel(List<ConcurrentParallelCall<RESULT>> callList) {
+        try (ConcurrentFork fork = fork()) {
+            final List<ConcurrentForked<RESULT>> forkedList = new ArrayList<>(callList.size());
+            for (ConcurrentParallelCall<RESULT> call : callList) {
+                forkedList.add(fork.call(call));
+            }
+            fork.join();
+            final List<RESULT> resultList = new ArrayList<>(forkedList.size());
+            for (ConcurrentForked<RESULT> forked : forkedList) {
+                resultList.add(forked.get());
+            }
+            return resultList;
+        }
+    }
+
+    /**
+     * Get the latency distribution of parallel calls executed by fork. <br>
+     * The default implementation returns empty statistics because the default fork does not record latency.
+     * @return The latency statistics shared in this manager. (NotNull)
+     */
+    default ConcurrentCallLatency getParallelCallLatency() {
+        return new ConcurrentCallLatency(); // no record as default
+    }
 }
@@ -28,6 +28,7 @@ public class ConcurrentAsyncOption {
     protected ConcurrentAsyncInheritType sqlLogHandlerType;
     protected ConcurrentAsyncInheritType sqlResultHandlerType;
     protected ConcurrentAsyncInheritType sqlStringFilterType;
+    protected ConcurrentAsyncInheritType requestDeadlineType; // inherited if null
 
     public enum ConcurrentAsyncInheritType {
         INHERIT, SEPARATE
@@ -59,6 +60,10 @@ public class ConcurrentAsyncOption {
         return determineInheritType(sqlStringFilterType, ConcurrentAsyncInheritType.INHERIT);
     }
 
+    public boolean isInheritRequestDeadline() {
+        return determineInheritType(requestDeadlineType, ConcurrentAsyncInheritType.INHERIT);
+    }
+
     // -----------------------------------------------------
     //                                              Separate
     //                                              --------
@@ -82,6 +87,10 @@ public class ConcurrentAsyncOption {
         return determineInheritType(sqlStringFilterType, ConcurrentAsyncInheritType.SEPARATE);
     }
 
+    public boolean isSeparateRequestDeadline() {
+        return determineInheritType(requestDeadlineType, ConcurrentAsyncInheritType.SEPARATE);
+    }
+
     protected boolean determineInheritType(ConcurrentAsyncInheritType inheritType, ConcurrentAsyncInheritType targetType) {
         return inheritType != null && inheritType.equals(targetType);
     }
@@ -117,6 +126,11 @@ public class ConcurrentAsyncOption {
         return this;
     }
 
+    public ConcurrentAsyncOption inheritRequestDeadline() {
+        requestDeadlineType = ConcurrentAsyncInheritType.INHERIT;
+        return this;
+    }
+
     // -----------------------------------------------------
     //                                              Separate
     //                                              --------
@@ -145,6 +159,16 @@ public class ConcurrentAsyncOption {
         return this;
     }
 
+    /**
+     * Separate the asynchronous process from the request deadline, e.g. process that outlives the request. <br>
+     * The deadline is inherited as default.
+     * @return this. (NotNull)
+     */
+    public ConcurrentAsyncOption separateRequestDeadline() {
+        requestDeadlineType = ConcurrentAsyncInheritType.SEPARATE;
+        return this;
+    }
+
     // ===================================================================================
     //                                                                      Basic Override
     //                                                                      ==============
@@ -166,6 +190,9 @@ public class ConcurrentAsyncOption {
         if (sqlStringFilterType != null) {
             sb.append(sb.length() > 0 ? ", " : "").append("sqlStringFilter=").append(sqlStringFilterType);
         }
+        if (requestDeadlineType != null) {
+            sb.append(sb.length() > 0 ? ", " : "").append("requestDeadline=").append(requestDeadlineType);
+        }
         if (sb.length() == 0) {
             sb.append("no option");
         }
@@ -195,4 +222,8 @@ public class ConcurrentAsyncOption {
     public ConcurrentAsyncInheritType getSqlStringFilterType() {
         return sqlStringFilterType;
     }
+
+    public ConcurrentAsyncInheritType getRequestDeadlineType() {
+        return requestDeadlineType;
+    }
 }
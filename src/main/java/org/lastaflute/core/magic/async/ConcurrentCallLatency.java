@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.async;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distribution of latency for parallel calls, bucketed by upper bounds of milliseconds. <br>
+ * Recording is lock-free so it can be shared by all forks of the application.
+ * @author jflute
+ */
+public class ConcurrentCallLatency {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    /** The upper bounds (inclusive) of buckets in milliseconds, the last bucket is overflow. */
+    protected static final long[] BUCKET_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final LongAdder[] bucketCounts; // has overflow at the last
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder totalMillis = new LongAdder();
+    protected final LongAccumulator maxMillis = new LongAccumulator(Long::max, 0L);
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public ConcurrentCallLatency() {
+        bucketCounts = new LongAdder[BUCKET_BOUNDS.length + 1];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+    }
+
+    // ===================================================================================
+    //                                                                              Record
+    //                                                                              ======
+    public void record(long elapsedMillis) {
+        final long millis = Math.max(elapsedMillis, 0L);
+        bucketCounts[findBucketIndex(millis)].increment();
+        count.increment();
+        totalMillis.add(millis);
+        maxMillis.accumulate(millis);
+    }
+
+    protected int findBucketIndex(long millis) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (millis <= BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length; // overflow
+    }
+
+    // ===================================================================================
+    //                                                                          Statistics
+    //                                                                          ==========
+    /**
+     * Estimate the percentile by the buckets, so the value is upper bound of the bucket.
+     * @param percentile The percentile e.g. 50.0, 99.0 (NotMinus, 100 or less)
+     * @return The estimated milliseconds of the percentile, max if it is in overflow bucket, zero if no record.
+     */
+    public long estimatePercentileMillis(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("The argument 'percentile' should be between 0 and 100: " + percentile);
+        }
+        final long[] counts = new long[bucketCounts.length];
+        long all = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bucketCounts[i].sum(); // snapshot for consistent sum
+            all += counts[i];
+        }
+        if (all == 0L) {
+            return 0L;
+        }
+        final long threshold = (long) Math.ceil(all * percentile / 100.0);
+        long accumulated = 0L;
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            accumulated += counts[i];
+            if (accumulated >= threshold) {
+                return Math.min(BUCKET_BOUNDS[i], getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalMillis() {
+        return totalMillis.sum();
+    }
+
+    public long getMaxMillis() {
+        return maxMillis.get();
+    }
+
+    public long getAverageMillis() {
+        final long currentCount = getCount();
+        return currentCount > 0 ? getTotalMillis() / currentCount : 0L;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{count=").append(getCount());
+        sb.append(", avg=").append(getAverageMillis()).append("ms");
+        sb.append(", p50=").append(estimatePercentileMillis(50.0)).append("ms");
+        sb.append(", p90=").append(estimatePercentileMillis(90.0)).append("ms");
+        sb.append(", p99=").append(estimatePercentileMillis(99.0)).append("ms");
+        sb.append(", max=").append(getMaxMillis()).append("ms}");
+        return sb.toString();
+    }
+}
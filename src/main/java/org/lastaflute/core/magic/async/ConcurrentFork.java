@@ -0,0 +1,319 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.async;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.dbflute.helper.message.ExceptionMessageBuilder;
+import org.lastaflute.core.magic.async.exception.ConcurrentParallelTimeoutException;
+
+/**
+ * The structured fan-out of parallel processes, created by {@link AsyncManager#fork(java.util.function.Consumer)}.
+ * <pre>
+ * try (ConcurrentFork fork = asyncManager.fork(op -&gt; op.timeout(3000).limitParallelism(4))) {
+ *     ConcurrentForked&lt;Member&gt; member = fork.call(() -&gt; selectMember(...));
+ *     ConcurrentForked&lt;List&lt;Product&gt;&gt; productList = fork.call(() -&gt; selectProductList(...));
+ *     fork.join(); <span style="color: #3F7E5E">// rethrows the first failure, cancelling the others</span>
+ *     ... member.get(), productList.get()
+ * }
+ * </pre>
+ * <p>The first failure (or the timeout) cancels the other processes and is thrown by join().
+ * The later failures are logged by the manager because nobody can receive them.</p>
+ * @author jflute
+ */
+public class ConcurrentFork implements AutoCloseable {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final ConcurrentForkOption option; // not null
+    protected final ConcurrentForkDispatcher dispatcher; // not null
+    protected final long beginNanos;
+    protected final List<ConcurrentForked<?>> forkedList = new ArrayList<>(); // guarded by this
+    protected final Deque<ConcurrentForked<?>> pendingQueue = new ArrayDeque<>(); // guarded by this
+    protected int runningCount; // guarded by this
+    protected int finishedCount; // guarded by this
+    protected Throwable firstFailure; // guarded by this, null allowed
+    protected boolean joined; // guarded by this
+    protected boolean cancelled; // guarded by this
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public ConcurrentFork(ConcurrentForkOption option, ConcurrentForkDispatcher dispatcher) {
+        this.option = option;
+        this.dispatcher = dispatcher;
+        this.beginNanos = System.nanoTime();
+    }
+
+    /**
+     * The dispatcher of parallel processes, provided by async manager.
+     */
+    public static interface ConcurrentForkDispatcher {
+
+        /**
+         * Dispatch the process to other thread with inherited contexts.
+         * @param childProcess The process of the child thread. (NotNull)
+         * @return The future of the dispatched process. (NotNull)
+         */
+        Future<?> dispatch(Runnable childProcess);
+
+        /**
+         * Invoke the parallel call in the child thread, e.g. in transaction.
+         * @param <RESULT> The type of result.
+         * @param call The callback of parallel process. (NotNull)
+         * @return The result of the call. (NullAllowed)
+         */
+        <RESULT> RESULT invoke(ConcurrentParallelCall<RESULT> call);
+
+        /**
+         * Handle the failure that cannot be thrown to caller (after the first failure), in the child thread.
+         * @param forked The forked process that fails. (NotNull)
+         * @param cause The exception of the process. (NotNull)
+         */
+        void handleFailure(ConcurrentForked<?> forked, Throwable cause);
+
+        /**
+         * Record the latency of the finished process.
+         * @param elapsedMillis The elapsed milliseconds of the process.
+         */
+        void recordLatency(long elapsedMillis);
+    }
+
+    // ===================================================================================
+    //                                                                                Call
+    //                                                                                ====
+    /**
+     * Fork the parallel process, dispatched now or when running one finishes if parallelism is limited.
+     * @param <RESULT> The type of result.
+     * @param parallelLambda The callback of parallel process. (NotNull)
+     * @return The handle of the forked process to get result after join. (NotNull)
+     */
+    public <RESULT> ConcurrentForked<RESULT> call(ConcurrentParallelCall<RESULT> parallelLambda) {
+        if (parallelLambda == null) {
+            throw new IllegalArgumentException("The argument 'parallelLambda' should not be null.");
+        }
+        final ConcurrentForked<RESULT> forked;
+        synchronized (this) {
+            if (joined) {
+                throw new IllegalStateException("Cannot call after join(), create new fork: " + toString());
+            }
+            forked = new ConcurrentForked<RESULT>(parallelLambda, forkedList.size());
+            forkedList.add(forked);
+            if (cancelled) { // e.g. already failed
+                forked.cancel();
+                return forked;
+            }
+            final int limit = option.getParallelismLimit();
+            if (limit > 0 && runningCount >= limit) {
+                pendingQueue.addLast(forked);
+                return forked;
+            }
+            ++runningCount;
+        }
+        dispatchForked(forked);
+        return forked;
+    }
+
+    protected <RESULT> void dispatchForked(ConcurrentForked<RESULT> forked) { // out of lock
+        try {
+            forked.acceptFuture(dispatcher.dispatch(() -> runForked(forked)));
+        } catch (RuntimeException e) { // e.g. rejected by executor
+            handleFinished(forked, e);
+        }
+    }
+
+    protected <RESULT> void runForked(ConcurrentForked<RESULT> forked) { // child thread
+        final long before = System.currentTimeMillis();
+        RESULT result = null;
+        Throwable failure = null;
+        try {
+            result = dispatcher.invoke(forked.getCall());
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        } finally {
+            final long elapsedMillis = System.currentTimeMillis() - before;
+            forked.finish(result, failure, elapsedMillis);
+            dispatcher.recordLatency(elapsedMillis);
+        }
+        handleFinished(forked, failure);
+    }
+
+    protected void handleFinished(ConcurrentForked<?> forked, Throwable failure) {
+        final boolean thrownToCaller;
+        final ConcurrentForked<?> next;
+        synchronized (this) {
+            --runningCount;
+            ++finishedCount;
+            thrownToCaller = failure != null && firstFailure == null && !cancelled;
+            if (thrownToCaller) {
+                firstFailure = failure;
+            }
+            next = firstFailure == null && !cancelled ? pendingQueue.pollFirst() : null;
+            if (next != null) {
+                ++runningCount;
+            }
+            notifyAll();
+        }
+        if (failure != null && !thrownToCaller) { // e.g. second failure, failure after timeout
+            dispatcher.handleFailure(forked, failure);
+        }
+        if (next != null) {
+            dispatchForked(next);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                                Join
+    //                                                                                ====
+    /**
+     * Wait for all forked processes to finish, and you can get their results after this.
+     * @throws RuntimeException The first failure of the processes is thrown as it is. (other processes are cancelled)
+     * @throws ConcurrentParallelTimeoutException When the deadline of the option is over. (processes are cancelled)
+     * @throws IllegalStateException When the fork has been cancelled before finishing.
+     */
+    public void join() {
+        final Throwable failure;
+        final boolean timeout;
+        final boolean alreadyCancelled;
+        try {
+            synchronized (this) {
+                joined = true;
+                boolean over = false;
+                while (firstFailure == null && !cancelled && finishedCount < forkedList.size()) {
+                    if (option.getTimeoutMillis() >= 0) {
+                        final long remaining = TimeUnit.MILLISECONDS.toNanos(option.getTimeoutMillis()) - (System.nanoTime() - beginNanos);
+                        if (remaining <= 0) {
+                            over = true;
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } else {
+                        wait();
+                    }
+                }
+                failure = firstFailure;
+                timeout = over;
+                alreadyCancelled = cancelled;
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while joining the fork: " + toString(), e);
+        }
+        if (failure != null) {
+            cancel();
+            throwFailure(failure);
+        }
+        if (timeout) {
+            cancel();
+            throwParallelTimeoutException();
+        }
+        if (alreadyCancelled) { // e.g. cancel() by other thread
+            throw new IllegalStateException("The fork has been cancelled: " + toString());
+        }
+    }
+
+    protected void throwFailure(Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else { // basically no way
+            throw new IllegalStateException("Failed to execute the parallel process: " + toString(), failure);
+        }
+    }
+
+    protected void throwParallelTimeoutException() {
+        final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+        br.addNotice("The parallel processes were not finished within the timeout.");
+        br.addItem("Advice");
+        br.addElement("Make sure your processes are fast enough or the timeout is enough.");
+        br.addElement("The unfinished processes have been cancelled (interrupted).");
+        br.addItem("Timeout");
+        br.addElement(option.getTimeoutMillis() + "ms");
+        br.addItem("Forked Process");
+        for (ConcurrentForked<?> forked : snapshotForkedList()) {
+            br.addElement(forked);
+        }
+        final String msg = br.buildExceptionMessage();
+        throw new ConcurrentParallelTimeoutException(msg);
+    }
+
+    // ===================================================================================
+    //                                                                              Cancel
+    //                                                                              ======
+    /**
+     * Cancel the unfinished processes, pending ones are never dispatched.
+     */
+    public void cancel() {
+        final List<ConcurrentForked<?>> targetList;
+        synchronized (this) {
+            cancelled = true;
+            pendingQueue.clear();
+            targetList = new ArrayList<>(forkedList);
+            notifyAll(); // wake up join()
+        }
+        for (ConcurrentForked<?> forked : targetList) {
+            forked.cancel(); // no-op if done
+        }
+    }
+
+    /**
+     * Cancel the unfinished processes if not joined, for try-with-resources.
+     */
+    @Override
+    public void close() {
+        final boolean unfinished;
+        synchronized (this) {
+            unfinished = finishedCount < forkedList.size();
+        }
+        if (unfinished) {
+            cancel();
+        }
+    }
+
+    // ===================================================================================
+    //                                                                        Small Helper
+    //                                                                        ============
+    protected synchronized List<ConcurrentForked<?>> snapshotForkedList() {
+        return new ArrayList<>(forkedList);
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "fork:{" + option + ", forked=" + snapshotForkedList().size() + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public ConcurrentForkOption getOption() {
+        return option;
+    }
+
+    public List<ConcurrentForked<?>> getForkedList() {
+        return snapshotForkedList();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.async;
+
+import org.lastaflute.db.jta.stage.TransactionGenre;
+
+/**
+ * The option of fork for parallel processes.
+ * @author jflute
+ */
+public class ConcurrentForkOption {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected long timeoutMillis = -1L; // minus means no deadline
+    protected int parallelismLimit; // zero means no limit (executor's limit)
+    protected TransactionGenre childTransactionGenre = TransactionGenre.NONE; // not null
+    protected ConcurrentAsyncOption asyncOption = new ConcurrentAsyncOption(); // not null
+
+    // ===================================================================================
+    //                                                                         Easy-to-Use
+    //                                                                         ===========
+    /**
+     * Set the deadline of the fork from its creation. <br>
+     * When it is over in join(), unfinished processes are cancelled and the timeout exception is thrown.
+     * If not specified, the remaining budget of request deadline is used if it exists.
+     * @param timeoutMillis The milliseconds of timeout. (NotMinus)
+     * @return this. (NotNull)
+     */
+    public ConcurrentForkOption timeout(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("The argument 'timeoutMillis' should not be minus: " + timeoutMillis);
+        }
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Limit the count of processes running at the same time in the fork. <br>
+     * The other processes wait in the fork (not in executor) until a running one finishes.
+     * @param parallelismLimit The count of parallelism. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public ConcurrentForkOption limitParallelism(int parallelismLimit) {
+        if (parallelismLimit <= 0) {
+            throw new IllegalArgumentException("The argument 'parallelismLimit' should be positive: " + parallelismLimit);
+        }
+        this.parallelismLimit = parallelismLimit;
+        return this;
+    }
+
+    /**
+     * Run each process in its own transaction. <br>
+     * The processes never join the caller's transaction because it is bound to the caller thread,
+     * so they run without transaction as default.
+     * @param genre The genre of transaction for each process e.g. READ_ONLY, REQUIRES_NEW (NotNull)
+     * @return this. (NotNull)
+     */
+    public ConcurrentForkOption childTransaction(TransactionGenre genre) {
+        if (genre == null) {
+            throw new IllegalArgumentException("The argument 'genre' should not be null.");
+        }
+        this.childTransactionGenre = genre;
+        return this;
+    }
+
+    /**
+     * Set the option of context inheritance, same as asynchronous process.
+     * @param asyncOption The option of asynchronous process. (NotNull)
+     * @return this. (NotNull)
+     */
+    public ConcurrentForkOption inheritBy(ConcurrentAsyncOption asyncOption) {
+        if (asyncOption == null) {
+            throw new IllegalArgumentException("The argument 'asyncOption' should not be null.");
+        }
+        this.asyncOption = asyncOption;
+        return this;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "{timeout=" + timeoutMillis + ", parallelism=" + parallelismLimit + ", tx=" + childTransactionGenre + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public int getParallelismLimit() {
+        return parallelismLimit;
+    }
+
+    public TransactionGenre getChildTransactionGenre() {
+        return childTransactionGenre;
+    }
+
+    public ConcurrentAsyncOption getAsyncOption() {
+        return asyncOption;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.async;
+
+import java.util.concurrent.Future;
+
+/**
+ * The handle of parallel process forked by {@link ConcurrentFork}, which can get the result after join.
+ * @param <RESULT> The type of result.
+ * @author jflute
+ */
+public class ConcurrentForked<RESULT> {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final ConcurrentParallelCall<RESULT> call; // not null
+    protected final int index; // order of call() in the fork
+    protected volatile Future<?> future; // null before dispatch or when not dispatched
+    protected volatile boolean done; // true when finished or cancelled
+    protected volatile boolean cancelled;
+    protected volatile RESULT result; // null allowed
+    protected volatile Throwable failure; // null allowed
+    protected volatile long elapsedMillis; // zero before finishing
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public ConcurrentForked(ConcurrentParallelCall<RESULT> call, int index) {
+        this.call = call;
+        this.index = index;
+    }
+
+    // ===================================================================================
+    //                                                                       Process State
+    //                                                                       =============
+    protected void acceptFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    protected void finish(RESULT result, Throwable failure, long elapsedMillis) { // child thread
+        this.result = result;
+        this.failure = failure;
+        this.elapsedMillis = elapsedMillis;
+        this.done = true;
+    }
+
+    protected void cancel() { // caller thread
+        if (done) {
+            return;
+        }
+        cancelled = true;
+        done = true;
+        final Future<?> dispatched = future;
+        if (dispatched != null) {
+            dispatched.cancel(true); // interrupt the running process
+        }
+    }
+
+    // ===================================================================================
+    //                                                                              Result
+    //                                                                              ======
+    /**
+     * Get the result of the parallel process, basically called after join().
+     * @return The result of the process. (NullAllowed: when the process returns null)
+     * @throws IllegalStateException When the process is not finished, failed or cancelled.
+     */
+    public RESULT get() {
+        if (!done) {
+            throw new IllegalStateException("Not finished yet, call join() before get(): " + toString());
+        }
+        if (cancelled) {
+            throw new IllegalStateException("Cancelled by other failure or timeout: " + toString());
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Failed to execute the parallel process: " + toString(), failure);
+        }
+        return result;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        final String state = !done ? "running" : cancelled ? "cancelled" : failure != null ? "failed" : "done";
+        return "forked:{#" + index + ", " + state + ", " + elapsedMillis + "ms, " + call + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public ConcurrentParallelCall<RESULT> getCall() {
+        return call;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.async;
+
+/**
+ * The callback of parallel process that returns result, executed in other thread by fork.
+ * @param <RESULT> The type of result.
+ * @author jflute
+ */
+@FunctionalInterface
+public interface ConcurrentParallelCall<RESULT> {
+
+    /**
+     * Callback your parallel process in the other thread.
+     * @return The result of the process. (NullAllowed)
+     */
+    RESULT callback();
+}
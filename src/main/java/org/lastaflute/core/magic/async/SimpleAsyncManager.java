@@ -20,12 +20,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -41,6 +44,7 @@ import org.dbflute.hook.SqlFireHook;
 import org.dbflute.hook.SqlLogHandler;
 import org.dbflute.hook.SqlResultHandler;
 import org.dbflute.hook.SqlStringFilter;
+import org.dbflute.optional.OptionalThing;
 import org.dbflute.util.DfReflectionUtil;
 import org.dbflute.util.DfTraceViewUtil;
 import org.dbflute.util.DfTypeUtil;
@@ -50,9 +54,18 @@ import org.lastaflute.core.direction.FwCoreDirection;
 import org.lastaflute.core.exception.ExceptionTranslator;
 import org.lastaflute.core.magic.ThreadCacheContext;
 import org.lastaflute.core.magic.async.ConcurrentAsyncOption.ConcurrentAsyncInheritType;
+import org.lastaflute.core.magic.async.ConcurrentFork.ConcurrentForkDispatcher;
+import org.lastaflute.core.magic.deadline.RequestDeadline;
+import org.lastaflute.core.magic.deadline.RequestDeadlineContext;
+import org.lastaflute.core.magic.identity.RequestIdentity;
+import org.lastaflute.core.magic.identity.RequestIdentityContext;
+import org.lastaflute.core.util.ContainerUtil;
 import org.lastaflute.db.dbflute.accesscontext.PreparedAccessContext;
+import org.lastaflute.db.dbflute.callbackcontext.RequestDeadlineBehaviorCommandHook;
 import org.lastaflute.db.dbflute.callbackcontext.RomanticTraceableSqlFireHook;
 import org.lastaflute.db.dbflute.callbackcontext.RomanticTraceableSqlStringFilter;
+import org.lastaflute.db.jta.stage.TransactionGenre;
+import org.lastaflute.db.jta.stage.TransactionStage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -91,6 +104,12 @@ public class SimpleAsyncManager implements AsyncManager {
     /** The service of executor for waiting queue. (NullAllowed: lazy-loaded) */
     protected ExecutorService waitingQueueExecutorService;
 
+    /** The latency distribution of parallel calls by fork. (NotNull) */
+    protected final ConcurrentCallLatency parallelCallLatency = new ConcurrentCallLatency();
+
+    /** The stage of transaction for parallel calls in transaction. (NullAllowed: lazy-loaded) */
+    protected volatile TransactionStage parallelTransactionStage;
+
     // ===================================================================================
     //                                                                          Initialize
     //                                                                          ==========
@@ -240,19 +259,137 @@ public class SimpleAsyncManager implements AsyncManager {
         secondaryExecutorService.submit(createRunnable(callback, keyword));
     }
 
+    // ===================================================================================
+    //                                                                  Inheriting Executor
+    //                                                                  ===================
+    @Override
+    public Executor inheritingExecutor() {
+        assertExecutorServiceValid();
+        final CallerContext callerContext = inheritCallerContext(createInheritingCall(null)); // captured here
+        return command -> {
+            final String keyword = "inheriting" + buildExecutorHashExp(secondaryExecutorService);
+            secondaryExecutorService.execute(createRunnable(createInheritingCall(command), keyword, callerContext));
+        };
+    }
+
+    protected ConcurrentAsyncCall createInheritingCall(Runnable command) {
+        return () -> {
+            if (command != null) { // null when only for context capture
+                command.run();
+            }
+        };
+    }
+
+    // ===================================================================================
+    //                                                                       Parallel Fork
+    //                                                                       =============
+    @Override
+    public ConcurrentFork fork(Consumer<ConcurrentForkOption> opLambda) {
+        assertExecutorServiceValid();
+        final ConcurrentForkOption option = createForkOption(opLambda);
+        final ConcurrentAsyncCall contextCall = createForkContextCall(option, null);
+        final CallerContext callerContext = inheritCallerContext(contextCall); // captured here
+        return newConcurrentFork(option, new ConcurrentForkDispatcher() {
+            public Future<?> dispatch(Runnable childProcess) {
+                final String keyword = "parallel" + buildExecutorHashExp(secondaryExecutorService);
+                final ConcurrentAsyncCall childCall = createForkContextCall(option, childProcess);
+                return secondaryExecutorService.submit(createRunnable(childCall, keyword, callerContext));
+            }
+
+            public <RESULT> RESULT invoke(ConcurrentParallelCall<RESULT> call) {
+                return invokeParallelCall(option, call);
+            }
+
+            public void handleFailure(ConcurrentForked<?> forked, Throwable cause) {
+                final long before = System.currentTimeMillis() - forked.getElapsedMillis();
+                handleAsyncCallbackException(contextCall, before, cause);
+            }
+
+            public void recordLatency(long elapsedMillis) {
+                parallelCallLatency.record(elapsedMillis);
+            }
+        });
+    }
+
+    protected ConcurrentForkOption createForkOption(Consumer<ConcurrentForkOption> opLambda) {
+        if (opLambda == null) {
+            throw new IllegalArgumentException("The argument 'opLambda' should not be null.");
+        }
+        final ConcurrentForkOption option = new ConcurrentForkOption();
+        opLambda.accept(option);
+        final RequestDeadline deadline = RequestDeadlineContext.getDeadlineOnThread();
+        if (option.getTimeoutMillis() < 0 && deadline != null) { // no join after the request deadline
+            option.timeout(Math.max(deadline.getRemainingMillis(), 0L));
+        }
+        return option;
+    }
+
+    protected ConcurrentAsyncCall createForkContextCall(ConcurrentForkOption option, Runnable childProcess) {
+        return new ConcurrentAsyncCall() {
+            public void callback() {
+                if (childProcess != null) { // null when only for context capture
+                    childProcess.run();
+                }
+            }
+
+            @Override
+            public ConcurrentAsyncOption option() {
+                return option.getAsyncOption();
+            }
+        };
+    }
+
+    protected ConcurrentFork newConcurrentFork(ConcurrentForkOption option, ConcurrentForkDispatcher dispatcher) {
+        return new ConcurrentFork(option, dispatcher);
+    }
+
+    // -----------------------------------------------------
+    //                                  Parallel Transaction
+    //                                  --------------------
+    protected <RESULT> RESULT invokeParallelCall(ConcurrentForkOption option, ConcurrentParallelCall<RESULT> call) { // child thread
+        final TransactionGenre genre = option.getChildTransactionGenre();
+        if (TransactionGenre.NONE.equals(genre)) { // as default, caller's transaction is not inherited
+            return call.callback();
+        }
+        final OptionalThing<RESULT> optResult = findParallelTransactionStage().selectable(tx -> {
+            tx.returns(call.callback());
+        }, genre);
+        return optResult.orElse(null);
+    }
+
+    protected TransactionStage findParallelTransactionStage() {
+        if (parallelTransactionStage == null) { // no synchronized, may be duplicate but same instance
+            parallelTransactionStage = ContainerUtil.getComponent(TransactionStage.class);
+        }
+        return parallelTransactionStage;
+    }
+
+    @Override
+    public ConcurrentCallLatency getParallelCallLatency() {
+        return parallelCallLatency;
+    }
+
     // ===================================================================================
     //                                                                     Create Runnable
     //                                                                     ===============
     protected Runnable createRunnable(final ConcurrentAsyncCall call, final String keyword) {
-        final Map<String, Object> threadCacheMap = inheritThreadCacheContext(call);
-        final AccessContext accessContext = inheritAccessContext(call);
-        final CallbackContext callbackContext = inheritCallbackContext(call);
-        final Map<String, Object> variousContextMap = findCallerVariousContextMap();
+        return createRunnable(call, keyword, inheritCallerContext(call));
+    }
+
+    protected Runnable createRunnable(ConcurrentAsyncCall call, String keyword, CallerContext callerContext) {
+        final Map<String, Object> threadCacheMap = callerContext.getThreadCacheMap();
+        final AccessContext accessContext = callerContext.getAccessContext();
+        final CallbackContext callbackContext = copyCallbackContext(callerContext.getCallbackContext()); // caller's is shared e.g. fork
+        final Map<String, Object> variousContextMap = callerContext.getVariousContextMap();
+        final RequestDeadline requestDeadline = callerContext.getRequestDeadline();
+        final RequestIdentity requestIdentity = callerContext.getRequestIdentity();
         return () -> {
             final long before = showRunning(keyword);
             prepareThreadCacheContext(call, threadCacheMap);
             prepareAccessContext(call, accessContext);
             prepareCallbackContext(call, callbackContext);
+            prepareRequestDeadline(call, requestDeadline);
+            prepareRequestIdentity(call, requestIdentity);
             final Object variousPreparedObj = prepareVariousContext(call, variousContextMap);
             try {
                 call.callback();
@@ -260,6 +397,8 @@ public class SimpleAsyncManager implements AsyncManager {
                 handleAsyncCallbackException(call, before, e);
             } finally {
                 clearVariousContext(call, variousContextMap, variousPreparedObj);
+                clearRequestIdentity(call);
+                clearRequestDeadline(call);
                 clearAccessContext(call);
                 clearCallbackContext(call);
                 clearThreadCacheContext(call);
@@ -271,6 +410,70 @@ public class SimpleAsyncManager implements AsyncManager {
     // -----------------------------------------------------
     //                                       Caller Resource
     //                                       ---------------
+    protected CallerContext inheritCallerContext(ConcurrentAsyncCall call) { // caller thread
+        final Map<String, Object> threadCacheMap = inheritThreadCacheContext(call);
+        final AccessContext accessContext = inheritAccessContext(call);
+        final CallbackContext callbackContext = inheritCallbackContext(call);
+        final Map<String, Object> variousContextMap = findCallerVariousContextMap();
+        final RequestDeadline requestDeadline = inheritRequestDeadline(call);
+        final RequestIdentity requestIdentity = inheritRequestIdentity(call);
+        return new CallerContext(threadCacheMap, accessContext, callbackContext, variousContextMap, requestDeadline, requestIdentity);
+    }
+
+    protected static class CallerContext {
+
+        protected final Map<String, Object> threadCacheMap; // not null
+        protected final AccessContext accessContext; // null allowed
+        protected final CallbackContext callbackContext; // null allowed
+        protected final Map<String, Object> variousContextMap; // null allowed
+        protected final RequestDeadline requestDeadline; // null allowed
+        protected final RequestIdentity requestIdentity; // null allowed
+
+        public CallerContext(Map<String, Object> threadCacheMap, AccessContext accessContext, CallbackContext callbackContext,
+                Map<String, Object> variousContextMap) {
+            this(threadCacheMap, accessContext, callbackContext, variousContextMap, null);
+        }
+
+        public CallerContext(Map<String, Object> threadCacheMap, AccessContext accessContext, CallbackContext callbackContext,
+                Map<String, Object> variousContextMap, RequestDeadline requestDeadline) {
+            this(threadCacheMap, accessContext, callbackContext, variousContextMap, requestDeadline, null);
+        }
+
+        public CallerContext(Map<String, Object> threadCacheMap, AccessContext accessContext, CallbackContext callbackContext,
+                Map<String, Object> variousContextMap, RequestDeadline requestDeadline, RequestIdentity requestIdentity) {
+            this.threadCacheMap = threadCacheMap;
+            this.accessContext = accessContext;
+            this.callbackContext = callbackContext;
+            this.variousContextMap = variousContextMap;
+            this.requestDeadline = requestDeadline;
+            this.requestIdentity = requestIdentity;
+        }
+
+        public Map<String, Object> getThreadCacheMap() {
+            return threadCacheMap;
+        }
+
+        public AccessContext getAccessContext() {
+            return accessContext;
+        }
+
+        public CallbackContext getCallbackContext() {
+            return callbackContext;
+        }
+
+        public Map<String, Object> getVariousContextMap() {
+            return variousContextMap;
+        }
+
+        public RequestDeadline getRequestDeadline() {
+            return requestDeadline;
+        }
+
+        public RequestIdentity getRequestIdentity() {
+            return requestIdentity;
+        }
+    }
+
     protected Map<String, Object> inheritThreadCacheContext(ConcurrentAsyncCall call) {
         return new HashMap<String, Object>(ThreadCacheContext.getReadOnlyCacheMap());
     }
@@ -378,6 +581,37 @@ public class SimpleAsyncManager implements AsyncManager {
         return new CallbackContext();
     }
 
+    protected CallbackContext copyCallbackContext(CallbackContext src) { // for each runnable, hooks are set in worker thread
+        if (src == null) {
+            return null;
+        }
+        final CallbackContext dest = newCallbackContext();
+        dest.setBehaviorCommandHook(src.getBehaviorCommandHook());
+        dest.setSqlFireHook(src.getSqlFireHook());
+        dest.setSqlLogHandler(src.getSqlLogHandler());
+        dest.setSqlResultHandler(src.getSqlResultHandler());
+        dest.setSqlStringFilter(src.getSqlStringFilter());
+        return dest;
+    }
+
+    protected RequestDeadline inheritRequestDeadline(ConcurrentAsyncCall call) {
+        final RequestDeadline deadline = RequestDeadlineContext.getDeadlineOnThread(); // null allowed
+        if (deadline == null) {
+            return null;
+        }
+        final ConcurrentAsyncInheritType inheritType = call.option().getRequestDeadlineType();
+        final ConcurrentAsyncInheritType defaultType = defaultConcurrentAsyncOption.getRequestDeadlineType();
+        final ConcurrentAsyncInheritType determinedType = inheritType != null ? inheritType : defaultType;
+        if (ConcurrentAsyncInheritType.SEPARATE.equals(determinedType)) { // inherited as default
+            return null;
+        }
+        return deadline;
+    }
+
+    protected RequestIdentity inheritRequestIdentity(ConcurrentAsyncCall call) { // child shares the caller's identity
+        return RequestIdentityContext.getIdentityOnThread(); // null allowed
+    }
+
     protected boolean isInherit(ConcurrentAsyncInheritType inheritType, ConcurrentAsyncInheritType defaultType) {
         if (inheritType != null) {
             return inheritType.equals(ConcurrentAsyncInheritType.INHERIT);
@@ -445,6 +679,28 @@ public class SimpleAsyncManager implements AsyncManager {
         }
     }
 
+    protected void prepareRequestDeadline(ConcurrentAsyncCall call, RequestDeadline requestDeadline) {
+        if (requestDeadline != null) { // statements in the process get query timeout by remaining budget
+            RequestDeadlineContext.setDeadlineOnThread(requestDeadline);
+            if (!isRequestDeadlineHookInherited(call)) {
+                CallbackContext.setBehaviorCommandHookOnThread(new RequestDeadlineBehaviorCommandHook(requestDeadline));
+            }
+        }
+    }
+
+    protected boolean isRequestDeadlineHookInherited(ConcurrentAsyncCall call) {
+        // the deadline is set on thread with its hook (action or async), so inherited command hook already checks it
+        final ConcurrentAsyncInheritType hookType = call.option().getBehaviorCommandHookType();
+        final ConcurrentAsyncInheritType defaultType = defaultConcurrentAsyncOption.getBehaviorCommandHookType();
+        return isInherit(hookType, defaultType) && CallbackContext.isExistBehaviorCommandHookOnThread();
+    }
+
+    protected void prepareRequestIdentity(ConcurrentAsyncCall call, RequestIdentity requestIdentity) {
+        if (requestIdentity != null) {
+            RequestIdentityContext.setIdentityOnThread(requestIdentity);
+        }
+    }
+
     protected Object prepareVariousContext(ConcurrentAsyncCall call, Map<String, Object> variousContextMap) { // for extension
         return null;
     }
@@ -527,6 +783,14 @@ public class SimpleAsyncManager implements AsyncManager {
     protected void clearVariousContext(ConcurrentAsyncCall call, Map<String, Object> callerVariousContextMap, Object variousPreparedObj) { // for extension
     }
 
+    protected void clearRequestDeadline(ConcurrentAsyncCall call) {
+        RequestDeadlineContext.clear();
+    }
+
+    protected void clearRequestIdentity(ConcurrentAsyncCall call) {
+        RequestIdentityContext.clear();
+    }
+
     protected void clearCallbackContext(ConcurrentAsyncCall call) {
         CallbackContext.clearCallbackContextOnThread();
     }
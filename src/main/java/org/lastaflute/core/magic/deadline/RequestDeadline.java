@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.deadline;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dbflute.helper.message.ExceptionMessageBuilder;
+import org.lastaflute.core.magic.deadline.exception.RequestDeadlineExceededException;
+
+/**
+ * The deadline of one request, which is immutable so it can be shared with other threads. <br>
+ * The remaining budget is calculated by monotonic clock (nano time).
+ * @author jflute
+ */
+public class RequestDeadline {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final String ownerKey; // not null, e.g. SeaAction@land()
+    protected final long budgetMillis;
+    protected final long deadlineNanos;
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param ownerKey The key of owner process, e.g. action execute expression. (NotNull)
+     * @param budgetMillis The milliseconds of budget from now. (NotMinus)
+     */
+    public RequestDeadline(String ownerKey, long budgetMillis) {
+        if (ownerKey == null) {
+            throw new IllegalArgumentException("The argument 'ownerKey' should not be null.");
+        }
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("The argument 'budgetMillis' should not be minus: " + budgetMillis);
+        }
+        this.ownerKey = ownerKey;
+        this.budgetMillis = budgetMillis;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    // ===================================================================================
+    //                                                                           Remaining
+    //                                                                           =========
+    /**
+     * @return The remaining milliseconds until the deadline. (MinusAllowed: when exceeded)
+     */
+    public long getRemainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExceeded() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Calculate the query timeout of JDBC statement from the remaining budget.
+     * @return The seconds rounded up, at least one. (NotMinus, NotZero)
+     */
+    public int calculateQueryTimeoutSeconds() {
+        final long remainingMillis = Math.max(getRemainingMillis(), 1L);
+        return (int) Math.min((remainingMillis + 999L) / 1000L, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Throw the exception if the deadline is exceeded.
+     * @param where The expression of current process for message, e.g. table name. (NotNull)
+     * @throws RequestDeadlineExceededException When the deadline is exceeded.
+     */
+    public void checkExceeded(String where) {
+        if (isExceeded()) {
+            throwRequestDeadlineExceededException(where, null);
+        }
+    }
+
+    /**
+     * Throw the exception for exceeded deadline, e.g. statement timeout.
+     * @param where The expression of current process for message. (NotNull)
+     * @param cause The cause of failure by exceeded deadline. (NullAllowed)
+     */
+    public void throwRequestDeadlineExceededException(String where, Throwable cause) {
+        final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+        br.addNotice("The request deadline has been exceeded.");
+        br.addItem("Advice");
+        br.addElement("The request was aborted not to hold the thread and connection any longer.");
+        br.addElement("Make sure your process is fast enough or the budget is enough.");
+        br.addItem("Owner");
+        br.addElement(ownerKey);
+        br.addItem("Budget");
+        br.addElement(budgetMillis + "ms (over " + (-getRemainingMillis()) + "ms)");
+        br.addItem("Where");
+        br.addElement(where);
+        final String msg = br.buildExceptionMessage();
+        throw new RequestDeadlineExceededException(msg, cause);
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "deadline:{" + ownerKey + ", budget=" + budgetMillis + "ms, remaining=" + getRemainingMillis() + "ms}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public String getOwnerKey() {
+        return ownerKey;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.deadline;
+
+/**
+ * The context of request deadline on thread, inherited by asynchronous process.
+ * @author jflute
+ */
+public class RequestDeadlineContext {
+
+    /** The thread-local for this. */
+    private static final ThreadLocal<RequestDeadline> threadLocal = new ThreadLocal<RequestDeadline>();
+
+    /**
+     * @return The deadline of current request. (NullAllowed: when no deadline)
+     */
+    public static RequestDeadline getDeadlineOnThread() {
+        return threadLocal.get();
+    }
+
+    public static void setDeadlineOnThread(RequestDeadline deadline) {
+        threadLocal.set(deadline);
+    }
+
+    public static boolean existsDeadlineOnThread() {
+        return threadLocal.get() != null;
+    }
+
+    public static void clear() {
+        threadLocal.set(null);
+    }
+}
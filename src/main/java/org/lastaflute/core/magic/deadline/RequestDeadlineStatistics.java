@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.deadline;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The lock-free registry of deadline-exceeded counts per owner e.g. action execute, as DI component.
+ * <pre>
+ * e.g. logging the report periodically or in management page
+ *  &#064;Resource
+ *  private RequestDeadlineStatistics requestDeadlineStatistics;
+ *
+ *  requestDeadlineStatistics.getExceededCountMap().forEach((key, count) -&gt; ...);
+ * </pre>
+ * @author jflute
+ */
+public class RequestDeadlineStatistics {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** The map of exceeded counts, keyed by owner key of deadline. (NotNull) */
+    protected final Map<String, LongAdder> exceededCountMap = new ConcurrentHashMap<String, LongAdder>();
+
+    // ===================================================================================
+    //                                                                            Register
+    //                                                                            ========
+    /**
+     * Register the exceeded deadline into the statistics.
+     * @param deadline The exceeded deadline. (NotNull)
+     */
+    public void registerExceeded(RequestDeadline deadline) {
+        final String ownerKey = deadline.getOwnerKey();
+        LongAdder count = exceededCountMap.get(ownerKey);
+        if (count == null) {
+            count = exceededCountMap.computeIfAbsent(ownerKey, key -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * Clear all statistics, e.g. after reporting.
+     */
+    public void clear() {
+        exceededCountMap.clear();
+    }
+
+    /**
+     * @return The snapshot map of exceeded counts, keyed by owner key e.g. SeaAction@land(). (NotNull)
+     */
+    public Map<String, Long> getExceededCountMap() {
+        final Map<String, Long> snapshotMap = new LinkedHashMap<String, Long>(exceededCountMap.size());
+        exceededCountMap.forEach((key, count) -> snapshotMap.put(key, count.sum()));
+        return snapshotMap;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.identity;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * The 128-bit identity of request, time-ordered by milliseconds (ULID style). <br>
+ * The string expression is 26 characters of Crockford's base32 so it can be sorted by the time as string.
+ * <pre>
+ * 48 bits : epoch milliseconds
+ * 32 bits : node ID (random per JVM)
+ * 16 bits : thread slot
+ * 32 bits : per-thread counter
+ * </pre>
+ * @author jflute
+ */
+public class RequestIdentity implements Comparable<RequestIdentity>, Serializable {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final long serialVersionUID = 1L;
+
+    /** The characters of Crockford's base32, which are sortable as ASCII. */
+    protected static final char[] BASE32_CHARS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    protected static final int EXP_LENGTH = 26; // 130 bits (two leading zero bits)
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final long mostSigBits;
+    protected final long leastSigBits;
+    protected transient String cachedExp; // null allowed, lazy-loaded (race is no problem)
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public RequestIdentity(long mostSigBits, long leastSigBits) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+    }
+
+    // ===================================================================================
+    //                                                                         Time Stamp
+    //                                                                         ==========
+    /**
+     * @return The epoch milliseconds when the identity is generated.
+     */
+    public long getTimestampMillis() {
+        return mostSigBits >>> 16;
+    }
+
+    // ===================================================================================
+    //                                                                          Conversion
+    //                                                                          ==========
+    /**
+     * @return The UUID that has the same bits, e.g. for UUID column. (NotNull)
+     */
+    public UUID toUUID() {
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    protected String buildExp() { // directly to character array
+        final char[] chars = new char[EXP_LENGTH];
+        for (int i = 0; i < EXP_LENGTH; i++) {
+            chars[i] = BASE32_CHARS[extractQuintet(i * 5 - 2)]; // first quintet has two leading zero bits
+        }
+        return new String(chars);
+    }
+
+    protected int extractQuintet(int offset) { // offset from the top of 128 bits, minus for leading zero bits
+        if (offset < 0) {
+            return (int) (mostSigBits >>> (64 - (5 + offset))) & 0x1F;
+        } else if (offset <= 59) {
+            return (int) (mostSigBits >>> (59 - offset)) & 0x1F;
+        } else if (offset >= 64) {
+            return (int) (leastSigBits >>> (59 - (offset - 64))) & 0x1F;
+        } else { // straddling
+            final int lowerBits = offset + 5 - 64; // bits from least
+            final long upper = (mostSigBits & ((1L << (64 - offset)) - 1)) << lowerBits;
+            return (int) (upper | (leastSigBits >>> (64 - lowerBits))) & 0x1F;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public int compareTo(RequestIdentity other) { // as unsigned so same order as string expression
+        final int msbResult = Long.compareUnsigned(mostSigBits, other.mostSigBits);
+        return msbResult != 0 ? msbResult : Long.compareUnsigned(leastSigBits, other.leastSigBits);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof RequestIdentity)) {
+            return false;
+        }
+        final RequestIdentity other = (RequestIdentity) obj;
+        return mostSigBits == other.mostSigBits && leastSigBits == other.leastSigBits;
+    }
+
+    @Override
+    public int hashCode() {
+        final long hilo = mostSigBits ^ leastSigBits;
+        return ((int) (hilo >> 32)) ^ (int) hilo;
+    }
+
+    @Override
+    public String toString() {
+        String exp = cachedExp;
+        if (exp == null) {
+            exp = buildExp();
+            cachedExp = exp;
+        }
+        return exp;
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public long getMostSigBits() {
+        return mostSigBits;
+    }
+
+    public long getLeastSigBits() {
+        return leastSigBits;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.identity;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The lock-free generator of request identity, time-ordered and unique per node, thread and counter.
+ * <pre>
+ * e.g.
+ *  RequestIdentity identity = RequestIdentityGenerator.generate();
+ * </pre>
+ * @author jflute
+ */
+public class RequestIdentityGenerator {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    /** The ID of this node (JVM), random to be (best effort) unique in plural application servers. */
+    protected static final int NODE_ID = new SecureRandom().nextInt();
+
+    /** The sequence to assign thread slot when the thread generates first time. (NotNull) */
+    protected static final AtomicInteger threadSlotSequence = new AtomicInteger();
+
+    /** The thread-local of sequence, no lock when generating. (NotNull) */
+    protected static final ThreadLocal<ThreadSequence> sequenceLocal = ThreadLocal.withInitial(() -> {
+        return new ThreadSequence(threadSlotSequence.getAndIncrement(), ThreadLocalRandom.current().nextInt());
+    });
+
+    // ===================================================================================
+    //                                                                            Generate
+    //                                                                            ========
+    /**
+     * Generate new identity of request by system clock. <br>
+     * Use generate(timeManager.currentMillis()) when TimeManager is available
+     * so that the identity follows the application's (may be adjusted) current time.
+     * @return The new-created identity, time-ordered by milliseconds. (NotNull)
+     */
+    public static RequestIdentity generate() {
+        return generate(System.currentTimeMillis());
+    }
+
+    /**
+     * Generate new identity of request by the specified current time.
+     * @param currentMillis The current time in milliseconds, e.g. from TimeManager.
+     * @return The new-created identity, time-ordered by milliseconds. (NotNull)
+     */
+    public static RequestIdentity generate(long currentMillis) {
+        final ThreadSequence sequence = sequenceLocal.get();
+        final long msb = (currentMillis << 16) | ((NODE_ID >>> 16) & 0xFFFFL);
+        final long lsb = ((NODE_ID & 0xFFFFL) << 48) | ((sequence.slot & 0xFFFFL) << 32) | (sequence.next() & 0xFFFFFFFFL);
+        return new RequestIdentity(msb, lsb);
+    }
+
+    // ===================================================================================
+    //                                                                     Thread Sequence
+    //                                                                     ===============
+    protected static class ThreadSequence { // thread-confined
+
+        protected final int slot; // slots are reused after 65536 threads but counter is random start
+        protected int counter;
+
+        public ThreadSequence(int slot, int counter) {
+            this.slot = slot;
+            this.counter = counter;
+        }
+
+        public int next() {
+            return counter++;
+        }
+    }
+}
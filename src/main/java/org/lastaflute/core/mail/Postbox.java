@@ -16,13 +16,18 @@
 package org.lastaflute.core.mail;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 import org.dbflute.mail.PostOffice;
 import org.dbflute.mail.Postcard;
 import org.dbflute.mail.send.SMailDeliveryDepartment;
+import org.dbflute.mail.send.SMailPostalMotorbike;
+import org.dbflute.optional.OptionalThing;
 import org.lastaflute.core.direction.FwAssistantDirector;
 import org.lastaflute.core.direction.FwCoreDirection;
+import org.lastaflute.core.mail.outbox.MailOutbox;
+import org.lastaflute.core.mail.outbox.MailOutboxOption;
 import org.lastaflute.di.Disposable;
 import org.lastaflute.di.DisposableUtil;
 import org.slf4j.Logger;
@@ -49,6 +54,9 @@ public class Postbox implements Disposable {
     /** Everybody knows, it's post office. (NullAllowed: null means no mail) */
     protected PostOffice postOffice;
 
+    /** The durable outbox in front of SMTP. (NullAllowed: null means sending directly) */
+    protected MailOutbox mailOutbox;
+
     // ===================================================================================
     //                                                                          Initialize
     //                                                                          ==========
@@ -61,6 +69,10 @@ public class Postbox implements Disposable {
         final FwCoreDirection direction = assistCoreDirection();
         final SMailDeliveryDepartment deliveryDepartment = direction.assistMailDeliveryDepartment();
         postOffice = deliveryDepartment != null ? newPostOffice(deliveryDepartment) : null;
+        final MailOutboxOption outboxOption = direction.assistMailOutboxOption();
+        if (postOffice != null && outboxOption != null) {
+            prepareMailOutbox(outboxOption);
+        }
         if (direction.isDevelopmentHere()) {
             prepareHotDeploy();
         }
@@ -75,6 +87,20 @@ public class Postbox implements Disposable {
         return new PostOffice(deliveryDepartment);
     }
 
+    protected void prepareMailOutbox(MailOutboxOption outboxOption) {
+        mailOutbox = newMailOutbox(outboxOption);
+        mailOutbox.start(); // recovering pending mails
+        try {
+            equipMailOutbox(new Postcard()); // no category means main, for recovered mails to be sent soon
+        } catch (RuntimeException continued) { // e.g. no main motorbike, equipped at first posting
+            logger.debug("Not found the main motorbike for mail outbox: {}", continued.getMessage());
+        }
+    }
+
+    protected MailOutbox newMailOutbox(MailOutboxOption outboxOption) {
+        return new MailOutbox(outboxOption);
+    }
+
     protected void prepareHotDeploy() {
         DisposableUtil.add(this);
     }
@@ -87,6 +113,9 @@ public class Postbox implements Disposable {
                 logger.info(" postOffice: " + buildPostOfficeExp());
                 logger.info(" postalParkingLot: " + department.getParkingLot());
                 logger.info(" postalPersonnel: " + department.getPersonnel());
+                if (mailOutbox != null) {
+                    logger.info(" mailOutbox: " + mailOutbox.getOption());
+                }
             } else {
                 logger.info(" postOffice: *no used");
             }
@@ -103,7 +132,18 @@ public class Postbox implements Disposable {
     public void post(LaMailPostcard postcard) {
         assertPostOfficeWorks(postcard);
         final Postcard nativePostcard = postcard.toNativePostcard();
-        postOffice.deliver(nativePostcard);
+        if (mailOutbox != null) {
+            equipMailOutbox(nativePostcard);
+        }
+        postOffice.deliver(nativePostcard); // written to outbox journal if equipped
+    }
+
+    protected void equipMailOutbox(Postcard nativePostcard) { // once per motorbike (session)
+        final SMailPostalMotorbike motorbike = postOffice.getDeliveryDepartment().getParkingLot().findMotorbike(nativePostcard);
+        final String categoryKey = nativePostcard.getDeliveryCategory().map(category -> {
+            return category.getCategory();
+        }).orElse(MailOutbox.MAIN_CATEGORY_KEY);
+        mailOutbox.equip(categoryKey, motorbike.getNativeSession());
     }
 
     protected void assertPostOfficeWorks(LaMailPostcard postcard) {
@@ -117,9 +157,29 @@ public class Postbox implements Disposable {
     //                                                                             Dispose
     //                                                                             =======
     @Override
-    public void dispose() {
+    public void dispose() { // called per hot deploy, so the mail outbox is kept (closed at destroy)
         if (postOffice != null) {
             postOffice.workingDispose();
         }
     }
+
+    /**
+     * Destroy this component, close the mail outbox. <br>
+     * This is called by container at real shutdown (not at hot deploy).
+     */
+    @PreDestroy
+    public void destroy() {
+        if (mailOutbox != null) {
+            mailOutbox.close(); // pending mails are kept in journal
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public OptionalThing<MailOutbox> getMailOutbox() { // e.g. monitoring
+        return OptionalThing.ofNullable(mailOutbox, () -> {
+            throw new IllegalStateException("Not found the mail outbox, not directed.");
+        });
+    }
 }
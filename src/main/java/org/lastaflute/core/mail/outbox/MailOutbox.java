@@ -0,0 +1,459 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.mail.outbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Provider;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The durable outbox of mail in front of SMTP. <br>
+ * The equipped JavaMail session sends messages to the journal (acknowledged immediately),
+ * and background dispatcher drains it in batches that reuse one SMTP connection per batch.
+ * <pre>
+ * postcard -&gt; post office (template, filter, logging) -&gt; outbox transport -&gt; journal (fsync)
+ * dispatcher thread -&gt; journal pending entries -&gt; SMTP (batch, rate limit, retry backoff)
+ * </pre>
+ * Pending entries are recovered from the journal at start (crash recovery),
+ * and they are sent after the session of the category is equipped again.
+ * @author jflute
+ */
+public class MailOutbox {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(MailOutbox.class);
+
+    public static final String OUTBOX_PROTOCOL = "lastaoutbox";
+    public static final String MAIN_CATEGORY_KEY = ""; // when no category
+
+    /** The map of equipped outbox, keyed by session (identity). (NotNull) */
+    protected static final Map<Session, MailOutbox> equippedOutboxMap =
+            Collections.synchronizedMap(new WeakHashMap<Session, MailOutbox>());
+
+    public static MailOutbox findEquippedOutbox(Session session) { // null allowed
+        return equippedOutboxMap.get(session);
+    }
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final MailOutboxOption option; // not null
+    protected final MailOutboxJournal journal; // not null
+    protected final Object journalLock = new Object(); // also for pending list
+    protected final LinkedList<MailOutboxEntry> pendingList = new LinkedList<MailOutboxEntry>(); // guarded by lock
+    protected final Map<String, Session> categorySessionMap = new ConcurrentHashMap<String, Session>(); // real sessions
+    protected final Map<Session, String> sessionCategoryMap = Collections.synchronizedMap(new WeakHashMap<Session, String>());
+    protected final LongAdder acceptedCount = new LongAdder();
+    protected final LongAdder sentCount = new LongAdder();
+    protected final LongAdder retriedCount = new LongAdder();
+    protected final LongAdder deadCount = new LongAdder();
+    protected Thread dispatcher; // null before start
+    protected volatile boolean closed;
+    protected long nextSendNanos; // for rate limit, dispatcher thread only
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public MailOutbox(MailOutboxOption option) {
+        if (option == null) {
+            throw new IllegalArgumentException("The argument 'option' should not be null.");
+        }
+        this.option = option;
+        this.journal = newMailOutboxJournal(option);
+    }
+
+    protected MailOutboxJournal newMailOutboxJournal(MailOutboxOption option) {
+        return new MailOutboxJournal(Paths.get(option.getJournalDir()), option.isSyncOnWrite());
+    }
+
+    // ===================================================================================
+    //                                                                               Start
+    //                                                                               =====
+    /**
+     * Start the outbox, recovering pending mails from journal and starting dispatcher thread.
+     */
+    public synchronized void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        final List<MailOutboxEntry> recoveredList;
+        try {
+            recoveredList = journal.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open the mail outbox journal: " + journal.getJournalFile(), e);
+        }
+        synchronized (journalLock) {
+            pendingList.addAll(recoveredList);
+        }
+        if (!recoveredList.isEmpty()) {
+            logger.info("...Recovering pending mails from outbox journal: {} mails", recoveredList.size());
+        }
+        dispatcher = new Thread(() -> dispatchLoop(), "lasta_mail_outbox");
+        dispatcher.setDaemon(true); // journal is durable so no need to block shutdown
+        dispatcher.start();
+    }
+
+    // ===================================================================================
+    //                                                                               Equip
+    //                                                                               =====
+    /**
+     * Equip the session with the outbox transport, messages sent by the session are put into outbox. <br>
+     * The session is also used by dispatcher to send them actually by its original transport.
+     * @param categoryKey The key of delivery category for the session. (NotNull, EmptyAllowed: main category)
+     * @param session The session of JavaMail for the category. (NotNull)
+     */
+    public void equip(String categoryKey, Session session) {
+        if (sessionCategoryMap.containsKey(session)) { // already equipped
+            return;
+        }
+        session.addProvider(newOutboxProvider());
+        session.setProtocolForAddress("rfc822", OUTBOX_PROTOCOL); // Transport.send() finds it by address type
+        sessionCategoryMap.put(session, categoryKey);
+        categorySessionMap.put(categoryKey, session);
+        equippedOutboxMap.put(session, this);
+        wakeUpDispatcher(); // recovered entries may wait for the session
+    }
+
+    protected Provider newOutboxProvider() {
+        return new Provider(Provider.Type.TRANSPORT, OUTBOX_PROTOCOL, MailOutboxTransport.class.getName(), "LastaFlute", "1.0");
+    }
+
+    // ===================================================================================
+    //                                                                              Accept
+    //                                                                              ======
+    /**
+     * Accept the message from outbox transport, writing it to journal.
+     * @param session The session of the message. (NotNull)
+     * @param message The message to be sent. (NotNull)
+     * @param addresses The envelope addresses of the message. (NotNull)
+     * @throws MessagingException When it fails to write the message to journal.
+     */
+    public void accept(Session session, Message message, Address[] addresses) throws MessagingException {
+        final String[] recipients = new String[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            recipients[i] = addresses[i].toString();
+        }
+        accept(session, toMimeBytes(message), recipients);
+    }
+
+    /**
+     * Accept the message as MIME bytes, writing it to journal.
+     * @param session The session of the message, which determines the category. (NotNull)
+     * @param mimeBytes The bytes of MIME expression of the message. (NotNull)
+     * @param recipients The array of envelope recipient addresses. (NotNull)
+     * @throws MessagingException When it fails to write the message to journal.
+     */
+    public void accept(Session session, byte[] mimeBytes, String[] recipients) throws MessagingException {
+        if (closed) {
+            throw new MessagingException("The mail outbox is already closed: " + journal.getJournalFile());
+        }
+        final String categoryKey = sessionCategoryMap.getOrDefault(session, MAIN_CATEGORY_KEY);
+        synchronized (journalLock) { // with pending list for consistent compaction
+            final MailOutboxEntry entry = new MailOutboxEntry(journal.nextEntryId(), System.currentTimeMillis(), categoryKey, recipients,
+                    mimeBytes);
+            try {
+                journal.appendEnqueue(entry);
+            } catch (IOException e) {
+                throw new MessagingException("Failed to write the mail to outbox journal: " + entry, e);
+            }
+            pendingList.add(entry);
+            journalLock.notifyAll();
+        }
+        acceptedCount.increment();
+    }
+
+    protected byte[] toMimeBytes(Message message) throws MessagingException {
+        final ByteArrayOutputStream outs = new ByteArrayOutputStream();
+        try {
+            message.writeTo(outs);
+        } catch (IOException e) {
+            throw new MessagingException("Failed to write the message as MIME: " + message, e);
+        }
+        return outs.toByteArray();
+    }
+
+    // ===================================================================================
+    //                                                                            Dispatch
+    //                                                                            ========
+    protected void dispatchLoop() {
+        while (!closed) {
+            try {
+                final List<MailOutboxEntry> batchList = pollBatch();
+                if (batchList.isEmpty()) {
+                    waitForArrival();
+                    continue;
+                }
+                dispatchBatch(batchList);
+                compactIfNeeds();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) { // continue dispatching
+                logger.warn("Failed to dispatch the outbox mails.", e);
+            }
+        }
+    }
+
+    protected List<MailOutboxEntry> pollBatch() {
+        final long currentMillis = System.currentTimeMillis();
+        final List<MailOutboxEntry> batchList = new ArrayList<MailOutboxEntry>();
+        synchronized (journalLock) {
+            String categoryKey = null; // one category (session) per batch
+            for (Iterator<MailOutboxEntry> ite = pendingList.iterator(); ite.hasNext() && batchList.size() < option.getBatchSize();) {
+                final MailOutboxEntry entry = ite.next();
+                if (!entry.isSendable(currentMillis) || !categorySessionMap.containsKey(entry.getCategoryKey())) {
+                    continue; // waiting for retry or equipping
+                }
+                if (categoryKey == null) {
+                    categoryKey = entry.getCategoryKey();
+                } else if (!categoryKey.equals(entry.getCategoryKey())) {
+                    continue;
+                }
+                ite.remove(); // in-flight, added again if retry
+                batchList.add(entry);
+            }
+        }
+        return batchList;
+    }
+
+    protected void waitForArrival() throws InterruptedException {
+        synchronized (journalLock) {
+            if (!closed) {
+                journalLock.wait(option.getPollingIntervalMillis());
+            }
+        }
+    }
+
+    protected void wakeUpDispatcher() {
+        synchronized (journalLock) {
+            journalLock.notifyAll();
+        }
+    }
+
+    protected void dispatchBatch(List<MailOutboxEntry> batchList) throws InterruptedException {
+        final Session session = categorySessionMap.get(batchList.get(0).getCategoryKey());
+        final Transport transport;
+        try {
+            transport = session.getTransport(findRealProtocol(session));
+            transport.connect();
+        } catch (MessagingException e) { // e.g. SMTP server down
+            for (MailOutboxEntry entry : batchList) {
+                handleSendFailure(entry, e);
+            }
+            return;
+        }
+        try {
+            final Iterator<MailOutboxEntry> ite = batchList.iterator();
+            while (ite.hasNext()) {
+                final MailOutboxEntry entry = ite.next();
+                if (closed) { // remaining entries are still in journal
+                    restorePending(batchList.subList(batchList.indexOf(entry), batchList.size()));
+                    break;
+                }
+                throttle();
+                try {
+                    sendEntry(session, transport, entry);
+                    finishEntry(entry, false);
+                    sentCount.increment();
+                } catch (MessagingException e) {
+                    handleSendFailure(entry, e);
+                }
+            }
+        } finally {
+            try {
+                transport.close();
+            } catch (MessagingException continued) {
+                logger.debug("Failed to close the transport: {}", transport, continued);
+            }
+        }
+    }
+
+    protected void sendEntry(Session session, Transport transport, MailOutboxEntry entry) throws MessagingException {
+        final MimeMessage message = new MimeMessage(session, new ByteArrayInputStream(entry.getMimeBytes()));
+        transport.sendMessage(message, toAddresses(entry.getRecipients()));
+    }
+
+    protected String findRealProtocol(Session session) {
+        final String protocol = session.getProperty("mail.transport.protocol");
+        return protocol != null ? protocol : "smtp";
+    }
+
+    protected Address[] toAddresses(String[] recipients) throws MessagingException {
+        final Address[] addresses = new Address[recipients.length];
+        for (int i = 0; i < recipients.length; i++) {
+            addresses[i] = new InternetAddress(recipients[i]);
+        }
+        return addresses;
+    }
+
+    protected void throttle() throws InterruptedException {
+        final int sendPerSecond = option.getSendPerSecond();
+        if (sendPerSecond <= 0) {
+            return;
+        }
+        final long now = System.nanoTime();
+        if (nextSendNanos > now) {
+            TimeUnit.NANOSECONDS.sleep(nextSendNanos - now);
+        }
+        nextSendNanos = Math.max(now, nextSendNanos) + TimeUnit.SECONDS.toNanos(1) / sendPerSecond;
+    }
+
+    // -----------------------------------------------------
+    //                                               Failure
+    //                                               -------
+    protected void handleSendFailure(MailOutboxEntry entry, Exception cause) {
+        final int attempts = entry.countFailure(System.currentTimeMillis() + calculateBackoffMillis(entry.getAttempts()));
+        if (attempts >= option.getMaxAttempts()) {
+            logger.error("*Gave up sending the outbox mail after {} attempts: {}", attempts, entry, cause);
+            finishEntry(entry, true);
+            deadCount.increment();
+        } else {
+            logger.warn("Failed to send the outbox mail so retry later: {} {}", entry, cause.getMessage());
+            restorePending(Collections.singletonList(entry));
+            retriedCount.increment();
+        }
+    }
+
+    protected long calculateBackoffMillis(int previousAttempts) { // 1, 2, 4, 8...
+        final long interval = option.getRetryIntervalMillis() << Math.min(previousAttempts, 30);
+        return interval > 0 ? Math.min(interval, option.getMaxRetryIntervalMillis()) : option.getMaxRetryIntervalMillis();
+    }
+
+    protected void restorePending(List<MailOutboxEntry> entryList) {
+        synchronized (journalLock) {
+            pendingList.addAll(entryList);
+        }
+    }
+
+    protected void finishEntry(MailOutboxEntry entry, boolean dead) {
+        synchronized (journalLock) {
+            try {
+                if (dead) {
+                    journal.appendDead(entry.getEntryId());
+                } else {
+                    journal.appendDone(entry.getEntryId());
+                }
+            } catch (IOException e) { // sent again after restart at worst
+                logger.warn("Failed to write the finished mail to outbox journal: {}", entry, e);
+            }
+        }
+    }
+
+    // -----------------------------------------------------
+    //                                               Compact
+    //                                               -------
+    protected void compactIfNeeds() {
+        synchronized (journalLock) {
+            try {
+                if (journal.size() > option.getCompactThresholdBytes()) {
+                    journal.compact(pendingList); // no in-flight here (dispatcher thread)
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to compact the outbox journal: {}", journal.getJournalFile(), e);
+            }
+        }
+    }
+
+    // ===================================================================================
+    //                                                                               Close
+    //                                                                               =====
+    /**
+     * Close the outbox, stopping dispatcher. Pending mails are kept in journal.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        wakeUpDispatcher();
+        if (dispatcher != null) {
+            try {
+                dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (journalLock) {
+            journal.close();
+        }
+        synchronized (equippedOutboxMap) {
+            equippedOutboxMap.values().removeIf(outbox -> outbox == this);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "outbox:{" + option + ", pending=" + getPendingCount() + ", accepted=" + acceptedCount.sum() + ", sent=" + sentCount.sum()
+                + ", retried=" + retriedCount.sum() + ", dead=" + deadCount.sum() + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public MailOutboxOption getOption() {
+        return option;
+    }
+
+    public int getPendingCount() { // not including in-flight
+        synchronized (journalLock) {
+            return pendingList.size();
+        }
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    public long getRetriedCount() {
+        return retriedCount.sum();
+    }
+
+    public long getDeadCount() {
+        return deadCount.sum();
+    }
+}
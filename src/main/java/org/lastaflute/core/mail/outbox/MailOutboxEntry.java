@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.mail.outbox;
+
+/**
+ * The mail entry in outbox, which has the rendered MIME message.
+ * @author jflute
+ */
+public class MailOutboxEntry {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final long entryId;
+    protected final long enqueuedMillis;
+    protected final String categoryKey; // not null, empty means main category
+    protected final String[] recipients; // not null, envelope addresses
+    protected final byte[] mimeBytes; // not null, whole MIME message
+
+    // dispatcher state (not journaled, reset at recovery)
+    protected int attempts;
+    protected long nextAttemptMillis;
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public MailOutboxEntry(long entryId, long enqueuedMillis, String categoryKey, String[] recipients, byte[] mimeBytes) {
+        this.entryId = entryId;
+        this.enqueuedMillis = enqueuedMillis;
+        this.categoryKey = categoryKey;
+        this.recipients = recipients;
+        this.mimeBytes = mimeBytes;
+    }
+
+    // ===================================================================================
+    //                                                                             Attempt
+    //                                                                             =======
+    public boolean isSendable(long currentMillis) {
+        return nextAttemptMillis <= currentMillis;
+    }
+
+    public int countFailure(long nextAttemptMillis) {
+        this.nextAttemptMillis = nextAttemptMillis;
+        return ++attempts;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "{#" + entryId + ", category=" + categoryKey + ", recipients=" + recipients.length + ", bytes=" + mimeBytes.length
+                + ", attempts=" + attempts + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public long getEnqueuedMillis() {
+        return enqueuedMillis;
+    }
+
+    public String getCategoryKey() {
+        return categoryKey;
+    }
+
+    public String[] getRecipients() {
+        return recipients;
+    }
+
+    public byte[] getMimeBytes() {
+        return mimeBytes;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
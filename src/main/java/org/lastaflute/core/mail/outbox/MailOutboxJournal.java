@@ -0,0 +1,277 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.mail.outbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The append-only file journal of mail outbox. <br>
+ * Not thread-safe, the outbox controls the access by its lock.
+ * <pre>
+ * record: [int length][long crc32][byte type][payload]
+ *  ENQUEUE : entryId, enqueuedMillis, categoryKey, recipients, MIME bytes
+ *  DONE    : entryId (sent)
+ *  DEAD    : entryId (given up)
+ * </pre>
+ * A torn record at the tail (crash while writing) is truncated at recovery.
+ * @author jflute
+ */
+public class MailOutboxJournal {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(MailOutboxJournal.class);
+
+    public static final String JOURNAL_FILE_NAME = "mail_outbox.journal";
+    protected static final byte TYPE_ENQUEUE = 1;
+    protected static final byte TYPE_DONE = 2;
+    protected static final byte TYPE_DEAD = 3;
+    protected static final int HEADER_SIZE = 4 + 8; // length and CRC
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final Path journalFile; // not null
+    protected final boolean syncOnWrite;
+    protected FileChannel channel; // null before open
+    protected long maxEntryId; // recovered at open
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public MailOutboxJournal(Path journalDir, boolean syncOnWrite) {
+        this.journalFile = journalDir.resolve(JOURNAL_FILE_NAME);
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    // ===================================================================================
+    //                                                                                Open
+    //                                                                                ====
+    /**
+     * Open the journal, recovering pending entries from existing file.
+     * @return The list of pending entries in enqueued order. (NotNull, EmptyAllowed)
+     * @throws IOException When it fails to read or write the file.
+     */
+    public List<MailOutboxEntry> open() throws IOException {
+        Files.createDirectories(journalFile.getParent());
+        final Map<Long, MailOutboxEntry> pendingMap = new LinkedHashMap<Long, MailOutboxEntry>();
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long validSize = recover(pendingMap);
+        if (validSize < channel.size()) {
+            logger.warn("...Truncating the torn journal record: {} to {} bytes", journalFile, validSize);
+            channel.truncate(validSize);
+        }
+        channel.position(validSize);
+        return new ArrayList<MailOutboxEntry>(pendingMap.values());
+    }
+
+    // ===================================================================================
+    //                                                                             Recover
+    //                                                                             =======
+    protected long recover(Map<Long, MailOutboxEntry> pendingMap) throws IOException {
+        final long fileSize = channel.size();
+        long position = 0L;
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= fileSize) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            final int length = header.getInt();
+            final long crc = header.getLong();
+            if (length <= 0 || position + HEADER_SIZE + length > fileSize) { // torn
+                break;
+            }
+            final ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(body, position + HEADER_SIZE);
+            final byte[] bytes = body.array();
+            if (crc != calculateCrc(bytes)) { // broken
+                break;
+            }
+            applyRecord(bytes, pendingMap);
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    protected void readFully(ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of journal: " + journalFile);
+            }
+            current += read;
+        }
+    }
+
+    protected void applyRecord(byte[] bytes, Map<Long, MailOutboxEntry> pendingMap) throws IOException {
+        final DataInputStream ins = new DataInputStream(new ByteArrayInputStream(bytes));
+        final byte type = ins.readByte();
+        final long entryId = ins.readLong();
+        maxEntryId = Math.max(maxEntryId, entryId);
+        if (type == TYPE_ENQUEUE) {
+            final long enqueuedMillis = ins.readLong();
+            final String categoryKey = ins.readUTF();
+            final String[] recipients = new String[ins.readInt()];
+            for (int i = 0; i < recipients.length; i++) {
+                recipients[i] = ins.readUTF();
+            }
+            final byte[] mimeBytes = new byte[ins.readInt()];
+            ins.readFully(mimeBytes);
+            pendingMap.put(entryId, new MailOutboxEntry(entryId, enqueuedMillis, categoryKey, recipients, mimeBytes));
+        } else { // done or dead
+            pendingMap.remove(entryId);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                              Append
+    //                                                                              ======
+    public void appendEnqueue(MailOutboxEntry entry) throws IOException {
+        writeRecord(channel, buildEnqueueRecord(entry));
+        syncIfNeeds();
+    }
+
+    public void appendDone(long entryId) throws IOException {
+        writeRecord(channel, buildFinishRecord(TYPE_DONE, entryId)); // no sync, re-sent at worst
+    }
+
+    public void appendDead(long entryId) throws IOException {
+        writeRecord(channel, buildFinishRecord(TYPE_DEAD, entryId));
+    }
+
+    public long nextEntryId() {
+        return ++maxEntryId;
+    }
+
+    protected void syncIfNeeds() throws IOException {
+        if (syncOnWrite) {
+            channel.force(false);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                              Record
+    //                                                                              ======
+    protected byte[] buildEnqueueRecord(MailOutboxEntry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.getMimeBytes().length + 256);
+        final DataOutputStream outs = new DataOutputStream(bytes);
+        outs.writeByte(TYPE_ENQUEUE);
+        outs.writeLong(entry.getEntryId());
+        outs.writeLong(entry.getEnqueuedMillis());
+        outs.writeUTF(entry.getCategoryKey());
+        outs.writeInt(entry.getRecipients().length);
+        for (String recipient : entry.getRecipients()) {
+            outs.writeUTF(recipient);
+        }
+        outs.writeInt(entry.getMimeBytes().length);
+        outs.write(entry.getMimeBytes());
+        outs.flush();
+        return bytes.toByteArray();
+    }
+
+    protected byte[] buildFinishRecord(byte type, long entryId) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(9);
+        final DataOutputStream outs = new DataOutputStream(bytes);
+        outs.writeByte(type);
+        outs.writeLong(entryId);
+        outs.flush();
+        return bytes.toByteArray();
+    }
+
+    protected void writeRecord(FileChannel target, byte[] body) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        buffer.putInt(body.length).putLong(calculateCrc(body)).put(body);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    protected long calculateCrc(byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    // ===================================================================================
+    //                                                                             Compact
+    //                                                                             =======
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Rewrite the journal with only pending entries, replacing the file atomically.
+     * @param pendingList The collection of pending entries. (NotNull, EmptyAllowed)
+     * @throws IOException When it fails to write the file.
+     */
+    public void compact(Collection<MailOutboxEntry> pendingList) throws IOException {
+        final Path tmpFile = journalFile.resolveSibling(JOURNAL_FILE_NAME + ".tmp");
+        try (FileChannel tmpChannel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (MailOutboxEntry entry : pendingList) {
+                writeRecord(tmpChannel, buildEnqueueRecord(entry));
+            }
+            tmpChannel.force(true);
+        }
+        channel.close();
+        Files.move(tmpFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    // ===================================================================================
+    //                                                                               Close
+    //                                                                               =====
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException continued) {
+                logger.info("Failed to close the mail outbox journal: " + journalFile, continued);
+            }
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public Path getJournalFile() {
+        return journalFile;
+    }
+}
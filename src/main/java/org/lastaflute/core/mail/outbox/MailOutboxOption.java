@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.mail.outbox;
+
+/**
+ * The option of mail outbox, directed by core direction. <br>
+ * Posted mails are written to journal in the directory and sent by background dispatcher.
+ * <pre>
+ * e.g.
+ *  direction.directMailOutbox(new MailOutboxOption("/var/app/outbox").sendInBatchOf(50).limitSendPerSecond(10));
+ * </pre>
+ * @author jflute
+ */
+public class MailOutboxOption {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final String journalDir; // not null
+    protected int batchSize = 100; // sent in one SMTP connection
+    protected int sendPerSecond; // zero means no limit
+    protected int maxAttempts = 5; // including first attempt
+    protected long retryIntervalMillis = 1000L; // doubled per attempt
+    protected long maxRetryIntervalMillis = 600000L; // 10 minutes
+    protected long pollingIntervalMillis = 500L;
+    protected long compactThresholdBytes = 10L * 1024L * 1024L; // 10MB
+    protected boolean syncOnWrite = true; // fsync per mail as default
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param journalDir The path of directory for journal file, created if not found. (NotNull)
+     */
+    public MailOutboxOption(String journalDir) {
+        if (journalDir == null || journalDir.trim().isEmpty()) {
+            throw new IllegalArgumentException("The argument 'journalDir' should not be null or empty: " + journalDir);
+        }
+        this.journalDir = journalDir;
+    }
+
+    // ===================================================================================
+    //                                                                      Option Setting
+    //                                                                      ==============
+    /**
+     * @param batchSize The max count of mails sent in one SMTP connection. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public MailOutboxOption sendInBatchOf(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The argument 'batchSize' should be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param sendPerSecond The max count of mails sent per second. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public MailOutboxOption limitSendPerSecond(int sendPerSecond) {
+        if (sendPerSecond <= 0) {
+            throw new IllegalArgumentException("The argument 'sendPerSecond' should be positive: " + sendPerSecond);
+        }
+        this.sendPerSecond = sendPerSecond;
+        return this;
+    }
+
+    /**
+     * @param maxAttempts The max count of attempts including first sending, given up after that. (NotMinus, NotZero)
+     * @param retryIntervalMillis The interval of first retry, doubled per attempt. (NotMinus, NotZero)
+     * @param maxRetryIntervalMillis The max interval of retry. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public MailOutboxOption retryBackoff(int maxAttempts, long retryIntervalMillis, long maxRetryIntervalMillis) {
+        if (maxAttempts <= 0 || retryIntervalMillis <= 0 || maxRetryIntervalMillis <= 0) {
+            String msg = "The arguments should be positive: " + maxAttempts + ", " + retryIntervalMillis + ", " + maxRetryIntervalMillis;
+            throw new IllegalArgumentException(msg);
+        }
+        this.maxAttempts = maxAttempts;
+        this.retryIntervalMillis = retryIntervalMillis;
+        this.maxRetryIntervalMillis = maxRetryIntervalMillis;
+        return this;
+    }
+
+    /**
+     * @param pollingIntervalMillis The interval to check retried mails when no arrival. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public MailOutboxOption pollEvery(long pollingIntervalMillis) {
+        if (pollingIntervalMillis <= 0) {
+            throw new IllegalArgumentException("The argument 'pollingIntervalMillis' should be positive: " + pollingIntervalMillis);
+        }
+        this.pollingIntervalMillis = pollingIntervalMillis;
+        return this;
+    }
+
+    /**
+     * @param compactThresholdBytes The size of journal to rewrite it with only pending mails. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public MailOutboxOption compactOver(long compactThresholdBytes) {
+        if (compactThresholdBytes <= 0) {
+            throw new IllegalArgumentException("The argument 'compactThresholdBytes' should be positive: " + compactThresholdBytes);
+        }
+        this.compactThresholdBytes = compactThresholdBytes;
+        return this;
+    }
+
+    /**
+     * Suppress fsync per mail, faster but mails in OS buffer might be lost at OS crash.
+     * @return this. (NotNull)
+     */
+    public MailOutboxOption suppressSyncOnWrite() {
+        this.syncOnWrite = false;
+        return this;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "{" + journalDir + ", batch=" + batchSize + ", perSecond=" + sendPerSecond + ", attempts=" + maxAttempts + ", retry="
+                + retryIntervalMillis + "ms, sync=" + syncOnWrite + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getSendPerSecond() {
+        return sendPerSecond;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getRetryIntervalMillis() {
+        return retryIntervalMillis;
+    }
+
+    public long getMaxRetryIntervalMillis() {
+        return maxRetryIntervalMillis;
+    }
+
+    public long getPollingIntervalMillis() {
+        return pollingIntervalMillis;
+    }
+
+    public long getCompactThresholdBytes() {
+        return compactThresholdBytes;
+    }
+
+    public boolean isSyncOnWrite() {
+        return syncOnWrite;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.mail.outbox;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+
+/**
+ * The JavaMail transport that puts messages into mail outbox instead of SMTP. <br>
+ * Registered to the session equipped by {@link MailOutbox}, instantiated by JavaMail.
+ * @author jflute
+ */
+public class MailOutboxTransport extends Transport {
+
+    public MailOutboxTransport(Session session, URLName urlname) {
+        super(session, urlname);
+    }
+
+    @Override
+    protected boolean protocolConnect(String host, int port, String user, String password) throws MessagingException {
+        return true; // no connection, journal only
+    }
+
+    @Override
+    public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+        final MailOutbox outbox = MailOutbox.findEquippedOutbox(session);
+        if (outbox == null) {
+            throw new MessagingException("Not found the mail outbox for the session (not equipped or closed): " + session);
+        }
+        outbox.accept(session, message, addresses);
+    }
+}
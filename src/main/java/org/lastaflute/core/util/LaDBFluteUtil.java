@@ -16,9 +16,14 @@
 package org.lastaflute.core.util;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dbflute.jdbc.Classification;
 import org.dbflute.util.DfReflectionUtil;
+import org.lastaflute.di.DisposableUtil;
 import org.lastaflute.di.helper.beans.BeanDesc;
 import org.lastaflute.di.helper.beans.exception.BeanMethodNotFoundException;
 import org.lastaflute.di.helper.beans.factory.BeanDescFactory;
@@ -28,6 +33,12 @@ import org.lastaflute.di.helper.beans.factory.BeanDescFactory;
  */
 public class LaDBFluteUtil {
 
+    /** The cache of code tables for classification enum, key is classification type. (NotNull) */
+    protected static final Map<Class<?>, ClassificationCodeTable> codeTableMap = new ConcurrentHashMap<Class<?>, ClassificationCodeTable>();
+
+    /** Is the disposable for hot deploy registered? (cleared when disposed) */
+    protected static volatile boolean codeTableDisposableRegistered;
+
     public static boolean isClassificationType(Class<?> tp) {
         return Classification.class.isAssignableFrom(tp);
     }
@@ -59,6 +70,17 @@ public class LaDBFluteUtil {
         if (code == null || (code instanceof String && ((String) code).isEmpty())) {
             return null;
         }
+        if (cdefType.isInstance(code)) { // same as codeOf()
+            return (Classification) code;
+        }
+        final ClassificationCodeTable codeTable = prepareClassificationCodeTable(cdefType);
+        if (codeTable != null) { // mainly here, single hash lookup
+            return codeTable.codeOf(code);
+        }
+        return reflectClassificationCodeOf(cdefType, code); // e.g. not enum
+    }
+
+    protected static Classification reflectClassificationCodeOf(Class<?> cdefType, Object code) {
         final BeanDesc beanDesc = BeanDescFactory.getBeanDesc(cdefType);
         final String methodName = "codeOf";
         final Method method;
@@ -71,6 +93,80 @@ public class LaDBFluteUtil {
         return (Classification) DfReflectionUtil.invokeStatic(method, new Object[] { code });
     }
 
+    // -----------------------------------------------------
+    //                                            Code Table
+    //                                            ----------
+    /**
+     * Prepare the code table of the classification type, cached until hot deploy. <br>
+     * You can call it at boot to build tables eagerly.
+     * @param cdefType The type of classification. (NotNull)
+     * @return The code table of the classification. (NullAllowed: if not enum, uses codeOf() by reflection)
+     */
+    public static ClassificationCodeTable prepareClassificationCodeTable(Class<?> cdefType) {
+        assertArgumentNotNull("cdefType", cdefType);
+        final ClassificationCodeTable cached = codeTableMap.get(cdefType);
+        if (cached != null) {
+            return cached;
+        }
+        if (!cdefType.isEnum() || !isClassificationType(cdefType)) {
+            return null;
+        }
+        registerCodeTableDisposableIfNeeds();
+        return codeTableMap.computeIfAbsent(cdefType, key -> new ClassificationCodeTable(key));
+    }
+
+    protected static void registerCodeTableDisposableIfNeeds() {
+        if (codeTableDisposableRegistered) {
+            return;
+        }
+        synchronized (codeTableMap) {
+            if (codeTableDisposableRegistered) {
+                return;
+            }
+            DisposableUtil.add(() -> { // hot deploy reloads classification types
+                codeTableMap.clear();
+                codeTableDisposableRegistered = false;
+            });
+            codeTableDisposableRegistered = true;
+        }
+    }
+
+    /**
+     * The immutable table of code to classification, same rule as codeOf() of DBFlute classification. <br>
+     * Codes and sister codes are case-insensitive.
+     */
+    public static class ClassificationCodeTable {
+
+        protected final Class<?> cdefType;
+        protected final Map<String, Classification> codeClsMap; // read-only, key is lower-case code
+
+        public ClassificationCodeTable(Class<?> cdefType) {
+            this.cdefType = cdefType;
+            this.codeClsMap = Collections.unmodifiableMap(buildCodeClsMap(cdefType));
+        }
+
+        protected Map<String, Classification> buildCodeClsMap(Class<?> cdefType) {
+            final Object[] constants = cdefType.getEnumConstants();
+            final Map<String, Classification> map = new HashMap<String, Classification>(constants.length * 2);
+            for (Object constant : constants) {
+                final Classification cls = (Classification) constant;
+                map.put(cls.code().toLowerCase(), cls);
+                for (String sister : cls.sisterSet()) {
+                    map.put(sister.toLowerCase(), cls);
+                }
+            }
+            return map;
+        }
+
+        public Classification codeOf(Object code) {
+            return code != null ? codeClsMap.get(code.toString().toLowerCase()) : null;
+        }
+
+        public Class<?> getCdefType() {
+            return cdefType;
+        }
+    }
+
     public static class ClassificationCodeOfMethodNotFoundException extends RuntimeException {
 
         private static final long serialVersionUID = 1L;
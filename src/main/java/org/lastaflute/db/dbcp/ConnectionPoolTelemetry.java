@@ -0,0 +1,343 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbcp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.transaction.Transaction;
+
+import org.lastaflute.core.magic.ThreadCacheContext;
+import org.lastaflute.db.dbcp.ConnectionPoolTelemetrySnapshot.ConnectionLeakSuspect;
+import org.lastaflute.db.dbcp.ConnectionPoolTelemetrySnapshot.TimeHistogramSnapshot;
+import org.lastaflute.db.jta.RomanticTransaction;
+import org.lastaflute.jta.dbcp.ConnectionWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The telemetry of connection pool, recorded without lock. <br>
+ * Borrow wait time, hold time, timeouts, peak sizes and leak suspects can be polled as snapshot.
+ * @author jflute
+ */
+public class ConnectionPoolTelemetry {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPoolTelemetry.class);
+
+    /** The upper bounds (milliseconds) of histogram buckets, the last bucket is for over them. */
+    protected static final long[] DEFAULT_BUCKET_BOUNDS = { 1L, 5L, 10L, 50L, 100L, 500L, 1000L, 5000L, 10000L };
+
+    /** The minimum interval (milliseconds) of leak detection by check-out. */
+    protected static final long MIN_LEAK_CHECK_INTERVAL_MILLIS = 1000L;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    // -----------------------------------------------------
+    //                                                Borrow
+    //                                                ------
+    protected final LongAdder borrowCount = new LongAdder();
+    protected final TimeHistogram borrowWaitHistogram = newTimeHistogram();
+    protected final LongAdder timeoutCount = new LongAdder();
+
+    // -----------------------------------------------------
+    //                                                  Hold
+    //                                                  ----
+    /** The map of current holdings, key is transaction or wrapper (if no transaction). (NotNull) */
+    protected final Map<Object, ConnectionHolding> holdingMap = new ConcurrentHashMap<Object, ConnectionHolding>();
+    protected final TimeHistogram holdHistogram = newTimeHistogram();
+    protected final AtomicInteger activeHeld = new AtomicInteger();
+    protected final AtomicInteger txActiveHeld = new AtomicInteger();
+    protected final LongAccumulator peakActive = new LongAccumulator(Math::max, 0L);
+    protected final LongAccumulator peakTxActive = new LongAccumulator(Math::max, 0L);
+
+    // -----------------------------------------------------
+    //                                                  Leak
+    //                                                  ----
+    protected final AtomicLong nextLeakCheckNanos = new AtomicLong(System.nanoTime()); // first check-out is due
+
+    // ===================================================================================
+    //                                                                              Borrow
+    //                                                                              ======
+    /**
+     * @param waitNanos The nanoseconds from calling check-out to getting connection (contains monitor wait).
+     */
+    public void recordBorrow(long waitNanos) {
+        borrowCount.increment();
+        borrowWaitHistogram.record(waitNanos);
+    }
+
+    public void recordTimeout() {
+        timeoutCount.increment();
+    }
+
+    // ===================================================================================
+    //                                                                                Hold
+    //                                                                                ====
+    /**
+     * Record the beginning of holding, only first check-out in the same transaction is counted.
+     * @param tx The current transaction. (NullAllowed: if no transaction)
+     * @param wrapper The checked-out connection. (NotNull)
+     */
+    public void recordHoldBegin(Transaction tx, ConnectionWrapper wrapper) {
+        final Object key = tx != null ? tx : wrapper;
+        if (holdingMap.containsKey(key)) { // same transaction returns the same connection
+            return;
+        }
+        final ConnectionHolding holding = newConnectionHolding(tx, wrapper);
+        if (holdingMap.putIfAbsent(key, holding) == null) {
+            if (tx != null) {
+                peakTxActive.accumulate(txActiveHeld.incrementAndGet());
+            } else {
+                peakActive.accumulate(activeHeld.incrementAndGet());
+            }
+        }
+    }
+
+    protected ConnectionHolding newConnectionHolding(Transaction tx, ConnectionWrapper wrapper) {
+        final String requestPath = findOwnerRequestPath(tx);
+        final String threadName = Thread.currentThread().getName();
+        return new ConnectionHolding(tx != null, wrapper, requestPath, threadName, System.nanoTime(), System.currentTimeMillis());
+    }
+
+    protected String findOwnerRequestPath(Transaction tx) {
+        if (tx instanceof RomanticTransaction) {
+            final String requestPath = ((RomanticTransaction) tx).getRequestPath();
+            if (requestPath != null) {
+                return requestPath;
+            }
+        }
+        return ThreadCacheContext.exists() ? ThreadCacheContext.findRequestPath() : null;
+    }
+
+    /**
+     * @param tx The completed transaction. (NotNull)
+     */
+    public void recordHoldEndByTransaction(Transaction tx) {
+        doRecordHoldEnd(tx);
+    }
+
+    /**
+     * @param wrapper The checked-in connection without transaction. (NotNull)
+     */
+    public void recordHoldEndByWrapper(ConnectionWrapper wrapper) {
+        doRecordHoldEnd(wrapper);
+    }
+
+    /**
+     * @param wrapper The released (closed really) connection, might be in transaction. (NotNull)
+     */
+    public void recordHoldEndByRelease(ConnectionWrapper wrapper) {
+        if (holdingMap.containsKey(wrapper)) {
+            doRecordHoldEnd(wrapper);
+            return;
+        }
+        for (Map.Entry<Object, ConnectionHolding> entry : holdingMap.entrySet()) { // rare case so simple scan
+            if (entry.getValue().getWrapper() == wrapper) {
+                doRecordHoldEnd(entry.getKey());
+                return;
+            }
+        }
+    }
+
+    protected void doRecordHoldEnd(Object key) {
+        final ConnectionHolding holding = holdingMap.remove(key);
+        if (holding == null) { // e.g. checked out before telemetry
+            return;
+        }
+        if (holding.isTransactional()) {
+            txActiveHeld.decrementAndGet();
+        } else {
+            activeHeld.decrementAndGet();
+        }
+        holdHistogram.record(System.nanoTime() - holding.getBeginNanos());
+    }
+
+    // ===================================================================================
+    //                                                                            Snapshot
+    //                                                                            ========
+    /**
+     * Take the snapshot of telemetry, cheap enough to poll. (callable from any thread)
+     * @param leakThresholdMillis The milliseconds of holding to be flagged as leak suspect. (MinusAllowed: no detection)
+     * @param activeSize The active pool size of the pool, which is not counted by telemetry.
+     * @param txActiveSize The transaction active pool size of the pool, which is not counted by telemetry.
+     * @return The immutable snapshot of telemetry. (NotNull)
+     */
+    public ConnectionPoolTelemetrySnapshot snapshot(long leakThresholdMillis, int activeSize, int txActiveSize) {
+        final List<ConnectionLeakSuspect> leakSuspectList = detectLeakSuspect(leakThresholdMillis);
+        return new ConnectionPoolTelemetrySnapshot(System.currentTimeMillis(), borrowCount.sum(), borrowWaitHistogram.snapshot(),
+                timeoutCount.sum(), holdHistogram.snapshot(), activeSize, txActiveSize, activeHeld.get(), txActiveHeld.get(),
+                (int) peakActive.get(), (int) peakTxActive.get(), leakSuspectList);
+    }
+
+    // ===================================================================================
+    //                                                                                Leak
+    //                                                                                ====
+    /**
+     * Detect leak suspects if the interval has passed since the previous detection. <br>
+     * This is called by check-out so that leaks are logged without polling snapshot,
+     * and only one thread scans the holdings per interval (others return immediately).
+     * @param leakThresholdMillis The milliseconds of holding to be flagged as leak suspect. (MinusAllowed: no detection)
+     */
+    public void detectLeakSuspectIfDue(long leakThresholdMillis) {
+        if (leakThresholdMillis < 0) {
+            return;
+        }
+        final long currentNanos = System.nanoTime();
+        final long nextNanos = nextLeakCheckNanos.get();
+        if (currentNanos - nextNanos < 0) { // not yet
+            return;
+        }
+        final long intervalMillis = Math.max(leakThresholdMillis / 4, MIN_LEAK_CHECK_INTERVAL_MILLIS);
+        if (nextLeakCheckNanos.compareAndSet(nextNanos, currentNanos + intervalMillis * 1000000L)) { // one thread only
+            detectLeakSuspect(leakThresholdMillis);
+        }
+    }
+
+    protected List<ConnectionLeakSuspect> detectLeakSuspect(long leakThresholdMillis) {
+        if (leakThresholdMillis < 0) {
+            return new ArrayList<ConnectionLeakSuspect>(0);
+        }
+        final long currentNanos = System.nanoTime();
+        final List<ConnectionLeakSuspect> suspectList = new ArrayList<ConnectionLeakSuspect>();
+        for (ConnectionHolding holding : holdingMap.values()) {
+            final long heldMillis = (currentNanos - holding.getBeginNanos()) / 1000000L;
+            if (heldMillis >= leakThresholdMillis) {
+                if (holding.markFlagged()) { // first time only
+                    showLeakSuspect(holding, heldMillis);
+                }
+                suspectList.add(new ConnectionLeakSuspect(holding.isTransactional(), holding.getRequestPath(), holding.getThreadName(),
+                        holding.getBeginMillis(), heldMillis));
+            }
+        }
+        return suspectList;
+    }
+
+    protected void showLeakSuspect(ConnectionHolding holding, long heldMillis) {
+        if (logger.isWarnEnabled()) {
+            final String kind = holding.isTransactional() ? "transaction" : "non-transaction";
+            logger.warn("*Connection held too long (leak suspect): " + heldMillis + "ms, " + kind + ", requestPath="
+                    + holding.getRequestPath() + ", thread=" + holding.getThreadName());
+        }
+    }
+
+    // ===================================================================================
+    //                                                                           Histogram
+    //                                                                           =========
+    protected TimeHistogram newTimeHistogram() {
+        return new TimeHistogram(DEFAULT_BUCKET_BOUNDS);
+    }
+
+    public static class TimeHistogram {
+
+        protected final long[] bucketBounds; // millis, read-only
+        protected final LongAdder[] buckets; // bounds + over
+        protected final LongAdder totalNanos = new LongAdder();
+        protected final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        public TimeHistogram(long[] bucketBounds) {
+            this.bucketBounds = bucketBounds;
+            this.buckets = new LongAdder[bucketBounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long nanos) {
+            final long millis = nanos / 1000000L;
+            int index = 0;
+            while (index < bucketBounds.length && millis >= bucketBounds[index]) {
+                ++index;
+            }
+            buckets[index].increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public TimeHistogramSnapshot snapshot() {
+            final long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new TimeHistogramSnapshot(bucketBounds.clone(), counts, totalNanos.sum() / 1000000L, maxNanos.get() / 1000000L);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                             Holding
+    //                                                                             =======
+    public static class ConnectionHolding {
+
+        protected final boolean transactional;
+        protected final ConnectionWrapper wrapper;
+        protected final String requestPath; // null allowed
+        protected final String threadName;
+        protected final long beginNanos;
+        protected final long beginMillis;
+        protected volatile boolean flagged;
+
+        public ConnectionHolding(boolean transactional, ConnectionWrapper wrapper, String requestPath, String threadName,
+                long beginNanos, long beginMillis) {
+            this.transactional = transactional;
+            this.wrapper = wrapper;
+            this.requestPath = requestPath;
+            this.threadName = threadName;
+            this.beginNanos = beginNanos;
+            this.beginMillis = beginMillis;
+        }
+
+        public synchronized boolean markFlagged() { // rare, only when leak suspect
+            if (flagged) {
+                return false;
+            }
+            flagged = true;
+            return true;
+        }
+
+        public boolean isTransactional() {
+            return transactional;
+        }
+
+        public ConnectionWrapper getWrapper() {
+            return wrapper;
+        }
+
+        public String getRequestPath() {
+            return requestPath;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getBeginNanos() {
+            return beginNanos;
+        }
+
+        public long getBeginMillis() {
+            return beginMillis;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbcp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The immutable snapshot of connection pool telemetry.
+ * @author jflute
+ */
+public class ConnectionPoolTelemetrySnapshot {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final long snapshotMillis;
+    protected final long borrowCount;
+    protected final TimeHistogramSnapshot borrowWait; // not null
+    protected final long timeoutCount;
+    protected final TimeHistogramSnapshot holdTime; // not null, completed holdings only
+    protected final int activeSize; // active pool size of the pool (same meaning as getActivePoolSize())
+    protected final int txActiveSize; // transaction active pool size of the pool (same as getTxActivePoolSize())
+    protected final int heldSize; // currently held without transaction, counted by telemetry
+    protected final int txHeldSize; // currently held by transactions, counted by telemetry
+    protected final int peakHeldSize;
+    protected final int peakTxHeldSize;
+    protected final List<ConnectionLeakSuspect> leakSuspectList; // not null, read-only
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public ConnectionPoolTelemetrySnapshot(long snapshotMillis, long borrowCount, TimeHistogramSnapshot borrowWait, long timeoutCount,
+            TimeHistogramSnapshot holdTime, int activeSize, int txActiveSize, int heldSize, int txHeldSize, int peakHeldSize,
+            int peakTxHeldSize, List<ConnectionLeakSuspect> leakSuspectList) {
+        this.snapshotMillis = snapshotMillis;
+        this.borrowCount = borrowCount;
+        this.borrowWait = borrowWait;
+        this.timeoutCount = timeoutCount;
+        this.holdTime = holdTime;
+        this.activeSize = activeSize;
+        this.txActiveSize = txActiveSize;
+        this.heldSize = heldSize;
+        this.txHeldSize = txHeldSize;
+        this.peakHeldSize = peakHeldSize;
+        this.peakTxHeldSize = peakTxHeldSize;
+        this.leakSuspectList = Collections.unmodifiableList(leakSuspectList);
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("borrow=").append(borrowCount).append(" (wait: ").append(borrowWait).append(")");
+        sb.append(", timeout=").append(timeoutCount);
+        sb.append(", hold=(").append(holdTime).append(")");
+        sb.append(", held=").append(heldSize).append(", txHeld=").append(txHeldSize);
+        sb.append(", peakHeld=").append(peakHeldSize).append(", peakTxHeld=").append(peakTxHeldSize);
+        if (!leakSuspectList.isEmpty()) {
+            sb.append(", leakSuspect=").append(leakSuspectList);
+        }
+        return sb.toString();
+    }
+
+    // ===================================================================================
+    //                                                                           Histogram
+    //                                                                           =========
+    public static class TimeHistogramSnapshot {
+
+        protected final long[] bucketBounds; // millis, the last count is for over them
+        protected final long[] counts;
+        protected final long totalMillis;
+        protected final long maxMillis;
+
+        public TimeHistogramSnapshot(long[] bucketBounds, long[] counts, long totalMillis, long maxMillis) {
+            this.bucketBounds = bucketBounds;
+            this.counts = counts;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            return count;
+        }
+
+        public long getAverageMillis() {
+            final long count = getCount();
+            return count > 0 ? totalMillis / count : 0L;
+        }
+
+        @Override
+        public String toString() {
+            return "avg=" + getAverageMillis() + "ms, max=" + maxMillis + "ms";
+        }
+
+        public long[] getBucketBounds() {
+            return bucketBounds.clone();
+        }
+
+        public long[] getCounts() {
+            return counts.clone();
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                        Leak Suspect
+    //                                                                        ============
+    public static class ConnectionLeakSuspect {
+
+        protected final boolean transactional;
+        protected final String requestPath; // null allowed
+        protected final String threadName;
+        protected final long beginMillis;
+        protected final long heldMillis;
+
+        public ConnectionLeakSuspect(boolean transactional, String requestPath, String threadName, long beginMillis, long heldMillis) {
+            this.transactional = transactional;
+            this.requestPath = requestPath;
+            this.threadName = threadName;
+            this.beginMillis = beginMillis;
+            this.heldMillis = heldMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + heldMillis + "ms, " + (transactional ? "tx" : "non-tx") + ", " + requestPath + ", " + threadName + "}";
+        }
+
+        public boolean isTransactional() {
+            return transactional;
+        }
+
+        public String getRequestPath() {
+            return requestPath;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getBeginMillis() {
+            return beginMillis;
+        }
+
+        public long getHeldMillis() {
+            return heldMillis;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public long getSnapshotMillis() {
+        return snapshotMillis;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public TimeHistogramSnapshot getBorrowWait() {
+        return borrowWait;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public TimeHistogramSnapshot getHoldTime() {
+        return holdTime;
+    }
+
+    public int getActiveSize() {
+        return activeSize;
+    }
+
+    public int getTxActiveSize() {
+        return txActiveSize;
+    }
+
+    public int getHeldSize() {
+        return heldSize;
+    }
+
+    public int getTxHeldSize() {
+        return txHeldSize;
+    }
+
+    public int getPeakHeldSize() {
+        return peakHeldSize;
+    }
+
+    public int getPeakTxHeldSize() {
+        return peakTxHeldSize;
+    }
+
+    public List<ConnectionLeakSuspect> getLeakSuspectList() {
+        return leakSuspectList;
+    }
+}
@@ -53,12 +53,10 @@ public class ConnectionPoolViewBuilder {
                 sb.append("\n");
             }
             sb.append(pool.getClass().getName() + "@" + Integer.toHexString(pool.hashCode()));
-            synchronized (pool) { // just in case
-                final int free = pool.getFreePoolSize();
-                final int active = pool.getActivePoolSize();
-                final int txActive = pool.getTxActivePoolSize();
-                sb.append("\n").append("freePool=").append(free);
-                sb.append(", activePool=").append(active).append(", txActivePool=").append(txActive);
+            if (pool instanceof HookedConnectionPool) { // lock-free telemetry
+                setupPoolStateByTelemetry(sb, (HookedConnectionPool) pool);
+            } else {
+                setupPoolStateBySynchronized(sb, pool);
             }
             final List<String> txViewList = findTransactionViewList(pool);
             if (!txViewList.isEmpty()) {
@@ -73,6 +71,26 @@ public class ConnectionPoolViewBuilder {
         return sb.toString();
     }
 
+    // ===================================================================================
+    //                                                                          Pool State
+    //                                                                          ==========
+    protected void setupPoolStateByTelemetry(StringBuilder sb, HookedConnectionPool pool) {
+        final ConnectionPoolTelemetrySnapshot snapshot = pool.getTelemetrySnapshot();
+        sb.append("\n").append("freePool=").append(pool.getFreePoolSize()); // no lock, might be a little old
+        sb.append(", activePool=").append(snapshot.getActiveSize()).append(", txActivePool=").append(snapshot.getTxActiveSize());
+        sb.append("\n").append(snapshot);
+    }
+
+    protected void setupPoolStateBySynchronized(StringBuilder sb, ConnectionPool pool) {
+        synchronized (pool) { // just in case
+            final int free = pool.getFreePoolSize();
+            final int active = pool.getActivePoolSize();
+            final int txActive = pool.getTxActivePoolSize();
+            sb.append("\n").append("freePool=").append(free);
+            sb.append(", activePool=").append(active).append(", txActivePool=").append(txActive);
+        }
+    }
+
     // ===================================================================================
     //                                                                    Transaction View
     //                                                                    ================
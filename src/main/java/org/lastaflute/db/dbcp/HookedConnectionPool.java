@@ -15,17 +15,323 @@
  */
 package org.lastaflute.db.dbcp;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.transaction.Transaction;
 
 import org.lastaflute.db.jta.RomanticTransaction;
+import org.lastaflute.db.jta.TransactionReadOnlyContext;
 import org.lastaflute.jta.dbcp.ConnectionWrapper;
 import org.lastaflute.jta.dbcp.SimpleConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author modified by jflute (originated in Seasar)
  */
 public class HookedConnectionPool extends SimpleConnectionPool {
 
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(HookedConnectionPool.class);
+    public static final long DEFAULT_LEAK_THRESHOLD_MILLIS = 5 * 60 * 1000L; // 5 minutes
+    protected static final int IDLE_VALIDATION_TIMEOUT_SECONDS = 5;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** The physical connections marked as read-only by read-only transaction. (NotNull, guarded by this) */
+    protected final Map<Connection, Boolean> readOnlyMarkedMap = new IdentityHashMap<Connection, Boolean>();
+
+    /** The telemetry of this pool, recorded without lock. (NotNull) */
+    protected final ConnectionPoolTelemetry telemetry = newConnectionPoolTelemetry();
+
+    /** The milliseconds of holding to be flagged as leak suspect. (MinusAllowed: no detection) */
+    protected long leakThresholdMillis = DEFAULT_LEAK_THRESHOLD_MILLIS;
+
+    /** The count of connections opened at boot and kept by keep-alive. (ZeroAllowed: no warm-up) */
+    protected int warmUpSize;
+
+    /** The interval milliseconds to validate idle connections in background. (MinusAllowed: no keep-alive) */
+    protected long keepAliveIntervalMillis = -1L;
+
+    /** The scheduler of keep-alive. (NullAllowed: when no keep-alive) */
+    protected ScheduledExecutorService keepAliveScheduler;
+
+    /** Is this pool destroyed? (no more warm-up and keep-alive after that) */
+    protected volatile boolean destroyed;
+
+    protected ConnectionPoolTelemetry newConnectionPoolTelemetry() {
+        return new ConnectionPoolTelemetry();
+    }
+
+    // ===================================================================================
+    //                                                                          Initialize
+    //                                                                          ==========
+    /**
+     * Initialize this component, warm-up and keep-alive if specified. <br>
+     * This is basically called by DI setting file.
+     */
+    @PostConstruct
+    public void initialize() {
+        if (warmUpSize > 0) {
+            warmUp();
+        }
+        if (keepAliveIntervalMillis > 0) {
+            startKeepAlive();
+        }
+    }
+
+    /**
+     * Destroy this component, stop keep-alive and no more refill of connections. <br>
+     * The close() is final in super class, so this is called by container as another destroy method.
+     */
+    @PreDestroy
+    public void destroy() {
+        destroyed = true; // before stop, to skip refill by running keep-alive
+        stopKeepAlive();
+    }
+
+    // ===================================================================================
+    //                                                                           Check Out
+    //                                                                           =========
+    @Override
+    public ConnectionWrapper checkOut() throws SQLException { // not synchronized here to measure also monitor wait
+        final long beginNanos = System.nanoTime();
+        final ConnectionWrapper wrapper = super.checkOut(); // synchronized
+        telemetry.recordBorrow(System.nanoTime() - beginNanos);
+        final Transaction tx = getTransaction();
+        telemetry.recordHoldBegin(tx, wrapper);
+        telemetry.detectLeakSuspectIfDue(leakThresholdMillis); // logged without polling snapshot
+        if (TransactionReadOnlyContext.isReadOnly() && tx == null) { // not joining writable transaction
+            synchronized (this) {
+                markReadOnly(wrapper.getPhysicalConnection());
+            }
+        }
+        return wrapper;
+    }
+
+    @Override
+    protected void throwConnectionPoolShortFreeException() throws SQLException {
+        telemetry.recordTimeout();
+        super.throwConnectionPoolShortFreeException();
+    }
+
+    protected void markReadOnly(Connection physicalConn) throws SQLException {
+        if (physicalConn == null || readOnlyMarkedMap.containsKey(physicalConn)) {
+            return;
+        }
+        if (!readOnly) { // if pool is read-only, already read-only
+            physicalConn.setReadOnly(true);
+            readOnlyMarkedMap.put(physicalConn, Boolean.TRUE);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Check In
+    //                                                                            ========
+    @Override
+    public synchronized void checkIn(ConnectionWrapper wrapper) {
+        telemetry.recordHoldEndByWrapper(wrapper);
+        restoreReadOnly(wrapper.getPhysicalConnection());
+        super.checkIn(wrapper);
+    }
+
+    @Override
+    public synchronized void checkInTx(Transaction tx) {
+        if (tx != null) {
+            telemetry.recordHoldEndByTransaction(tx);
+        }
+        super.checkInTx(tx);
+    }
+
+    @Override
+    public synchronized void release(ConnectionWrapper wrapper) {
+        telemetry.recordHoldEndByRelease(wrapper);
+        readOnlyMarkedMap.remove(wrapper.getPhysicalConnection()); // closed really so no restore
+        super.release(wrapper);
+    }
+
+    protected void restoreReadOnly(Connection physicalConn) {
+        if (physicalConn == null || readOnlyMarkedMap.remove(physicalConn) == null) {
+            return;
+        }
+        try {
+            physicalConn.setReadOnly(readOnly);
+        } catch (SQLException continued) { // might be broken, validation will handle it
+            logger.info("Failed to restore read-only of the connection: " + physicalConn, continued);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                             Warm-up
+    //                                                                             =======
+    /**
+     * Open connections in free pool up to the warm-up size, validated before pooled. <br>
+     * Failure to open is logged (not thrown) because database might be not ready yet.
+     */
+    public void warmUp() {
+        if (destroyed) { // not to open connections that no one closes
+            return;
+        }
+        final int deficit = calculateWarmUpDeficit();
+        int opened = 0;
+        for (int i = 0; i < deficit; i++) {
+            final ConnectionWrapper wrapper;
+            try {
+                wrapper = createConnection(null); // physical connection here, outside lock
+            } catch (SQLException | RuntimeException continued) {
+                logger.warn("Failed to open the connection for warm-up: " + xaDataSource, continued);
+                break;
+            }
+            if (!validateIdleConnection(wrapper)) {
+                closeReallyQuietly(wrapper);
+                break;
+            }
+            synchronized (this) {
+                if (destroyed) { // closed while opening
+                    closeReallyQuietly(wrapper);
+                    break;
+                }
+                checkInFreePool(wrapper);
+            }
+            ++opened;
+        }
+        if (opened > 0 && logger.isInfoEnabled()) {
+            logger.info("...Warming up connection pool: opened=" + opened + ", freePool=" + getFreePoolSize());
+        }
+    }
+
+    protected synchronized int calculateWarmUpDeficit() {
+        final int maxSize = getMaxPoolSize();
+        if (maxSize <= 0) { // means no pooling
+            return 0;
+        }
+        final int current = getFreePoolSize() + getActivePoolSize() + getTxActivePoolSize();
+        return Math.min(warmUpSize, maxSize) - current;
+    }
+
+    // ===================================================================================
+    //                                                                          Keep-alive
+    //                                                                          ==========
+    protected synchronized void startKeepAlive() {
+        if (keepAliveScheduler != null || destroyed) {
+            return;
+        }
+        keepAliveScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "lasta_dbcp_keepalive");
+            thread.setDaemon(true); // not to block shutdown
+            return thread;
+        });
+        final long interval = keepAliveIntervalMillis;
+        keepAliveScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                keepAlive();
+            } catch (Throwable continued) { // not to stop the schedule
+                logger.warn("Failed to keep connections alive: " + xaDataSource, continued);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background keep-alive if it has been started.
+     */
+    public synchronized void stopKeepAlive() {
+        if (keepAliveScheduler != null) {
+            keepAliveScheduler.shutdownNow();
+            keepAliveScheduler = null;
+        }
+    }
+
+    protected void keepAlive() { // keep-alive thread
+        final int candidateCount = getFreePoolSize();
+        for (int i = 0; i < candidateCount && !destroyed; i++) { // one by one not to hide many connections from requests
+            final ConnectionWrapper idle = takeIdleConnection();
+            if (idle == null) { // no more idle connection
+                break;
+            }
+            boolean pooled = false;
+            if (validateIdleConnection(idle)) {
+                synchronized (this) {
+                    if (!destroyed) {
+                        checkInFreePool(idle); // pooled as latest
+                        pooled = true;
+                    }
+                }
+            }
+            if (!pooled) {
+                closeReallyQuietly(idle);
+            }
+        }
+        if (warmUpSize > 0 && !destroyed) {
+            warmUp(); // refill if closed
+        }
+    }
+
+    protected synchronized ConnectionWrapper takeIdleConnection() {
+        if (freePool.isEmpty()) {
+            return null;
+        }
+        final FreeItem item = (FreeItem) freePool.getFirst(); // first is oldest
+        if (item.getPooledTime() > System.currentTimeMillis() - keepAliveIntervalMillis) { // recently used
+            return null;
+        }
+        freePool.removeFirst();
+        final ConnectionWrapper wrapper = item.getConnection();
+        item.destroy(); // cancel timeout
+        return wrapper;
+    }
+
+    protected boolean validateIdleConnection(ConnectionWrapper wrapper) {
+        final Connection physicalConn = wrapper.getPhysicalConnection();
+        try {
+            if (validationQuery != null && !validationQuery.isEmpty()) {
+                try (PreparedStatement ps = physicalConn.prepareStatement(validationQuery)) {
+                    ps.executeQuery().close();
+                }
+                return true;
+            } else {
+                return physicalConn.isValid(IDLE_VALIDATION_TIMEOUT_SECONDS);
+            }
+        } catch (SQLException | RuntimeException continued) {
+            logger.info("Failed to validate the idle connection: " + physicalConn, continued);
+            return false;
+        }
+    }
+
+    protected void closeReallyQuietly(ConnectionWrapper wrapper) {
+        try {
+            wrapper.closeReally();
+        } catch (RuntimeException ignored) {}
+    }
+
+    // ===================================================================================
+    //                                                                           Telemetry
+    //                                                                           =========
+    /**
+     * Get the snapshot of telemetry, no lock of pool so you can poll it cheaply. <br>
+     * Connections held over the leak threshold are flagged as leak suspect (logged once),
+     * which is also detected by check-out periodically even if no one polls.
+     * @return The immutable snapshot of telemetry. (NotNull)
+     */
+    public ConnectionPoolTelemetrySnapshot getTelemetrySnapshot() {
+        // no lock for pool sizes, might be a little old
+        return telemetry.snapshot(leakThresholdMillis, getActivePoolSize(), getTxActivePoolSize());
+    }
+
+    // ===================================================================================
+    //                                                                            Romantic
+    //                                                                            ========
     @Override
     protected String buildRomanticExp(Transaction tx, ConnectionWrapper wrapper) {
         final String romantic;
@@ -36,4 +342,31 @@ public class HookedConnectionPool extends SimpleConnectionPool {
         }
         return romantic;
     }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public long getLeakThresholdMillis() {
+        return leakThresholdMillis;
+    }
+
+    public void setLeakThresholdMillis(long leakThresholdMillis) {
+        this.leakThresholdMillis = leakThresholdMillis;
+    }
+
+    public int getWarmUpSize() {
+        return warmUpSize;
+    }
+
+    public void setWarmUpSize(int warmUpSize) {
+        this.warmUpSize = warmUpSize;
+    }
+
+    public long getKeepAliveIntervalMillis() {
+        return keepAliveIntervalMillis;
+    }
+
+    public void setKeepAliveIntervalMillis(long keepAliveIntervalMillis) {
+        this.keepAliveIntervalMillis = keepAliveIntervalMillis;
+    }
 }
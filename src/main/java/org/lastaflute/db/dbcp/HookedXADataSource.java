@@ -17,7 +17,11 @@ package org.lastaflute.db.dbcp;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -55,6 +59,9 @@ public class HookedXADataSource extends SimpleXADataSource {
     /** The hook of newborn XA connection. (NullAllowed: option) */
     protected XAConnectionHook newbornConnectionHook;
 
+    /** The list of hot SQL prepared on newborn connection to prime statement cache of JDBC driver. (NotNull, EmptyAllowed) */
+    protected final List<String> primingSqlList = new ArrayList<String>();
+
     // ===================================================================================
     //                                                                          Initialize
     //                                                                          ==========
@@ -79,6 +86,9 @@ public class HookedXADataSource extends SimpleXADataSource {
             logger.info(" driver: " + driverClassName);
             logger.info(" url: " + url);
             logger.info(" newbornConnectionHook: " + newbornConnectionHook);
+            if (!primingSqlList.isEmpty()) {
+                logger.info(" primingSqlList: " + primingSqlList.size() + " statements");
+            }
         }
     }
 
@@ -91,9 +101,36 @@ public class HookedXADataSource extends SimpleXADataSource {
         if (newbornConnectionHook != null) {
             newbornConnectionHook.hook(xaconn);
         }
+        if (!primingSqlList.isEmpty()) {
+            primeStatement(xaconn.getConnection());
+        }
         return xaconn;
     }
 
+    protected void primeStatement(Connection physicalConn) {
+        // statement cache itself is provided by JDBC driver (e.g. cachePrepStmts of MySQL)
+        // so it only prepares here, and then first requests can use the cached statements
+        for (String sql : primingSqlList) {
+            try (PreparedStatement ps = physicalConn.prepareStatement(sql)) {
+                // only prepared
+            } catch (SQLException continued) { // not to fail getting connection
+                logger.info("Failed to prime the statement: " + sql, continued);
+            }
+        }
+    }
+
+    /**
+     * Add the hot SQL prepared on newborn connection. <br>
+     * This is basically called by DI setting file (initMethod).
+     * @param sql The SQL statement with bind marks (?) for prepared statement. (NotNull)
+     */
+    public void addPrimingSql(String sql) {
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new IllegalArgumentException("The argument 'sql' should not be null or empty.");
+        }
+        primingSqlList.add(sql);
+    }
+
     @Override
     public void setURL(String url) {
         super.setURL(resolveClassesUrl(url));
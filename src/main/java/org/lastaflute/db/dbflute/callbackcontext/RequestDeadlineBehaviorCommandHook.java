@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbflute.callbackcontext;
+
+import org.dbflute.bhv.core.BehaviorCommandHook;
+import org.dbflute.bhv.core.BehaviorCommandMeta;
+import org.dbflute.bhv.core.context.InternalMapContext;
+import org.dbflute.cbean.ConditionBean;
+import org.dbflute.jdbc.StatementConfig;
+import org.dbflute.outsidesql.OutsideSqlOption;
+import org.lastaflute.core.magic.deadline.RequestDeadline;
+import org.lastaflute.core.magic.deadline.exception.RequestDeadlineExceededException;
+
+/**
+ * The hook of behavior command to propagate request deadline into query timeout. <br>
+ * Each statement gets the query timeout equal to the remaining budget (unless smaller one is specified),
+ * and the command after the deadline is aborted before execution.
+ * @author jflute
+ */
+public class RequestDeadlineBehaviorCommandHook implements BehaviorCommandHook {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final RequestDeadline deadline; // not null
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public RequestDeadlineBehaviorCommandHook(RequestDeadline deadline) {
+        this.deadline = deadline;
+    }
+
+    // ===================================================================================
+    //                                                                         Hook Before
+    //                                                                         ===========
+    @Override
+    public void hookBefore(BehaviorCommandMeta meta) {
+        deadline.checkExceeded(buildCommandExp(meta));
+        reflectQueryTimeout(meta, deadline.calculateQueryTimeoutSeconds());
+    }
+
+    protected void reflectQueryTimeout(BehaviorCommandMeta meta, int timeoutSeconds) {
+        // statement factory prefers condition-bean, outside-SQL, and then thread (update) config
+        if (meta.isConditionBean()) {
+            final ConditionBean cb = meta.getConditionBean();
+            if (cb != null) {
+                reflectConditionBeanQueryTimeout(cb, timeoutSeconds);
+                return;
+            }
+        } else if (meta.isOutsideSql()) {
+            final OutsideSqlOption option = meta.getOutsideSqlOption();
+            if (option != null && option.getStatementConfig() != null) { // might be shared e.g. constant config
+                final StatementConfig existing = option.getStatementConfig();
+                if (needsShortening(existing, timeoutSeconds)) {
+                    option.setStatementConfig(existing.createSnapshot().queryTimeout(timeoutSeconds));
+                }
+                return;
+            }
+        }
+        final StatementConfig threadConfig = InternalMapContext.getUpdateStatementConfig(); // cleared per command
+        if (threadConfig == null) {
+            InternalMapContext.setUpdateStatementConfig(new StatementConfig().queryTimeout(timeoutSeconds));
+        } else if (needsShortening(threadConfig, timeoutSeconds)) { // might be shared by option
+            InternalMapContext.setUpdateStatementConfig(threadConfig.createSnapshot().queryTimeout(timeoutSeconds));
+        }
+    }
+
+    protected void reflectConditionBeanQueryTimeout(ConditionBean cb, int timeoutSeconds) {
+        final StatementConfig existing = cb.getStatementConfig();
+        if (existing == null) {
+            cb.configure(conf -> conf.queryTimeout(timeoutSeconds));
+        } else if (needsShortening(existing, timeoutSeconds)) {
+            // configure() cannot be called twice, and the existing one is created by it so owned by the condition-bean
+            existing.queryTimeout(timeoutSeconds);
+        }
+    }
+
+    protected boolean needsShortening(StatementConfig config, int timeoutSeconds) {
+        final Integer specified = config.getQueryTimeout();
+        return specified == null || specified <= 0 || specified > timeoutSeconds; // smaller one is prior
+    }
+
+    // ===================================================================================
+    //                                                                        Hook Finally
+    //                                                                        ============
+    @Override
+    public void hookFinally(BehaviorCommandMeta meta, RuntimeException cause) {
+        if (cause != null && !(cause instanceof RequestDeadlineExceededException) && deadline.isExceeded()) {
+            // e.g. statement timeout, translated to distinct exception with the original cause
+            deadline.throwRequestDeadlineExceededException(buildCommandExp(meta), cause);
+        }
+    }
+
+    @Override
+    public boolean inheritsExistingHook() {
+        return true; // not to remove e.g. application hooks
+    }
+
+    // ===================================================================================
+    //                                                                        Small Helper
+    //                                                                        ============
+    protected String buildCommandExp(BehaviorCommandMeta meta) {
+        return meta.getTableDbName() + "." + meta.getCommandName() + "()";
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "deadlineHook:{" + deadline + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public RequestDeadline getDeadline() {
+        return deadline;
+    }
+}
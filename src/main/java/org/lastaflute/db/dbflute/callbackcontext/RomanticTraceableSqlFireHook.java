@@ -15,14 +15,21 @@
  */
 package org.lastaflute.db.dbflute.callbackcontext;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import org.dbflute.bhv.core.BehaviorCommandMeta;
 import org.dbflute.bhv.core.context.InternalMapContext;
+import org.dbflute.helper.message.ExceptionMessageBuilder;
 import org.dbflute.hook.SqlFireHook;
 import org.dbflute.hook.SqlFireReadyInfo;
 import org.dbflute.hook.SqlFireResultInfo;
 import org.dbflute.hook.SqlLogInfo;
+import org.dbflute.jdbc.ExecutionTimeInfo;
+import org.dbflute.optional.OptionalThing;
+import org.lastaflute.db.dbflute.exception.ReadOnlyTransactionUpdateException;
 import org.lastaflute.db.jta.RomanticTransaction;
 import org.lastaflute.db.jta.TransactionCurrentSqlBuilder;
+import org.lastaflute.db.jta.TransactionReadOnlyContext;
 import org.lastaflute.db.jta.TransactionRomanticContext;
 
 /**
@@ -30,14 +37,83 @@ import org.lastaflute.db.jta.TransactionRomanticContext;
  */
 public class RomanticTraceableSqlFireHook implements SqlFireHook {
 
+    /** The profile of SQL patterns in the request. (NullAllowed: if null, no profiling) */
+    protected SqlPatternProfile sqlPatternProfile;
+
+    /** The total time of executed SQL by the hook, always measured. (thread-safe for asynchronous inheritance) */
+    protected final LongAdder totalSqlMillis = new LongAdder();
+
+    /**
+     * Use the profile of SQL patterns for the request. (basically called by god-hand)
+     * @param sqlPatternProfile The new-created profile of SQL patterns. (NotNull)
+     * @return this. (NotNull)
+     */
+    public RomanticTraceableSqlFireHook useSqlPatternProfile(SqlPatternProfile sqlPatternProfile) {
+        this.sqlPatternProfile = sqlPatternProfile;
+        return this;
+    }
+
+    /**
+     * @return The optional profile of SQL patterns. (NotNull, EmptyAllowed: when no profiling)
+     */
+    public OptionalThing<SqlPatternProfile> getSqlPatternProfile() {
+        return OptionalThing.ofNullable(sqlPatternProfile, () -> {
+            throw new IllegalStateException("Not found the SQL pattern profile, not used.");
+        });
+    }
+
+    /**
+     * Get the total time of SQL executed under this hook, measured without the SQL pattern profile.
+     * @return The total milliseconds of SQL execution. (NotMinus)
+     */
+    public long getTotalSqlMillis() {
+        return totalSqlMillis.sum();
+    }
+
     @Override
     public void hookBefore(BehaviorCommandMeta meta, SqlFireReadyInfo fireReadyInfo) {
+        checkReadOnlyTransaction(meta, fireReadyInfo);
         saveCommandToRomanticTransaction(meta, fireReadyInfo);
     }
 
     @Override
     public void hookFinally(BehaviorCommandMeta meta, SqlFireResultInfo fireResultInfo) {
         tellCurrentCommandClosed(meta, fireResultInfo);
+        final long sqlMillis = extractSqlMillis(fireResultInfo.getExecutionTimeInfo());
+        totalSqlMillis.add(sqlMillis);
+        recordSqlPattern(meta, fireResultInfo, sqlMillis);
+    }
+
+    protected void checkReadOnlyTransaction(BehaviorCommandMeta meta, SqlFireReadyInfo fireReadyInfo) {
+        if (!meta.isSelect() && TransactionReadOnlyContext.isReadOnly()) { // before execution
+            throwReadOnlyTransactionUpdateException(meta, fireReadyInfo);
+        }
+    }
+
+    protected void throwReadOnlyTransactionUpdateException(BehaviorCommandMeta meta, SqlFireReadyInfo fireReadyInfo) {
+        final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+        br.addNotice("Cannot execute the update statement in read-only transaction.");
+        br.addItem("Advice");
+        br.addElement("Read-only transaction allows only select statements.");
+        br.addElement("(procedure calls are treated as update because of no determination)");
+        br.addElement("If you need to update, use normal transaction instead of read-only.");
+        br.addElement("For example:");
+        br.addElement("  (x):");
+        br.addElement("    @Execute(readOnlyTransaction = true)");
+        br.addElement("    public HtmlResponse update(...) {");
+        br.addElement("        memberBhv.update(...); // *Bad");
+        br.addElement("  (o):");
+        br.addElement("    @Execute");
+        br.addElement("    public HtmlResponse update(...) {");
+        br.addElement("        memberBhv.update(...); // Good");
+        br.addItem("Table");
+        br.addElement(meta.getDBMeta().getTableDispName());
+        br.addItem("Command");
+        br.addElement(meta.getCommandName());
+        br.addItem("SQL");
+        br.addElement(fireReadyInfo.getSqlLogInfo().getDisplaySql());
+        final String msg = br.buildExceptionMessage();
+        throw new ReadOnlyTransactionUpdateException(msg);
     }
 
     protected void saveCommandToRomanticTransaction(BehaviorCommandMeta meta, SqlFireReadyInfo fireReadyInfo) {
@@ -67,4 +143,24 @@ public class RomanticTraceableSqlFireHook implements SqlFireHook {
             tx.clearCurrent();
         }
     }
+
+    protected void recordSqlPattern(BehaviorCommandMeta meta, SqlFireResultInfo fireResultInfo, long sqlMillis) {
+        if (sqlPatternProfile == null) {
+            return;
+        }
+        final SqlLogInfo sqlLogInfo = fireResultInfo.getSqlLogInfo();
+        final String executedSql = sqlLogInfo.getExecutedSql(); // with bind marks so light here
+        if (executedSql != null) {
+            sqlPatternProfile.record(executedSql, sqlLogInfo.getBindArgs(), sqlMillis);
+        }
+    }
+
+    protected long extractSqlMillis(ExecutionTimeInfo timeInfo) {
+        if (timeInfo == null) {
+            return 0L;
+        }
+        final Long before = timeInfo.getSqlBeforeTimeMillis();
+        final Long after = timeInfo.getSqlAfterTimeMillis();
+        return before != null && after != null ? Math.max(0L, after - before) : 0L; // null if e.g. failure
+    }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbflute.callbackcontext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The profile of executed SQL patterns in one request (or process). <br>
+ * The executed SQL is normalized to pattern (e.g. no literal, no comment),
+ * and counts and time are summarized per pattern to find N+1 loops.
+ * <pre>
+ * This is thread-safe (by lock of this profile) because the callback context
+ * might be inherited to asynchronous processes in the request.
+ * The normalized pattern cache is shared via SqlPatternStatistics (container component).
+ * </pre>
+ * @author jflute
+ */
+public class SqlPatternProfile {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    /** The max size of normalized pattern cache. */
+    public static final int PATTERN_CACHE_LIMIT = 2000;
+
+    /** The regular expression for repeated bind marks, e.g. in-scope. */
+    protected static final Pattern REPEATED_BIND_MARK = Pattern.compile("\\?(?:\\s?,\\s?\\?)+");
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** The cache of executed SQL to pattern, shared by profiles of the statistics. (NotNull, bounded) */
+    protected final Map<String, String> normalizedPatternCache;
+
+    protected final Map<String, PatternCounter> patternMap = new LinkedHashMap<String, PatternCounter>(); // guarded by this
+    protected int totalCount; // guarded by this
+    protected long totalMillis; // guarded by this
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * Create the profile with its own pattern cache. (basically for test)
+     */
+    public SqlPatternProfile() {
+        this(new ConcurrentHashMap<String, String>());
+    }
+
+    /**
+     * @param normalizedPatternCache The shared cache of executed SQL to pattern. (NotNull)
+     */
+    public SqlPatternProfile(Map<String, String> normalizedPatternCache) {
+        this.normalizedPatternCache = normalizedPatternCache;
+    }
+
+    // ===================================================================================
+    //                                                                              Record
+    //                                                                              ======
+    /**
+     * Record the executed SQL.
+     * @param executedSql The executed SQL, basically with bind marks. (NotNull)
+     * @param bindArgs The array of bind arguments. (NullAllowed)
+     * @param sqlMillis The execution time of the SQL. (NotMinus)
+     */
+    public void record(String executedSql, Object[] bindArgs, long sqlMillis) {
+        final String pattern = normalizeCached(executedSql); // outside lock
+        doRecord(pattern, bindArgs, sqlMillis);
+    }
+
+    protected synchronized void doRecord(String pattern, Object[] bindArgs, long sqlMillis) {
+        PatternCounter counter = patternMap.get(pattern);
+        if (counter == null) {
+            counter = new PatternCounter(pattern);
+            patternMap.put(pattern, counter);
+        }
+        counter.count(bindArgs, sqlMillis);
+        ++totalCount;
+        totalMillis += sqlMillis;
+    }
+
+    // ===================================================================================
+    //                                                                           Normalize
+    //                                                                           =========
+    protected String normalizeCached(String executedSql) {
+        final String cached = normalizedPatternCache.get(executedSql);
+        if (cached != null) {
+            return cached;
+        }
+        final String pattern = normalizeSqlPattern(executedSql);
+        if (normalizedPatternCache.size() < PATTERN_CACHE_LIMIT) { // roughly bounded, dynamic SQL is too many
+            normalizedPatternCache.put(executedSql, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * Normalize the SQL to pattern: no comment, literals as bind mark, single space.
+     * @param sql The SQL string to be normalized. (NotNull)
+     * @return The normalized pattern of the SQL. (NotNull)
+     */
+    public static String normalizeSqlPattern(String sql) {
+        final StringBuilder sb = new StringBuilder(sql.length());
+        final int length = sql.length();
+        int index = 0;
+        while (index < length) {
+            final char ch = sql.charAt(index);
+            if (ch == '/' && index + 1 < length && sql.charAt(index + 1) == '*') { // block comment
+                final int end = sql.indexOf("*/", index + 2);
+                index = end >= 0 ? end + 2 : length;
+                appendSpace(sb);
+            } else if (ch == '-' && index + 1 < length && sql.charAt(index + 1) == '-') { // line comment
+                final int end = sql.indexOf('\n', index + 2);
+                index = end >= 0 ? end + 1 : length;
+                appendSpace(sb);
+            } else if (ch == '\'') { // string literal, escaped quote is two quotes
+                int next = index + 1;
+                while (next < length) {
+                    if (sql.charAt(next) == '\'') {
+                        if (next + 1 < length && sql.charAt(next + 1) == '\'') {
+                            next = next + 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    ++next;
+                }
+                sb.append('?');
+                index = next + 1;
+            } else if (Character.isDigit(ch) && !isIdentifierPart(sb)) { // numeric literal
+                int next = index + 1;
+                while (next < length && (Character.isDigit(sql.charAt(next)) || sql.charAt(next) == '.')) {
+                    ++next;
+                }
+                sb.append('?');
+                index = next;
+            } else if (Character.isWhitespace(ch)) {
+                appendSpace(sb);
+                ++index;
+            } else {
+                sb.append(ch);
+                ++index;
+            }
+        }
+        final String normalized = sb.toString().trim();
+        return normalized.indexOf('?') >= 0 ? REPEATED_BIND_MARK.matcher(normalized).replaceAll("?..") : normalized;
+    }
+
+    protected static void appendSpace(StringBuilder sb) {
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+            sb.append(' ');
+        }
+    }
+
+    protected static boolean isIdentifierPart(StringBuilder sb) { // e.g. column1, t0_
+        if (sb.length() == 0) {
+            return false;
+        }
+        final char previous = sb.charAt(sb.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$';
+    }
+
+    // ===================================================================================
+    //                                                                    Repeated Pattern
+    //                                                                    ================
+    /**
+     * Find the patterns executed repeatedly with different bind values, e.g. N+1 loop.
+     * @param repeatLimit The limit of execution count per pattern, over this is repeated. (NotMinus)
+     * @return The read-only list of repeated patterns, ordered by count desc. (NotNull, EmptyAllowed)
+     */
+    public synchronized List<PatternCounter> findRepeatedPatterns(int repeatLimit) {
+        List<PatternCounter> repeatedList = null;
+        for (PatternCounter counter : patternMap.values()) {
+            if (counter.getCount() > repeatLimit && counter.hasDifferentBindValues()) {
+                if (repeatedList == null) {
+                    repeatedList = new ArrayList<PatternCounter>(2);
+                }
+                repeatedList.add(counter);
+            }
+        }
+        if (repeatedList == null) {
+            return Collections.emptyList();
+        }
+        repeatedList.sort((o1, o2) -> Integer.compare(o2.getCount(), o1.getCount()));
+        return Collections.unmodifiableList(repeatedList);
+    }
+
+    // ===================================================================================
+    //                                                                     Pattern Counter
+    //                                                                     ===============
+    public static class PatternCounter { // mutated under lock of profile
+
+        protected final String pattern;
+        protected int count;
+        protected long millis;
+        protected Integer firstBindHash; // null if no bind value yet
+        protected boolean differentBindValues; // no more hash after determined
+
+        public PatternCounter(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public void count(Object[] bindArgs, long sqlMillis) {
+            ++count;
+            millis += sqlMillis;
+            if (!differentBindValues && bindArgs != null && bindArgs.length > 0) {
+                final int bindHash = Arrays.hashCode(bindArgs); // shallow, bind values are basically scalar
+                if (firstBindHash == null) {
+                    firstBindHash = bindHash;
+                } else if (firstBindHash != bindHash) {
+                    differentBindValues = true;
+                }
+            }
+        }
+
+        public boolean hasDifferentBindValues() {
+            return differentBindValues;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + count + " times, " + millis + "ms: " + pattern + "}";
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public synchronized String toString() {
+        return "{patterns=" + patternMap.size() + ", total=" + totalCount + ", millis=" + totalMillis + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public synchronized Collection<PatternCounter> getPatternCounters() { // copied because of lock
+        return Collections.unmodifiableList(new ArrayList<PatternCounter>(patternMap.values()));
+    }
+
+    public synchronized int getTotalCount() {
+        return totalCount;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbflute.callbackcontext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.lastaflute.db.dbflute.callbackcontext.SqlPatternProfile.PatternCounter;
+
+/**
+ * The lock-free registry of SQL pattern statistics aggregated per action execute, as DI component. <br>
+ * Each request registers its profile at the end, and you can see the worst offenders. <br>
+ * It is used only when the SQL pattern profile is enabled in your GodHand prologue (default is disabled).
+ * <pre>
+ * e.g. logging the report periodically or in management page
+ *  &#064;Resource
+ *  private SqlPatternStatistics sqlPatternStatistics;
+ *
+ *  String report = sqlPatternStatistics.buildWorstOffendersDisp(10);
+ * </pre>
+ * @author jflute
+ */
+public class SqlPatternStatistics {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    /** The max count of patterns per action, the others are not aggregated. */
+    protected static final int PATTERN_LIMIT_PER_ACTION = 200;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** The map of action statistics, keyed by action execute expression. (NotNull) */
+    protected final Map<String, ActionSqlStatistics> actionStatisticsMap = new ConcurrentHashMap<String, ActionSqlStatistics>();
+
+    /** The cache of executed SQL to pattern, shared by profiles of this statistics. (NotNull, bounded in profile) */
+    protected final Map<String, String> normalizedPatternCache = new ConcurrentHashMap<String, String>();
+
+    // ===================================================================================
+    //                                                                             Profile
+    //                                                                             =======
+    /**
+     * Create the new profile for one request, sharing the normalized pattern cache.
+     * @return The new-created profile. (NotNull)
+     */
+    public SqlPatternProfile newProfile() {
+        return new SqlPatternProfile(normalizedPatternCache);
+    }
+
+    // ===================================================================================
+    //                                                                            Register
+    //                                                                            ========
+    /**
+     * Register the profile of one request into the statistics.
+     * @param actionKey The key of action execute, e.g. SeaAction@land(). (NotNull)
+     * @param profile The profile of the request. (NotNull)
+     * @param repeatedList The list of repeated patterns in the request. (NotNull, EmptyAllowed)
+     */
+    public void register(String actionKey, SqlPatternProfile profile, List<PatternCounter> repeatedList) {
+        ActionSqlStatistics statistics = actionStatisticsMap.get(actionKey);
+        if (statistics == null) {
+            statistics = actionStatisticsMap.computeIfAbsent(actionKey, key -> new ActionSqlStatistics(key));
+        }
+        statistics.aggregate(profile, repeatedList);
+    }
+
+    /**
+     * Clear all statistics, e.g. after reporting.
+     */
+    public void clear() {
+        actionStatisticsMap.clear();
+        normalizedPatternCache.clear();
+    }
+
+    // ===================================================================================
+    //                                                                              Report
+    //                                                                              ======
+    /**
+     * Find the worst patterns ordered by total time across all actions.
+     * @param limit The max size of the list. (Positive)
+     * @return The read-only list of worst patterns. (NotNull, EmptyAllowed)
+     */
+    public List<PatternStatistics> findWorstOffenders(int limit) {
+        final List<RankedPattern> rankedList = new ArrayList<RankedPattern>();
+        for (ActionSqlStatistics statistics : actionStatisticsMap.values()) {
+            for (PatternStatistics pattern : statistics.getPatternMap().values()) {
+                rankedList.add(new RankedPattern(pattern)); // fix values for stable sorting
+            }
+        }
+        rankedList.sort((o1, o2) -> { // repeated (N+1) first, and heavy next
+            final int repeatedCompared = Long.compare(o2.repeatedRequestCount, o1.repeatedRequestCount);
+            return repeatedCompared != 0 ? repeatedCompared : Long.compare(o2.totalMillis, o1.totalMillis);
+        });
+        final List<PatternStatistics> worstList = new ArrayList<PatternStatistics>(Math.min(limit, rankedList.size()));
+        for (RankedPattern ranked : rankedList) {
+            if (worstList.size() >= limit) {
+                break;
+            }
+            worstList.add(ranked.pattern);
+        }
+        return Collections.unmodifiableList(worstList);
+    }
+
+    protected static class RankedPattern {
+
+        protected final PatternStatistics pattern;
+        protected final long repeatedRequestCount;
+        protected final long totalMillis;
+
+        public RankedPattern(PatternStatistics pattern) {
+            this.pattern = pattern;
+            this.repeatedRequestCount = pattern.getRepeatedRequestCount();
+            this.totalMillis = pattern.getTotalMillis();
+        }
+    }
+
+    /**
+     * Build the display of worst offenders for logging.
+     * @param limit The max size of patterns. (Positive)
+     * @return The display string with line separators. (NotNull)
+     */
+    public String buildWorstOffendersDisp(int limit) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("[SQL Pattern Worst Offenders]");
+        for (PatternStatistics statistics : findWorstOffenders(limit)) {
+            sb.append("\n").append(statistics);
+        }
+        return sb.toString();
+    }
+
+    public Map<String, ActionSqlStatistics> getActionStatisticsMap() {
+        return Collections.unmodifiableMap(actionStatisticsMap);
+    }
+
+    // ===================================================================================
+    //                                                                   Statistics Object
+    //                                                                   =================
+    public static class ActionSqlStatistics {
+
+        protected final String actionKey;
+        protected final LongAdder requestCount = new LongAdder();
+        protected final LongAdder sqlCount = new LongAdder();
+        protected final LongAdder sqlMillis = new LongAdder();
+        protected final Map<String, PatternStatistics> patternMap = new ConcurrentHashMap<String, PatternStatistics>();
+
+        public ActionSqlStatistics(String actionKey) {
+            this.actionKey = actionKey;
+        }
+
+        public void aggregate(SqlPatternProfile profile, List<PatternCounter> repeatedList) {
+            requestCount.increment();
+            sqlCount.add(profile.getTotalCount());
+            sqlMillis.add(profile.getTotalMillis());
+            for (PatternCounter counter : profile.getPatternCounters()) {
+                final PatternStatistics statistics = preparePatternStatistics(counter.getPattern());
+                if (statistics != null) {
+                    statistics.aggregate(counter, repeatedList.contains(counter));
+                }
+            }
+        }
+
+        protected PatternStatistics preparePatternStatistics(String pattern) { // null allowed when over limit
+            final PatternStatistics existing = patternMap.get(pattern);
+            if (existing != null) {
+                return existing;
+            }
+            if (patternMap.size() >= PATTERN_LIMIT_PER_ACTION) { // e.g. too dynamic SQL
+                return null;
+            }
+            return patternMap.computeIfAbsent(pattern, key -> new PatternStatistics(actionKey, key));
+        }
+
+        @Override
+        public String toString() {
+            return "{" + actionKey + ", requests=" + requestCount.sum() + ", sql=" + sqlCount.sum() + ", millis=" + sqlMillis.sum() + "}";
+        }
+
+        public String getActionKey() {
+            return actionKey;
+        }
+
+        public long getRequestCount() {
+            return requestCount.sum();
+        }
+
+        public long getSqlCount() {
+            return sqlCount.sum();
+        }
+
+        public long getSqlMillis() {
+            return sqlMillis.sum();
+        }
+
+        public Map<String, PatternStatistics> getPatternMap() {
+            return Collections.unmodifiableMap(patternMap);
+        }
+    }
+
+    public static class PatternStatistics {
+
+        protected final String actionKey;
+        protected final String pattern;
+        protected final LongAdder totalCount = new LongAdder();
+        protected final LongAdder totalMillis = new LongAdder();
+        protected final LongAccumulator maxCountPerRequest = new LongAccumulator(Long::max, 0L);
+        protected final LongAdder repeatedRequestCount = new LongAdder(); // detected as N+1
+
+        public PatternStatistics(String actionKey, String pattern) {
+            this.actionKey = actionKey;
+            this.pattern = pattern;
+        }
+
+        public void aggregate(PatternCounter counter, boolean repeated) {
+            totalCount.add(counter.getCount());
+            totalMillis.add(counter.getMillis());
+            maxCountPerRequest.accumulate(counter.getCount());
+            if (repeated) {
+                repeatedRequestCount.increment();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return actionKey + " " + totalMillis.sum() + "ms/" + totalCount.sum() + " times (max " + maxCountPerRequest.get()
+                    + " in request, N+1 " + repeatedRequestCount.sum() + " requests): " + pattern;
+        }
+
+        public String getActionKey() {
+            return actionKey;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public long getTotalCount() {
+            return totalCount.sum();
+        }
+
+        public long getTotalMillis() {
+            return totalMillis.sum();
+        }
+
+        public long getMaxCountPerRequest() {
+            return maxCountPerRequest.get();
+        }
+
+        public long getRepeatedRequestCount() {
+            return repeatedRequestCount.sum();
+        }
+    }
+}
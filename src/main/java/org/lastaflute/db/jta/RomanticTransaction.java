@@ -19,6 +19,7 @@ import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,6 +31,9 @@ import javax.transaction.SystemException;
 
 import org.dbflute.util.DfTraceViewUtil;
 import org.lastaflute.core.magic.ThreadCacheContext;
+import org.lastaflute.core.magic.identity.RequestIdentity;
+import org.lastaflute.core.magic.identity.RequestIdentityContext;
+import org.lastaflute.db.jta.TransactionTableCommandRecorder.TableCommandEntry;
 import org.lastaflute.jta.core.TransactionImpl;
 import org.lastaflute.jta.dbcp.ConnectionWrapper;
 
@@ -47,18 +51,20 @@ public class RomanticTransaction extends TransactionImpl {
     protected String requestPath;
     protected Method entryMethod;
     protected Object userBean; // object not to depend on web
+    protected RequestIdentity requestIdentity; // null allowed: e.g. batch
 
     // -----------------------------------------------------
     //                                     Transaction State
     //                                     -----------------
     protected long transactionBeginMillis; // set when transaction begins
-    protected Map<String, Set<String>> tableCommandMap; // lazy loaded, needs synchronized
+    protected volatile TransactionTableCommandRecorder tableCommandRecorder; // lazy loaded, written by transaction thread only
 
-    // current state: might be overridden many times, needs synchronized
-    protected String currentTableName; // basically not null in command
-    protected String currentCommand; // basically not null in command
-    protected Long currentSqlBeginMillis; // null allowed (but almost not null)
-    protected TransactionCurrentSqlBuilder currentSqlBuilder; // basically not null in command
+    // current state: might be overridden many times, volatile for other threads (torn read is allowed)
+    protected volatile String currentTableName; // basically not null in command
+    protected volatile String currentCommand; // basically not null in command
+    protected volatile Long currentSqlBeginMillis; // null allowed (but almost not null)
+    protected volatile TransactionCurrentSqlBuilder currentSqlBuilder; // basically not null in command
+    protected TableCommandEntry currentEntry; // transaction thread only, to add SQL time when closed
 
     // ===================================================================================
     //                                                                               Begin
@@ -70,6 +76,7 @@ public class RomanticTransaction extends TransactionImpl {
             entryMethod = ThreadCacheContext.findEntryMethod();
             userBean = ThreadCacheContext.findUserBean();
         }
+        requestIdentity = RequestIdentityContext.getIdentityOnThread(); // also inherited by asynchronous process
         transactionBeginMillis = System.currentTimeMillis();
         super.begin(); // actually begin here
         saveRomanticTransactionToThread();
@@ -107,10 +114,8 @@ public class RomanticTransaction extends TransactionImpl {
      * @return The romantic expression for transaction state. (NotNull)
      */
     public String toRomanticString(ConnectionWrapper wrapper) {
-        synchronized (this) { // blocks registration
-            final TransactionRomanticStringBuilder builder = createRomanticStringBuilder();
-            return builder.buildRomanticString(this, wrapper);
-        }
+        final TransactionRomanticStringBuilder builder = createRomanticStringBuilder();
+        return builder.buildRomanticString(this, wrapper); // no lock, reads volatile state and snapshot
     }
 
     protected TransactionRomanticStringBuilder createRomanticStringBuilder() {
@@ -139,50 +144,56 @@ public class RomanticTransaction extends TransactionImpl {
     // -----------------------------------------------------
     //                                         Table Command
     //                                         -------------
+    /**
+     * Register the table command as current state. (called by transaction thread only) <br>
+     * No lock here, other threads read the volatile state and snapshot of recorder.
+     * @param tableName The display name of table. (NotNull)
+     * @param command The name of behavior command. (NotNull)
+     * @param beginMillis The begin time of the SQL. (NullAllowed)
+     * @param sqlBuilder The builder of current SQL for display. (NotNull)
+     */
     public void registerTableCommand(String tableName, String command, Long beginMillis, TransactionCurrentSqlBuilder sqlBuilder) {
-        synchronized (this) { // toRomanticString() of exception thread looks the resources
-            doRegisterTableCommand(tableName, command, beginMillis, sqlBuilder);
-        }
+        doRegisterTableCommand(tableName, command, beginMillis, sqlBuilder);
     }
 
     protected void doRegisterTableCommand(String tableName, String command, Long beginMillis, TransactionCurrentSqlBuilder sqlBuilder) {
-        if (tableCommandMap == null) {
-            tableCommandMap = newTableCommandMap();
+        TransactionTableCommandRecorder recorder = tableCommandRecorder;
+        if (recorder == null) {
+            recorder = newTableCommandRecorder();
+            tableCommandRecorder = recorder;
         }
-        Set<String> commandSet = tableCommandMap.get(tableName);
-        if (commandSet == null) {
-            commandSet = newCommandSet();
-            tableCommandMap.put(tableName, commandSet);
-        }
-        commandSet.add(command);
+        currentEntry = recorder.record(tableName, command);
         currentTableName = tableName;
         currentCommand = command;
         currentSqlBeginMillis = beginMillis;
-        currentSqlBuilder = sqlBuilder;
-    }
-
-    protected Map<String, Set<String>> newTableCommandMap() {
-        return new LinkedHashMap<String, Set<String>>(); // plain because of synchronized
+        currentSqlBuilder = sqlBuilder; // last because readers check it first
     }
 
-    protected Set<String> newCommandSet() {
-        return new LinkedHashSet<String>();
+    protected TransactionTableCommandRecorder newTableCommandRecorder() {
+        return new TransactionTableCommandRecorder();
     }
 
     // -----------------------------------------------------
     //                                         Current State
     //                                         -------------
+    /**
+     * Clear the current state, adding the SQL time from its begin time. (called by transaction thread only)
+     */
     public void clearCurrent() {
-        synchronized (this) { // toRomanticString() of exception thread looks the resources
-            doClearCurrent();
-        }
+        doClearCurrent();
     }
 
     protected void doClearCurrent() {
+        final TableCommandEntry entry = currentEntry;
+        final Long beginMillis = currentSqlBeginMillis;
+        if (entry != null && beginMillis != null && tableCommandRecorder != null) {
+            tableCommandRecorder.recordSqlTime(entry, System.currentTimeMillis() - beginMillis);
+        }
+        currentSqlBuilder = null; // first because readers check it first
+        currentEntry = null;
         currentTableName = null;
         currentCommand = null;
         currentSqlBeginMillis = null;
-        currentSqlBuilder = null;
     }
 
     // ===================================================================================
@@ -200,16 +211,53 @@ public class RomanticTransaction extends TransactionImpl {
         return userBean;
     }
 
+    public RequestIdentity getRequestIdentity() {
+        return requestIdentity;
+    }
+
     public long getTransactionBeginMillis() {
         return transactionBeginMillis;
     }
 
-    public Map<String, Set<String>> getReadOnlyTableCommandMap() {
-        if (tableCommandMap != null) {
-            return Collections.unmodifiableMap(tableCommandMap);
-        } else {
+    public Map<String, Set<String>> getReadOnlyTableCommandMap() { // built from snapshot, callable from other threads
+        final List<TransactionTableCommand> commandList = getTableCommandSnapshot();
+        if (commandList.isEmpty()) {
             return Collections.emptyMap();
         }
+        final Map<String, Set<String>> tableCommandMap = new LinkedHashMap<String, Set<String>>();
+        for (TransactionTableCommand tableCommand : commandList) {
+            Set<String> commandSet = tableCommandMap.get(tableCommand.getTableName());
+            if (commandSet == null) {
+                commandSet = new LinkedHashSet<String>();
+                tableCommandMap.put(tableCommand.getTableName(), commandSet);
+            }
+            commandSet.add(tableCommand.getCommand());
+        }
+        return Collections.unmodifiableMap(tableCommandMap);
+    }
+
+    /**
+     * @return The read-only snapshot of table commands with counts and SQL times. (NotNull, EmptyAllowed)
+     */
+    public List<TransactionTableCommand> getTableCommandSnapshot() {
+        final TransactionTableCommandRecorder recorder = tableCommandRecorder;
+        return recorder != null ? recorder.snapshot() : Collections.emptyList();
+    }
+
+    /**
+     * @return The count of executed SQLs in this transaction.
+     */
+    public long getTotalSqlCount() {
+        final TransactionTableCommandRecorder recorder = tableCommandRecorder;
+        return recorder != null ? recorder.getTotalSqlCount() : 0L;
+    }
+
+    /**
+     * @return The cumulative SQL time (milliseconds) in this transaction, excluding the current SQL.
+     */
+    public long getTotalSqlMillis() {
+        final TransactionTableCommandRecorder recorder = tableCommandRecorder;
+        return recorder != null ? recorder.getTotalSqlMillis() : 0L;
     }
 
     public String getCurrentTableName() {
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.jta;
+
+/**
+ * The context of read-only transaction scope. <br>
+ * This can be nested, and the scope is read-only while at least one level remains.
+ * @author jflute
+ */
+public class TransactionReadOnlyContext {
+
+    /** The thread-local for this, the value is the nested level of read-only scope. */
+    private static final ThreadLocal<Integer> threadLocal = new ThreadLocal<Integer>();
+
+    /**
+     * Is the current thread in read-only scope?
+     * @return The determination, true or false.
+     */
+    public static boolean isReadOnly() {
+        return threadLocal.get() != null;
+    }
+
+    /**
+     * Begin the read-only scope. (you should call end() in finally)
+     */
+    public static void begin() {
+        final Integer level = threadLocal.get();
+        threadLocal.set(level != null ? level + 1 : 1);
+    }
+
+    /**
+     * End the read-only scope begun by begin().
+     */
+    public static void end() {
+        final Integer level = threadLocal.get();
+        if (level != null && level > 1) {
+            threadLocal.set(level - 1);
+        } else {
+            perfectlyClear();
+        }
+    }
+
+    /**
+     * Suspend the read-only scope for new transaction e.g. requiresNew. (you should call resume() in finally) <br>
+     * The new transaction is not read-only even if the outer one is, and the outer scope is restored after it.
+     * @return The suspended level of read-only scope to resume. (NullAllowed: if not read-only)
+     */
+    public static Integer suspend() {
+        final Integer level = threadLocal.get();
+        perfectlyClear();
+        return level;
+    }
+
+    /**
+     * Resume the read-only scope suspended by suspend().
+     * @param suspendedLevel The level returned by suspend(). (NullAllowed: if not read-only)
+     */
+    public static void resume(Integer suspendedLevel) {
+        threadLocal.set(suspendedLevel);
+    }
+
+    public static void perfectlyClear() {
+        threadLocal.set(null);
+    }
+}
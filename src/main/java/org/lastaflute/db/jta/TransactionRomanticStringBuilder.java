@@ -17,14 +17,18 @@ package org.lastaflute.db.jta;
 
 import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import javax.transaction.xa.Xid;
 
 import org.dbflute.util.DfReflectionUtil;
+import org.dbflute.util.DfTraceViewUtil;
 import org.dbflute.util.Srl;
+import org.lastaflute.core.magic.identity.RequestIdentity;
 import org.lastaflute.jta.dbcp.ConnectionWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +58,7 @@ public class TransactionRomanticStringBuilder {
         doBuildEntryMethodExp(sb, tx);
         doBuildUserBeanExp(sb, tx);
         doBuildTableCommandExp(sb, tx);
+        doBuildRequestIdentityExp(sb, tx);
         doBuildRequestPathExp(sb, tx); // might have long query string so last
         sb.append("}"); // SQL display has lines so close here
         doBuildCurrentSqlExp(sb, tx);
@@ -151,23 +156,47 @@ public class TransactionRomanticStringBuilder {
     //                                                                       Table Command
     //                                                                       =============
     protected void doBuildTableCommandExp(StringBuilder sb, RomanticTransaction tx) {
-        final Map<String, Set<String>> tableCommandMap = tx.getReadOnlyTableCommandMap();
-        if (!tableCommandMap.isEmpty()) {
+        final List<TransactionTableCommand> commandList = tx.getTableCommandSnapshot(); // lock-free
+        if (!commandList.isEmpty()) {
+            final Map<String, List<String>> tableCommandMap = new LinkedHashMap<String, List<String>>();
+            for (TransactionTableCommand tableCommand : commandList) {
+                List<String> commandExpList = tableCommandMap.get(tableCommand.getTableName());
+                if (commandExpList == null) {
+                    commandExpList = new ArrayList<String>();
+                    tableCommandMap.put(tableCommand.getTableName(), commandExpList);
+                }
+                commandExpList.add(buildCommandExp(tableCommand));
+            }
             final StringBuilder mapSb = new StringBuilder();
             mapSb.append("map:{");
             int index = 0;
-            for (Entry<String, Set<String>> entry : tableCommandMap.entrySet()) {
-                final String tableName = entry.getKey();
-                final Set<String> commandSet = entry.getValue();
+            for (Entry<String, List<String>> entry : tableCommandMap.entrySet()) {
                 if (index > 0) {
                     mapSb.append(" ; ");
                 }
-                mapSb.append(tableName);
-                mapSb.append(" = list:{").append(Srl.connectByDelimiter(commandSet, " ; ")).append("}");
+                mapSb.append(entry.getKey());
+                mapSb.append(" = list:{").append(Srl.connectByDelimiter(entry.getValue(), " ; ")).append("}");
                 ++index;
             }
             mapSb.append("}");
             sb.append(", ").append(mapSb.toString());
+            sb.append(", sql(").append(tx.getTotalSqlCount()).append(")=");
+            sb.append(DfTraceViewUtil.convertToPerformanceView(tx.getTotalSqlMillis()));
+        }
+    }
+
+    protected String buildCommandExp(TransactionTableCommand tableCommand) {
+        final long count = tableCommand.getCount();
+        return count > 1 ? tableCommand.getCommand() + "(" + count + ")" : tableCommand.getCommand();
+    }
+
+    // ===================================================================================
+    //                                                                    Request Identity
+    //                                                                    ================
+    protected void doBuildRequestIdentityExp(StringBuilder sb, RomanticTransaction tx) {
+        final RequestIdentity requestIdentity = tx.getRequestIdentity();
+        if (requestIdentity != null) { // same as e.g. MDC request ID
+            sb.append(", #").append(requestIdentity);
         }
     }
 
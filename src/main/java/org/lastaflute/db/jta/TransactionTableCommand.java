@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.jta;
+
+/**
+ * The immutable snapshot of one table command in transaction.
+ * @author jflute
+ */
+public class TransactionTableCommand {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final String tableName; // not null
+    protected final String command; // not null
+    protected final long count;
+    protected final long sqlMillis;
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public TransactionTableCommand(String tableName, String command, long count, long sqlMillis) {
+        this.tableName = tableName;
+        this.command = command;
+        this.count = count;
+        this.sqlMillis = sqlMillis;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return tableName + "#" + command + "(" + count + ", " + sqlMillis + "ms)";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSqlMillis() {
+        return sqlMillis;
+    }
+}
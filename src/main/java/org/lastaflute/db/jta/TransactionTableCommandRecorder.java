@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.jta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The recorder of table commands in one transaction. <br>
+ * Only the transaction thread writes (single writer), and other threads (e.g. connection pool view)
+ * can read the snapshot without any lock, so SQL execution is not blocked by monitoring.
+ * @author jflute
+ */
+public class TransactionTableCommandRecorder {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final TableCommandEntry[] EMPTY_ENTRIES = new TableCommandEntry[0];
+    protected static final int INITIAL_CAPACITY = 8;
+
+    /** The limit of interned names, table and command names are finite but just in case e.g. dynamic names. */
+    public static final int NAME_ID_LIMIT = 4096;
+
+    /** The ID for names over the limit, compared by equals() instead. */
+    protected static final int NOT_INTERNED_ID = 0;
+
+    /** The map of interned IDs for table and command names, shared by all transactions, bounded by limit. (NotNull) */
+    protected static final Map<String, Integer> nameIdMap = new ConcurrentHashMap<String, Integer>();
+
+    /** The sequence to number the interned IDs. (NotNull) */
+    protected static final AtomicInteger nameIdSequence = new AtomicInteger(NOT_INTERNED_ID);
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    // published in order: element, array, count so readers see only completed entries
+    protected volatile TableCommandEntry[] entries = EMPTY_ENTRIES;
+    protected volatile int entryCount;
+    protected TableCommandEntry lastEntry; // writer only, for consecutive same commands
+
+    // single writer so simple increment of volatile is enough
+    protected volatile long totalSqlCount;
+    protected volatile long totalSqlMillis;
+
+    // ===================================================================================
+    //                                                                              Record
+    //                                                                              ======
+    /**
+     * Record the command of the table. (called by transaction thread only)
+     * @param tableName The display name of table. (NotNull)
+     * @param command The name of behavior command. (NotNull)
+     * @return The recorded entry to add SQL time later. (NotNull)
+     */
+    public TableCommandEntry record(String tableName, String command) {
+        final TableCommandEntry entry = findOrCreateEntry(tableName, command);
+        entry.count = entry.count + 1;
+        totalSqlCount = totalSqlCount + 1;
+        lastEntry = entry;
+        return entry;
+    }
+
+    protected TableCommandEntry findOrCreateEntry(String tableName, String command) {
+        final TableCommandEntry last = lastEntry;
+        if (last != null && last.tableName == tableName && last.command == command) { // constant names in most cases
+            return last;
+        }
+        final int tableId = internId(tableName);
+        final int commandId = internId(command);
+        final TableCommandEntry[] current = entries;
+        final int size = entryCount;
+        for (int i = 0; i < size; i++) {
+            final TableCommandEntry entry = current[i];
+            if (entry.isSameCommand(tableId, commandId, tableName, command)) {
+                return entry;
+            }
+        }
+        final TableCommandEntry created = new TableCommandEntry(tableId, commandId, tableName, command);
+        final TableCommandEntry[] published;
+        if (size < current.length) {
+            published = current;
+        } else {
+            published = new TableCommandEntry[Math.max(INITIAL_CAPACITY, current.length * 2)];
+            System.arraycopy(current, 0, published, 0, size);
+        }
+        published[size] = created;
+        entries = published;
+        entryCount = size + 1;
+        return created;
+    }
+
+    protected int internId(String name) {
+        final Integer id = nameIdMap.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (nameIdMap.size() >= NAME_ID_LIMIT) { // no more interning, interned names are never removed
+            return NOT_INTERNED_ID;
+        }
+        return nameIdMap.computeIfAbsent(name, key -> nameIdSequence.incrementAndGet());
+    }
+
+    /**
+     * Add the SQL time to the entry and the transaction total. (called by transaction thread only)
+     * @param entry The entry returned by record(). (NotNull)
+     * @param sqlMillis The execution time of the SQL in milliseconds.
+     */
+    public void recordSqlTime(TableCommandEntry entry, long sqlMillis) {
+        if (sqlMillis < 0) { // no way, just in case
+            return;
+        }
+        entry.sqlMillis = entry.sqlMillis + sqlMillis;
+        totalSqlMillis = totalSqlMillis + sqlMillis;
+    }
+
+    // ===================================================================================
+    //                                                                            Snapshot
+    //                                                                            ========
+    /**
+     * Take the snapshot of recorded table commands. (callable from any thread) <br>
+     * Counters might be a little behind the writer, no problem for monitoring.
+     * @return The read-only list of table commands in recorded order. (NotNull, EmptyAllowed)
+     */
+    public List<TransactionTableCommand> snapshot() {
+        final int size = entryCount; // read count first, the array is at least as new
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        final TableCommandEntry[] current = entries;
+        final List<TransactionTableCommand> snapshotList = new ArrayList<TransactionTableCommand>(size);
+        for (int i = 0; i < size; i++) {
+            final TableCommandEntry entry = current[i];
+            snapshotList.add(new TransactionTableCommand(entry.tableName, entry.command, entry.count, entry.sqlMillis));
+        }
+        return Collections.unmodifiableList(snapshotList);
+    }
+
+    // ===================================================================================
+    //                                                                        Entry Object
+    //                                                                        ============
+    public static class TableCommandEntry {
+
+        protected final int tableId;
+        protected final int commandId;
+        protected final String tableName;
+        protected final String command;
+        protected volatile long count;
+        protected volatile long sqlMillis;
+
+        public TableCommandEntry(int tableId, int commandId, String tableName, String command) {
+            this.tableId = tableId;
+            this.commandId = commandId;
+            this.tableName = tableName;
+            this.command = command;
+        }
+
+        public boolean isSameCommand(int tableId, int commandId, String tableName, String command) {
+            // same name always has same ID (interned or not), so equals() only for names over the limit
+            return this.tableId == tableId && this.commandId == commandId // mostly determined here
+                    && (tableId != NOT_INTERNED_ID || this.tableName.equals(tableName))
+                    && (commandId != NOT_INTERNED_ID || this.command.equals(command));
+        }
+
+        @Override
+        public String toString() {
+            return "entry:{" + tableName + "#" + command + ", " + count + ", " + sqlMillis + "ms}";
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public long getTotalSqlCount() {
+        return totalSqlCount;
+    }
+
+    public long getTotalSqlMillis() {
+        return totalSqlMillis;
+    }
+}
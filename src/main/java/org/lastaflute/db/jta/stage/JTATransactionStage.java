@@ -18,22 +18,43 @@ package org.lastaflute.db.jta.stage;
 import javax.annotation.Resource;
 
 import org.dbflute.optional.OptionalThing;
+import org.lastaflute.core.util.ContainerUtil;
+import org.lastaflute.db.jta.TransactionReadOnlyContext;
+import org.lastaflute.db.jta.TransactionRomanticContext;
+import org.lastaflute.db.replication.selectable.SelectableDataSourceHolder;
+import org.lastaflute.db.replication.slavedb.SlaveDBAccessor;
 import org.lastaflute.di.tx.TransactionManagerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author jflute
  */
 public class JTATransactionStage implements TransactionStage {
 
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(JTATransactionStage.class);
+
     // ===================================================================================
     //                                                                           Attribute
     //                                                                           =========
     @Resource
     protected TransactionManagerAdapter transactionManagerAdapter;
 
+    /** The holder of selectable data source for read-only routing. (NullAllowed: lazy-loaded, null if no replication) */
+    protected SelectableDataSourceHolder selectableDataSourceHolder;
+
+    /** Is the selectable data source holder already looked up? */
+    protected volatile boolean selectableDataSourceHolderLookedUp;
+
     // ===================================================================================
     //                                                                         Transaction
     //                                                                         ===========
+    // -----------------------------------------------------
+    //                                           Basic Genre
+    //                                           -----------
     @SuppressWarnings("unchecked")
     @Override
     public <RESULT> OptionalThing<RESULT> required(TransactionShow<RESULT> txLambda) {
@@ -50,6 +71,7 @@ public class JTATransactionStage implements TransactionStage {
     @SuppressWarnings("unchecked")
     @Override
     public <RESULT> OptionalThing<RESULT> requiresNew(TransactionShow<RESULT> txLambda) {
+        final Integer readOnlyLevel = TransactionReadOnlyContext.suspend(); // new transaction is not read-only
         try {
             return wrapOptional((RESULT) transactionManagerAdapter.requiresNew(adapter -> {
                 return doPerform(txLambda, adapter);
@@ -57,6 +79,8 @@ public class JTATransactionStage implements TransactionStage {
         } catch (Throwable e) {
             handleTransactionFailure(txLambda, e);
             return null; // unreachable
+        } finally {
+            TransactionReadOnlyContext.resume(readOnlyLevel);
         }
     }
 
@@ -85,12 +109,74 @@ public class JTATransactionStage implements TransactionStage {
         throw new IllegalStateException(msg, e);
     }
 
+    // -----------------------------------------------------
+    //                                             Read-only
+    //                                             ---------
+    @Override
+    public <RESULT> OptionalThing<RESULT> readOnly(TransactionShow<RESULT> txLambda) {
+        final boolean inTransaction = TransactionRomanticContext.exists();
+        final SelectableDataSourceHolder holder = !inTransaction ? findReadOnlyRoutingHolder() : null;
+        final String previousKey = holder != null ? holder.getCurrentSelectableDataSourceKey() : null;
+        if (holder != null) {
+            switchToReadOnlyDataSource(holder);
+        }
+        TransactionReadOnlyContext.begin(); // update statements are rejected in this scope
+        try {
+            if (inTransaction) { // joins the outer transaction so the commit belongs to it
+                return required(txLambda);
+            } else { // no real transaction, so no begin and commit (read-only connection per statement)
+                final BegunTx<RESULT> tx = newBegunTransaction();
+                txLambda.perform(tx);
+                return wrapOptional(tx.getResult(), txLambda);
+            }
+        } finally {
+            TransactionReadOnlyContext.end();
+            if (holder != null) {
+                holder.switchSelectableDataSourceKey(previousKey);
+            }
+        }
+    }
+
+    protected SelectableDataSourceHolder findReadOnlyRoutingHolder() {
+        if (!selectableDataSourceHolderLookedUp) {
+            synchronized (this) {
+                if (!selectableDataSourceHolderLookedUp) {
+                    final SelectableDataSourceHolder[] holders = ContainerUtil.findAllComponents(SelectableDataSourceHolder.class);
+                    selectableDataSourceHolder = holders.length > 0 ? holders[0] : null;
+                    selectableDataSourceHolderLookedUp = true;
+                }
+            }
+        }
+        return isReadOnlyRoutingEnabled() ? selectableDataSourceHolder : null;
+    }
+
+    protected boolean isReadOnlyRoutingEnabled() { // you can override to stay master
+        return true;
+    }
+
+    protected void switchToReadOnlyDataSource(SelectableDataSourceHolder holder) {
+        final String readOnlyKey = getReadOnlyDataSourceKey();
+        if (logger.isDebugEnabled()) {
+            logger.debug("...Accessing to " + readOnlyKey + " for read-only transaction");
+        }
+        holder.switchSelectableDataSourceKey(readOnlyKey);
+    }
+
+    protected String getReadOnlyDataSourceKey() {
+        return SlaveDBAccessor.SLAVE_DB;
+    }
+
+    // -----------------------------------------------------
+    //                                            Selectable
+    //                                            ----------
     @Override
     public <RESULT> OptionalThing<RESULT> selectable(TransactionShow<RESULT> txLambda, TransactionGenre genre) {
         if (TransactionGenre.REQUIRED.equals(genre)) {
             return required(txLambda);
         } else if (TransactionGenre.REQUIRES_NEW.equals(genre)) {
             return requiresNew(txLambda);
+        } else if (TransactionGenre.READ_ONLY.equals(genre)) {
+            return readOnly(txLambda);
         } else if (TransactionGenre.NONE.equals(genre)) {
             final BegunTx<RESULT> tx = newBegunTransaction();
             txLambda.perform(tx);
@@ -20,5 +20,12 @@ package org.lastaflute.db.jta.stage;
  */
 public enum TransactionGenre {
 
-    NONE, REQUIRED, REQUIRES_NEW
+    NONE, REQUIRED, REQUIRES_NEW,
+
+    /**
+     * Read-only access without real transaction if no outer transaction. <br>
+     * Connections are marked as read-only, routed to replica (slave) if selectable data source exists,
+     * and update statements are rejected.
+     */
+    READ_ONLY
 }
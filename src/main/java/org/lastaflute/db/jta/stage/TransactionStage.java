@@ -16,6 +16,7 @@
 package org.lastaflute.db.jta.stage;
 
 import org.dbflute.optional.OptionalThing;
+import org.lastaflute.db.jta.TransactionReadOnlyContext;
 
 /**
  * @author jflute
@@ -64,6 +65,30 @@ public interface TransactionStage {
      */
     <RESULT> OptionalThing<RESULT> requiresNew(TransactionShow<RESULT> txLambda);
 
+    /**
+     * Execute the show as read-only (only select statements), no begin and commit if no outer transaction.
+     * <pre>
+     * <span style="color: #994747">List&lt;Member&gt; memberList</span> = readOnly(<span style="color: #553000">tx</span> <span style="font-size: 120%">-</span>&gt;</span> {
+     *     List&lt;Member&gt; memberList = selectList(...);
+     *     <span style="color: #553000">tx</span>.<span style="color: #CC4747">returns</span>(memberList);
+     * }).<span style="color: #994747">get()</span>; <span style="color: #3F7E5E">// optional handling</span>
+     * </pre>
+     * <p>Update statements in the show throw exception before execution.
+     * If it is called in existing transaction, it joins the transaction (so the commit belongs to it).</p>
+     * <p>The default implementation runs the show in required() with the read-only scope,
+     * so it begins a transaction if no outer one and has no routing to replica.</p>
+     * @param txLambda The callback for your transaction show on the stage. (NotNull)
+     * @return The optional result of the transaction show. (NullAllowed)
+     */
+    default <RESULT> OptionalThing<RESULT> readOnly(TransactionShow<RESULT> txLambda) {
+        TransactionReadOnlyContext.begin(); // update statements are rejected in this scope
+        try {
+            return required(txLambda);
+        } finally {
+            TransactionReadOnlyContext.end();
+        }
+    }
+
     /**
      * Execute the show in transaction by selected genre, roll-backed if exception.
      * @param txLambda The callback for your transaction show on the stage. (NotNull)
@@ -38,6 +38,14 @@ public @interface Execute {
      */
     boolean suppressTransaction() default false;
 
+    /**
+     * Execute the action as read-only transaction. <br>
+     * No real transaction (no begin and commit), read-only connection, routed to replica (slave) if it exists. <br>
+     * Update statements in the action throw exception before execution.
+     * @return The determination, true or false.
+     */
+    boolean readOnlyTransaction() default false;
+
     /**
      * Suppress validator call check of framework. <br>
      * When validator annotations are specified in your form (or body), <br>
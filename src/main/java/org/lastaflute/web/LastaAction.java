@@ -27,6 +27,7 @@ import org.lastaflute.db.jta.stage.TransactionShow;
 import org.lastaflute.db.jta.stage.TransactionStage;
 import org.lastaflute.web.api.ApiManager;
 import org.lastaflute.web.path.ActionPathResolver;
+import org.lastaflute.web.path.ActionUrlBuilder;
 import org.lastaflute.web.response.HtmlResponse;
 import org.lastaflute.web.response.JsonResponse;
 import org.lastaflute.web.response.StreamResponse;
@@ -531,6 +532,20 @@ public abstract class LastaAction {
         return actionPathResolver.toActionUrl(actionType, chain);
     }
 
+    /**
+     * Create the builder of action URL, which fills URL pattern of the execute method and encodes parameters.
+     * <pre>
+     * <span style="color: #3F7E5E">// /product/list/sea/a%20b/3?sort=name</span>
+     * String url = urlBuilderOf(ProductListAction.<span style="color: #70226C">class</span>).execute("sea").moreUrl("a b", 3).param("sort", "name").build();
+     * </pre>
+     * @param actionType The class type of action to build URL. (NotNull)
+     * @return The new-created builder of action URL. (NotNull)
+     */
+    protected ActionUrlBuilder urlBuilderOf(Class<?> actionType) {
+        assertArgumentNotNull("actionType", actionType);
+        return actionPathResolver.urlBuilderOf(actionType);
+    }
+
     // ===================================================================================
     //                                                                             Advance
     //                                                                             =======
@@ -38,4 +38,8 @@ public interface LastaWebKey {
 
     String CSRF_TOKEN_KEY = "lastaflute.action.CSRF_TOKEN"; // Session
     String TRANSACTION_TOKEN_KEY = "lastaflute.action.TRANSACTION_TOKEN"; // Parameter and Session
+
+    String REQUEST_IDENTITY_KEY = "lastaflute.request.REQUEST_IDENTITY"; // Request
+
+    String ADMISSION_CONTROLLER_KEY = "lastaflute.admission.CONTROLLER"; // ServletContext
 }
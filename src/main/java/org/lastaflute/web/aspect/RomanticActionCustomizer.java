@@ -16,6 +16,7 @@
 package org.lastaflute.web.aspect;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -119,6 +120,9 @@ public class RomanticActionCustomizer implements ComponentCustomizer {
     //                                                                       =============
     protected void setupMethod(ActionMapping actionMapping) {
         final Class<?> actionType = actionMapping.getActionDef().getComponentClass();
+        if (setupMethodByIndex(actionMapping, actionType)) {
+            return;
+        }
         for (Method declaredMethod : actionType.getDeclaredMethods()) {
             if (!isExecuteMethod(declaredMethod)) {
                 continue;
@@ -134,6 +138,29 @@ public class RomanticActionCustomizer implements ComponentCustomizer {
         verifyExecuteMethodDefinedInConcreteClassOnly(actionMapping, actionType);
     }
 
+    /**
+     * Set up execute methods by action index emitted at build time, without scanning. <br>
+     * The index stamped by the processor is trusted as fresh (it is rewritten in every build),
+     * and overload and super-class definitions are already verified by the processor.
+     * @param actionMapping The mapping of action to register executes. (NotNull)
+     * @param actionType The type of action. (NotNull)
+     * @return true if set up by index, false if not indexed (or stale) so needs scanning.
+     */
+    protected boolean setupMethodByIndex(ActionMapping actionMapping, Class<?> actionType) {
+        final List<Method> indexedList = LaModuleConfigUtil.getModuleConfig().findActionIndex().flatMap(index -> {
+            return index.findExecuteMethodList(actionType);
+        }).orElse(null);
+        if (indexedList == null) { // not indexed or stale
+            return false;
+        }
+        for (Method executeMethod : indexedList) {
+            actionMapping.registerExecute(createActionExecute(actionMapping, executeMethod));
+        }
+        verifyExecuteMethodSize(actionMapping, actionType);
+        verifyExecuteMethodEitherIndexAndNamedUsingUrlParameter(actionMapping, actionType);
+        return true;
+    }
+
     protected void throwOverloadMethodCannotDefinedException(final Class<?> actionType) {
         final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
         br.addNotice("Cannot define overload method of action execute.");
@@ -293,9 +320,10 @@ public class RomanticActionCustomizer implements ComponentCustomizer {
     protected ExecuteOption createExecuteOption(Execute anno) {
         final String urlPattern = anno.urlPattern();
         final boolean suppressTransaction = anno.suppressTransaction();
+        final boolean readOnlyTransaction = anno.readOnlyTransaction();
         final boolean suppressValidatorCallCheck = anno.suppressValidatorCallCheck();
         final int sqlExecutionCountLimit = anno.sqlExecutionCountLimit();
-        return new ExecuteOption(urlPattern, suppressTransaction, suppressValidatorCallCheck, sqlExecutionCountLimit);
+        return new ExecuteOption(urlPattern, suppressTransaction, readOnlyTransaction, suppressValidatorCallCheck, sqlExecutionCountLimit);
     }
 
     protected ActionExecute newActionExecute(ActionMapping actionMapping, Method executeMethod, ExecuteOption executeOption) {
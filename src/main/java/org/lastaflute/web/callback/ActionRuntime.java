@@ -19,6 +19,8 @@ import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.dbflute.optional.OptionalThing;
 import org.dbflute.util.DfTypeUtil;
@@ -50,6 +52,8 @@ public class ActionRuntime {
     //                                         -------------
     protected OptionalThing<VirtualActionForm> form;
     protected ActionResponse actionResponse;
+    protected CompletableFuture<? extends ActionResponse> asyncResponse; // null allowed, only when asynchronous execute
+    protected Executor asyncCompletionExecutor; // null allowed, inheriting contexts of action execute
     protected RuntimeException failureCause;
     protected ActionMessages validationErrors;
     protected Map<String, Object> displayDataMap; // lazy loaded
@@ -144,6 +148,14 @@ public class ActionRuntime {
         return actionResponse != null && actionResponse instanceof JsonResponse;
     }
 
+    /**
+     * Is the response of the action execute pending as asynchronous? (the execute method returned future)
+     * @return The determination, true or false.
+     */
+    public boolean isAsyncResponsePending() {
+        return asyncResponse != null && actionResponse == null;
+    }
+
     // -----------------------------------------------------
     //                                         Failure/Error
     //                                         -------------
@@ -194,6 +206,8 @@ public class ActionRuntime {
         sb.append(", urlParam=").append(urlParam);
         if (actionResponse != null) {
             sb.append(", response=").append(actionResponse);
+        } else if (asyncResponse != null) {
+            sb.append(", asyncResponse=").append(asyncResponse);
         }
         if (failureCause != null) {
             sb.append(", failure=").append(DfTypeUtil.toClassTitle(failureCause));
@@ -257,6 +271,27 @@ public class ActionRuntime {
         this.actionResponse = actionResponse;
     }
 
+    /**
+     * Get the future of action response returned by asynchronous action execute.
+     * @return The future of action response. (NullAllowed: when synchronous execute or before execute)
+     */
+    public CompletableFuture<? extends ActionResponse> getAsyncResponse() {
+        return asyncResponse;
+    }
+
+    /**
+     * Get the executor for completion of asynchronous action response, which inherits contexts of action execute.
+     * @return The executor for completion. (NullAllowed: when synchronous execute or before execute)
+     */
+    public Executor getAsyncCompletionExecutor() {
+        return asyncCompletionExecutor;
+    }
+
+    public void setAsyncResponse(CompletableFuture<? extends ActionResponse> asyncResponse, Executor asyncCompletionExecutor) {
+        this.asyncResponse = asyncResponse;
+        this.asyncCompletionExecutor = asyncCompletionExecutor;
+    }
+
     /**
      * Get the exception as failure cause thrown by action execute.
      * @return The exception as failure cause. (NullAllowed: when before execute or on success)
@@ -24,12 +24,18 @@ public class TooManySqlOption {
     //                                                                           Attribute
     //                                                                           =========
     protected final int sqlExecutionCountLimit;
+    protected final int sqlPatternRepeatLimit; // for N+1 detection
 
     // ===================================================================================
     //                                                                         Constructor
     //                                                                         ===========
     public TooManySqlOption(int sqlExecutionCountLimit) {
+        this(sqlExecutionCountLimit, 10); // as default
+    }
+
+    public TooManySqlOption(int sqlExecutionCountLimit, int sqlPatternRepeatLimit) {
         this.sqlExecutionCountLimit = sqlExecutionCountLimit;
+        this.sqlPatternRepeatLimit = sqlPatternRepeatLimit;
     }
 
     // ===================================================================================
@@ -38,4 +44,8 @@ public class TooManySqlOption {
     public int getSqlExecutionCountLimit() {
         return sqlExecutionCountLimit;
     }
+
+    public int getSqlPatternRepeatLimit() {
+        return sqlPatternRepeatLimit;
+    }
 }
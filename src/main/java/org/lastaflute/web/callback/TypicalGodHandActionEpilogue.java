@@ -15,10 +15,18 @@
  */
 package org.lastaflute.web.callback;
 
+import java.util.List;
+
 import org.dbflute.bhv.proposal.callback.ExecutedSqlCounter;
 import org.dbflute.hook.CallbackContext;
+import org.dbflute.hook.SqlFireHook;
 import org.dbflute.hook.SqlStringFilter;
+import org.lastaflute.core.util.ContainerUtil;
 import org.lastaflute.db.dbflute.accesscontext.PreparedAccessContext;
+import org.lastaflute.db.dbflute.callbackcontext.RomanticTraceableSqlFireHook;
+import org.lastaflute.db.dbflute.callbackcontext.SqlPatternProfile.PatternCounter;
+import org.lastaflute.db.dbflute.callbackcontext.SqlPatternStatistics;
+import org.lastaflute.web.servlet.filter.accesslog.RequestResourceMeter;
 import org.lastaflute.web.servlet.request.RequestManager;
 import org.lastaflute.web.servlet.request.ResponseManager;
 import org.slf4j.Logger;
@@ -58,6 +66,8 @@ public class TypicalGodHandActionEpilogue {
             arrangeNoCacheResponseWhenJsp(runtime);
         }
         handleSqlCount(runtime);
+        handleSqlPatternProfile(runtime);
+        handleResourceMeter(runtime);
         clearCallbackContext();
         clearPreparedAccessContext();
     }
@@ -119,6 +129,76 @@ public class TypicalGodHandActionEpilogue {
         return tooManySqlOption.getSqlExecutionCountLimit();
     }
 
+    /**
+     * Handle the profile of SQL patterns in the request, detecting N+1 and registering statistics.
+     * @param runtime The runtime meta of action execute. (NotNull)
+     */
+    protected void handleSqlPatternProfile(ActionRuntime runtime) {
+        final CallbackContext context = CallbackContext.getCallbackContextOnThread();
+        if (context == null) {
+            return;
+        }
+        final SqlFireHook hook = context.getSqlFireHook();
+        if (hook == null || !(hook instanceof RomanticTraceableSqlFireHook)) {
+            return;
+        }
+        ((RomanticTraceableSqlFireHook) hook).getSqlPatternProfile().ifPresent(profile -> {
+            if (profile.getTotalCount() == 0) {
+                return;
+            }
+            final int repeatLimit = getSqlPatternRepeatLimit(runtime);
+            final List<PatternCounter> repeatedList = profile.findRepeatedPatterns(repeatLimit >= 0 ? repeatLimit : Integer.MAX_VALUE);
+            if (!repeatedList.isEmpty()) {
+                handleSqlPatternRepeated(runtime, repeatedList, repeatLimit);
+            }
+            getSqlPatternStatistics().register(runtime.getActionExecute().toSimpleMethodExp(), profile, repeatedList);
+        });
+    }
+
+    protected SqlPatternStatistics getSqlPatternStatistics() { // lazy, only when profile enabled
+        return ContainerUtil.getComponent(SqlPatternStatistics.class);
+    }
+
+    /**
+     * Handle SQL patterns executed repeatedly with different bind values, e.g. N+1 loop.
+     * @param runtime The runtime meta of action execute. (NotNull)
+     * @param repeatedList The list of repeated patterns. (NotNull, NotEmpty)
+     * @param repeatLimit The limit of execution count per pattern. (NotMinus: already checked here)
+     */
+    protected void handleSqlPatternRepeated(ActionRuntime runtime, List<PatternCounter> repeatedList, int repeatLimit) {
+        final String actionDisp = buildActionDisp(runtime);
+        logger.warn("*Repeated SQL executions (N+1?) over {} in {}: {}", repeatLimit, actionDisp, repeatedList);
+    }
+
+    /**
+     * Get the limit of execution count per SQL pattern. <br>
+     * You can override if you need.
+     * @param runtime The runtime meta of action execute. (NotNull)
+     * @return The limit of execution count per pattern. (MinusAllowed: if minus, no check)
+     */
+    protected int getSqlPatternRepeatLimit(ActionRuntime runtime) {
+        return tooManySqlOption.getSqlPatternRepeatLimit();
+    }
+
+    /**
+     * Handle resource meter of the request, registering action and SQL info. <br>
+     * CPU time and allocated bytes are measured by logging filter, and shown in access log. <br>
+     * SQL time is measured by the SQL fire hook so it does not depend on the SQL pattern profile.
+     * @param runtime The runtime meta of action execute. (NotNull)
+     */
+    protected void handleResourceMeter(ActionRuntime runtime) {
+        RequestResourceMeter.registerAction(runtime.getActionExecute().toSimpleMethodExp());
+        final CallbackContext context = CallbackContext.getCallbackContextOnThread();
+        if (context == null) {
+            return;
+        }
+        final SqlStringFilter filter = context.getSqlStringFilter();
+        final int sqlCount = filter instanceof ExecutedSqlCounter ? ((ExecutedSqlCounter) filter).getTotalCountOfSql() : 0;
+        final SqlFireHook hook = context.getSqlFireHook();
+        final long sqlMillis = hook instanceof RomanticTraceableSqlFireHook ? ((RomanticTraceableSqlFireHook) hook).getTotalSqlMillis() : 0L;
+        RequestResourceMeter.registerSql(sqlCount, sqlMillis);
+    }
+
     /**
      * Clear callback context. <br>
      * This is called by callback process so you should NOT call this directly in your action.
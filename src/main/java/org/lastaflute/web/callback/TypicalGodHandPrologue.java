@@ -27,11 +27,14 @@ import org.dbflute.hook.SqlStringFilter;
 import org.dbflute.optional.OptionalThing;
 import org.dbflute.util.DfTypeUtil;
 import org.lastaflute.core.magic.ThreadCacheContext;
+import org.lastaflute.core.util.ContainerUtil;
 import org.lastaflute.db.dbflute.accesscontext.AccessContextArranger;
 import org.lastaflute.db.dbflute.accesscontext.AccessContextResource;
 import org.lastaflute.db.dbflute.accesscontext.PreparedAccessContext;
 import org.lastaflute.db.dbflute.callbackcontext.RomanticTraceableSqlFireHook;
 import org.lastaflute.db.dbflute.callbackcontext.RomanticTraceableSqlStringFilter;
+import org.lastaflute.db.dbflute.callbackcontext.SqlPatternProfile;
+import org.lastaflute.db.dbflute.callbackcontext.SqlPatternStatistics;
 import org.lastaflute.web.api.ApiManager;
 import org.lastaflute.web.login.LoginHandlingResource;
 import org.lastaflute.web.login.LoginManager;
@@ -155,13 +158,36 @@ public class TypicalGodHandPrologue {
      * @return The hook of SQL fire. (NullAllowed: if null, no hook)
      */
     protected SqlFireHook createSqlFireHook(ActionRuntime runtime) {
-        return newRomanticTraceableSqlFireHook();
+        final RomanticTraceableSqlFireHook hook = newRomanticTraceableSqlFireHook();
+        if (isSqlPatternProfileEnabled(runtime)) {
+            hook.useSqlPatternProfile(newSqlPatternProfile());
+        }
+        return hook;
     }
 
     protected RomanticTraceableSqlFireHook newRomanticTraceableSqlFireHook() {
         return new RomanticTraceableSqlFireHook();
     }
 
+    /**
+     * Does it profile SQL patterns in the request? (for N+1 detection and statistics) <br>
+     * The profile is evaluated by god-hand epilogue, and registered to SqlPatternStatistics component. <br>
+     * Default is disabled because it costs per SQL execution, so override it if you need.
+     * @param runtime The runtime meta of action execute. (NotNull)
+     * @return The determination, true or false.
+     */
+    protected boolean isSqlPatternProfileEnabled(ActionRuntime runtime) {
+        return false; // opt-in
+    }
+
+    protected SqlPatternProfile newSqlPatternProfile() {
+        return getSqlPatternStatistics().newProfile(); // sharing pattern cache in the container
+    }
+
+    protected SqlPatternStatistics getSqlPatternStatistics() { // lazy, only when profile enabled
+        return ContainerUtil.getComponent(SqlPatternStatistics.class);
+    }
+
     /**
      * Create the filter of SQL string for DBFlute.
      * @param runtime The runtime meta of action execute. (NotNull)
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.container;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.dbflute.optional.OptionalThing;
+import org.lastaflute.core.json.JsonManager;
+import org.lastaflute.core.util.ContainerUtil;
+import org.lastaflute.di.core.factory.SingletonLaContainerFactory;
+import org.lastaflute.di.helper.beans.factory.BeanDescFactory;
+import org.lastaflute.di.naming.NamingConvention;
+import org.lastaflute.di.util.ClassTraversal.ClassHandler;
+import org.lastaflute.di.util.LdiClassUtil;
+import org.lastaflute.di.util.LdiResourcesUtil;
+import org.lastaflute.di.util.LdiResourcesUtil.Resources;
+import org.lastaflute.web.response.JsonResponse;
+import org.lastaflute.web.ruts.config.ActionExecute;
+import org.lastaflute.web.ruts.config.ActionFormMeta;
+import org.lastaflute.web.ruts.config.ActionFormProperty;
+import org.lastaflute.web.ruts.config.ActionMapping;
+import org.lastaflute.web.ruts.config.ModuleConfig;
+import org.lastaflute.web.ruts.config.analyzer.ExecuteArgAnalyzer;
+import org.lastaflute.web.ruts.message.MessageResources;
+import org.lastaflute.web.validation.ActionValidator;
+import org.lastaflute.web.validation.LaValidatable;
+import org.lastaflute.web.validation.LaValidatableApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The warm-upper of web metadata at boot, called by prepare filter when opt-in. <br>
+ * Action, form, JSON, validation and message metadata are prepared in parallel
+ * so that first requests after deploy do not pay for them.
+ * <pre>
+ * stages:
+ *  action     : gets every action component (registration in warm deploy, DI, class initialization)
+ *  form       : instantiates forms and prepares bean descriptions of nested beans
+ *  json       : prepares JSON adapters of body and response bean types
+ *  validation : prepares constraint metadata of validated forms in the action's validator factory
+ *  message    : loads message bundles for the locales
+ * </pre>
+ * <p>Actions are registered lazily in warm deploy, so they are enumerated
+ * by the action index (if built) or by the naming convention, and the mappings are collected after that.</p>
+ * @author jflute
+ */
+public class WebLastaWarmUpper {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(WebLastaWarmUpper.class);
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final ModuleConfig moduleConfig; // not null
+    protected final MessageResources messageResources; // null allowed: if no resources
+    protected final Map<String, String> stageResultMap = new LinkedHashMap<String, String>(); // for report
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public WebLastaWarmUpper(ModuleConfig moduleConfig, MessageResources messageResources) {
+        if (moduleConfig == null) {
+            throw new IllegalArgumentException("The argument 'moduleConfig' should not be null.");
+        }
+        this.moduleConfig = moduleConfig;
+        this.messageResources = messageResources;
+    }
+
+    // ===================================================================================
+    //                                                                             Warm Up
+    //                                                                             =======
+    /**
+     * Warm up the web metadata, logging the timing per stage. <br>
+     * Failures in warm-up are logged as debug and do not stop the boot
+     * because the same process will be executed (and fail) at request.
+     */
+    public void warmUp() {
+        final long before = System.currentTimeMillis();
+        final ExecutorService executor = newWarmUpExecutor();
+        try {
+            runStage(executor, "action", extractActionComponentNameSet(), componentName -> warmUpAction(componentName));
+            final List<ActionExecute> executeList = extractExecuteList(moduleConfig.getActionMappingList()); // registered now
+            runStage(executor, "form", extractFormMetaList(executeList), meta -> warmUpForm(meta));
+            final JsonManager jsonManager = getJsonManager();
+            runStage(executor, "json", extractJsonTypeSet(executeList), type -> warmUpJson(jsonManager, type));
+            runStage(executor, "validation", extractValidatedExecuteList(executeList), execute -> warmUpValidation(execute));
+            if (messageResources != null) {
+                runStage(executor, "message", prepareWarmUpLocaleList(), locale -> warmUpMessage(locale));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        final long cost = System.currentTimeMillis() - before;
+        logger.info("...Warming up web metadata: {} [{}ms]", stageResultMap, cost);
+    }
+
+    protected ExecutorService newWarmUpExecutor() {
+        final int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors());
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(poolSize, runnable -> {
+            final Thread thread = new Thread(runnable, "lasta_warmup_" + threadNumber.incrementAndGet());
+            thread.setDaemon(true); // not to block shutdown
+            return thread;
+        }); // thread inherits context class loader from boot thread
+    }
+
+    // ===================================================================================
+    //                                                                        Action Stage
+    //                                                                        ============
+    protected Set<String> extractActionComponentNameSet() {
+        final Set<String> nameSet = new LinkedHashSet<String>();
+        for (ActionMapping mapping : moduleConfig.getActionMappingList()) { // already registered e.g. cool deploy
+            nameSet.add(mapping.getActionDef().getComponentName());
+        }
+        final NamingConvention namingConvention = getNamingConvention();
+        final Set<String> actionClassNameSet = moduleConfig.findActionIndex().map(index -> {
+            return index.getActionClassNameSet(); // no scanning
+        }).orElseGet(() -> {
+            return scanActionClassNameSet(namingConvention);
+        });
+        for (String className : actionClassNameSet) {
+            nameSet.add(namingConvention.fromClassNameToComponentName(className));
+        }
+        return nameSet;
+    }
+
+    protected Set<String> scanActionClassNameSet(NamingConvention namingConvention) { // same way as smart deploy
+        final Set<String> classNameSet = new LinkedHashSet<String>();
+        final String actionSuffix = namingConvention.getActionSuffix();
+        for (String rootPackageName : namingConvention.getRootPackageNames()) {
+            for (Resources resources : LdiResourcesUtil.getResourcesTypes(rootPackageName)) {
+                try {
+                    resources.forEach((ClassHandler) (packageName, shortClassName) -> {
+                        if (shortClassName.endsWith(actionSuffix) && shortClassName.indexOf('$') < 0) { // no inner class
+                            final String className = LdiClassUtil.concatName(packageName, shortClassName);
+                            if (namingConvention.isTargetClassName(className)) {
+                                classNameSet.add(className);
+                            }
+                        }
+                    });
+                } finally {
+                    resources.close();
+                }
+            }
+        }
+        return classNameSet;
+    }
+
+    protected void warmUpAction(String componentName) { // registers action mapping if warm deploy
+        getActionComponent(componentName); // prototype so discarded
+    }
+
+    protected List<ActionExecute> extractExecuteList(List<ActionMapping> mappingList) {
+        final List<ActionExecute> executeList = new ArrayList<ActionExecute>();
+        for (ActionMapping mapping : mappingList) {
+            executeList.addAll(mapping.getExecuteMap().values());
+        }
+        return executeList;
+    }
+
+    // ===================================================================================
+    //                                                                          Form Stage
+    //                                                                          ==========
+    protected List<ActionFormMeta> extractFormMetaList(List<ActionExecute> executeList) {
+        final List<ActionFormMeta> metaList = new ArrayList<ActionFormMeta>();
+        for (ActionExecute execute : executeList) {
+            execute.getFormMeta().ifPresent(meta -> metaList.add(meta));
+        }
+        return metaList;
+    }
+
+    protected void warmUpForm(ActionFormMeta meta) {
+        if (!meta.getListFormParameter().isPresent()) { // list form cannot be instantiated
+            meta.createActionForm().getFormSupplier().supply();
+        }
+        for (ActionFormProperty property : meta.properties()) {
+            final Class<?> propertyType = property.getPropertyDesc().getPropertyType();
+            if (isBeanType(propertyType)) { // e.g. nested bean
+                BeanDescFactory.getBeanDesc(propertyType);
+            }
+        }
+    }
+
+    protected boolean isBeanType(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && !type.isEnum() && !type.getName().startsWith("java.");
+    }
+
+    // ===================================================================================
+    //                                                                          JSON Stage
+    //                                                                          ==========
+    protected Set<Type> extractJsonTypeSet(List<ActionExecute> executeList) {
+        final Set<Type> typeSet = new LinkedHashSet<Type>();
+        for (ActionExecute execute : executeList) {
+            execute.getFormMeta().ifPresent(meta -> {
+                if (isJsonBodyType(meta.getFormType())) {
+                    typeSet.add(meta.getFormType());
+                }
+                meta.getListFormParameterParameterizedType().ifPresent(pt -> {
+                    meta.getListFormParameterGenericType().filter(type -> isJsonBodyType(type)).ifPresent(type -> typeSet.add(pt));
+                });
+            });
+            final Type jsonBeanType = findJsonResponseBeanType(execute);
+            if (jsonBeanType != null) {
+                typeSet.add(jsonBeanType);
+            }
+        }
+        return typeSet;
+    }
+
+    protected boolean isJsonBodyType(Class<?> formType) {
+        return formType.getName().endsWith(ExecuteArgAnalyzer.BODY_SUFFIX);
+    }
+
+    protected Type findJsonResponseBeanType(ActionExecute execute) { // null allowed
+        Type returnType = execute.getExecuteMethod().getGenericReturnType();
+        if (execute.isAsyncExecute()) { // e.g. CompletableFuture<JsonResponse<SeaBean>>
+            if (!(returnType instanceof ParameterizedType)) {
+                return null;
+            }
+            returnType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+        }
+        if (!(returnType instanceof ParameterizedType)) { // e.g. raw JsonResponse, HtmlResponse
+            return null;
+        }
+        final ParameterizedType responseType = (ParameterizedType) returnType;
+        if (!JsonResponse.class.equals(responseType.getRawType())) {
+            return null;
+        }
+        final Type beanType = responseType.getActualTypeArguments()[0];
+        if (beanType instanceof Class<?>) {
+            return isBeanType((Class<?>) beanType) ? beanType : null;
+        }
+        return beanType instanceof ParameterizedType ? beanType : null; // e.g. List<SeaBean>
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void warmUpJson(JsonManager jsonManager, Type type) { // adapters are shared by parse and write
+        if (type instanceof Class<?>) {
+            jsonManager.fromJson("{}", (Class<Object>) type);
+        } else {
+            final ParameterizedType pt = (ParameterizedType) type;
+            final Type rawType = pt.getRawType();
+            final boolean collection = rawType instanceof Class<?> && Collection.class.isAssignableFrom((Class<?>) rawType);
+            jsonManager.fromJsonParameteried(collection ? "[]" : "{}", pt);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                    Validation Stage
+    //                                                                    ================
+    protected List<ActionExecute> extractValidatedExecuteList(List<ActionExecute> executeList) {
+        final List<ActionExecute> validatedList = new ArrayList<ActionExecute>();
+        for (ActionExecute execute : executeList) {
+            if (execute.getFormMeta().filter(meta -> meta.isValidatorAnnotated()).isPresent()) {
+                validatedList.add(execute);
+            }
+        }
+        return validatedList;
+    }
+
+    protected void warmUpValidation(ActionExecute execute) { // factory is shared per validator type
+        final ActionFormMeta meta = execute.getFormMeta().get(); // already filtered
+        final Class<?> beanType = meta.getListFormParameterGenericType().orElse(meta.getFormType());
+        findActionValidator(execute.getActionMapping().createAction()).ifPresent(validator -> {
+            validator.prepareConstraintMetadata(beanType);
+        });
+    }
+
+    protected OptionalThing<ActionValidator<?>> findActionValidator(Object action) { // configured by application
+        final ActionValidator<?> validator;
+        if (action instanceof LaValidatable<?>) {
+            validator = ((LaValidatable<?>) action).createValidator();
+        } else if (action instanceof LaValidatableApi<?>) {
+            validator = ((LaValidatableApi<?>) action).createValidator();
+        } else { // no validation by framework
+            validator = null;
+        }
+        return OptionalThing.ofNullable(validator, () -> {
+            throw new IllegalStateException("Not found the validator of the action: " + action);
+        });
+    }
+
+    // ===================================================================================
+    //                                                                       Message Stage
+    //                                                                       =============
+    /**
+     * Prepare the locales to load message bundles. <br>
+     * You can override if your application has several languages.
+     * @return The list of locale. (NotNull)
+     */
+    protected List<Locale> prepareWarmUpLocaleList() {
+        final List<Locale> localeList = new ArrayList<Locale>();
+        localeList.add(Locale.getDefault());
+        return localeList;
+    }
+
+    protected void warmUpMessage(Locale locale) {
+        messageResources.isPresent(locale, "lasta.warmup.dummy"); // loads bundles with extends
+    }
+
+    // ===================================================================================
+    //                                                                        Stage Runner
+    //                                                                        ============
+    protected <ELEMENT> void runStage(ExecutorService executor, String stageName, Collection<ELEMENT> elements, Consumer<ELEMENT> warmer) {
+        final long before = System.currentTimeMillis();
+        final AtomicInteger failureCount = new AtomicInteger();
+        final List<Callable<Void>> taskList = new ArrayList<Callable<Void>>(elements.size());
+        for (ELEMENT element : elements) {
+            taskList.add(() -> {
+                try {
+                    warmer.accept(element);
+                } catch (RuntimeException | LinkageError e) { // same failure will be thrown at request
+                    failureCount.incrementAndGet();
+                    logger.debug("Failed to warm up the {}: {}", stageName, element, e);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(taskList)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) { // basically no way because caught in task
+            logger.debug("Failed to execute the warm-up stage: {}", stageName, e);
+        }
+        final long cost = System.currentTimeMillis() - before;
+        final int failures = failureCount.get();
+        stageResultMap.put(stageName, elements.size() + (failures > 0 ? "(failed " + failures + ")" : "") + " " + cost + "ms");
+    }
+
+    // ===================================================================================
+    //                                                                           Component
+    //                                                                           =========
+    protected JsonManager getJsonManager() {
+        return ContainerUtil.getComponent(JsonManager.class);
+    }
+
+    protected NamingConvention getNamingConvention() {
+        return ContainerUtil.getComponent(NamingConvention.class);
+    }
+
+    protected Object getActionComponent(String componentName) {
+        return SingletonLaContainerFactory.getContainer().getComponent(componentName);
+    }
+}
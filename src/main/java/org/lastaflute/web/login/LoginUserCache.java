@@ -0,0 +1,344 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.login;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.dbflute.optional.OptionalEntity;
+
+/**
+ * The bounded, TTL-based cache of login user, keyed by user ID. <br>
+ * Concurrent finding for the same user shares one loading (single-flight),
+ * and not-found result is not cached (shared only with the concurrent waiters).
+ * <pre>
+ * e.g. sync-check of login session, remember-me and re-selecting user bean
+ * </pre>
+ * The cached entity is shared between threads so treat it as read-only.
+ * @param <ID> The type of user ID.
+ * @param <USER_ENTITY> The type of user entity or model.
+ * @author jflute
+ */
+public class LoginUserCache<ID, USER_ENTITY> {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final long ttlMillis; // positive
+    protected final int maxSize; // positive
+    protected final Map<ID, CachedLoginUser<USER_ENTITY>> userMap = new ConcurrentHashMap<ID, CachedLoginUser<USER_ENTITY>>();
+
+    protected final LongAdder hitCount = new LongAdder();
+    protected final LongAdder sharedCount = new LongAdder(); // joined to loading by other thread
+    protected final LongAdder missCount = new LongAdder();
+    protected final LongAdder evictionCount = new LongAdder();
+    protected final LongAdder invalidationCount = new LongAdder();
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param ttlMillis The time-to-live milliseconds of cached user. (Positive)
+     * @param maxSize The max size of cached users. (Positive)
+     */
+    public LoginUserCache(long ttlMillis, int maxSize) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("The argument 'ttlMillis' should be positive: " + ttlMillis);
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The argument 'maxSize' should be positive: " + maxSize);
+        }
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    // ===================================================================================
+    //                                                                           Find User
+    //                                                                           =========
+    /**
+     * Find the login user from the cache, or load it by the loader if not cached or expired.
+     * @param userId The ID of the login user. (NotNull)
+     * @param loader The callback to load the user from database, called once for concurrent finding. (NotNull)
+     * @return The optional entity of the found user. (NotNull, EmptyAllowed: when the login user is not found)
+     */
+    public OptionalEntity<USER_ENTITY> find(ID userId, Function<ID, OptionalEntity<USER_ENTITY>> loader) {
+        if (userId == null) {
+            throw new IllegalArgumentException("The argument 'userId' should not be null.");
+        }
+        if (loader == null) {
+            throw new IllegalArgumentException("The argument 'loader' should not be null.");
+        }
+        while (true) {
+            final CachedLoginUser<USER_ENTITY> existing = userMap.get(userId);
+            if (existing != null) {
+                if (!existing.isLoaded()) { // other thread is loading now
+                    sharedCount.increment();
+                    return existing.join();
+                }
+                if (!existing.isExpired(currentMillis(), ttlMillis)) {
+                    hitCount.increment();
+                    return existing.join();
+                }
+                userMap.remove(userId, existing); // expired so reload
+                continue;
+            }
+            final CachedLoginUser<USER_ENTITY> created = new CachedLoginUser<USER_ENTITY>();
+            if (userMap.putIfAbsent(userId, created) != null) {
+                continue; // other thread has started loading
+            }
+            missCount.increment();
+            return load(userId, loader, created);
+        }
+    }
+
+    /**
+     * Reload the login user by the loader even if cached, e.g. re-selecting user bean. <br>
+     * Concurrent reloading (and finding) for the same user shares one loading that has started after the cached one.
+     * @param userId The ID of the login user. (NotNull)
+     * @param loader The callback to load the user from database, called once for concurrent reloading. (NotNull)
+     * @return The optional entity of the found user. (NotNull, EmptyAllowed: when the login user is not found)
+     */
+    public OptionalEntity<USER_ENTITY> reload(ID userId, Function<ID, OptionalEntity<USER_ENTITY>> loader) {
+        if (userId == null) {
+            throw new IllegalArgumentException("The argument 'userId' should not be null.");
+        }
+        if (loader == null) {
+            throw new IllegalArgumentException("The argument 'loader' should not be null.");
+        }
+        while (true) {
+            final CachedLoginUser<USER_ENTITY> existing = userMap.get(userId);
+            if (existing != null && !existing.isLoaded()) { // other thread is loading now, as latest
+                sharedCount.increment();
+                return existing.join();
+            }
+            final CachedLoginUser<USER_ENTITY> created = new CachedLoginUser<USER_ENTITY>();
+            if (existing != null) {
+                if (!userMap.replace(userId, existing, created)) {
+                    continue; // other thread has changed it
+                }
+                invalidationCount.increment();
+            } else if (userMap.putIfAbsent(userId, created) != null) {
+                continue; // other thread has started loading
+            }
+            missCount.increment();
+            return load(userId, loader, created);
+        }
+    }
+
+    protected OptionalEntity<USER_ENTITY> load(ID userId, Function<ID, OptionalEntity<USER_ENTITY>> loader,
+            CachedLoginUser<USER_ENTITY> created) {
+        final OptionalEntity<USER_ENTITY> loaded;
+        try {
+            loaded = loader.apply(userId);
+            if (loaded == null) {
+                throw new IllegalStateException("The loader returned null optional: userId=" + userId);
+            }
+        } catch (RuntimeException | Error e) {
+            userMap.remove(userId, created);
+            created.fail(e); // also waiters receive the exception
+            throw e;
+        }
+        if (!loaded.isPresent()) {
+            userMap.remove(userId, created); // not-found user is not cached, might be registered soon
+        }
+        created.complete(loaded, currentMillis());
+        if (userMap.size() > maxSize) {
+            evictOverflow();
+        }
+        return loaded;
+    }
+
+    protected long currentMillis() {
+        return System.currentTimeMillis(); // not use time manager, TTL is real time
+    }
+
+    // ===================================================================================
+    //                                                                            Eviction
+    //                                                                            ========
+    protected void evictOverflow() { // called only when overflow so scanning is allowed
+        final long current = currentMillis();
+        for (Entry<ID, CachedLoginUser<USER_ENTITY>> entry : userMap.entrySet()) {
+            final CachedLoginUser<USER_ENTITY> cached = entry.getValue();
+            if (cached.isLoaded() && cached.isExpired(current, ttlMillis)) {
+                if (userMap.remove(entry.getKey(), cached)) {
+                    evictionCount.increment();
+                }
+            }
+        }
+        final int evictedSize = Math.max(1, maxSize - (maxSize / 10)); // leave margin to avoid scanning every time
+        while (userMap.size() > evictedSize) {
+            Entry<ID, CachedLoginUser<USER_ENTITY>> oldest = null;
+            for (Entry<ID, CachedLoginUser<USER_ENTITY>> entry : userMap.entrySet()) {
+                final CachedLoginUser<USER_ENTITY> cached = entry.getValue();
+                if (cached.isLoaded() && (oldest == null || cached.getLoadedMillis() < oldest.getValue().getLoadedMillis())) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) { // all loading now
+                break;
+            }
+            if (userMap.remove(oldest.getKey(), oldest.getValue())) {
+                evictionCount.increment();
+            }
+        }
+    }
+
+    // ===================================================================================
+    //                                                                        Invalidation
+    //                                                                        ============
+    /**
+     * Invalidate the cached user, e.g. when logout or the user is updated.
+     * @param userId The ID of the login user. (NotNull)
+     */
+    public void invalidate(ID userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("The argument 'userId' should not be null.");
+        }
+        if (userMap.remove(userId) != null) {
+            invalidationCount.increment();
+        }
+    }
+
+    /**
+     * Invalidate all cached users, e.g. when users are updated in batch.
+     */
+    public void invalidateAll() {
+        final int size = userMap.size();
+        userMap.clear();
+        invalidationCount.add(size);
+    }
+
+    // ===================================================================================
+    //                                                                          Statistics
+    //                                                                          ==========
+    /**
+     * @return The snapshot of statistics for the cache. (NotNull)
+     */
+    public LoginUserCacheStats getStats() {
+        return new LoginUserCacheStats(userMap.size(), hitCount.sum(), sharedCount.sum(), missCount.sum(), evictionCount.sum(),
+                invalidationCount.sum());
+    }
+
+    // ===================================================================================
+    //                                                                        Cached User
+    //                                                                        ===========
+    protected static class CachedLoginUser<USER_ENTITY> {
+
+        protected final CompletableFuture<OptionalEntity<USER_ENTITY>> future = new CompletableFuture<OptionalEntity<USER_ENTITY>>();
+        protected volatile long loadedMillis; // zero while loading
+
+        public boolean isLoaded() {
+            return loadedMillis > 0L;
+        }
+
+        public boolean isExpired(long currentMillis, long ttlMillis) {
+            return currentMillis - loadedMillis >= ttlMillis;
+        }
+
+        public void complete(OptionalEntity<USER_ENTITY> loaded, long currentMillis) {
+            loadedMillis = currentMillis;
+            future.complete(loaded);
+        }
+
+        public void fail(Throwable cause) {
+            future.completeExceptionally(cause);
+        }
+
+        public OptionalEntity<USER_ENTITY> join() {
+            try {
+                return future.join();
+            } catch (CompletionException e) { // failure of loading by other thread
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+
+        public long getLoadedMillis() {
+            return loadedMillis;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Stats Snapshot
+    //                                                                      ==============
+    public static class LoginUserCacheStats {
+
+        protected final int cachedSize;
+        protected final long hitCount;
+        protected final long sharedCount;
+        protected final long missCount;
+        protected final long evictionCount;
+        protected final long invalidationCount;
+
+        public LoginUserCacheStats(int cachedSize, long hitCount, long sharedCount, long missCount, long evictionCount,
+                long invalidationCount) {
+            this.cachedSize = cachedSize;
+            this.hitCount = hitCount;
+            this.sharedCount = sharedCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.invalidationCount = invalidationCount;
+        }
+
+        /**
+         * @return The ratio of finding without own loading, zero if no finding. (0.0 to 1.0)
+         */
+        public double getHitRatio() {
+            final long total = hitCount + sharedCount + missCount;
+            return total > 0 ? (double) (hitCount + sharedCount) / total : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return "{size=" + cachedSize + ", hit=" + hitCount + ", shared=" + sharedCount + ", miss=" + missCount + ", evicted="
+                    + evictionCount + ", invalidated=" + invalidationCount + "}";
+        }
+
+        public int getCachedSize() {
+            return cachedSize;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getSharedCount() {
+            return sharedCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getInvalidationCount() {
+            return invalidationCount;
+        }
+    }
+}
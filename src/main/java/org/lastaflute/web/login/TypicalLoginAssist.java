@@ -94,6 +94,9 @@ public abstract class TypicalLoginAssist<ID, USER_BEAN extends UserBean<ID>, USE
     @Resource
     private ActionPathResolver actionPathResolver;
 
+    /** The cache of login user for sync-check, remember-me and re-select. (NullAllowed: lazy-loaded) */
+    private volatile LoginUserCache<ID, USER_ENTITY> loginUserCache;
+
     // ===================================================================================
     //                                                                           Find User
     //                                                                           =========
@@ -159,6 +162,104 @@ public abstract class TypicalLoginAssist<ID, USER_BEAN extends UserBean<ID>, USE
      */
     protected abstract OptionalEntity<USER_ENTITY> doFindLoginUser(ID userId);
 
+    // -----------------------------------------------------
+    //                                       LoginUser Cache
+    //                                       ---------------
+    /**
+     * Find the login user by the cache, which is shared between sessions. <br>
+     * The user is loaded by doFindLoginUser() only once for concurrent finding.
+     * @param userId for the login user. (NotNull)
+     * @return The optional entity of the found user. (NotNull, EmptyAllowed: when the login user is not found)
+     */
+    protected OptionalEntity<USER_ENTITY> findCachedLoginUser(ID userId) {
+        assertUserIdRequired(userId);
+        if (!isLoginUserCacheEnabled()) {
+            return findLoginUser(userId);
+        }
+        return prepareLoginUserCache().find(userId, id -> findLoginUser(id));
+    }
+
+    /**
+     * Find the latest login user, refreshing the cache if login user cache is enabled. <br>
+     * The user is loaded by doFindLoginUser() only once for concurrent re-selecting.
+     * @param userId for the login user. (NotNull)
+     * @return The optional entity of the found user. (NotNull, EmptyAllowed: when the login user is not found)
+     */
+    protected OptionalEntity<USER_ENTITY> findLatestLoginUser(ID userId) {
+        assertUserIdRequired(userId);
+        if (!isLoginUserCacheEnabled()) {
+            return findLoginUser(userId);
+        }
+        return prepareLoginUserCache().reload(userId, id -> findLoginUser(id));
+    }
+
+    protected LoginUserCache<ID, USER_ENTITY> prepareLoginUserCache() {
+        LoginUserCache<ID, USER_ENTITY> cache = loginUserCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = loginUserCache;
+                if (cache == null) {
+                    cache = newLoginUserCache(getLoginUserCacheTtlSeconds() * 1000L, getLoginUserCacheMaxSize());
+                    loginUserCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    protected LoginUserCache<ID, USER_ENTITY> newLoginUserCache(long ttlMillis, int maxSize) {
+        return new LoginUserCache<ID, USER_ENTITY>(ttlMillis, maxSize);
+    }
+
+    /**
+     * Is the login user cache enabled? (the entity might be stale for TTL) <br>
+     * It is disabled as default, override this to return true if the staleness is acceptable.
+     * @return The determination, true or false.
+     */
+    protected boolean isLoginUserCacheEnabled() {
+        return false; // opt-in because it changes freshness of login user
+    }
+
+    protected int getLoginUserCacheTtlSeconds() {
+        return 60; // as default, shorter than sync-check interval
+    }
+
+    protected int getLoginUserCacheMaxSize() {
+        return 1000; // as default
+    }
+
+    /**
+     * Invalidate the cached login user, e.g. when the user is updated or withdrawn.
+     * @param userId The ID of the updated user. (NotNull)
+     */
+    public void invalidateLoginUserCache(ID userId) {
+        assertUserIdRequired(userId);
+        final LoginUserCache<ID, USER_ENTITY> cache = loginUserCache;
+        if (cache != null) {
+            cache.invalidate(userId);
+        }
+    }
+
+    /**
+     * Invalidate all cached login users, e.g. when users are updated in batch.
+     */
+    public void invalidateAllLoginUserCache() {
+        final LoginUserCache<ID, USER_ENTITY> cache = loginUserCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return The optional statistics of login user cache. (NotNull, EmptyAllowed: when no cache yet)
+     */
+    public OptionalThing<LoginUserCache.LoginUserCacheStats> getLoginUserCacheStats() {
+        final LoginUserCache<ID, USER_ENTITY> cache = loginUserCache;
+        return OptionalThing.ofNullable(cache != null ? cache.getStats() : null, () -> {
+            throw new IllegalStateException("Not found the login user cache, not used yet or disabled.");
+        });
+    }
+
     // ===================================================================================
     //                                                                         Login Logic
     //                                                                         ===========
@@ -232,12 +333,39 @@ public abstract class TypicalLoginAssist<ID, USER_BEAN extends UserBean<ID>, USE
      */
     protected void doLoginByIdentity(Object userId, LoginSpecifiedOption option) throws LoginFailureException {
         assertUserIdRequired(userId);
-        handleLoginSuccess(findLoginUser(userId).orElseThrow(() -> {
+        handleLoginSuccess(findIdentityLoginUser(userId).orElseThrow(() -> {
             String msg = "Not found the user by the user ID: " + userId + ", " + option;
             return handleLoginFailure(msg, userId, OptionalThing.of(option));
         }), option);
     }
 
+    /**
+     * Find the login user for identity login, e.g. also remember-me. (cached user if login user cache is enabled)
+     * @param userId for the login user. (NotNull)
+     * @return The optional entity of the found user. (NotNull, EmptyAllowed: when the login user is not found)
+     */
+    protected OptionalEntity<USER_ENTITY> findIdentityLoginUser(Object userId) {
+        if (!isLoginUserCacheEnabled()) {
+            return findLoginUser(userId);
+        }
+        return findCachedLoginUser(toIdentityUserId(userId));
+    }
+
+    /**
+     * Convert the user ID of identity login to the typed ID, used as key of login user cache. <br>
+     * The default is conversion by toTypedUserId() so that e.g. Long ID is not mismatched with Integer ID of user bean.
+     * @param userId for the login user. (NotNull)
+     * @return The typed ID for the login user. (NotNull)
+     */
+    protected ID toIdentityUserId(Object userId) {
+        assertUserIdRequired(userId);
+        try {
+            return toTypedUserId(userId.toString());
+        } catch (RuntimeException e) { // e.g. NumberFormatException
+            throw new IllegalStateException("Cannot convert the user ID: " + userId.getClass() + ", " + userId, e);
+        }
+    }
+
     /**
      * Handle login success for the found login user.
      * @param userEntity The found entity of the login user. (NotNull)
@@ -311,7 +439,8 @@ public abstract class TypicalLoginAssist<ID, USER_BEAN extends UserBean<ID>, USE
             inheritUserBeanAdditionalInfo(oldBean);
             final ID userId = oldBean.getUserId();
             logger.debug("...Re-selecting user bean in session: userId={}", userId);
-            final USER_ENTITY userEntity = findLoginUser(userId).orElseThrow(() -> { // might be already left
+            // re-select means latest user, and the cache is refreshed (concurrent re-selects share one loading)
+            final USER_ENTITY userEntity = findLatestLoginUser(userId).orElseThrow(() -> { // might be already left
                 logout(); // to clear old user info in session
                 final OptionalThing<LoginSpecifiedOption> emptyOption = OptionalThing.ofNullable(null, () -> {
                     throw new IllegalStateException("Not found the login option when reselect: userId=" + userId);
@@ -594,6 +723,9 @@ public abstract class TypicalLoginAssist<ID, USER_BEAN extends UserBean<ID>, USE
     //                                                                              ======
     @Override
     public void logout() {
+        getSessionUserBean().ifPresent(userBean -> {
+            invalidateLoginUserCache(userBean.getUserId()); // next login should see latest user
+        });
         sessionManager.removeAttribute(getUserBeanKey());
         getCookieRememberMeKey().ifPresent(cookieKey -> {
             cookieManager.removeCookie(cookieKey);
@@ -724,7 +856,7 @@ public abstract class TypicalLoginAssist<ID, USER_BEAN extends UserBean<ID>, USE
     }
 
     protected OptionalEntity<USER_ENTITY> findLoginSessionSyncCheckUser(USER_BEAN userBean) {
-        return findLoginUser(userBean.getUserId());
+        return findCachedLoginUser(userBean.getUserId());
     }
 
     protected void handleLoginSessionSyncCheckSuccess(USER_BEAN userBean, USER_ENTITY loginUser) {
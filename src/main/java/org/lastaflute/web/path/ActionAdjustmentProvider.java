@@ -22,6 +22,10 @@ import javax.servlet.http.HttpServletRequest;
 import org.lastaflute.web.response.ActionResponse;
 import org.lastaflute.web.ruts.config.ActionExecute;
 import org.lastaflute.web.ruts.config.ActionMapping;
+import org.lastaflute.web.servlet.filter.admission.AdmissionControlOption;
+import org.lastaflute.web.servlet.filter.admission.AdmissionPriority;
+import org.lastaflute.web.servlet.filter.cors.CorsPolicy;
+import org.lastaflute.web.servlet.filter.multicall.MultiCallOption;
 
 /**
  * @author jflute
@@ -100,6 +104,53 @@ public interface ActionAdjustmentProvider {
     default void adjustActionResponseJustBefore(ActionResponse response) {
     }
 
+    /**
+     * Provide the timeout of asynchronous action execute, that returns CompletableFuture. <br>
+     * When timeout, the request is finished as error by the logging filter.
+     * @param execute The action execute of the request. (NotNull)
+     * @return The milliseconds for timeout. (MinusAllowed: if minus, container's default timeout)
+     */
+    default long provideAsyncExecuteTimeoutMillis(ActionExecute execute) {
+        return -1L; // as default
+    }
+
+    /**
+     * Provide the deadline of the request for the action execute, which begins when the action request processing starts. <br>
+     * Each SQL statement gets the query timeout equal to the remaining budget, and statements after the deadline are aborted.
+     * The deadline is also inherited by asynchronous processes, and the request is finished as '504 Gateway Timeout' when exceeded.
+     * @param execute The action execute of the request. (NotNull)
+     * @return The milliseconds of the budget. (MinusAllowed: if minus, no deadline)
+     */
+    default long provideRequestDeadlineMillis(ActionExecute execute) {
+        return -1L; // as default
+    }
+
+    /**
+     * Does it infer read-only transaction for GET request of the action execute? <br>
+     * If true, GET requests of actions that use default transaction are executed as read-only transaction,
+     * so no real transaction, read-only connection and routed to replica (slave) if it exists. <br>
+     * Update statements in the action throw exception so enable it if your GET actions only select.
+     * @param execute The action execute of the request. (NotNull)
+     * @return The determination, true or false. If false, declared (or default) transaction.
+     */
+    default boolean isReadOnlyTransactionInferredForGet(ActionExecute execute) {
+        return false; // as default
+    }
+
+    /**
+     * Does it use the action factory instead of container lookup to create the action? <br>
+     * If true, an action is created by container at boot (or the first creation if it cannot at boot)
+     * and its wiring is compiled to the factory,
+     * then later actions are created by constructor and field setters with pre-resolved singleton dependencies. <br>
+     * The action that the factory cannot reproduce (e.g. init methods) is created by container as before,
+     * and it is always disabled in hot deploy.
+     * @param mapping The action mapping of the action. (NotNull)
+     * @return The determination, true or false. If false, container lookup for every creation.
+     */
+    default boolean isActionFactoryEnabled(ActionMapping mapping) {
+        return false; // as default
+    }
+
     /**
      * Adjust form mapping from request parameters.
      * @return The option of form mapping. (NullAllowed: if null, no option)
@@ -107,4 +158,50 @@ public interface ActionAdjustmentProvider {
     default FormMappingOption adjustFormMapping() {
         return null;
     }
+
+    /**
+     * Adjust admission control that limits concurrent action requests adaptively from observed latency. <br>
+     * Excess requests are rejected as '503 Service Unavailable' (or 429) with 'Retry-After' header
+     * instead of queuing in the container.
+     * @return The option of admission control. (NullAllowed: if null, no admission control)
+     */
+    default AdmissionControlOption adjustAdmissionControl() {
+        return null; // as default
+    }
+
+    /**
+     * Provide the admission priority of the action execute, lower priority is rejected first when overloaded.
+     * <pre>
+     * e.g. if (execute.getActionMapping().getActionName().startsWith("report")) { return AdmissionPriority.SHEDDABLE; }
+     * </pre>
+     * @param execute The action execute of the request. (NotNull)
+     * @return The priority of admission. (NullAllowed: if null, normal priority)
+     */
+    default AdmissionPriority provideAdmissionPriority(ActionExecute execute) {
+        return null; // as default
+    }
+
+    /**
+     * Provide the CORS policy of the action execute, used by CORS engine (not by simple allow-origin hook).
+     * <pre>
+     * e.g. if (!execute.isApiExecute()) { return CorsPolicy.denied(); }
+     * </pre>
+     * @param execute The action execute of the request. (NotNull)
+     * @return The policy of CORS. (NullAllowed: if null, default policy of the engine)
+     */
+    default CorsPolicy provideCorsPolicy(ActionExecute execute) {
+        return null; // as default
+    }
+
+    /**
+     * Adjust multi-call endpoint that executes several action requests in one HTTP request. <br>
+     * The endpoint receives JSON of sub-requests and returns JSON of their statuses and bodies.
+     * <pre>
+     * e.g. return new MultiCallOption("/multicall").limitSubRequest(10).asParallel(4);
+     * </pre>
+     * @return The option of multi-call. (NullAllowed: if null, no multi-call endpoint)
+     */
+    default MultiCallOption adjustMultiCall() {
+        return null; // as default
+    }
 }
@@ -16,25 +16,31 @@
 package org.lastaflute.web.path;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
 import org.dbflute.helper.message.ExceptionMessageBuilder;
 import org.dbflute.optional.OptionalThing;
-import org.dbflute.util.DfCollectionUtil;
 import org.dbflute.util.DfStringUtil;
 import org.dbflute.util.Srl;
 import org.lastaflute.core.direction.FwAssistantDirector;
 import org.lastaflute.di.core.LaContainer;
+import org.lastaflute.di.core.smart.hot.HotdeployUtil;
 import org.lastaflute.di.naming.NamingConvention;
 import org.lastaflute.di.util.LdiStringUtil;
 import org.lastaflute.web.UrlChain;
 import org.lastaflute.web.direction.FwWebDirection;
 import org.lastaflute.web.exception.ActionClassPackageMismatchException;
 import org.lastaflute.web.ruts.config.ActionExecute;
+import org.lastaflute.web.ruts.config.ActionMapping;
 import org.lastaflute.web.util.LaActionExecuteUtil;
+import org.lastaflute.web.util.LaModuleConfigUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +75,12 @@ public class ActionPathResolver {
     /** The provider of action adjustment. (NotNull: after initialization) */
     protected ActionAdjustmentProvider actionAdjustmentProvider;
 
+    /** The cache of action path keyed by action type, not used in hot deploy. (NotNull) */
+    protected final Map<Class<?>, String> actionPathMap = new ConcurrentHashMap<Class<?>, String>();
+
+    /** The cache of compiled URL template keyed by action type, not used in hot deploy. (NotNull) */
+    protected final Map<Class<?>, ActionUrlTemplate> urlTemplateMap = new ConcurrentHashMap<Class<?>, ActionUrlTemplate>();
+
     // ===================================================================================
     //                                                                          Initialize
     //                                                                          ==========
@@ -294,26 +306,14 @@ public class ActionPathResolver {
         assertArgumentNotNull("actionType", actionType);
         assertArgumentNotNull("chain", chain);
         final String actionPath = resolveActionPath(actionType);
-        final List<Object> getParamList = extractGetParamList(chain);
-        final StringBuilder sb = new StringBuilder();
+        final StringBuilder sb = new StringBuilder(actionPath.length() + 32);
         sb.append(actionPath);
         buildUrlParts(sb, chain);
-        buildGetParam(sb, actionPath, getParamList);
+        buildGetParam(sb, actionPath, chain.getParamsOnGet());
         buildHashOnUrl(sb, chain);
         return sb.toString();
     }
 
-    protected List<Object> extractGetParamList(UrlChain chain) {
-        final Object[] paramsOnGet = chain != null ? chain.getParamsOnGet() : null;
-        final List<Object> getParamList;
-        if (paramsOnGet != null) {
-            getParamList = DfCollectionUtil.newArrayList(paramsOnGet);
-        } else {
-            getParamList = DfCollectionUtil.emptyList();
-        }
-        return getParamList;
-    }
-
     protected void buildUrlParts(StringBuilder sb, UrlChain chain) {
         final Object[] urlParts = chain != null ? chain.getUrlParts() : null;
         boolean existsParts = false;
@@ -330,9 +330,12 @@ public class ActionPathResolver {
         }
     }
 
-    protected void buildGetParam(StringBuilder sb, String actionPath, List<Object> getParamList) {
+    protected void buildGetParam(StringBuilder sb, String actionPath, Object[] paramsOnGet) { // as plain (not encoded) for compatible
+        if (paramsOnGet == null) {
+            return;
+        }
         int index = 0;
-        for (Object param : getParamList) {
+        for (Object param : paramsOnGet) {
             if (index == 0) { // first loop
                 sb.append("?");
             } else {
@@ -341,7 +344,7 @@ public class ActionPathResolver {
                 } else if (index % 2 == 1) {
                     sb.append("=");
                 } else { // no way
-                    String msg = "no way: url=" + actionPath + " get-params=" + getParamList;
+                    String msg = "no way: url=" + actionPath + " get-params=" + Arrays.asList(paramsOnGet);
                     throw new IllegalStateException(msg);
                 }
             }
@@ -357,10 +360,80 @@ public class ActionPathResolver {
         }
     }
 
+    // -----------------------------------------------------
+    //                                           URL Builder
+    //                                           -----------
+    /**
+     * Create the builder of action URL by the compiled template of the action. <br>
+     * e.g. ProductListAction with execute("sea") and moreUrl("a b", 3) to /product/list/sea/a%20b/3 <br>
+     * URL and GET parameters are encoded, and it does not contain context path.
+     * @param actionType The class type of action to build URL. (NotNull)
+     * @return The new-created builder, reusable in the same thread. (NotNull)
+     */
+    public ActionUrlBuilder urlBuilderOf(Class<?> actionType) {
+        assertArgumentNotNull("actionType", actionType);
+        return newActionUrlBuilder(findUrlTemplate(actionType));
+    }
+
+    protected ActionUrlBuilder newActionUrlBuilder(ActionUrlTemplate template) {
+        return new ActionUrlBuilder(template);
+    }
+
+    /**
+     * Find the URL template of the action, compiled from action path and URL patterns of execute methods.
+     * @param actionType The class type of action. (NotNull)
+     * @return The cached or new-created template. (NotNull)
+     */
+    public ActionUrlTemplate findUrlTemplate(Class<?> actionType) {
+        assertArgumentNotNull("actionType", actionType);
+        if (HotdeployUtil.isHotdeploy()) { // action classes may be changed
+            return createUrlTemplate(actionType);
+        }
+        final ActionUrlTemplate cached = urlTemplateMap.get(actionType);
+        if (cached != null) {
+            return cached;
+        }
+        final ActionUrlTemplate template = createUrlTemplate(actionType);
+        if (template.hasExecutePattern()) { // not cached if mapping is not ready yet
+            urlTemplateMap.put(actionType, template);
+        }
+        return template;
+    }
+
+    protected ActionUrlTemplate createUrlTemplate(Class<?> actionType) {
+        final Map<String, String> urlPatternMap = new LinkedHashMap<String, String>();
+        findActionMapping(actionType).ifPresent(mapping -> {
+            mapping.getExecuteMap().forEach((methodName, execute) -> urlPatternMap.put(methodName, execute.getUrlPattern()));
+        });
+        return new ActionUrlTemplate(resolveActionPath(actionType), urlPatternMap);
+    }
+
+    protected OptionalThing<ActionMapping> findActionMapping(Class<?> actionType) {
+        final String actionName = namingConvention.fromClassNameToComponentName(actionType.getName());
+        try {
+            return LaModuleConfigUtil.getModuleConfig().findActionMapping(actionName);
+        } catch (IllegalStateException e) { // e.g. no servlet context, basically no way
+            return OptionalThing.empty();
+        }
+    }
+
     // -----------------------------------------------------
     //                                    Resolve ActionPath
     //                                    ------------------
     public String resolveActionPath(Class<?> actionType) {
+        if (HotdeployUtil.isHotdeploy()) { // action classes may be changed
+            return doResolveActionPath(actionType);
+        }
+        final String cached = actionPathMap.get(actionType);
+        if (cached != null) {
+            return cached;
+        }
+        final String actionPath = doResolveActionPath(actionType);
+        actionPathMap.put(actionType, actionPath);
+        return actionPath;
+    }
+
+    protected String doResolveActionPath(Class<?> actionType) {
         final String delimiter = "/";
         return delimiter + decamelize(toSimpleActionName(actionType), delimiter) + delimiter;
     }
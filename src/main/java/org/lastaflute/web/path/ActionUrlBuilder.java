@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.path;
+
+import java.util.Arrays;
+
+/**
+ * The builder of action URL by the compiled template. <br>
+ * URL parameters are filled to placeholders of the execute method's URL pattern,
+ * and both URL and GET parameters are encoded. <br>
+ * It can be reused after build() for the same action, but it is not thread-safe.
+ * <pre>
+ * ActionUrlBuilder builder = actionPathResolver.urlBuilderOf(ProductListAction.class);
+ * String url = builder.execute("sea").moreUrl("a b", 3).param("sort", "name").build();
+ *  =&gt; /product/list/sea/a%20b/3?sort=name
+ * </pre>
+ * @author jflute
+ */
+public class ActionUrlBuilder {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final ActionUrlTemplate template; // not null
+    protected final StringBuilder buffer = new StringBuilder(64); // reused per build
+    protected String methodName; // null allowed: means index
+    protected Object[] urlParams = new Object[4]; // expanded if needs
+    protected int urlParamCount;
+    protected Object[] getParams = new Object[8]; // name and value pairs, expanded if needs
+    protected int getParamCount; // count of elements (not pairs)
+    protected Object hash; // null allowed
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param template The compiled URL template of the action. (NotNull)
+     */
+    public ActionUrlBuilder(ActionUrlTemplate template) {
+        this.template = template;
+    }
+
+    // ===================================================================================
+    //                                                                             Setting
+    //                                                                             =======
+    /**
+     * Select the execute method to be requested. (default is index)
+     * @param methodName The name of execute method e.g. sea (NotNull)
+     * @return this. (NotNull)
+     */
+    public ActionUrlBuilder execute(String methodName) {
+        assertArgumentNotNull("methodName", methodName);
+        this.methodName = methodName;
+        return this;
+    }
+
+    /**
+     * Add the URL parameters filled to placeholders of the URL pattern in order.
+     * @param parts The array of URL parameters. (NotNull, NotNullElement)
+     * @return this. (NotNull)
+     */
+    public ActionUrlBuilder moreUrl(Object... parts) {
+        assertArgumentNotNull("parts", parts);
+        for (Object part : parts) {
+            assertArgumentNotNull("part", part);
+            if (urlParamCount == urlParams.length) {
+                urlParams = Arrays.copyOf(urlParams, urlParams.length * 2);
+            }
+            urlParams[urlParamCount++] = part;
+        }
+        return this;
+    }
+
+    /**
+     * Add the GET parameter, encoded when building.
+     * @param name The name of parameter. (NotNull)
+     * @param value The value of parameter. (NullAllowed: as empty value)
+     * @return this. (NotNull)
+     */
+    public ActionUrlBuilder param(String name, Object value) {
+        assertArgumentNotNull("name", name);
+        if (getParamCount + 2 > getParams.length) {
+            getParams = Arrays.copyOf(getParams, getParams.length * 2);
+        }
+        getParams[getParamCount++] = name;
+        getParams[getParamCount++] = value;
+        return this;
+    }
+
+    /**
+     * Set the hash on URL, encoded when building.
+     * @param hash The hash without sharp e.g. profile (NotNull)
+     * @return this. (NotNull)
+     */
+    public ActionUrlBuilder hash(Object hash) {
+        assertArgumentNotNull("hash", hash);
+        this.hash = hash;
+        return this;
+    }
+
+    // ===================================================================================
+    //                                                                               Build
+    //                                                                               =====
+    /**
+     * Build the URL string and clear the settings for next building.
+     * @return The URL string to the action, not contain context path. (NotNull)
+     */
+    public String build() {
+        buffer.setLength(0);
+        buildTo(buffer);
+        final String url = buffer.toString();
+        clear();
+        return url;
+    }
+
+    /**
+     * Append the URL to the specified builder, the settings are not cleared.
+     * @param sb The string builder to append, e.g. reused by caller. (NotNull)
+     */
+    public void buildTo(StringBuilder sb) {
+        assertArgumentNotNull("sb", sb);
+        template.appendPath(sb, methodName, urlParams, urlParamCount);
+        for (int i = 0; i < getParamCount; i += 2) {
+            sb.append(i == 0 ? '?' : '&');
+            ActionUrlTemplate.appendEncoded(sb, (String) getParams[i]);
+            sb.append('=');
+            final Object value = getParams[i + 1];
+            if (value != null) {
+                ActionUrlTemplate.appendEncoded(sb, value.toString());
+            }
+        }
+        if (hash != null) {
+            ActionUrlTemplate.appendEncoded(sb.append('#'), hash.toString());
+        }
+    }
+
+    /**
+     * Clear the settings to reuse this builder.
+     * @return this. (NotNull)
+     */
+    public ActionUrlBuilder clear() {
+        methodName = null;
+        Arrays.fill(urlParams, 0, urlParamCount, null);
+        urlParamCount = 0;
+        Arrays.fill(getParams, 0, getParamCount, null);
+        getParamCount = 0;
+        hash = null;
+        return this;
+    }
+
+    // ===================================================================================
+    //                                                                        Small Helper
+    //                                                                        ============
+    protected void assertArgumentNotNull(String variableName, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("The argument '" + variableName + "' should not be null.");
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public ActionUrlTemplate getTemplate() {
+        return template;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.path;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dbflute.helper.message.ExceptionMessageBuilder;
+
+/**
+ * The URL template of action compiled from action path and URL patterns of execute methods. <br>
+ * It is immutable and cached per action type so building URL does not resolve action path again.
+ * <pre>
+ * e.g. ProductListAction, index(int pageNumber), sea(String keyword, int pageNumber)
+ *  index with 3         =&gt; /product/list/3
+ *  sea with "a b" and 3 =&gt; /product/list/sea/a%20b/3
+ * </pre>
+ * @author jflute
+ */
+public class ActionUrlTemplate {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final String INDEX_METHOD = "index";
+    protected static final String PLACEHOLDER = "{}";
+    protected static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final String actionPath; // not null e.g. /product/list/
+    protected final Map<String, String[]> patternLiteralsMap; // not null, read-only, key is method name
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param actionPath The path of action, starts and ends with slash e.g. /product/list/ (NotNull)
+     * @param urlPatternMap The map of URL pattern keyed by execute method name e.g. sea: sea/{} (NotNull, EmptyAllowed: unknown)
+     */
+    public ActionUrlTemplate(String actionPath, Map<String, String> urlPatternMap) {
+        this.actionPath = actionPath;
+        final Map<String, String[]> literalsMap = new LinkedHashMap<String, String[]>(urlPatternMap.size());
+        urlPatternMap.forEach((methodName, urlPattern) -> {
+            literalsMap.put(methodName, compileUrlPattern(methodName, urlPattern));
+        });
+        this.patternLiteralsMap = Collections.unmodifiableMap(literalsMap);
+    }
+
+    protected String[] compileUrlPattern(String methodName, String urlPattern) { // literals between placeholders
+        if (INDEX_METHOD.equals(methodName) && INDEX_METHOD.equals(urlPattern)) { // index() *no parameter
+            return new String[] { "" };
+        }
+        int count = 0;
+        for (int index = urlPattern.indexOf(PLACEHOLDER); index >= 0; index = urlPattern.indexOf(PLACEHOLDER, index + 2)) {
+            ++count;
+        }
+        final String[] literals = new String[count + 1];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            final int index = urlPattern.indexOf(PLACEHOLDER, start);
+            literals[i] = urlPattern.substring(start, index);
+            start = index + PLACEHOLDER.length();
+        }
+        literals[count] = urlPattern.substring(start);
+        return literals;
+    }
+
+    // ===================================================================================
+    //                                                                         Append Path
+    //                                                                         ===========
+    /**
+     * Append the path of the execute method filling URL parameters.
+     * @param sb The string builder to append. (NotNull)
+     * @param methodName The name of execute method. (NullAllowed: means index)
+     * @param urlParams The array of URL parameters, only first elements by the count are used. (NotNull, EmptyAllowed)
+     * @param urlParamCount The count of URL parameters to fill. (ZeroAllowed)
+     */
+    public void appendPath(StringBuilder sb, String methodName, Object[] urlParams, int urlParamCount) {
+        sb.append(actionPath);
+        final String[] literals = patternLiteralsMap.get(methodName != null ? methodName : INDEX_METHOD);
+        if (literals == null) { // unknown pattern so same as moreUrl()
+            if (methodName != null && !INDEX_METHOD.equals(methodName)) {
+                sb.append(methodName).append(urlParamCount > 0 ? "/" : "");
+            }
+            for (int i = 0; i < urlParamCount; i++) {
+                appendEncoded(sb.append(i > 0 ? "/" : ""), toUrlParamValue(methodName, urlParams[i]));
+            }
+            return;
+        }
+        if (urlParamCount > literals.length - 1) {
+            throwActionUrlParameterOverflowException(methodName, urlParams, urlParamCount, literals.length - 1);
+        }
+        final boolean filled = urlParamCount == literals.length - 1;
+        sb.append(literals[0]);
+        for (int i = 0; i < urlParamCount; i++) {
+            appendEncoded(sb, toUrlParamValue(methodName, urlParams[i]));
+            if (filled || i + 1 < urlParamCount) { // rear literal after omitted parameters is not needed
+                sb.append(literals[i + 1]);
+            }
+        }
+        if (!filled && sb.length() > actionPath.length() && sb.charAt(sb.length() - 1) == '/') {
+            sb.setLength(sb.length() - 1); // e.g. optional parameter omitted: sea/{} => sea
+        }
+    }
+
+    protected String toUrlParamValue(String methodName, Object urlParam) {
+        if (urlParam == null) {
+            String msg = "The URL parameter should not be null: method=" + methodName + ", actionPath=" + actionPath;
+            throw new IllegalArgumentException(msg);
+        }
+        return urlParam.toString();
+    }
+
+    protected void throwActionUrlParameterOverflowException(String methodName, Object[] urlParams, int urlParamCount,
+            int placeholderCount) {
+        final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+        br.addNotice("Too many URL parameters for the execute method.");
+        br.addItem("Action Path");
+        br.addElement(actionPath);
+        br.addItem("Execute Method");
+        br.addElement(methodName != null ? methodName : INDEX_METHOD);
+        br.addItem("URL Parameters");
+        for (int i = 0; i < urlParamCount; i++) {
+            br.addElement(urlParams[i]);
+        }
+        br.addItem("Placeholder Count");
+        br.addElement(placeholderCount);
+        final String msg = br.buildExceptionMessage();
+        throw new IllegalArgumentException(msg);
+    }
+
+    // ===================================================================================
+    //                                                                          URL Encode
+    //                                                                          ==========
+    /**
+     * Append the value as percent-encoded UTF-8, unreserved characters are not encoded.
+     * @param sb The string builder to append. (NotNull)
+     * @param value The plain value to be encoded. (NotNull)
+     */
+    public static void appendEncoded(StringBuilder sb, String value) {
+        final int length = value.length();
+        int plainEnd = 0;
+        while (plainEnd < length && isUnreserved(value.charAt(plainEnd))) {
+            ++plainEnd;
+        }
+        if (plainEnd == length) { // mostly here, no allocation
+            sb.append(value);
+            return;
+        }
+        sb.append(value, 0, plainEnd);
+        final byte[] bytes = value.substring(plainEnd).getBytes(StandardCharsets.UTF_8);
+        for (byte current : bytes) {
+            final char ch = (char) (current & 0xFF);
+            if (isUnreserved(ch)) {
+                sb.append(ch);
+            } else {
+                sb.append('%').append(HEX_CHARS[(ch >> 4) & 0x0F]).append(HEX_CHARS[ch & 0x0F]);
+            }
+        }
+    }
+
+    protected static boolean isUnreserved(char ch) { // RFC 3986
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') //
+                || ch == '-' || ch == '.' || ch == '_' || ch == '~';
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "template:{" + actionPath + ", " + patternLiteralsMap.keySet() + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public String getActionPath() {
+        return actionPath;
+    }
+
+    public boolean hasExecutePattern() {
+        return !patternLiteralsMap.isEmpty();
+    }
+}
@@ -17,21 +17,38 @@ package org.lastaflute.web.ruts;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.dbflute.helper.message.ExceptionMessageBuilder;
+import org.dbflute.hook.CallbackContext;
 import org.dbflute.optional.OptionalThing;
 import org.lastaflute.core.direction.FwAssistantDirector;
 import org.lastaflute.core.magic.ThreadCacheContext;
+import org.lastaflute.core.magic.deadline.RequestDeadline;
+import org.lastaflute.core.magic.deadline.RequestDeadlineContext;
+import org.lastaflute.core.magic.deadline.RequestDeadlineStatistics;
+import org.lastaflute.core.magic.deadline.exception.RequestDeadlineExceededException;
 import org.lastaflute.core.util.ContainerUtil;
+import org.lastaflute.db.dbflute.callbackcontext.RequestDeadlineBehaviorCommandHook;
 import org.lastaflute.db.jta.stage.NoneTransactionStage;
 import org.lastaflute.db.jta.stage.TransactionStage;
 import org.lastaflute.db.jta.stage.VestibuleTxProvider;
+import org.lastaflute.di.core.ExternalContext;
+import org.lastaflute.di.core.smart.hot.HotdeployUtil;
 import org.lastaflute.di.helper.beans.PropertyDesc;
 import org.lastaflute.web.callback.ActionRuntime;
 import org.lastaflute.web.exception.RequestForwardFailureException;
 import org.lastaflute.web.path.ActionAdjustmentProvider;
+import org.lastaflute.web.response.ActionResponse;
 import org.lastaflute.web.ruts.config.ActionExecute;
 import org.lastaflute.web.ruts.config.ActionFormProperty;
 import org.lastaflute.web.ruts.config.ModuleConfig;
@@ -39,13 +56,21 @@ import org.lastaflute.web.ruts.process.ActionCoinHelper;
 import org.lastaflute.web.ruts.process.ActionFormMapper;
 import org.lastaflute.web.ruts.process.ActionResponseReflector;
 import org.lastaflute.web.ruts.process.RequestUrlParam;
+import org.lastaflute.web.servlet.filter.RequestLoggingFilter;
 import org.lastaflute.web.servlet.request.RequestManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author modified by jflute (originated in Seasar and Struts)
  */
 public class ActionRequestProcessor {
 
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(ActionRequestProcessor.class);
+
     // ===================================================================================
     //                                                                           Attribute
     //                                                                           =========
@@ -94,6 +119,7 @@ public class ActionRequestProcessor {
     public void process(ActionExecute execute, RequestUrlParam urlParam) throws IOException, ServletException {
         // initializing and clearing thread cache here so you can use thread cache in your action execute
         final boolean exists = ThreadCacheContext.exists();
+        final boolean deadlineBegun = !exists && beginRequestDeadline(execute); // only top-level, forward inherits it
         try {
             if (!exists) { // inherits existing cache when nested call e.g. forward
                 ThreadCacheContext.initialize();
@@ -101,12 +127,50 @@ public class ActionRequestProcessor {
             final ActionRuntime runtime = createActionRuntime(execute, urlParam);
             fire(runtime); // #to_action
         } finally {
+            if (deadlineBegun) {
+                RequestDeadlineContext.clear();
+            }
             if (!exists) {
                 ThreadCacheContext.clear();
             }
         }
     }
 
+    // -----------------------------------------------------
+    //                                      Request Deadline
+    //                                      ----------------
+    protected boolean beginRequestDeadline(ActionExecute execute) {
+        final ActionAdjustmentProvider adjustmentProvider = getAssistantDirector().assistWebDirection().assistActionAdjustmentProvider();
+        final long budgetMillis = adjustmentProvider.provideRequestDeadlineMillis(execute);
+        if (budgetMillis < 0) {
+            return false;
+        }
+        final RequestDeadline deadline = new RequestDeadline(execute.toSimpleMethodExp(), budgetMillis);
+        RequestDeadlineContext.setDeadlineOnThread(deadline);
+        // statements get query timeout by remaining budget (callback context is cleared after action)
+        CallbackContext.setBehaviorCommandHookOnThread(new RequestDeadlineBehaviorCommandHook(deadline));
+        return true;
+    }
+
+    protected void recordRequestDeadlineExceeded(RuntimeException cause) {
+        final RequestDeadline deadline = RequestDeadlineContext.getDeadlineOnThread();
+        if (deadline == null) {
+            return;
+        }
+        Throwable current = cause;
+        while (current != null) {
+            if (current instanceof RequestDeadlineExceededException) {
+                getRequestDeadlineStatistics().registerExceeded(deadline);
+                return;
+            }
+            current = current.getCause();
+        }
+    }
+
+    protected RequestDeadlineStatistics getRequestDeadlineStatistics() { // lazy, only when exceeded
+        return ContainerUtil.getComponent(RequestDeadlineStatistics.class);
+    }
+
     protected ActionRuntime createActionRuntime(ActionExecute execute, RequestUrlParam urlParam) {
         return new ActionRuntime(execute, urlParam);
     }
@@ -130,7 +194,11 @@ public class ActionRequestProcessor {
         final VirtualAction action = createAction(runtime, reflector);
         final NextJourney journey = performAction(action, form, runtime); // #to_action
 
-        toNext(runtime, journey);
+        if (runtime.isAsyncResponsePending()) { // the execute method returns future
+            toNextAsync(runtime, reflector);
+        } else { // mainly here
+            toNext(runtime, journey);
+        }
     }
 
     // ===================================================================================
@@ -194,6 +262,7 @@ public class ActionRequestProcessor {
         try {
             return action.execute(form); // #to_action
         } catch (RuntimeException e) {
+            recordRequestDeadlineExceeded(e);
             return handleActionFailureException(action, form, runtime, e);
         } finally {
             actionCoinHelper.clearContextJustInCase();
@@ -274,6 +343,208 @@ public class ActionRequestProcessor {
         throw new RequestForwardFailureException(msg, e);
     }
 
+    // ===================================================================================
+    //                                                                       to Next Async
+    //                                                                       =============
+    /**
+     * Go to next journey after the future of action response is completed. <br>
+     * The container thread is released while waiting, and the response is reflected in the completion thread
+     * that inherits contexts of the action execute, e.g. thread cache, access context, callback context.
+     * <pre>
+     * e.g. execute method
+     *  &#064;Execute
+     *  public CompletableFuture&lt;JsonResponse&lt;SeaBean&gt;&gt; index() {
+     *      return remoteApi.requestSea().thenApply(sea -&gt; asJson(mappingToBean(sea)));
+     *  }
+     * </pre>
+     * <p>The action hooks (e.g. hookFinally()) have been already called when the response is reflected.
+     * And the filters should be async-supported in your web.xml, otherwise it waits for the future synchronously.</p>
+     * @param runtime The runtime meta of action execute, which has the future of response. (NotNull)
+     * @param reflector The reflector of action response for the request. (NotNull)
+     * @throws IOException When the action fails about the IO.
+     * @throws ServletException When the action fails about the Servlet.
+     */
+    protected void toNextAsync(ActionRuntime runtime, ActionResponseReflector reflector) throws IOException, ServletException {
+        final CompletableFuture<? extends ActionResponse> future = runtime.getAsyncResponse();
+        final HttpServletRequest request = getRequestManager().getRequest();
+        if (!isAsyncResponseStartable(runtime, request, future)) { // e.g. already completed
+            final ActionResponse response = waitForAsyncResponse(runtime, future);
+            toNext(runtime, reflectAsyncResponse(runtime, reflector, response));
+            return;
+        }
+        final HttpServletResponse response = getRequestManager().getResponseManager().getResponse();
+        final AsyncContext asyncContext = request.startAsync(request, response); // container thread released after return
+        final long timeoutMillis = provideAsyncExecuteTimeoutMillis(runtime);
+        if (timeoutMillis >= 0) {
+            asyncContext.setTimeout(timeoutMillis);
+        }
+        final AtomicBoolean settled = new AtomicBoolean(); // for exclusive of completion and timeout
+        asyncContext.addListener(createAsyncResponseListener(runtime, future, settled));
+        future.whenCompleteAsync((actionResponse, cause) -> { // in completion thread
+            if (settled.compareAndSet(false, true)) { // not timeout
+                completeAsyncResponse(runtime, reflector, asyncContext, actionResponse, cause);
+            } else {
+                showAsyncResponseAbandoned(runtime, cause);
+            }
+        } , runtime.getAsyncCompletionExecutor());
+    }
+
+    protected boolean isAsyncResponseStartable(ActionRuntime runtime, HttpServletRequest request,
+            CompletableFuture<? extends ActionResponse> future) {
+        // hot deploy class loader cannot be inherited to other thread so synchronous
+        return !future.isDone() && request.isAsyncSupported() && !request.isAsyncStarted() && !HotdeployUtil.isHotdeploy();
+    }
+
+    protected ActionResponse waitForAsyncResponse(ActionRuntime runtime, CompletableFuture<? extends ActionResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    protected long provideAsyncExecuteTimeoutMillis(ActionRuntime runtime) {
+        final ActionAdjustmentProvider adjustmentProvider = getAssistantDirector().assistWebDirection().assistActionAdjustmentProvider();
+        return adjustmentProvider.provideAsyncExecuteTimeoutMillis(runtime.getActionExecute());
+    }
+
+    protected AsyncListener createAsyncResponseListener(ActionRuntime runtime, CompletableFuture<? extends ActionResponse> future,
+            AtomicBoolean settled) {
+        return new AsyncListener() {
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (settled.compareAndSet(false, true)) { // response is handled by logging filter
+                    handleAsyncResponseTimeout(runtime, future);
+                }
+            }
+
+            public void onStartAsync(AsyncEvent event) throws IOException {
+            }
+
+            public void onError(AsyncEvent event) throws IOException {
+                settled.set(true); // response is handled by logging filter
+            }
+
+            public void onComplete(AsyncEvent event) throws IOException {
+            }
+        };
+    }
+
+    protected void handleAsyncResponseTimeout(ActionRuntime runtime, CompletableFuture<? extends ActionResponse> future) {
+        // cancel() of completable future does not interrupt the running process (and the flag is ignored)
+        // so this only settles the future, the abandoned completion is logged later,
+        // the running process should be bounded by itself e.g. request deadline (inherited to async process)
+        future.cancel(false);
+    }
+
+    // -----------------------------------------------------
+    //                               Complete Async Response
+    //                               -----------------------
+    protected void completeAsyncResponse(ActionRuntime runtime, ActionResponseReflector reflector, AsyncContext asyncContext,
+            ActionResponse actionResponse, Throwable cause) {
+        final ExternalContext externalContext = ContainerUtil.retrieveExternalContext();
+        final Object previousRequest = externalContext.getRequest();
+        final Object previousResponse = externalContext.getResponse();
+        boolean dispatched = false;
+        try {
+            externalContext.setRequest(asyncContext.getRequest());
+            externalContext.setResponse(asyncContext.getResponse());
+            if (cause != null) {
+                throw cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+            }
+            final NextJourney journey = reflectAsyncResponse(runtime, reflector, actionResponse);
+            dispatched = toNextInAsync(runtime, asyncContext, journey);
+        } catch (Throwable e) {
+            handleAsyncResponseFailure(runtime, asyncContext, e);
+        } finally {
+            try {
+                if (!dispatched) {
+                    asyncContext.complete();
+                }
+            } finally {
+                actionCoinHelper.clearContextJustInCase();
+                externalContext.setRequest(previousRequest);
+                externalContext.setResponse(previousResponse);
+            }
+        }
+    }
+
+    protected NextJourney reflectAsyncResponse(ActionRuntime runtime, ActionResponseReflector reflector, ActionResponse response) {
+        assertAsyncResponseDefined(runtime, response);
+        runtime.setActionResponse(response);
+        final TransactionStage stage = prepareVestibuleTxStage();
+        final NextJourney journey = (NextJourney) stage.selectable(tx -> {
+            tx.returns(reflector.reflect(response)); /* response handling in transaction as synchronous */
+        } , runtime.getActionExecute().getTransactionGenre()).get(); // because of not null
+        response.getAfterTxCommitHook().ifPresent(afterTx -> {
+            afterTx.hook();
+        });
+        return journey;
+    }
+
+    protected void assertAsyncResponseDefined(ActionRuntime runtime, ActionResponse response) {
+        if (response == null || response.isUndefined()) {
+            final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+            br.addNotice("The future of execute method was completed by null or undefined response.");
+            br.addItem("Advice");
+            br.addElement("The future should be completed by defined action response.");
+            br.addElement("For example:");
+            br.addElement("  (x):");
+            br.addElement("    return future.thenApply(sea -> null); // *NG");
+            br.addElement("  (o):");
+            br.addElement("    return future.thenApply(sea -> asJson(sea)); // OK");
+            br.addItem("Action Runtime");
+            br.addElement(runtime);
+            br.addItem("Completed Response");
+            br.addElement(response);
+            final String msg = br.buildExceptionMessage();
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    protected boolean toNextInAsync(ActionRuntime runtime, AsyncContext asyncContext, NextJourney journey) throws IOException {
+        if (journey.isUndefined()) { // e.g. JSON handling
+            return false;
+        }
+        if (journey.isRedirectTo()) {
+            doRedirect(runtime, journey);
+            return false;
+        } else {
+            exportFormPropertyToRequest(runtime);
+            exportDisplayDataToRequest(runtime);
+            asyncContext.dispatch(journey.getRoutingPath()); // forward in asynchronous
+            return true;
+        }
+    }
+
+    protected void exportDisplayDataToRequest(ActionRuntime runtime) {
+        final RequestManager requestManager = getRequestManager();
+        runtime.getDisplayDataMap().forEach((key, value) -> requestManager.setAttribute(key, value));
+    }
+
+    protected void handleAsyncResponseFailure(ActionRuntime runtime, AsyncContext asyncContext, Throwable cause) {
+        // logged as error by logging filter when the asynchronous process is completed
+        asyncContext.getRequest().setAttribute(RequestLoggingFilter.ERROR_ATTRIBUTE_KEY, cause);
+        final HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        if (!response.isCommitted()) {
+            try {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } catch (IOException | RuntimeException continued) {
+                logger.debug("*Failed to send error for the asynchronous failure: " + runtime, continued);
+            }
+        }
+    }
+
+    protected void showAsyncResponseAbandoned(ActionRuntime runtime, Throwable cause) {
+        if (logger.isDebugEnabled()) {
+            final String causeExp = cause != null ? " with " + cause.getClass().getSimpleName() : "";
+            logger.debug("#flow ...Abandoning the completed response after timeout{}: {}", causeExp, runtime);
+        }
+    }
+
     // ===================================================================================
     //                                                                           Component
     //                                                                           =========
@@ -17,14 +17,18 @@ package org.lastaflute.web.ruts;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.dbflute.helper.message.ExceptionMessageBuilder;
 import org.dbflute.optional.OptionalThing;
+import org.lastaflute.core.direction.FwAssistantDirector;
 import org.lastaflute.core.magic.ThreadCacheContext;
+import org.lastaflute.core.magic.async.AsyncManager;
+import org.lastaflute.core.util.ContainerUtil;
 import org.lastaflute.db.jta.stage.TransactionGenre;
 import org.lastaflute.db.jta.stage.TransactionStage;
 import org.lastaflute.web.callback.ActionHook;
@@ -36,6 +40,7 @@ import org.lastaflute.web.exception.ExecuteMethodReturnNullException;
 import org.lastaflute.web.exception.ExecuteMethodReturnTypeNotResponseException;
 import org.lastaflute.web.exception.ExecuteMethodReturnUndefinedResponseException;
 import org.lastaflute.web.exception.LonelyValidatorAnnotationException;
+import org.lastaflute.web.path.ActionAdjustmentProvider;
 import org.lastaflute.web.response.ActionResponse;
 import org.lastaflute.web.ruts.config.ActionExecute;
 import org.lastaflute.web.ruts.config.ActionFormMeta;
@@ -134,8 +139,13 @@ public class GodHandableAction implements VirtualAction {
     protected NextJourney transactionalExecute(OptionalThing<VirtualActionForm> form, ActionHook hook) {
         final ExecuteTransactionResult result = (ExecuteTransactionResult) stage.selectable(tx -> {
             final ActionResponse response = actuallyExecute(form, hook); /* #to_action */
-            assertExecuteMethodResponseDefined(response);
-            final NextJourney journey = reflect(response); /* also response handling in transaction */
+            final NextJourney journey;
+            if (runtime.isAsyncResponsePending()) { /* reflected when the future is completed */
+                journey = NextJourney.undefined();
+            } else { /* mainly here */
+                assertExecuteMethodResponseDefined(response);
+                journey = reflect(response); /* also response handling in transaction */
+            }
             boolean rollbackOnly = false;
             if (runtime.hasValidationError()) {
                 tx.rollbackOnly();
@@ -194,7 +204,23 @@ public class GodHandableAction implements VirtualAction {
     }
 
     protected TransactionGenre getExecuteTransactionGenre() {
-        return execute.getTransactionGenre();
+        if (execute.isAsyncExecute()) { // the transaction is bound to this thread so it cannot cover the returned future
+            return TransactionGenre.NONE; // the completed response is reflected in its own transaction of the genre
+        }
+        final TransactionGenre genre = execute.getTransactionGenre();
+        if (TransactionGenre.REQUIRES_NEW.equals(genre) && isReadOnlyTransactionInferred()) { // only default genre
+            return TransactionGenre.READ_ONLY;
+        }
+        return genre;
+    }
+
+    protected boolean isReadOnlyTransactionInferred() {
+        final String httpMethod = requestManager.getRequest().getMethod();
+        return "GET".equalsIgnoreCase(httpMethod) && getActionAdjustmentProvider().isReadOnlyTransactionInferredForGet(execute);
+    }
+
+    protected ActionAdjustmentProvider getActionAdjustmentProvider() {
+        return ContainerUtil.getComponent(FwAssistantDirector.class).assistWebDirection().assistActionAdjustmentProvider();
     }
 
     protected void hookAfterTxCommitIfExists(final ExecuteTransactionResult result) {
@@ -322,6 +348,9 @@ public class GodHandableAction implements VirtualAction {
         final Object[] requestArgs = toRequestArgs(optForm);
         final Object result = invokeExecuteMethod(execute.getExecuteMethod(), requestArgs); // #to_action
         assertExecuteReturnNotNull(requestArgs, result);
+        if (result instanceof CompletableFuture<?>) { // asynchronous execute
+            return prepareAsyncResponse((CompletableFuture<?>) result);
+        }
         assertExecuteMethodReturnTypeActionResponse(requestArgs, result);
         final ActionResponse response = (ActionResponse) result;
         runtime.setActionResponse(response); // always set here because of main
@@ -329,12 +358,28 @@ public class GodHandableAction implements VirtualAction {
     }
 
     protected Object[] toRequestArgs(OptionalThing<VirtualActionForm> optForm) {
-        final List<Object> paramList = new ArrayList<Object>(4);
-        execute.getUrlParamArgs().ifPresent(args -> {
-            paramList.addAll(runtime.getRequestUrlParam().getUrlParamValueMap().values());
-        });
-        optForm.ifPresent(form -> paramList.add(form.getRealForm()));
-        return !paramList.isEmpty() ? paramList.toArray(new Object[paramList.size()]) : EMPTY_ARRAY;
+        // fixed plan compiled at mapping time, URL parameters are set by index without intermediate list
+        final Map<Integer, Object> urlParamValueMap;
+        if (execute.getUrlParamArgs().isPresent()) {
+            urlParamValueMap = runtime.getRequestUrlParam().getUrlParamValueMap();
+        } else {
+            urlParamValueMap = Collections.emptyMap();
+        }
+        final Object realForm = optForm.map(form -> form.getRealForm()).orElse(null);
+        return execute.getExecuteArgPlan().assembleArgs(urlParamValueMap, realForm);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected ActionResponse prepareAsyncResponse(CompletableFuture<?> future) {
+        // the contexts e.g. access context are cleared when this action ends
+        // so the executor for completion captures them here (in action execute)
+        final CompletableFuture<? extends ActionResponse> asyncResponse = (CompletableFuture<? extends ActionResponse>) future;
+        runtime.setAsyncResponse(asyncResponse, getAsyncManager().inheritingExecutor()); // checked when completed
+        return ActionResponse.undefined(); // means pending
+    }
+
+    protected AsyncManager getAsyncManager() {
+        return ContainerUtil.getComponent(AsyncManager.class);
     }
 
     protected void showAction(ActionRuntime runtime) {
@@ -20,10 +20,15 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
 import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
@@ -34,6 +39,7 @@ import org.dbflute.optional.OptionalThing;
 import org.dbflute.util.Srl;
 import org.hibernate.validator.constraints.NotBlank;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.lastaflute.core.util.LaDBFluteUtil;
 import org.lastaflute.db.jta.stage.TransactionGenre;
 import org.lastaflute.web.api.ApiAction;
 import org.lastaflute.web.exception.ActionFormNotFoundException;
@@ -69,6 +75,7 @@ public class ActionExecute implements Serializable {
     protected final ActionMapping actionMapping; // not null
     protected final Method executeMethod; // not null
     protected final boolean indexMethod;
+    protected final boolean asyncExecute; // returns CompletableFuture
     protected final TransactionGenre transactionGenre; // not null
     protected final boolean suppressValidatorCallCheck;
     protected final OptionalThing<Integer> sqlExecutionCountLimit;
@@ -80,6 +87,7 @@ public class ActionExecute implements Serializable {
     protected final Map<Integer, Class<?>> optionalGenericTypeList; // not null, read-only, key is argument index
     protected final OptionalThing<UrlParamArgs> urlParamArgs;
     protected final OptionalThing<ActionFormMeta> formMeta;
+    protected transient volatile ExecuteArgPlan executeArgPlan; // not null after construction, lazy after deserialization
 
     // -----------------------------------------------------
     //                                           URL Pattern
@@ -99,6 +107,7 @@ public class ActionExecute implements Serializable {
         this.actionMapping = actionMapping;
         this.executeMethod = executeMethod;
         this.indexMethod = executeMethod.getName().equals("index");
+        this.asyncExecute = CompletableFuture.class.equals(executeMethod.getReturnType());
         this.transactionGenre = chooseTransactionGenre(executeOption);
         this.suppressValidatorCallCheck = executeOption.isSuppressValidatorCallCheck();
         this.sqlExecutionCountLimit = createOptionalSqlExecutionCountLimit(executeOption);
@@ -109,6 +118,7 @@ public class ActionExecute implements Serializable {
         executeArgAnalyzer.analyzeExecuteArg(executeMethod, executeArgBox);
         this.urlParamTypeList = executeArgBox.getUrlParamTypeList(); // not null, empty allowed
         this.optionalGenericTypeList = executeArgBox.getOptionalGenericTypeMap();
+        prepareUrlParamClassificationCodeTable(this.urlParamTypeList, this.optionalGenericTypeList);
         this.formMeta = prepareFormMeta(executeArgBox.getFormType(), executeArgBox.getListFormParameter());
 
         // URL pattern (using urlParamTypeList)
@@ -124,15 +134,37 @@ public class ActionExecute implements Serializable {
         // defined parameter again (uses URL pattern result)
         this.urlParamArgs = prepareUrlParamArgs(this.urlParamTypeList, this.optionalGenericTypeList);
 
+        // argument plan (uses defined parameter)
+        this.executeArgPlan = prepareExecuteArgPlan();
+
         // check finally
         checkExecuteMethod(executeArgAnalyzer);
     }
 
+    // -----------------------------------------------------
+    //                                  Classification Table
+    //                                  --------------------
+    protected void prepareUrlParamClassificationCodeTable(List<Class<?>> urlParamTypeList, Map<Integer, Class<?>> optionalGenericTypeMap) {
+        final List<Class<?>> candidateList = new ArrayList<Class<?>>(urlParamTypeList);
+        candidateList.addAll(optionalGenericTypeMap.values());
+        for (Class<?> paramType : candidateList) {
+            if (LaDBFluteUtil.isClassificationType(paramType)) { // eagerly for URL parameter
+                LaDBFluteUtil.prepareClassificationCodeTable(paramType);
+            }
+        }
+    }
+
     // -----------------------------------------------------
     //                                           Transaction
     //                                           -----------
     protected TransactionGenre chooseTransactionGenre(ExecuteOption executeOption) {
-        return executeOption.isSuppressTransaction() ? TransactionGenre.NONE : getDefaultTransactionGenre();
+        if (executeOption.isSuppressTransaction()) {
+            return TransactionGenre.NONE;
+        } else if (executeOption.isReadOnlyTransaction()) {
+            return TransactionGenre.READ_ONLY;
+        } else {
+            return getDefaultTransactionGenre();
+        }
     }
 
     protected TransactionGenre getDefaultTransactionGenre() {
@@ -261,6 +293,17 @@ public class ActionExecute implements Serializable {
         throw new UrlParamArgsNotFoundException(msg);
     }
 
+    // -----------------------------------------------------
+    //                                      Execute Arg Plan
+    //                                      ----------------
+    protected ExecuteArgPlan prepareExecuteArgPlan() {
+        return newExecuteArgPlan(urlParamTypeList.size(), formMeta.isPresent());
+    }
+
+    protected ExecuteArgPlan newExecuteArgPlan(int urlParamCount, boolean formArg) {
+        return new ExecuteArgPlan(urlParamCount, formArg);
+    }
+
     // -----------------------------------------------------
     //                                           URL Pattern
     //                                           -----------
@@ -344,7 +387,8 @@ public class ActionExecute implements Serializable {
     }
 
     protected boolean isAllowedReturnType() {
-        return ActionResponse.class.isAssignableFrom(executeMethod.getReturnType());
+        final Class<?> responseType = getResponseType();
+        return responseType != null && ActionResponse.class.isAssignableFrom(responseType);
     }
 
     protected void throwExecuteMethodReturnTypeNotResponseException() {
@@ -360,6 +404,10 @@ public class ActionExecute implements Serializable {
         br.addElement("    public JsonResponse index(SeaForm form) { // OK");
         br.addElement("  (o):");
         br.addElement("    public StreamResponse index(SeaForm form) { // OK");
+        br.addElement("  (o):");
+        br.addElement("    public CompletableFuture<JsonResponse<SeaBean>> index(SeaForm form) { // OK: asynchronous");
+        br.addElement("  (x):");
+        br.addElement("    public CompletableFuture<?> index(SeaForm form) { // *NG: needs response type");
         br.addItem("Execute Method");
         br.addElement(LaActionExecuteUtil.buildSimpleMethodExp(executeMethod));
         final String msg = br.buildExceptionMessage();
@@ -620,13 +668,46 @@ public class ActionExecute implements Serializable {
     }
 
     protected boolean isReturnApiResponse() {
-        return ApiResponse.class.isAssignableFrom(getExecuteMethod().getReturnType());
+        final Class<?> responseType = getResponseType();
+        return responseType != null && ApiResponse.class.isAssignableFrom(responseType);
     }
 
     protected boolean isImpelementApiAction() {
         return ApiAction.class.isAssignableFrom(getActionMapping().getActionDef().getComponentClass());
     }
 
+    // ===================================================================================
+    //                                                                       Response Type
+    //                                                                       =============
+    /**
+     * Get the type of action response returned by the execute method. <br>
+     * If asynchronous execute, it is the generic type of the future, e.g. JsonResponse of CompletableFuture&lt;JsonResponse&lt;SeaBean&gt;&gt;.
+     * @return The type of action response. (NullAllowed: when the future has no concrete generic type)
+     */
+    public Class<?> getResponseType() {
+        if (!asyncExecute) {
+            return executeMethod.getReturnType();
+        }
+        final Type returnType = executeMethod.getGenericReturnType();
+        if (!(returnType instanceof ParameterizedType)) { // e.g. raw CompletableFuture
+            return null;
+        }
+        return toResponseClass(((ParameterizedType) returnType).getActualTypeArguments()[0]);
+    }
+
+    protected Class<?> toResponseClass(Type type) {
+        if (type instanceof Class<?>) { // e.g. HtmlResponse
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) { // e.g. JsonResponse<SeaBean>
+            return toResponseClass(((ParameterizedType) type).getRawType());
+        } else if (type instanceof WildcardType) { // e.g. ? extends ActionResponse
+            final Type[] upperBounds = ((WildcardType) type).getUpperBounds();
+            return upperBounds.length > 0 && !Object.class.equals(upperBounds[0]) ? toResponseClass(upperBounds[0]) : null;
+        } else { // e.g. type variable
+            return null;
+        }
+    }
+
     // ===================================================================================
     //                                                                         Action Form
     //                                                                         ===========
@@ -680,6 +761,15 @@ public class ActionExecute implements Serializable {
         return indexMethod;
     }
 
+    /**
+     * Is the execute method asynchronous? (returns CompletableFuture of action response) <br>
+     * If true, the execute method runs without transaction and the completed response is reflected in the transaction.
+     * @return The determination, true or false.
+     */
+    public boolean isAsyncExecute() {
+        return asyncExecute;
+    }
+
     public TransactionGenre getTransactionGenre() {
         return transactionGenre;
     }
@@ -713,6 +803,16 @@ public class ActionExecute implements Serializable {
         return formMeta;
     }
 
+    /**
+     * @return The plan of execute method arguments fixed at mapping time. (NotNull)
+     */
+    public ExecuteArgPlan getExecuteArgPlan() {
+        if (executeArgPlan == null) { // e.g. after deserialization
+            executeArgPlan = prepareExecuteArgPlan();
+        }
+        return executeArgPlan;
+    }
+
     // -----------------------------------------------------
     //                                           URL Pattern
     //                                           -----------
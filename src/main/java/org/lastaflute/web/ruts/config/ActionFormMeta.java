@@ -31,6 +31,7 @@ import org.dbflute.optional.OptionalThing;
 import org.dbflute.util.DfReflectionUtil;
 import org.dbflute.util.DfTypeUtil;
 import org.dbflute.util.Srl;
+import org.lastaflute.core.util.LaDBFluteUtil;
 import org.lastaflute.di.helper.beans.BeanDesc;
 import org.lastaflute.di.helper.beans.PropertyDesc;
 import org.lastaflute.di.helper.beans.factory.BeanDescFactory;
@@ -78,11 +79,18 @@ public class ActionFormMeta {
             if (pd.isReadable()) {
                 final ActionFormProperty property = newActionFormProperty(pd);
                 addProperty(map, property);
+                prepareClassificationCodeTableIfNeeds(pd.getPropertyType());
             }
         }
         return map;
     }
 
+    protected void prepareClassificationCodeTableIfNeeds(Class<?> propertyType) { // eagerly for mapping
+        if (LaDBFluteUtil.isClassificationType(propertyType)) {
+            LaDBFluteUtil.prepareClassificationCodeTable(propertyType);
+        }
+    }
+
     protected ActionFormProperty newActionFormProperty(PropertyDesc pd) {
         return new ActionFormProperty(pd);
     }
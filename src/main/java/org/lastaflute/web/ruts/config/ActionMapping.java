@@ -20,21 +20,32 @@ import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.dbflute.optional.OptionalThing;
 import org.dbflute.util.DfTypeUtil;
 import org.lastaflute.di.core.ComponentDef;
+import org.lastaflute.di.core.smart.hot.HotdeployUtil;
 import org.lastaflute.di.helper.beans.BeanDesc;
 import org.lastaflute.di.helper.beans.factory.BeanDescFactory;
 import org.lastaflute.di.util.ArrayMap;
 import org.lastaflute.web.path.ActionAdjustmentProvider;
 import org.lastaflute.web.response.HtmlResponse;
 import org.lastaflute.web.ruts.NextJourney;
+import org.lastaflute.web.ruts.config.factory.ActionFactory;
+import org.lastaflute.web.ruts.config.factory.ActionFactoryBuilder;
 import org.lastaflute.web.util.LaServletContextUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author modified by jflute (originated in Struts and Seasar)
  */
 public class ActionMapping {
 
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(ActionMapping.class);
+
     // ===================================================================================
     //                                                                           Attribute
     //                                                                           =========
@@ -44,6 +55,8 @@ public class ActionMapping {
     protected final String actionName;
     protected final ActionAdjustmentProvider adjustmentProvider;
     protected final ArrayMap<String, ActionExecute> executeMap = new ArrayMap<String, ActionExecute>(); // array to get first
+    protected volatile ActionFactory actionFactory; // null allowed: not eligible or not prepared yet
+    protected volatile boolean actionFactoryDetermined; // true after prepared at boot or the first creation
 
     // ===================================================================================
     //                                                                         Constructor
@@ -66,7 +79,56 @@ public class ActionMapping {
     //                                                                       Create Action
     //                                                                       =============
     public Object createAction() {
-        return actionDef.getComponent();
+        final ActionFactory factory = actionFactory;
+        if (factory != null) { // compiled wiring
+            return factory.create();
+        }
+        final Object action = actionDef.getComponent();
+        if (!actionFactoryDetermined) { // e.g. failed to prepare at boot
+            prepareActionFactory(action); // recorded by the first action
+        }
+        return action;
+    }
+
+    /**
+     * Prepare the action factory at boot, recorded by the action created here. <br>
+     * If the action cannot be created yet (e.g. request-scoped dependency), it is prepared at the first creation.
+     */
+    public void prepareActionFactory() {
+        if (actionFactoryDetermined || !isActionFactoryEnabled()) {
+            return;
+        }
+        final Object recordedAction;
+        try {
+            recordedAction = actionDef.getComponent();
+        } catch (RuntimeException continued) { // e.g. out of request
+            logger.debug("Cannot create the action at boot so the factory is prepared later: {}, {}", actionName, continued.getMessage());
+            return;
+        }
+        prepareActionFactory(recordedAction);
+    }
+
+    protected synchronized void prepareActionFactory(Object recordedAction) {
+        if (actionFactoryDetermined) {
+            return;
+        }
+        try {
+            if (isActionFactoryEnabled()) {
+                newActionFactoryBuilder().build(actionDef, recordedAction).ifPresent(factory -> {
+                    actionFactory = factory;
+                });
+            }
+        } finally {
+            actionFactoryDetermined = true;
+        }
+    }
+
+    protected boolean isActionFactoryEnabled() {
+        return !HotdeployUtil.isHotdeploy() && adjustmentProvider.isActionFactoryEnabled(this);
+    }
+
+    protected ActionFactoryBuilder newActionFactoryBuilder() {
+        return new ActionFactoryBuilder();
     }
 
     // ===================================================================================
@@ -187,6 +249,15 @@ public class ActionMapping {
         return actionDef;
     }
 
+    /**
+     * @return The optional factory of action compiled from the first creation. (NotNull, EmptyAllowed: when disabled or not eligible)
+     */
+    public OptionalThing<ActionFactory> getActionFactory() {
+        return OptionalThing.ofNullable(actionFactory, () -> {
+            throw new IllegalStateException("Not found the action factory: " + actionName);
+        });
+    }
+
     public BeanDesc getActionDesc() {
         return actionDesc;
     }
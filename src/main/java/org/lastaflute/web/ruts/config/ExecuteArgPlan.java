@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config;
+
+import java.util.Map;
+
+/**
+ * The plan of execute method arguments fixed at mapping time. <br>
+ * URL parameters are set by index and the optional form is at the end, without intermediate list per request. <br>
+ * (the execute method itself is invoked by reflection, method handle was measured slower for non-constant handles)
+ * @author jflute
+ */
+public class ExecuteArgPlan {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final Object[] EMPTY_ARRAY = new Object[0];
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final int urlParamCount; // zero allowed
+    protected final boolean formArg; // form is always last argument if exists
+    protected final int argCount; // same as method parameter count
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param urlParamCount The count of URL parameters defined as the first arguments. (ZeroAllowed)
+     * @param formArg Does it have action form as the last argument?
+     */
+    public ExecuteArgPlan(int urlParamCount, boolean formArg) {
+        this.urlParamCount = urlParamCount;
+        this.formArg = formArg;
+        this.argCount = urlParamCount + (formArg ? 1 : 0);
+    }
+
+    // ===================================================================================
+    //                                                                            Assemble
+    //                                                                            ========
+    /**
+     * Assemble the arguments of execute method by the fixed plan.
+     * @param urlParamValueMap The map of URL parameter values keyed by argument index. (NotNull, EmptyAllowed)
+     * @param realForm The real object of action form. (NullAllowed: when no form argument)
+     * @return The array of arguments sized as the method parameters. (NotNull, EmptyAllowed)
+     */
+    public Object[] assembleArgs(Map<Integer, Object> urlParamValueMap, Object realForm) {
+        if (argCount == 0) {
+            return EMPTY_ARRAY;
+        }
+        final Object[] args = new Object[argCount];
+        for (int i = 0; i < urlParamCount; i++) {
+            args[i] = urlParamValueMap.get(i);
+        }
+        if (formArg) {
+            args[urlParamCount] = realForm;
+        }
+        return args;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "argPlan:{urlParam=" + urlParamCount + ", form=" + formArg + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public int getUrlParamCount() {
+        return urlParamCount;
+    }
+
+    public boolean hasFormArg() {
+        return formArg;
+    }
+}
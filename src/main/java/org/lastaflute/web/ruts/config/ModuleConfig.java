@@ -17,6 +17,7 @@ package org.lastaflute.web.ruts.config;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,7 @@ import org.lastaflute.di.Disposable;
 import org.lastaflute.di.DisposableUtil;
 import org.lastaflute.di.core.factory.SingletonLaContainerFactory;
 import org.lastaflute.di.core.smart.hot.HotdeployUtil;
+import org.lastaflute.web.ruts.config.index.ActionIndex;
 
 /**
  * @author modified by jflute (originated in Struts)
@@ -44,6 +46,7 @@ public class ModuleConfig implements Disposable, Serializable {
     protected final Map<String, ActionMapping> actionMappingMap = new HashMap<String, ActionMapping>();
     protected final List<ActionMapping> actionMappingList = new ArrayList<ActionMapping>();
     protected volatile boolean initialized;
+    protected transient volatile ActionIndex actionIndex; // lazy loaded, null if not loaded yet
 
     // ===================================================================================
     //                                                                         Constructor
@@ -84,6 +87,30 @@ public class ModuleConfig implements Disposable, Serializable {
         SingletonLaContainerFactory.getContainer().getComponent(actionName); // initialize
     }
 
+    // ===================================================================================
+    //                                                                        Action Index
+    //                                                                        ============
+    /**
+     * Find the action index emitted at build time, not used in hot deploy because classes are changed.
+     * @return The optional index. (NotNull, EmptyAllowed: when hot deploy or no index resource)
+     */
+    public OptionalThing<ActionIndex> findActionIndex() {
+        if (HotdeployUtil.isHotdeploy()) {
+            return OptionalThing.empty();
+        }
+        if (actionIndex == null) { // loaded once at boot (by customizer) so no lock
+            actionIndex = ActionIndex.load(getIndexClassLoader());
+        }
+        return OptionalThing.ofNullable(!actionIndex.isEmpty() ? actionIndex : null, () -> {
+            throw new IllegalStateException("Not found the action index resource: " + ActionIndex.INDEX_PATH);
+        });
+    }
+
+    protected ClassLoader getIndexClassLoader() {
+        final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        return contextLoader != null ? contextLoader : ModuleConfig.class.getClassLoader();
+    }
+
     // ===================================================================================
     //                                                                       Configuration
     //                                                                       =============
@@ -92,12 +119,20 @@ public class ModuleConfig implements Disposable, Serializable {
         actionMappingList.add(mapping);
     }
 
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public List<ActionMapping> getActionMappingList() { // e.g. warm-up
+        return Collections.unmodifiableList(actionMappingList);
+    }
+
     // ===================================================================================
     //                                                                           HotDeploy
     //                                                                           =========
     public void dispose() {
         actionMappingMap.clear();
         actionMappingList.clear();
+        actionIndex = null;
         initialized = false;
     }
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.dbflute.helper.message.ExceptionMessageBuilder;
+
+/**
+ * The factory of action instance compiled from the wiring of container. <br>
+ * It creates the instance by constructor handle of concrete (aspect-woven) class
+ * and sets the dependencies by field setter handles, instead of component lookup per request. <br>
+ * Singleton dependencies are pre-resolved references, others are resolved per creation.
+ * @author jflute
+ */
+public class ActionFactory {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final Class<?> concreteClass; // not null, aspect-woven class
+    protected final MethodHandle constructorHandle; // not null, ()Object
+    protected final List<ActionInjection> injectionList; // not null, read-only
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param concreteClass The concrete class of action, aspect-woven. (NotNull)
+     * @param constructorHandle The handle of default constructor, typed as ()Object. (NotNull)
+     * @param injectionList The list of injection for the action fields. (NotNull, EmptyAllowed)
+     */
+    public ActionFactory(Class<?> concreteClass, MethodHandle constructorHandle, List<ActionInjection> injectionList) {
+        this.concreteClass = concreteClass;
+        this.constructorHandle = constructorHandle;
+        this.injectionList = injectionList;
+    }
+
+    // ===================================================================================
+    //                                                                       Create Action
+    //                                                                       =============
+    /**
+     * Create the action instance with dependencies.
+     * @return The new-created action. (NotNull)
+     */
+    public Object create() {
+        final Object action;
+        try {
+            action = (Object) constructorHandle.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+            br.addNotice("Failed to instantiate the action.");
+            br.addItem("Action Class");
+            br.addElement(concreteClass);
+            final String msg = br.buildExceptionMessage();
+            throw new IllegalStateException(msg, e);
+        }
+        for (ActionInjection injection : injectionList) {
+            injection.inject(action);
+        }
+        return action;
+    }
+
+    // ===================================================================================
+    //                                                                           Injection
+    //                                                                           =========
+    public static class ActionInjection {
+
+        protected final String fieldExp; // not null, for display
+        protected final MethodHandle setterHandle; // not null, (Object, Object)void
+        protected final Supplier<Object> dependencySupplier; // not null, pre-resolved or per creation
+        protected final boolean preResolved;
+
+        public ActionInjection(String fieldExp, MethodHandle setterHandle, Supplier<Object> dependencySupplier, boolean preResolved) {
+            this.fieldExp = fieldExp;
+            this.setterHandle = setterHandle;
+            this.dependencySupplier = dependencySupplier;
+            this.preResolved = preResolved;
+        }
+
+        public void inject(Object action) {
+            try {
+                setterHandle.invokeExact(action, dependencySupplier.get());
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+                br.addNotice("Failed to inject the dependency to the action.");
+                br.addItem("Injection");
+                br.addElement(this);
+                br.addItem("Action");
+                br.addElement(action);
+                final String msg = br.buildExceptionMessage();
+                throw new IllegalStateException(msg, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "injection:{" + fieldExp + ", " + (preResolved ? "pre-resolved" : "per-creation") + "}";
+        }
+
+        public String getFieldExp() {
+            return fieldExp;
+        }
+
+        public boolean isPreResolved() {
+            return preResolved;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "factory:{" + concreteClass.getName() + ", " + injectionList + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public Class<?> getConcreteClass() {
+        return concreteClass;
+    }
+
+    public List<ActionInjection> getInjectionList() {
+        return injectionList;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.dbflute.optional.OptionalThing;
+import org.lastaflute.di.core.ComponentDef;
+import org.lastaflute.di.core.LaContainer;
+import org.lastaflute.di.core.meta.AccessTypeDef;
+import org.lastaflute.di.core.meta.InstanceDef;
+import org.lastaflute.di.core.meta.PropertyDef;
+import org.lastaflute.web.ruts.config.factory.ActionFactory.ActionInjection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The builder of action factory from the wiring recorded by container creation. <br>
+ * The first action is created by container as usual, and this builder reads its injected fields
+ * to determine the dependency component of each field. Singleton dependencies are pre-resolved. <br>
+ * If the action uses what the factory cannot reproduce (e.g. constructor arguments, init methods, property setters),
+ * it is not eligible and the container lookup is used as before.
+ * @author jflute
+ */
+public class ActionFactoryBuilder {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(ActionFactoryBuilder.class);
+    protected static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    protected static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    // ===================================================================================
+    //                                                                               Build
+    //                                                                               =====
+    /**
+     * Build the factory of the action by the recorded action.
+     * @param actionDef The component definition of the action. (NotNull)
+     * @param recordedAction The action instance created by container, used as record of wiring. (NotNull)
+     * @return The optional factory of the action. (NotNull, EmptyAllowed: when not eligible)
+     */
+    public OptionalThing<ActionFactory> build(ComponentDef actionDef, Object recordedAction) {
+        final ActionFactory factory = doBuild(actionDef, recordedAction);
+        return OptionalThing.ofNullable(factory, () -> {
+            throw new IllegalStateException("Not eligible for the action factory: " + actionDef.getComponentClass());
+        });
+    }
+
+    protected ActionFactory doBuild(ComponentDef actionDef, Object recordedAction) {
+        final String reason = findIneligibleReason(actionDef, recordedAction);
+        if (reason != null) {
+            showIneligible(actionDef, reason);
+            return null;
+        }
+        final Class<?> concreteClass = actionDef.getConcreteClass();
+        final MethodHandle constructorHandle = prepareConstructorHandle(concreteClass);
+        if (constructorHandle == null) {
+            showIneligible(actionDef, "no accessible default constructor");
+            return null;
+        }
+        final List<ActionInjection> injectionList = new ArrayList<ActionInjection>();
+        for (int i = 0; i < actionDef.getPropertyDefSize(); i++) {
+            final PropertyDef propertyDef = actionDef.getPropertyDef(i);
+            if (!AccessTypeDef.FIELD_NAME.equals(propertyDef.getAccessTypeDef().getName())) {
+                showIneligible(actionDef, "property access injection: " + propertyDef.getPropertyName());
+                return null;
+            }
+            for (Field field : findInjectedFieldList(concreteClass, propertyDef.getPropertyName())) {
+                final Object injected = extractInjectedValue(field, recordedAction);
+                if (injected == null) { // e.g. not found for optional binding
+                    continue;
+                }
+                final ActionInjection injection = resolveInjection(actionDef, propertyDef, field, injected);
+                if (injection == null) {
+                    showIneligible(actionDef, "unresolved dependency: " + toFieldExp(field));
+                    return null;
+                }
+                injectionList.add(injection);
+            }
+        }
+        return newActionFactory(concreteClass, constructorHandle, Collections.unmodifiableList(injectionList));
+    }
+
+    protected ActionFactory newActionFactory(Class<?> concreteClass, MethodHandle constructorHandle, List<ActionInjection> injectionList) {
+        return new ActionFactory(concreteClass, constructorHandle, injectionList);
+    }
+
+    // ===================================================================================
+    //                                                                         Eligibility
+    //                                                                         ===========
+    protected String findIneligibleReason(ComponentDef actionDef, Object recordedAction) {
+        if (!InstanceDef.PROTOTYPE_NAME.equals(actionDef.getInstanceDef().getName())) {
+            return "not prototype: " + actionDef.getInstanceDef().getName();
+        }
+        if (actionDef.getArgDefSize() > 0) {
+            return "constructor arguments";
+        }
+        if (actionDef.getInitMethodDefSize() > 0) {
+            return "init methods";
+        }
+        if (actionDef.getInterTypeDefSize() > 0) {
+            return "inter-types";
+        }
+        if (actionDef.isExternalBinding()) {
+            return "external binding";
+        }
+        final Class<?> concreteClass = actionDef.getConcreteClass();
+        if (!concreteClass.equals(recordedAction.getClass())) { // basically no way
+            return "different concrete class: " + recordedAction.getClass();
+        }
+        final Method setter = findPropertySetter(concreteClass);
+        if (setter != null) { // might be injected as plain property
+            return "property setter: " + setter.getName();
+        }
+        return null;
+    }
+
+    protected Method findPropertySetter(Class<?> concreteClass) {
+        for (Method method : concreteClass.getMethods()) {
+            final String name = method.getName();
+            if (name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1 // setter
+                    && !Modifier.isStatic(method.getModifiers()) && !Object.class.equals(method.getDeclaringClass())) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    protected void showIneligible(ComponentDef actionDef, String reason) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("...Using container lookup for the action (not eligible for factory): {}, {}", actionDef.getComponentClass(),
+                    reason);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    protected MethodHandle prepareConstructorHandle(Class<?> concreteClass) {
+        try {
+            final Constructor<?> constructor = concreteClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            return null;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                           Injection
+    //                                                                           =========
+    protected List<Field> findInjectedFieldList(Class<?> concreteClass, String propertyName) { // also hidden fields
+        final List<Field> fieldList = new ArrayList<Field>(1);
+        for (Class<?> current = concreteClass; current != null && !Object.class.equals(current); current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(propertyName) && !Modifier.isStatic(field.getModifiers())) {
+                    fieldList.add(field);
+                }
+            }
+        }
+        return fieldList;
+    }
+
+    protected Object extractInjectedValue(Field field, Object recordedAction) {
+        try {
+            field.setAccessible(true);
+            return field.get(recordedAction);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new IllegalStateException("Failed to read the injected field: " + toFieldExp(field), e);
+        }
+    }
+
+    protected ActionInjection resolveInjection(ComponentDef actionDef, PropertyDef propertyDef, Field field, Object injected) {
+        final MethodHandle setterHandle = prepareSetterHandle(field);
+        if (setterHandle == null) {
+            return null;
+        }
+        final LaContainer container = actionDef.getContainer();
+        for (Object key : Arrays.asList(propertyDef.getPropertyName(), field.getType())) { // same order as binding
+            final ComponentDef dependencyDef = findDependencyDef(container, key);
+            if (dependencyDef == null) {
+                continue;
+            }
+            if (isPreResolvableInstance(dependencyDef)) {
+                final Object dependency = dependencyDef.getComponent();
+                if (dependency == injected) {
+                    return newActionInjection(toFieldExp(field), setterHandle, () -> dependency, true);
+                }
+            } else if (injected.getClass().equals(dependencyDef.getConcreteClass())) { // e.g. prototype, request
+                return newActionInjection(toFieldExp(field), setterHandle, () -> dependencyDef.getComponent(), false);
+            }
+        }
+        return null;
+    }
+
+    protected MethodHandle prepareSetterHandle(Field field) {
+        if (Modifier.isFinal(field.getModifiers())) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE); // already accessible
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    protected ComponentDef findDependencyDef(LaContainer container, Object key) {
+        try {
+            return container.hasComponentDef(key) ? container.getComponentDef(key) : null;
+        } catch (RuntimeException e) { // e.g. too many registration
+            return null;
+        }
+    }
+
+    protected boolean isPreResolvableInstance(ComponentDef dependencyDef) {
+        final String instanceName = dependencyDef.getInstanceDef().getName();
+        return InstanceDef.SINGLETON_NAME.equals(instanceName) || InstanceDef.APPLICATION_NAME.equals(instanceName);
+    }
+
+    protected ActionInjection newActionInjection(String fieldExp, MethodHandle setterHandle,
+            Supplier<Object> dependencySupplier, boolean preResolved) {
+        return new ActionInjection(fieldExp, setterHandle, dependencySupplier, preResolved);
+    }
+
+    protected String toFieldExp(Field field) {
+        return field.getDeclaringClass().getSimpleName() + "@" + field.getName();
+    }
+}
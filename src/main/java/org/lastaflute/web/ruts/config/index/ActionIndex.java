@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.dbflute.optional.OptionalThing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The action index emitted by {@link ActionIndexProcessor} at build time. <br>
+ * Execute methods are resolved by the index without scanning declared methods. <br>
+ * Only the index stamped by the processor is loaded, and it is trusted as fresh without verifying action classes
+ * (the processor rewrites it in every build), so the action is scanned only when not indexed
+ * or when its indexed signature cannot be resolved (e.g. removed after indexing).
+ * @author jflute
+ */
+public class ActionIndex {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(ActionIndex.class);
+
+    public static final String INDEX_PATH = "META-INF/lastaflute/action_index.txt";
+    public static final String EXECUTE_DELIMITER = "#";
+    public static final String BUILD_STAMP_MARK = "#build-stamp:"; // e.g. #build-stamp:1729234567890
+
+    protected static final Map<String, Class<?>> primitiveTypeMap;
+    static {
+        final Map<String, Class<?>> map = new HashMap<String, Class<?>>();
+        for (Class<?> type : new Class<?>[] { boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class,
+                double.class }) {
+            map.put(type.getName(), type);
+        }
+        primitiveTypeMap = Collections.unmodifiableMap(map);
+    }
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** The map of execute expressions, keyed by binary name of action class. (NotNull, EmptyAllowed: if no index) */
+    protected final Map<String, List<String>> actionExecuteMap;
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public ActionIndex(Map<String, List<String>> actionExecuteMap) {
+        this.actionExecuteMap = actionExecuteMap;
+    }
+
+    // ===================================================================================
+    //                                                                          Load Index
+    //                                                                          ==========
+    /**
+     * Load the index from all class path resources (e.g. per jar).
+     * @param classLoader The class loader to find resources. (NotNull)
+     * @return The loaded index. (NotNull, EmptyAllowed: if no resources)
+     */
+    public static ActionIndex load(ClassLoader classLoader) {
+        final Map<String, List<String>> executeMap = new HashMap<String, List<String>>();
+        try {
+            final Enumeration<URL> resources = classLoader.getResources(INDEX_PATH);
+            while (resources.hasMoreElements()) {
+                readIndex(resources.nextElement(), executeMap);
+            }
+        } catch (IOException e) { // scanning as usual
+            logger.info("Failed to load the action index so scanning actions: " + e.getMessage());
+            executeMap.clear();
+        }
+        return new ActionIndex(executeMap);
+    }
+
+    protected static void readIndex(URL resource, Map<String, List<String>> executeMap) throws IOException {
+        final Map<String, List<String>> resourceMap = new HashMap<String, List<String>>();
+        String buildStamp = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith(BUILD_STAMP_MARK)) {
+                    buildStamp = line.substring(BUILD_STAMP_MARK.length()).trim();
+                    continue;
+                }
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final int delimiterIndex = line.indexOf(EXECUTE_DELIMITER);
+                if (delimiterIndex > 0) { // e.g. com.example.SeaAction#index(java.lang.Integer)
+                    final String actionName = line.substring(0, delimiterIndex);
+                    final String executeExp = line.substring(delimiterIndex + EXECUTE_DELIMITER.length());
+                    resourceMap.computeIfAbsent(actionName, key -> new ArrayList<String>()).add(executeExp);
+                }
+            }
+        }
+        if (buildStamp == null || buildStamp.isEmpty()) { // e.g. old or hand-written index
+            logger.info("The action index has no build stamp so scanning its actions: {}", resource);
+            return;
+        }
+        logger.debug("...Loading the action index: {} (build-stamp={})", resource, buildStamp);
+        executeMap.putAll(resourceMap);
+    }
+
+    // ===================================================================================
+    //                                                                        Find Execute
+    //                                                                        ============
+    /**
+     * Find the execute methods of the action by the index.
+     * @param actionType The type of action. (NotNull)
+     * @return The optional list of execute method. (NotNull, EmptyAllowed: not indexed or stale index)
+     */
+    public OptionalThing<List<Method>> findExecuteMethodList(Class<?> actionType) {
+        final List<String> executeExpList = actionExecuteMap.get(actionType.getName());
+        List<Method> methodList = null;
+        if (executeExpList != null) {
+            try {
+                methodList = new ArrayList<Method>(executeExpList.size());
+                for (String executeExp : executeExpList) {
+                    methodList.add(resolveMethod(actionType, executeExp));
+                }
+            } catch (ClassNotFoundException | NoSuchMethodException e) { // e.g. not re-processed after change
+                logger.debug("The action index is stale for the action: {}", actionType, e);
+                methodList = null;
+            }
+        }
+        return OptionalThing.ofNullable(methodList, () -> {
+            throw new IllegalStateException("Not found the indexed execute methods for the action: " + actionType);
+        });
+    }
+
+    protected Method resolveMethod(Class<?> actionType, String executeExp) throws ClassNotFoundException, NoSuchMethodException {
+        final int beginIndex = executeExp.indexOf('(');
+        final String methodName = executeExp.substring(0, beginIndex);
+        final String typeExp = executeExp.substring(beginIndex + 1, executeExp.length() - 1);
+        final List<Class<?>> typeList = new ArrayList<Class<?>>();
+        if (!typeExp.isEmpty()) {
+            for (String typeName : typeExp.split(",")) {
+                typeList.add(resolveType(actionType.getClassLoader(), typeName));
+            }
+        }
+        // declared lookup only, e.g. moved to super class after indexing is not found
+        final Method method = actionType.getDeclaredMethod(methodName, typeList.toArray(new Class<?>[typeList.size()]));
+        if (!Modifier.isPublic(method.getModifiers())) { // e.g. changed to private after indexing
+            throw new NoSuchMethodException("Not public method in the action: " + method);
+        }
+        return method;
+    }
+
+    protected Class<?> resolveType(ClassLoader classLoader, String typeName) throws ClassNotFoundException {
+        if (typeName.endsWith("[]")) { // e.g. java.lang.String[]
+            final Class<?> componentType = resolveType(classLoader, typeName.substring(0, typeName.length() - 2));
+            return Array.newInstance(componentType, 0).getClass();
+        }
+        final Class<?> primitiveType = primitiveTypeMap.get(typeName);
+        return primitiveType != null ? primitiveType : Class.forName(typeName, false, classLoader);
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public boolean isEmpty() {
+        return actionExecuteMap.isEmpty();
+    }
+
+    /**
+     * @return The read-only set of binary names of indexed action classes, e.g. for warm-up. (NotNull)
+     */
+    public Set<String> getActionClassNameSet() {
+        return Collections.unmodifiableSet(actionExecuteMap.keySet());
+    }
+}
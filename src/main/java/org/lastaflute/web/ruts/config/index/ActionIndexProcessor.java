@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config.index;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * The annotation processor to emit action index at build time. <br>
+ * Execute method definitions are verified here (overload, super class)
+ * so that the customizer can skip reflective scanning and verification at boot.
+ * <pre>
+ * It is not registered as service so specify it in your build if you need, e.g. Maven:
+ *  &lt;plugin&gt;
+ *      &lt;artifactId&gt;maven-compiler-plugin&lt;/artifactId&gt;
+ *      &lt;configuration&gt;
+ *          &lt;annotationProcessors&gt;
+ *              &lt;annotationProcessor&gt;org.lastaflute.web.ruts.config.index.ActionIndexProcessor&lt;/annotationProcessor&gt;
+ *          &lt;/annotationProcessors&gt;
+ *      &lt;/configuration&gt;
+ *  &lt;/plugin&gt;
+ * </pre>
+ * The processor should run in every compilation of actions because the stamped index is trusted at boot,
+ * action classes not in the index are scanned at boot as before.
+ * @author jflute
+ */
+@SupportedAnnotationTypes(ActionIndexProcessor.EXECUTE_ANNOTATION)
+public class ActionIndexProcessor extends AbstractProcessor {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    public static final String EXECUTE_ANNOTATION = "org.lastaflute.web.Execute";
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** The map of indexed execute expressions, keyed by binary name of action class. (NotNull) */
+    protected final Map<String, Set<String>> actionExecuteMap = new LinkedHashMap<String, Set<String>>();
+
+    /** The set of action class names that have illegal definition, already reported as error. (NotNull) */
+    protected final Set<String> illegalActionSet = new HashSet<String>();
+
+    // ===================================================================================
+    //                                                                             Process
+    //                                                                             =======
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!actionExecuteMap.isEmpty()) {
+                writeIndex();
+            }
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    indexExecute((ExecutableElement) element);
+                }
+            }
+        }
+        return false; // not claimed, other processors can use it
+    }
+
+    protected void indexExecute(ExecutableElement method) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC)) { // not execute method
+            return;
+        }
+        final TypeElement actionType = (TypeElement) method.getEnclosingElement();
+        if (actionType.getModifiers().contains(Modifier.ABSTRACT)) { // verified as super class of concrete action
+            return;
+        }
+        final String actionName = toBinaryName(actionType);
+        if (illegalActionSet.contains(actionName)) { // already reported
+            return;
+        }
+        if (!actionExecuteMap.containsKey(actionName) && !verifyNoExecuteInSuperClass(actionType)) {
+            illegalActionSet.add(actionName);
+            return;
+        }
+        final Set<String> executeSet = actionExecuteMap.computeIfAbsent(actionName, key -> new LinkedHashSet<String>());
+        final String methodName = method.getSimpleName().toString();
+        for (String existing : executeSet) {
+            if (existing.startsWith(methodName + "(")) {
+                error(method, "Cannot define overload method of action execute: " + actionName + "@" + methodName + "()");
+                return;
+            }
+        }
+        executeSet.add(buildExecuteExp(method));
+    }
+
+    protected boolean verifyNoExecuteInSuperClass(TypeElement actionType) {
+        for (TypeMirror superType = actionType.getSuperclass(); superType.getKind() == TypeKind.DECLARED;) {
+            final TypeElement superElement = (TypeElement) ((DeclaredType) superType).asElement();
+            if (Object.class.getName().equals(superElement.getQualifiedName().toString())) {
+                break;
+            }
+            for (Element member : superElement.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD && member.getModifiers().contains(Modifier.PUBLIC) && hasExecute(member)) {
+                    error(member, "Cannot define execute method at super class: " + superElement.getQualifiedName());
+                    return false;
+                }
+            }
+            superType = superElement.getSuperclass();
+        }
+        return true;
+    }
+
+    protected boolean hasExecute(Element element) {
+        return element.getAnnotationMirrors().stream().anyMatch(mirror -> {
+            return EXECUTE_ANNOTATION.equals(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString());
+        });
+    }
+
+    protected void error(Element element, String msg) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, msg, element);
+    }
+
+    // ===================================================================================
+    //                                                                          Expression
+    //                                                                          ==========
+    protected String buildExecuteExp(ExecutableElement method) { // e.g. index(java.lang.Integer,com.example.SeaForm)
+        final List<String> typeList = new ArrayList<String>();
+        for (VariableElement parameter : method.getParameters()) {
+            typeList.add(toTypeName(processingEnv.getTypeUtils().erasure(parameter.asType())));
+        }
+        return method.getSimpleName() + "(" + String.join(",", typeList) + ")";
+    }
+
+    protected String toTypeName(TypeMirror type) { // binary name for class loading
+        if (type.getKind() == TypeKind.ARRAY) {
+            return toTypeName(((ArrayType) type).getComponentType()) + "[]";
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            return toBinaryName((TypeElement) ((DeclaredType) type).asElement());
+        } else { // primitive
+            return type.toString();
+        }
+    }
+
+    protected String toBinaryName(TypeElement typeElement) { // e.g. com.example.SeaAction$LandForm
+        return processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+    }
+
+    // ===================================================================================
+    //                                                                         Write Index
+    //                                                                         ===========
+    protected void writeIndex() {
+        try {
+            final FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ActionIndex.INDEX_PATH);
+            try (Writer writer = resource.openWriter()) {
+                writer.write("# action index generated by " + getClass().getSimpleName() + "\n");
+                writer.write(ActionIndex.BUILD_STAMP_MARK + buildStamp() + "\n");
+                for (Map.Entry<String, Set<String>> entry : actionExecuteMap.entrySet()) {
+                    for (String executeExp : entry.getValue()) {
+                        writer.write(entry.getKey() + ActionIndex.EXECUTE_DELIMITER + executeExp + "\n");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.WARNING, "Failed to write action index: " + e.getMessage());
+        }
+    }
+
+    protected String buildStamp() { // the index without it is not trusted at boot
+        return String.valueOf(System.currentTimeMillis());
+    }
+}
@@ -24,6 +24,7 @@ import org.dbflute.optional.OptionalThing;
 import org.lastaflute.core.direction.FwAssistantDirector;
 import org.lastaflute.core.magic.TransactionTimeContext;
 import org.lastaflute.db.dbflute.accesscontext.PreparedAccessContext;
+import org.lastaflute.db.jta.TransactionReadOnlyContext;
 import org.lastaflute.web.LastaWebKey;
 import org.lastaflute.web.api.ApiFailureResource;
 import org.lastaflute.web.api.ApiManager;
@@ -186,6 +187,7 @@ public class ActionCoinHelper {
      */
     public void clearContextJustInCase() {
         TransactionTimeContext.clear();
+        TransactionReadOnlyContext.perfectlyClear();
         PreparedAccessContext.clearAccessContextOnThread();
         AccessContext.clearAccessContextOnThread();
         CallbackContext.clearCallbackContextOnThread();
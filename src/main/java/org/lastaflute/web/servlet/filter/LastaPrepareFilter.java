@@ -33,7 +33,11 @@ import org.lastaflute.core.direction.CurtainBeforeHook;
 import org.lastaflute.core.direction.CurtainFinallyHook;
 import org.lastaflute.core.direction.FwAssistantDirector;
 import org.lastaflute.core.direction.FwCoreDirection;
+import org.lastaflute.core.magic.identity.RequestIdentity;
+import org.lastaflute.core.magic.identity.RequestIdentityContext;
+import org.lastaflute.core.magic.identity.RequestIdentityGenerator;
 import org.lastaflute.core.message.MessageResourcesHolder;
+import org.lastaflute.core.time.TimeManager;
 import org.lastaflute.core.util.ContainerUtil;
 import org.lastaflute.di.core.ExternalContext;
 import org.lastaflute.di.core.LaContainer;
@@ -44,12 +48,16 @@ import org.lastaflute.di.core.smart.hot.HotdeployUtil;
 import org.lastaflute.web.LastaWebKey;
 import org.lastaflute.web.container.WebLastaContainerDestroyer;
 import org.lastaflute.web.container.WebLastaContainerInitializer;
+import org.lastaflute.web.container.WebLastaWarmUpper;
+import org.lastaflute.web.ruts.config.ActionMapping;
 import org.lastaflute.web.ruts.config.ModuleConfig;
 import org.lastaflute.web.ruts.message.MessageResources;
 import org.lastaflute.web.ruts.message.RutsMessageResourceGateway;
 import org.lastaflute.web.ruts.message.objective.ObjectiveMessageResources;
 import org.lastaflute.web.servlet.filter.hotdeploy.HotdeployHttpServletRequest;
 import org.lastaflute.web.servlet.filter.hotdeploy.HotdeployHttpSession;
+import org.lastaflute.web.servlet.session.CookieSessionManager;
+import org.lastaflute.web.servlet.session.SessionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,6 +75,7 @@ public class LastaPrepareFilter implements Filter {
     public static String ENCODING_KEY = "encoding";
     public static String DEFAULT_ENCODING = "UTF-8";
     public static final String HOTDEPLOY_CLASSLOADER_KEY = "lastaflute.hotdeploy.CLASS_LOADER";
+    public static final String WARM_UP_KEY = "warmUp"; // opt-in, e.g. true
 
     // ===================================================================================
     //                                                                           Attribute
@@ -113,6 +122,10 @@ public class LastaPrepareFilter implements Filter {
             logger.error("Failed to callback process.", e);
             throw e;
         }
+        prepareActionFactory(servletContext);
+        if (isWarmUpEnabled(filterConfig)) {
+            warmUp(servletContext);
+        }
     }
 
     // -----------------------------------------------------
@@ -190,6 +203,38 @@ public class LastaPrepareFilter implements Filter {
         }
     }
 
+    // -----------------------------------------------------
+    //                                        Action Factory
+    //                                        --------------
+    protected void prepareActionFactory(ServletContext servletContext) { // only enabled actions
+        if (HotdeployUtil.isHotdeploy()) { // action mappings are registered per request
+            return;
+        }
+        final ModuleConfig moduleConfig = (ModuleConfig) servletContext.getAttribute(LastaWebKey.MODULE_CONFIG_KEY);
+        for (ActionMapping mapping : moduleConfig.getActionMappingList()) {
+            mapping.prepareActionFactory();
+        }
+    }
+
+    // -----------------------------------------------------
+    //                                               Warm Up
+    //                                               -------
+    protected boolean isWarmUpEnabled(FilterConfig filterConfig) {
+        if (HotdeployUtil.isHotdeploy()) { // metadata is discarded per request
+            return false;
+        }
+        return "true".equalsIgnoreCase(filterConfig.getInitParameter(WARM_UP_KEY));
+    }
+
+    protected void warmUp(ServletContext servletContext) { // failures are logged in warm-upper
+        final ModuleConfig moduleConfig = (ModuleConfig) servletContext.getAttribute(LastaWebKey.MODULE_CONFIG_KEY);
+        newWebLastaWarmUpper(moduleConfig, getMessageResources(servletContext)).warmUp();
+    }
+
+    protected WebLastaWarmUpper newWebLastaWarmUpper(ModuleConfig moduleConfig, MessageResources messageResources) {
+        return new WebLastaWarmUpper(moduleConfig, messageResources);
+    }
+
     // ===================================================================================
     //                                                                          doFilter()
     //                                                                          ==========
@@ -197,7 +242,7 @@ public class LastaPrepareFilter implements Filter {
         final HttpServletRequest request = (HttpServletRequest) servReq;
         final HttpServletResponse response = (HttpServletResponse) servRes;
         resolveCharacterEncoding(request);
-        viaLastaDiContext(request, response, chain); // #to_action
+        viaRequestIdentity(request, response, chain); // #to_action
     }
 
     // -----------------------------------------------------
@@ -209,6 +254,30 @@ public class LastaPrepareFilter implements Filter {
         }
     }
 
+    // -----------------------------------------------------
+    //                                  via Request Identity
+    //                                  --------------------
+    protected void viaRequestIdentity(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        final RequestIdentity previousIdentity = RequestIdentityContext.getIdentityOnThread();
+        try {
+            RequestIdentityContext.setIdentityOnThread(prepareRequestIdentity(request));
+            viaLastaDiContext(request, response, chain); // #to_action
+        } finally {
+            RequestIdentityContext.setIdentityOnThread(previousIdentity);
+        }
+    }
+
+    protected RequestIdentity prepareRequestIdentity(HttpServletRequest request) {
+        final Object existing = request.getAttribute(LastaWebKey.REQUEST_IDENTITY_KEY);
+        if (existing instanceof RequestIdentity) { // e.g. forward, asynchronous dispatch
+            return (RequestIdentity) existing;
+        }
+        final RequestIdentity identity = RequestIdentityGenerator.generate(getTimeManager().currentMillis());
+        request.setAttribute(LastaWebKey.REQUEST_IDENTITY_KEY, identity); // for e.g. completion thread
+        return identity;
+    }
+
     // -----------------------------------------------------
     //                                   via LastaDi Context
     //                                   -------------------
@@ -221,16 +290,34 @@ public class LastaPrepareFilter implements Filter {
         }
         final Object prevoiusRequest = externalContext.getRequest();
         final Object previousResponse = externalContext.getResponse();
+        final CookieSessionManager cookieSessionManager = findCookieSessionManager();
+        final HttpServletResponse sessionResponse; // to write cookie session before commit
+        if (cookieSessionManager != null) {
+            sessionResponse = cookieSessionManager.wrapResponse(request, response);
+        } else { // mainly here
+            sessionResponse = response;
+        }
         try {
             externalContext.setRequest(request);
-            externalContext.setResponse(response);
-            viaHotdeploy(request, response, chain); // #to_action
+            externalContext.setResponse(sessionResponse);
+            viaHotdeploy(request, sessionResponse, chain); // #to_action
         } finally {
-            externalContext.setRequest(prevoiusRequest);
-            externalContext.setResponse(previousResponse);
+            try {
+                if (cookieSessionManager != null) { // e.g. response not committed by the action
+                    cookieSessionManager.flushSessionState(request, response);
+                }
+            } finally {
+                externalContext.setRequest(prevoiusRequest);
+                externalContext.setResponse(previousResponse);
+            }
         }
     }
 
+    protected CookieSessionManager findCookieSessionManager() { // null allowed
+        final SessionManager sessionManager = ContainerUtil.getComponent(SessionManager.class);
+        return sessionManager instanceof CookieSessionManager ? (CookieSessionManager) sessionManager : null;
+    }
+
     // -----------------------------------------------------
     //                                via HotDeploy Handling
     //                                ----------------------
@@ -312,4 +399,8 @@ public class LastaPrepareFilter implements Filter {
     protected MessageResourcesHolder getMessageResourceHolder() {
         return ContainerUtil.getComponent(MessageResourcesHolder.class);
     }
+
+    protected TimeManager getTimeManager() {
+        return ContainerUtil.getComponent(TimeManager.class);
+    }
 }
@@ -16,8 +16,6 @@
 package org.lastaflute.web.servlet.filter;
 
 import java.io.IOException;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.servlet.Filter;
@@ -31,11 +29,19 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.lastaflute.core.direction.FwAssistantDirector;
 import org.lastaflute.core.util.ContainerUtil;
+import org.lastaflute.di.core.smart.hot.HotdeployUtil;
 import org.lastaflute.web.direction.FwWebDirection;
 import org.lastaflute.web.path.ActionAdjustmentProvider;
 import org.lastaflute.web.servlet.filter.accesslog.AccessLogHandler;
 import org.lastaflute.web.servlet.filter.accesslog.AccessLogResource;
+import org.lastaflute.web.servlet.filter.accesslog.RequestResourceMeter;
+import org.lastaflute.web.servlet.filter.accesslog.RequestResourceStatistics;
+import org.lastaflute.web.servlet.filter.accesslog.RequestResourceUsage;
 import org.lastaflute.web.servlet.filter.hook.FilterHook;
+import org.lastaflute.web.servlet.filter.hook.FilterHookPipeline;
+import org.lastaflute.web.servlet.filter.hook.FilterHookPipeline.FilterHookTerminal;
+import org.lastaflute.web.servlet.filter.mdc.MDCHook;
+import org.lastaflute.web.servlet.filter.mdc.TypicalMDCHookFactory;
 import org.lastaflute.web.servlet.request.RequestManager;
 
 /**
@@ -48,6 +54,8 @@ public class LastaShowbaseFilter implements Filter {
     //                                                                           Attribute
     //                                                                           =========
     protected RequestLoggingFilter loggingFilter;
+    protected volatile FilterHookPipeline outsidePipeline; // not null after initialization, compiled hooks
+    protected long slowHookMillis = -1L; // minus means no hook timing
 
     // ===================================================================================
     //                                                                         Constructor
@@ -85,6 +93,11 @@ public class LastaShowbaseFilter implements Filter {
                     return super.isTargetPath(request);
                 }
             }
+
+            @Override
+            protected RequestResourceStatistics findResourceStatistics() {
+                return getRequestResourceStatistics();
+            }
         };
     }
 
@@ -95,6 +108,22 @@ public class LastaShowbaseFilter implements Filter {
         for (FilterHook hook : assistOutsideHookList()) {
             hook.init(filterConfig);
         }
+        slowHookMillis = FilterHookPipeline.extractSlowHookMillis(filterConfig); // from init-param
+        outsidePipeline = compileOutsidePipeline();
+    }
+
+    protected FilterHookPipeline compileOutsidePipeline() { // immutable
+        return compileOutsidePipeline(assistOutsideHookList());
+    }
+
+    protected FilterHookPipeline compileOutsidePipeline(List<FilterHook> hookList) {
+        return newFilterHookPipeline(hookList, (request, response, chain) -> {
+            viaEmbeddedFilter(request, response, chain); // #to_action
+        });
+    }
+
+    protected FilterHookPipeline newFilterHookPipeline(List<FilterHook> hookList, FilterHookTerminal terminal) {
+        return new FilterHookPipeline(hookList, terminal, slowHookMillis);
     }
 
     // ===================================================================================
@@ -111,24 +140,20 @@ public class LastaShowbaseFilter implements Filter {
     //                                      ----------------
     protected void viaOutsideHook(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws IOException, ServletException {
-        viaOutsideHookDeque(request, response, chain, prepareOutsideHook()); // #to_action
+        prepareOutsidePipeline().execute(request, response, chain); // #to_action
     }
 
-    protected Deque<FilterHook> prepareOutsideHook() { // null allowed (if no hook)
-        final List<FilterHook> listenerList = assistOutsideHookList();
-        return !listenerList.isEmpty() ? new LinkedList<FilterHook>(listenerList) : null;
-    }
-
-    protected void viaOutsideHookDeque(HttpServletRequest request, HttpServletResponse response, FilterChain chain, Deque<FilterHook> deque)
-            throws IOException, ServletException {
-        final FilterHook next = deque != null ? deque.poll() : null; // null if no hook
-        if (next != null) {
-            next.hook(request, response, (argreq, argres) -> {
-                viaOutsideHookDeque(argreq, argres, chain, deque);
-            }); // e.g. MDC
-        } else {
-            viaEmbeddedFilter(request, response, chain); // #to_action
+    protected FilterHookPipeline prepareOutsidePipeline() {
+        final FilterHookPipeline pipeline = outsidePipeline;
+        if (HotdeployUtil.isHotdeploy()) { // hooks may be changed, recompiled only when changed
+            final List<FilterHook> hookList = assistOutsideHookList();
+            if (!pipeline.isCompiledFrom(hookList)) {
+                final FilterHookPipeline recompiled = compileOutsidePipeline(hookList);
+                outsidePipeline = recompiled;
+                return recompiled;
+            }
         }
+        return pipeline;
     }
 
     // -----------------------------------------------------
@@ -155,7 +180,21 @@ public class LastaShowbaseFilter implements Filter {
 
     protected AccessLogResource createAccessLogResource(HttpServletRequest request, HttpServletResponse response, Throwable cause,
             long before) {
-        return new AccessLogResource(request, response, cause, before);
+        final RequestResourceUsage usage = RequestResourceMeter.findCurrentUsage().orElse(null); // null if async completion
+        if (usage != null) {
+            registerResourceUsageMDC(usage);
+        }
+        return new AccessLogResource(request, response, cause, before, usage);
+    }
+
+    protected void registerResourceUsageMDC(RequestResourceUsage usage) { // keys are put at request start by MDC hook factory
+        if (MDCHook.isInMDCScope()) {
+            MDCHook.registerDirectly(TypicalMDCHookFactory.LA_ELAPSED_MILLIS, String.valueOf(usage.getElapsedMillis()));
+            MDCHook.registerDirectly(TypicalMDCHookFactory.LA_CPU_MILLIS, String.valueOf(usage.getCpuMillis()));
+            MDCHook.registerDirectly(TypicalMDCHookFactory.LA_ALLOCATED_BYTES, String.valueOf(usage.getAllocatedBytes()));
+            MDCHook.registerDirectly(TypicalMDCHookFactory.LA_SQL_COUNT, String.valueOf(usage.getSqlCount()));
+            MDCHook.registerDirectly(TypicalMDCHookFactory.LA_SQL_MILLIS, String.valueOf(usage.getSqlMillis()));
+        }
     }
 
     protected void toNextChain(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
@@ -184,12 +223,19 @@ public class LastaShowbaseFilter implements Filter {
     //                                           Filter Hook
     //                                           -----------
     protected void destroyFilterHook() {
+        if (outsidePipeline != null) {
+            outsidePipeline.showHookTiming();
+        }
         assistOutsideHookList().forEach(hook -> hook.destroy());
     }
 
     // ===================================================================================
     //                                                                           Component
     //                                                                           =========
+    protected RequestResourceStatistics getRequestResourceStatistics() {
+        return ContainerUtil.getComponent(RequestResourceStatistics.class);
+    }
+
     protected FwAssistantDirector getAssistantDirector() {
         return ContainerUtil.getComponent(FwAssistantDirector.class);
     }
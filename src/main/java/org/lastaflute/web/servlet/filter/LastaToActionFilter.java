@@ -16,8 +16,6 @@
 package org.lastaflute.web.servlet.filter;
 
 import java.io.IOException;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.servlet.Filter;
@@ -32,8 +30,11 @@ import javax.servlet.http.HttpServletResponse;
 import org.lastaflute.core.direction.FwAssistantDirector;
 import org.lastaflute.core.direction.FwCoreDirection;
 import org.lastaflute.core.util.ContainerUtil;
+import org.lastaflute.di.core.smart.hot.HotdeployUtil;
 import org.lastaflute.web.direction.FwWebDirection;
 import org.lastaflute.web.servlet.filter.hook.FilterHook;
+import org.lastaflute.web.servlet.filter.hook.FilterHookPipeline;
+import org.lastaflute.web.servlet.filter.hook.FilterHookPipeline.FilterHookTerminal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +53,8 @@ public class LastaToActionFilter implements Filter {
     //                                                                           Attribute
     //                                                                           =========
     protected RequestRoutingFilter routingFilter;
+    protected volatile FilterHookPipeline insidePipeline; // not null after initialization, compiled hooks
+    protected long slowHookMillis = -1L; // minus means no hook timing
 
     // ===================================================================================
     //                                                                         Constructor
@@ -92,6 +95,22 @@ public class LastaToActionFilter implements Filter {
         for (FilterHook hook : assistInsideHookList()) {
             hook.init(filterConfig);
         }
+        slowHookMillis = FilterHookPipeline.extractSlowHookMillis(filterConfig); // from init-param
+        insidePipeline = compileInsidePipeline();
+    }
+
+    protected FilterHookPipeline compileInsidePipeline() { // immutable
+        return compileInsidePipeline(assistInsideHookList());
+    }
+
+    protected FilterHookPipeline compileInsidePipeline(List<FilterHook> hookList) {
+        return newFilterHookPipeline(hookList, (request, response, chain) -> {
+            viaEmbeddedFilter(request, response, chain); // #to_action
+        });
+    }
+
+    protected FilterHookPipeline newFilterHookPipeline(List<FilterHook> hookList, FilterHookTerminal terminal) {
+        return new FilterHookPipeline(hookList, terminal, slowHookMillis);
     }
 
     // -----------------------------------------------------
@@ -124,24 +143,20 @@ public class LastaToActionFilter implements Filter {
     //                                       ---------------
     protected void viaInsideHook(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws IOException, ServletException {
-        viaInsideHookDeque(request, response, chain, prepareInsideHookDeque());
-    }
-
-    protected Deque<FilterHook> prepareInsideHookDeque() { // null allowed (if no hook)
-        final List<FilterHook> listenerList = assistInsideHookList();
-        return !listenerList.isEmpty() ? new LinkedList<FilterHook>(listenerList) : null;
-    }
-
-    protected void viaInsideHookDeque(HttpServletRequest request, HttpServletResponse response, FilterChain chain, Deque<FilterHook> deque)
-            throws IOException, ServletException {
-        final FilterHook next = deque != null ? deque.poll() : null; // null if no hook
-        if (next != null) {
-            next.hook(request, response, (argreq, argres) -> {
-                viaInsideHookDeque(argreq, argres, chain, deque);
-            }); // e.g. original hook
-        } else {
-            viaEmbeddedFilter(request, response, chain); // #to_action
+        prepareInsidePipeline().execute(request, response, chain); // #to_action
+    }
+
+    protected FilterHookPipeline prepareInsidePipeline() {
+        final FilterHookPipeline pipeline = insidePipeline;
+        if (HotdeployUtil.isHotdeploy()) { // hooks may be changed, recompiled only when changed
+            final List<FilterHook> hookList = assistInsideHookList();
+            if (!pipeline.isCompiledFrom(hookList)) {
+                final FilterHookPipeline recompiled = compileInsidePipeline(hookList);
+                insidePipeline = recompiled;
+                return recompiled;
+            }
         }
+        return pipeline;
     }
 
     // -----------------------------------------------------
@@ -178,6 +193,9 @@ public class LastaToActionFilter implements Filter {
     //                                           Filter Hook
     //                                           -----------
     protected void destroyFilterHook() {
+        if (insidePipeline != null) {
+            insidePipeline.showHookTiming();
+        }
         assistInsideHookList().forEach(hook -> hook.destroy());
     }
 
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter;
+
+import java.util.regex.Pattern;
+
+/**
+ * The rule of sampling for request dump per path. <br>
+ * The first matched rule in RequestLoggingFilter's rules is used for the request.
+ * @author jflute
+ */
+public class RequestDumpSamplingRule {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final Pattern urlPattern;
+    protected final double rate; // 0.0 means no sampling for the path
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public RequestDumpSamplingRule(Pattern urlPattern, double rate) {
+        this.urlPattern = urlPattern;
+        this.rate = rate;
+    }
+
+    // ===================================================================================
+    //                                                                               Match
+    //                                                                               =====
+    /**
+     * @param servletPath The servlet path of the request. (NotNull)
+     * @return Does the rule match with the path? (find() of the pattern)
+     */
+    public boolean matches(String servletPath) {
+        return urlPattern.matcher(servletPath).find();
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "{" + urlPattern + "=" + rate + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public Pattern getUrlPattern() {
+        return urlPattern;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The snapshot of request for sampled dump in production. <br>
+ * Only plain values are copied on the request thread (cheap),
+ * and the display is built on the background thread.
+ * <pre>
+ * Secret-like values are masked: authorization and cookie headers,
+ * cookie values, and parameters whose name contains e.g. password.
+ * Attribute values are shown only for simple types (not to call heavy toString()).
+ * </pre>
+ * @author jflute
+ */
+public class RequestDumpSnapshot {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final String LF = "\n";
+    protected static final String IND = "  ";
+    protected static final String MASK = "****";
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final String reason; // e.g. sampled, slow
+    protected final String titlePath;
+    protected final String method;
+    protected final String url; // with query
+    protected final String remoteAddr;
+    protected final int status;
+    protected final long elapsedMillis;
+    protected final List<String[]> headerList; // name, value
+    protected final List<String[]> parameterList; // name, values
+    protected final List<String> cookieNameList;
+    protected final List<String[]> requestAttributeList; // name, simple display
+    protected final List<String> sessionAttributeNameList;
+    protected final String causeExp; // null allowed
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    protected RequestDumpSnapshot(String reason, String titlePath, HttpServletRequest request, HttpServletResponse response,
+            long elapsedMillis, Throwable cause) {
+        this.reason = reason;
+        this.titlePath = titlePath;
+        this.method = request.getMethod();
+        final String queryString = request.getQueryString();
+        this.url = request.getRequestURL() + (queryString != null ? "?" + queryString : "");
+        this.remoteAddr = request.getRemoteAddr();
+        this.status = response.getStatus();
+        this.elapsedMillis = elapsedMillis;
+        this.headerList = captureHeaders(request);
+        this.parameterList = captureParameters(request);
+        this.cookieNameList = captureCookieNames(request);
+        this.requestAttributeList = captureRequestAttributes(request);
+        this.sessionAttributeNameList = captureSessionAttributeNames(request);
+        this.causeExp = cause != null ? cause.getClass().getName() + ": " + cause.getMessage() : null;
+    }
+
+    /**
+     * Capture the snapshot of the request. (should be called in request thread)
+     * @param reason The reason of the dump, e.g. sampled, slow. (NotNull)
+     * @param titlePath The path as title of the request. (NotNull)
+     * @param request The current request. (NotNull)
+     * @param response The current response. (NotNull)
+     * @param elapsedMillis The elapsed milliseconds of the request.
+     * @param cause The exception of the request. (NullAllowed)
+     * @return The new-created snapshot. (NotNull)
+     */
+    public static RequestDumpSnapshot capture(String reason, String titlePath, HttpServletRequest request, HttpServletResponse response,
+            long elapsedMillis, Throwable cause) {
+        return new RequestDumpSnapshot(reason, titlePath, request, response, elapsedMillis, cause);
+    }
+
+    // ===================================================================================
+    //                                                                             Capture
+    //                                                                             =======
+    protected List<String[]> captureHeaders(HttpServletRequest request) {
+        final Enumeration<String> names = request.getHeaderNames();
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        final List<String[]> list = new ArrayList<String[]>();
+        while (names.hasMoreElements()) {
+            final String name = names.nextElement();
+            list.add(new String[] { name, isSecretHeader(name) ? MASK : request.getHeader(name) });
+        }
+        return list;
+    }
+
+    protected List<String[]> captureParameters(HttpServletRequest request) {
+        final Enumeration<String> names = request.getParameterNames();
+        final List<String[]> list = new ArrayList<String[]>();
+        while (names.hasMoreElements()) {
+            final String name = names.nextElement();
+            if (isSecretParameter(name)) {
+                list.add(new String[] { name, MASK });
+            } else {
+                final String[] values = request.getParameterValues(name);
+                final String[] element = new String[values.length + 1];
+                element[0] = name;
+                System.arraycopy(values, 0, element, 1, values.length);
+                list.add(element);
+            }
+        }
+        return list;
+    }
+
+    protected List<String> captureCookieNames(HttpServletRequest request) {
+        final Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return Collections.emptyList();
+        }
+        final List<String> list = new ArrayList<String>(cookies.length);
+        for (Cookie cookie : cookies) {
+            list.add(cookie.getName());
+        }
+        return list;
+    }
+
+    protected List<String[]> captureRequestAttributes(HttpServletRequest request) {
+        final Enumeration<String> names = request.getAttributeNames();
+        final List<String[]> list = new ArrayList<String[]>();
+        while (names.hasMoreElements()) {
+            final String name = names.nextElement();
+            if (RequestLoggingFilter.ERROR_ATTRIBUTE_KEY.equals(name)) {
+                continue; // shown as cause
+            }
+            list.add(new String[] { name, toSimpleDisp(request.getAttribute(name)) });
+        }
+        return list;
+    }
+
+    protected List<String> captureSessionAttributeNames(HttpServletRequest request) {
+        final HttpSession session = request.getSession(false); // no creation
+        if (session == null) {
+            return Collections.emptyList();
+        }
+        return Collections.list(session.getAttributeNames());
+    }
+
+    protected String toSimpleDisp(Object attr) {
+        if (attr == null) {
+            return "null";
+        }
+        if (attr instanceof String || attr instanceof Number || attr instanceof Boolean || attr instanceof Enum<?>) {
+            final String exp = attr.toString();
+            final int lfIndex = exp.indexOf('\n');
+            return lfIndex >= 0 ? exp.substring(0, lfIndex) + "..." : exp; // one liner
+        }
+        return "(" + attr.getClass().getSimpleName() + ")"; // no toString() for performance and safety
+    }
+
+    // ===================================================================================
+    //                                                                                Mask
+    //                                                                                ====
+    protected boolean isSecretHeader(String name) {
+        final String lower = name.toLowerCase(Locale.ENGLISH);
+        return lower.equals("authorization") || lower.equals("cookie") || lower.equals("proxy-authorization");
+    }
+
+    protected boolean isSecretParameter(String name) {
+        final String lower = name.toLowerCase(Locale.ENGLISH);
+        return lower.contains("password") || lower.contains("secret") || lower.contains("token");
+    }
+
+    // ===================================================================================
+    //                                                                          Build Dump
+    //                                                                          ==========
+    /**
+     * Build the display of the dump. (called in background thread)
+     * @return The multi-line display. (NotNull)
+     */
+    public String buildDump() {
+        final StringBuilder sb = new StringBuilder(512);
+        sb.append("{DUMP ").append(reason).append("}: ").append(titlePath);
+        sb.append(" [").append(elapsedMillis).append("ms, ").append(status).append("]");
+        sb.append(LF).append(IND).append("; method=").append(method).append(" ; url=").append(url);
+        sb.append(" ; remoteAddr=").append(remoteAddr);
+        if (causeExp != null) {
+            sb.append(LF).append(IND).append("; cause=").append(causeExp);
+        }
+        sb.append(LF);
+        for (String[] header : sortedList(headerList)) {
+            sb.append(IND).append("[header] ").append(header[0]).append("=").append(header[1]).append(LF);
+        }
+        for (String[] parameter : sortedList(parameterList)) {
+            sb.append(IND).append("[param] ").append(parameter[0]).append("=");
+            for (int i = 1; i < parameter.length; i++) {
+                sb.append(i > 1 ? ", " : "").append(parameter[i]);
+            }
+            sb.append(LF);
+        }
+        if (!cookieNameList.isEmpty()) {
+            sb.append(IND).append("[cookie] ").append(cookieNameList).append(LF);
+        }
+        for (String[] attribute : sortedList(requestAttributeList)) {
+            sb.append(IND).append("[request] ").append(attribute[0]).append("=").append(attribute[1]).append(LF);
+        }
+        if (!sessionAttributeNameList.isEmpty()) {
+            final List<String> nameList = new ArrayList<String>(sessionAttributeNameList);
+            Collections.sort(nameList);
+            sb.append(IND).append("[session] ").append(nameList).append(LF);
+        }
+        return sb.toString().trim();
+    }
+
+    protected List<String[]> sortedList(List<String[]> list) {
+        final List<String[]> sortedList = new ArrayList<String[]>(list);
+        sortedList.sort((o1, o2) -> o1[0].compareTo(o2[0]));
+        return sortedList;
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public String getTitlePath() {
+        return titlePath;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
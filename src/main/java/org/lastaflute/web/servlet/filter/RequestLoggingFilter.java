@@ -19,6 +19,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -30,9 +31,18 @@ import java.util.Locale;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -44,6 +54,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.lastaflute.core.magic.deadline.exception.RequestDeadlineExceededException;
+import org.lastaflute.web.servlet.filter.accesslog.RequestResourceMeter;
+import org.lastaflute.web.servlet.filter.accesslog.RequestResourceStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +75,17 @@ import org.slf4j.LoggerFactory;
  * to handle request parameters correctly in this filter for debug.
  * e.g. Tomcat parses them as latin1 and keep parsed parameters in request object.
  * It is set in spite of log level for same behavior in several environments.</p>
+ *
+ * <p>In production, requests can be dumped by sampling (dumpSamplingRate, dumpSamplingRules)
+ * or when slow (slowRequestDumpMillis), written by the '.dump' logger in background thread.
+ * The rules are pairs of URL pattern and rate per line (or semicolon), first matched rule is used,
+ * and dumpSamplingRate is for the other paths.</p>
+ * <pre>
+ * e.g. dumpSamplingRules
+ *  ^/member/=0.1
+ *  ^/product/list=0.01
+ *  ^/healthcheck=0
+ * </pre>
  * @author jflute
  */
 public class RequestLoggingFilter implements Filter {
@@ -70,6 +94,7 @@ public class RequestLoggingFilter implements Filter {
     //                                                                          Definition
     //                                                                          ==========
     private static final Logger logger = LoggerFactory.getLogger(RequestLoggingFilter.class);
+    private static final Logger dumpLogger = LoggerFactory.getLogger(RequestLoggingFilter.class.getName() + ".dump");
 
     public static final String ERROR_ATTRIBUTE_KEY = "javax.servlet.error.exception";
     protected static final String LF = "\n";
@@ -89,6 +114,10 @@ public class RequestLoggingFilter implements Filter {
     protected Pattern requestUriTitleUrlPattern;
     protected Pattern subRequestUrlPattern;
     protected String requestCharacterEncoding;
+    protected double dumpSamplingRate; // for paths not matched with rules, 0.0 means no sampling
+    protected List<RequestDumpSamplingRule> dumpSamplingRuleList = Collections.emptyList(); // first matched is used
+    protected long slowRequestDumpMillis = -1L; // minus means no slow dump
+    protected ExecutorService dumpExecutor; // null allowed: when no dump
 
     // ===================================================================================
     //                                                                          Initialize
@@ -101,6 +130,7 @@ public class RequestLoggingFilter implements Filter {
         setupRequestUriTitleUrlPattern(filterConfig);
         setupSubRequestUrlPatternUrlPattern(filterConfig);
         setupRequestCharacterEncoding(filterConfig);
+        setupRequestDump(filterConfig);
     }
 
     protected boolean isBooleanParameter(FilterConfig filterConfig, String name, boolean defaultValue) {
@@ -154,6 +184,60 @@ public class RequestLoggingFilter implements Filter {
         this.requestCharacterEncoding = filterConfig.getInitParameter("requestCharacterEncoding");
     }
 
+    protected void setupRequestDump(FilterConfig filterConfig) {
+        final String rate = filterConfig.getInitParameter("dumpSamplingRate"); // e.g. 0.01
+        if (rate != null && rate.trim().length() > 0) {
+            this.dumpSamplingRate = Double.parseDouble(rate.trim());
+        }
+        final String rules = filterConfig.getInitParameter("dumpSamplingRules"); // e.g. ^/member/=0.1;^/product/=0.01
+        if (rules != null && rules.trim().length() > 0) {
+            this.dumpSamplingRuleList = parseRequestDumpSamplingRules(rules);
+        }
+        final String slowMillis = filterConfig.getInitParameter("slowRequestDumpMillis"); // e.g. 3000
+        if (slowMillis != null && slowMillis.trim().length() > 0) {
+            this.slowRequestDumpMillis = Long.parseLong(slowMillis.trim());
+        }
+        if (dumpSamplingRate > 0.0 || existsPositiveSamplingRule() || slowRequestDumpMillis >= 0L) {
+            this.dumpExecutor = createDumpExecutor();
+        }
+    }
+
+    protected List<RequestDumpSamplingRule> parseRequestDumpSamplingRules(String rules) {
+        final List<RequestDumpSamplingRule> ruleList = new ArrayList<RequestDumpSamplingRule>();
+        for (String line : rules.split("[\\r\\n;]")) {
+            final String rule = line.trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            final int delimiterIndex = rule.lastIndexOf('='); // regular expression may contain '='
+            if (delimiterIndex <= 0) {
+                throw new IllegalStateException("The dump sampling rule should be 'pattern=rate': " + rule + " in " + rules);
+            }
+            final String pattern = rule.substring(0, delimiterIndex).trim();
+            final double rate = Double.parseDouble(rule.substring(delimiterIndex + 1).trim());
+            ruleList.add(new RequestDumpSamplingRule(Pattern.compile(pattern), rate));
+        }
+        return Collections.unmodifiableList(ruleList);
+    }
+
+    protected boolean existsPositiveSamplingRule() {
+        return dumpSamplingRuleList.stream().anyMatch(rule -> rule.getRate() > 0.0);
+    }
+
+    protected ExecutorService createDumpExecutor() { // single writer, dropping when too busy
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "lasta_request_dump");
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(getDumpQueueCapacity()),
+                threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    protected int getDumpQueueCapacity() {
+        return 1000;
+    }
+
     // ===================================================================================
     //                                                                              Filter
     //                                                                              ======
@@ -174,6 +258,7 @@ public class RequestLoggingFilter implements Filter {
     protected void actuallyFilter(FilterChain chain, HttpServletRequest request, HttpServletResponse response) throws IOException {
         prepareCharacterEncodingIfNeeds(request);
         final Long before = System.currentTimeMillis(); // used in not only debug but also error
+        beginResourceMeter(before);
         if (logger.isDebugEnabled()) {
             before(request, response);
         }
@@ -192,8 +277,13 @@ public class RequestLoggingFilter implements Filter {
         } catch (RuntimeException e) {
             // no throw the exception to suppress duplicate error message
             // (Jetty's message doesn't have line separator so hard to see it)
-            sendInternalServerError(request, response, e);
-            logError(request, response, "*RuntimeException occurred.", before, e);
+            if (isRequestDeadlineExceeded(e)) {
+                sendRequestDeadlineExceeded(request, response, e);
+                logError(request, response, "*Request deadline exceeded.", before, e);
+            } else {
+                sendInternalServerError(request, response, e);
+                logError(request, response, "*RuntimeException occurred.", before, e);
+            }
             existsServerError = true;
             cause = e;
         } catch (ServletException e) { // also no throw same reason as RuntimeException catch
@@ -203,8 +293,13 @@ public class RequestLoggingFilter implements Filter {
                 cause = rootCause;
             } else {
                 final Throwable realCause = rootCause != null ? rootCause : e;
-                sendInternalServerError(request, response, realCause);
-                logError(request, response, "*ServletException occurred.", before, realCause);
+                if (isRequestDeadlineExceeded(realCause)) {
+                    sendRequestDeadlineExceeded(request, response, realCause);
+                    logError(request, response, "*Request deadline exceeded.", before, realCause);
+                } else {
+                    sendInternalServerError(request, response, realCause);
+                    logError(request, response, "*ServletException occurred.", before, realCause);
+                }
                 existsServerError = true;
                 cause = realCause;
             }
@@ -219,12 +314,21 @@ public class RequestLoggingFilter implements Filter {
             existsServerError = true;
             cause = e;
         } finally {
+            final boolean asyncLogging = cause == null && isAsyncStarted(request); // e.g. action returns future
             try {
-                handleAccessLog(request, response, cause, before);
+                if (asyncLogging) { // logging after asynchronous process completed (handlers are captured here)
+                    prepareAsyncLogging(request, response, before);
+                } else { // mainly here
+                    handleAccessLog(request, response, cause, before);
+                    if (!existsServerError) { // server error is already logged with request info
+                        dumpRequestIfNeeds(request, response, before, cause);
+                    }
+                }
             } finally {
+                endResourceMeter();
                 clearMark();
                 clearHandler();
-                if (logger.isDebugEnabled()) {
+                if (!asyncLogging && logger.isDebugEnabled()) {
                     if (existsServerError) {
                         attention(request, response);
                     } else {
@@ -237,6 +341,21 @@ public class RequestLoggingFilter implements Filter {
         }
     }
 
+    // -----------------------------------------------------
+    //                                        Resource Meter
+    //                                        --------------
+    protected void beginResourceMeter(Long before) { // CPU time and allocated bytes of request thread
+        RequestResourceMeter.begin(before);
+    }
+
+    protected void endResourceMeter() { // after access log, registered to statistics if action request
+        RequestResourceMeter.end(findResourceStatistics());
+    }
+
+    protected RequestResourceStatistics findResourceStatistics() { // null allowed: no container here, overridden by e.g. showbase
+        return null;
+    }
+
     protected boolean isHttpServlet(ServletRequest servletRequest, ServletResponse servletResponse) {
         return (servletRequest instanceof HttpServletRequest) && (servletResponse instanceof HttpServletResponse);
     }
@@ -527,6 +646,56 @@ public class RequestLoggingFilter implements Filter {
         buildResponseHeaders(sb, response);
     }
 
+    // -----------------------------------------------------
+    //                                          Request Dump
+    //                                          ------------
+    /**
+     * Dump the request info if sampled or slow, for production. (no dump if debug enabled) <br>
+     * The snapshot is taken in the request thread and it is written in background thread.
+     * @param request The request provided by caller. (NotNull)
+     * @param response The response provided by caller, might be already committed. (NotNull)
+     * @param before The time milliseconds before request process. (NotNull)
+     * @param cause The exception of the request e.g. client error. (NullAllowed)
+     */
+    protected void dumpRequestIfNeeds(HttpServletRequest request, HttpServletResponse response, Long before, Throwable cause) {
+        if (dumpExecutor == null || logger.isDebugEnabled() || !dumpLogger.isInfoEnabled()) {
+            return; // debug logging already has request info
+        }
+        final long elapsed = System.currentTimeMillis() - before.longValue();
+        final String reason;
+        if (slowRequestDumpMillis >= 0L && elapsed > slowRequestDumpMillis) { // always dumped if slow
+            reason = "slow";
+        } else if (isDumpSampled(request)) {
+            reason = "sampled";
+        } else {
+            return;
+        }
+        try {
+            final String titlePath = getTitlePath(request);
+            final RequestDumpSnapshot snapshot = RequestDumpSnapshot.capture(reason, titlePath, request, response, elapsed, cause);
+            dumpExecutor.execute(() -> dumpLogger.info(snapshot.buildDump()));
+        } catch (RuntimeException e) { // dump is optional
+            logger.debug("Failed to dump the request: " + getTitlePath(request), e);
+        }
+    }
+
+    protected boolean isDumpSampled(HttpServletRequest request) {
+        final double rate = findDumpSamplingRate(getServletPath(request));
+        if (rate <= 0.0) {
+            return false;
+        }
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    protected double findDumpSamplingRate(String servletPath) {
+        for (RequestDumpSamplingRule rule : dumpSamplingRuleList) {
+            if (rule.matches(servletPath)) {
+                return rule.getRate();
+            }
+        }
+        return dumpSamplingRate;
+    }
+
     // ===================================================================================
     //                                                                     Error Attribute
     //                                                                     ===============
@@ -655,6 +824,10 @@ public class RequestLoggingFilter implements Filter {
         void handle(HttpServletRequest request, HttpServletResponse response, RequestClientErrorException cause);
     }
 
+    public static RequestClientErrorHandler getClientErrorHandlerOnThread() { // e.g. multi-call
+        return clientErrorHandlerLocal.get();
+    }
+
     public static void setClientErrorHandlerOnThread(RequestClientErrorHandler handler) {
         clientErrorHandlerLocal.set(handler);
     }
@@ -793,6 +966,33 @@ public class RequestLoggingFilter implements Filter {
         }
     }
 
+    // -----------------------------------------------------
+    //                                     Deadline Exceeded
+    //                                     -----------------
+    protected boolean isRequestDeadlineExceeded(Throwable cause) {
+        Throwable current = cause;
+        while (current != null) {
+            if (current instanceof RequestDeadlineExceededException) {
+                return true;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    protected void sendRequestDeadlineExceeded(HttpServletRequest request, HttpServletResponse response, Throwable cause)
+            throws IOException {
+        processServerErrorCallback(request, response, cause); // e.g. JSON response for API
+        request.setAttribute(ERROR_ATTRIBUTE_KEY, cause); // for something outer process
+        try {
+            if (!response.isCommitted()) { // might be committed in callback
+                response.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+            }
+        } catch (IOException sendEx) {
+            logger.debug("Failed to send error as '504 Gateway Timeout': " + sendEx.getMessage());
+        }
+    }
+
     // -----------------------------------------------------
     //                                 Server Error Callback
     //                                 ---------------------
@@ -829,6 +1029,10 @@ public class RequestLoggingFilter implements Filter {
         void handle(HttpServletRequest request, HttpServletResponse response, Throwable cause);
     }
 
+    public static RequestServerErrorHandler getServerErrorHandlerOnThread() { // e.g. multi-call
+        return serverErrorHandlerLocal.get();
+    }
+
     public static void setServerErrorHandlerOnThread(RequestServerErrorHandler handler) {
         serverErrorHandlerLocal.set(handler);
     }
@@ -893,6 +1097,101 @@ public class RequestLoggingFilter implements Filter {
         logger.debug(sb.toString());
     }
 
+    // ===================================================================================
+    //                                                                       Async Logging
+    //                                                                       =============
+    protected boolean isAsyncStarted(HttpServletRequest request) {
+        return request.isAsyncSupported() && request.isAsyncStarted();
+    }
+
+    protected void prepareAsyncLogging(HttpServletRequest request, HttpServletResponse response, Long before) {
+        final AsyncContext asyncContext = request.getAsyncContext();
+        final RequestServerErrorHandler serverErrorHandler = serverErrorHandlerLocal.get(); // null allowed
+        final RequestAccessLogHandler accessLogHandler = accessLogHandlerLocal.get(); // null allowed
+        asyncContext.addListener(new AsyncListener() {
+            public void onTimeout(AsyncEvent event) throws IOException {
+                final long timeout = asyncContext.getTimeout();
+                final String msg = "The asynchronous process was timeout: " + timeout + "ms, " + getTitlePath(request);
+                handleAsyncTimeout(request, response, before, new RequestAsyncTimeoutException(msg), serverErrorHandler);
+                asyncContext.complete();
+            }
+
+            public void onStartAsync(AsyncEvent event) throws IOException {
+            }
+
+            public void onError(AsyncEvent event) throws IOException {
+                final Throwable cause = event.getThrowable();
+                if (cause != null) {
+                    request.setAttribute(ERROR_ATTRIBUTE_KEY, cause); // logged when completed
+                }
+                if (!response.isCommitted()) {
+                    response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+                asyncContext.complete();
+            }
+
+            public void onComplete(AsyncEvent event) throws IOException {
+                handleAsyncComplete(request, response, before, accessLogHandler);
+            }
+        });
+    }
+
+    protected void handleAsyncTimeout(HttpServletRequest request, HttpServletResponse response, Long before,
+            RequestAsyncTimeoutException cause, RequestServerErrorHandler serverErrorHandler) {
+        if (serverErrorHandler != null) { // not thread local here (completion thread)
+            try {
+                serverErrorHandler.handle(request, response, cause);
+            } catch (Throwable handlingEx) {
+                logger.debug("Failed to handle 'Async Timeout' by the handler: " + serverErrorHandler, handlingEx);
+            }
+        }
+        request.setAttribute(ERROR_ATTRIBUTE_KEY, cause); // logged when completed
+        try {
+            if (!response.isCommitted()) { // might be committed in callback
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+        } catch (IOException sendEx) {
+            logger.debug("Failed to send error as '503 Service Unavailable': " + sendEx.getMessage());
+        }
+    }
+
+    protected void handleAsyncComplete(HttpServletRequest request, HttpServletResponse response, Long before,
+            RequestAccessLogHandler accessLogHandler) {
+        final Object errorObj = request.getAttribute(ERROR_ATTRIBUTE_KEY);
+        final Throwable cause = errorObj instanceof Throwable ? (Throwable) errorObj : null;
+        if (cause != null) {
+            logError(request, response, "*Exception occurred in asynchronous process.", before, cause);
+        }
+        try {
+            if (accessLogHandler != null) {
+                accessLogHandler.handle(request, response, cause, before);
+            }
+            if (cause == null) {
+                dumpRequestIfNeeds(request, response, before, null);
+            }
+        } finally {
+            if (logger.isDebugEnabled()) {
+                if (cause != null) {
+                    attention(request, response);
+                } else {
+                    after(request, response, before, System.currentTimeMillis(), null);
+                }
+            }
+        }
+    }
+
+    /**
+     * The exception that means timeout of asynchronous process for the current request.
+     */
+    public static class RequestAsyncTimeoutException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public RequestAsyncTimeoutException(String msg) {
+            super(msg);
+        }
+    }
+
     // ===================================================================================
     //                                                                          Access Log
     //                                                                          ==========
@@ -929,6 +1228,9 @@ public class RequestLoggingFilter implements Filter {
     //                                                                             =======
     public void destroy() {
         config = null;
+        if (dumpExecutor != null) {
+            dumpExecutor.shutdown(); // queued dumps are written
+        }
     }
 
     // ===================================================================================
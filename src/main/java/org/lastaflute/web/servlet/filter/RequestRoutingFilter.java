@@ -17,9 +17,12 @@ package org.lastaflute.web.servlet.filter;
 
 import java.io.IOException;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -38,6 +41,12 @@ import org.lastaflute.web.ruts.ActionRequestProcessor;
 import org.lastaflute.web.ruts.config.ActionExecute;
 import org.lastaflute.web.ruts.process.RequestUrlParam;
 import org.lastaflute.web.ruts.process.RequestUrlParamAnalyzer;
+import org.lastaflute.web.servlet.filter.admission.AdmissionControlOption;
+import org.lastaflute.web.servlet.filter.admission.AdmissionController;
+import org.lastaflute.web.servlet.filter.admission.AdmissionController.AdmissionTicket;
+import org.lastaflute.web.servlet.filter.admission.AdmissionPriority;
+import org.lastaflute.web.servlet.filter.multicall.MultiCallOption;
+import org.lastaflute.web.servlet.filter.multicall.MultiCallProcessor;
 import org.lastaflute.web.servlet.request.RequestManager;
 import org.lastaflute.web.util.LaActionExecuteUtil;
 import org.lastaflute.web.util.LaModuleConfigUtil;
@@ -54,6 +63,9 @@ public class RequestRoutingFilter implements Filter {
     //                                                                          ==========
     private static final Logger logger = LoggerFactory.getLogger(RequestRoutingFilter.class);
 
+    /** The key of request attribute for admitted request, to avoid duplicate admission when e.g. forward. */
+    protected static final String ADMITTED_ATTRIBUTE_KEY = RequestRoutingFilter.class.getName() + ".admitted";
+
     // ===================================================================================
     //                                                                           Attribute
     //                                                                           =========
@@ -78,10 +90,26 @@ public class RequestRoutingFilter implements Filter {
     /** The processor of action request, lazy loaded so use the getter. (NotNull: after lazy-load) */
     protected ActionRequestProcessor lazyLoadedProcessor; // lazy loaded
 
+    /** The context of the application, for e.g. admission controller. (NotNull: after initialization) */
+    protected ServletContext servletContext;
+
+    /** The controller of request admission, lazy loaded so use the getter. (NullAllowed: when disabled) */
+    protected volatile AdmissionController lazyLoadedAdmissionController;
+
+    /** Is the admission controller already determined? (true: after lazy-load) */
+    protected volatile boolean admissionControllerDetermined;
+
+    /** The processor of multi-call endpoint, lazy loaded so use the getter. (NullAllowed: when disabled) */
+    protected volatile MultiCallProcessor lazyLoadedMultiCallProcessor;
+
+    /** Is the multi-call processor already determined? (true: after lazy-load) */
+    protected volatile boolean multiCallProcessorDetermined;
+
     // ===================================================================================
     //                                                                          Initialize
     //                                                                          ==========
     public void init(FilterConfig filterConfig) throws ServletException {
+        servletContext = filterConfig.getServletContext();
     }
 
     // ===================================================================================
@@ -92,6 +120,11 @@ public class RequestRoutingFilter implements Filter {
         final HttpServletRequest httpReq = (HttpServletRequest) servReq;
         final HttpServletResponse httpRes = (HttpServletResponse) servRes;
         final String requestPath = extractActionRequestPath(httpReq);
+        final MultiCallProcessor multiCallProcessor = getMultiCallProcessor();
+        if (multiCallProcessor != null && multiCallProcessor.isMultiCallRequest(requestPath)) { // e.g. /multicall
+            processMultiCall(httpReq, httpRes, multiCallProcessor); // #to_action (per sub-request)
+            return;
+        }
         if (!isRoutingTarget(httpReq, requestPath)) { // e.g. foo.jsp, foo.do, foo.js, foo.css
             chain.doFilter(httpReq, httpRes);
             return;
@@ -229,6 +262,38 @@ public class RequestRoutingFilter implements Filter {
         getRequestManager().getResponseManager().movedPermanently(HtmlResponse.fromRedirectPathAsIs(redirectUrl));
     }
 
+    // ===================================================================================
+    //                                                                          Multi-call
+    //                                                                          ==========
+    protected void processMultiCall(HttpServletRequest request, HttpServletResponse response, MultiCallProcessor processor)
+            throws IOException {
+        final ActionPathResolver resolver = ContainerUtil.getComponent(ActionPathResolver.class);
+        final String contextPath = extractContextPath(request);
+        processor.process(request, response, (subReq, subRes, subPath) -> {
+            return resolver.handleActionPath(subPath, createActionPathHandler(subReq, subRes, contextPath)); // #to_action
+        });
+    }
+
+    protected MultiCallProcessor getMultiCallProcessor() {
+        if (!multiCallProcessorDetermined) {
+            synchronized (this) {
+                if (!multiCallProcessorDetermined) { // re-confirm
+                    final MultiCallOption option = assistActionAdjustmentProvider().adjustMultiCall();
+                    if (option != null) {
+                        lazyLoadedMultiCallProcessor = newMultiCallProcessor(option);
+                        logger.info("...Enabling multi-call endpoint: {}", option);
+                    }
+                    multiCallProcessorDetermined = true;
+                }
+            }
+        }
+        return lazyLoadedMultiCallProcessor;
+    }
+
+    protected MultiCallProcessor newMultiCallProcessor(MultiCallOption option) {
+        return new MultiCallProcessor(option, getRequestManager().getJsonManager());
+    }
+
     // ===================================================================================
     //                                                                      Process Action
     //                                                                      ==============
@@ -236,7 +301,99 @@ public class RequestRoutingFilter implements Filter {
             throws IOException, ServletException {
         logger.debug("...Routing to action: name={} params={}", execute.getActionMapping().getActionName(), paramPath);
         LaActionExecuteUtil.setActionExecute(execute); // for e.g. tag-library use
-        getRequestProcessor().process(execute, analyzeUrlParam(execute, paramPath)); // #to_action
+        final AdmissionController admissionController = getAdmissionController();
+        if (admissionController == null || request.getAttribute(ADMITTED_ATTRIBUTE_KEY) != null) { // disabled or nested
+            getRequestProcessor().process(execute, analyzeUrlParam(execute, paramPath)); // #to_action
+            return;
+        }
+        final OptionalThing<AdmissionTicket> optTicket = admissionController.admit(execute.toSimpleMethodExp(), findPriority(execute));
+        if (!optTicket.isPresent()) {
+            rejectAdmission(request, response, execute, admissionController);
+            return;
+        }
+        final AdmissionTicket ticket = optTicket.get();
+        request.setAttribute(ADMITTED_ATTRIBUTE_KEY, ticket);
+        boolean asyncReleasing = false;
+        try {
+            getRequestProcessor().process(execute, analyzeUrlParam(execute, paramPath)); // #to_action
+            asyncReleasing = isAsyncStarted(request); // e.g. execute method returns future
+            if (asyncReleasing) {
+                prepareAsyncRelease(request, ticket);
+            }
+        } finally {
+            if (!asyncReleasing) {
+                ticket.release();
+            }
+        }
+    }
+
+    protected boolean isAsyncStarted(HttpServletRequest request) {
+        return request.isAsyncSupported() && request.isAsyncStarted();
+    }
+
+    protected void prepareAsyncRelease(HttpServletRequest request, AdmissionTicket ticket) {
+        // in-flight asynchronous process holds the ticket, and its latency is judged at the end
+        request.getAsyncContext().addListener(new AsyncListener() {
+            public void onStartAsync(AsyncEvent event) throws IOException { // listeners are cleared per async cycle
+                event.getAsyncContext().addListener(this);
+            }
+
+            public void onComplete(AsyncEvent event) throws IOException {
+                ticket.release();
+            }
+
+            public void onTimeout(AsyncEvent event) throws IOException {
+                ticket.release();
+            }
+
+            public void onError(AsyncEvent event) throws IOException {
+                ticket.release();
+            }
+        });
+    }
+
+    // -----------------------------------------------------
+    //                                     Admission Control
+    //                                     -----------------
+    protected AdmissionPriority findPriority(ActionExecute execute) {
+        final AdmissionPriority priority = assistActionAdjustmentProvider().provideAdmissionPriority(execute);
+        return priority != null ? priority : AdmissionPriority.NORMAL;
+    }
+
+    protected void rejectAdmission(HttpServletRequest request, HttpServletResponse response, ActionExecute execute,
+            AdmissionController admissionController) throws IOException {
+        final AdmissionControlOption option = admissionController.getOption();
+        if (logger.isDebugEnabled()) {
+            logger.debug("...Rejecting the request by admission control: {} {}", execute.toSimpleMethodExp(), admissionController);
+        }
+        if (response.isCommitted()) { // basically no way
+            return;
+        }
+        if (option.getRetryAfterSeconds() > 0) {
+            response.setHeader("Retry-After", String.valueOf(option.getRetryAfterSeconds()));
+        }
+        response.setStatus(option.getRejectedStatus()); // not sendError() to be fast, no error page
+    }
+
+    protected AdmissionController getAdmissionController() {
+        if (!admissionControllerDetermined) {
+            synchronized (this) {
+                if (!admissionControllerDetermined) { // re-confirm
+                    final AdmissionControlOption option = assistActionAdjustmentProvider().adjustAdmissionControl();
+                    if (option != null) {
+                        lazyLoadedAdmissionController = newAdmissionController(option);
+                        AdmissionController.registerActiveController(servletContext, lazyLoadedAdmissionController);
+                        logger.info("...Enabling admission control: {}", option);
+                    }
+                    admissionControllerDetermined = true;
+                }
+            }
+        }
+        return lazyLoadedAdmissionController;
+    }
+
+    protected AdmissionController newAdmissionController(AdmissionControlOption option) {
+        return new AdmissionController(option);
     }
 
     // -----------------------------------------------------
@@ -274,6 +431,13 @@ public class RequestRoutingFilter implements Filter {
     //                                                                             =======
     @Override
     public void destroy() {
+        final AdmissionController admissionController = lazyLoadedAdmissionController;
+        if (admissionController != null) {
+            logger.info("#admission {}", admissionController);
+            if (servletContext != null) { // basically true
+                AdmissionController.registerActiveController(servletContext, null);
+            }
+        }
     }
 
     // ===================================================================================
@@ -18,6 +18,10 @@ package org.lastaflute.web.servlet.filter.accesslog;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.dbflute.optional.OptionalThing;
+import org.lastaflute.core.magic.identity.RequestIdentity;
+import org.lastaflute.web.LastaWebKey;
+
 /**
  * @author jflute
  * @since 0.6.0 (2015/06/03 Wednesday)
@@ -28,12 +32,19 @@ public class AccessLogResource {
     protected final HttpServletResponse response;
     protected final Throwable cause; // null allowed
     protected final long before;
+    protected final RequestResourceUsage resourceUsage; // null allowed: e.g. asynchronous completion
 
     public AccessLogResource(HttpServletRequest request, HttpServletResponse response, Throwable cause, long before) {
+        this(request, response, cause, before, null);
+    }
+
+    public AccessLogResource(HttpServletRequest request, HttpServletResponse response, Throwable cause, long before,
+            RequestResourceUsage resourceUsage) {
         this.request = request;
         this.response = response;
         this.cause = cause;
         this.before = before;
+        this.resourceUsage = resourceUsage;
     }
 
     public HttpServletRequest getRequest() {
@@ -59,4 +70,25 @@ public class AccessLogResource {
     public long getBefore() {
         return before;
     }
+
+    /**
+     * Get the identity of the request, same as e.g. MDC request ID and asynchronous process.
+     * @return The optional identity prepared by filter. (NotNull, EmptyAllowed: e.g. out of prepare filter)
+     */
+    public OptionalThing<RequestIdentity> getRequestIdentity() {
+        final Object identity = request.getAttribute(LastaWebKey.REQUEST_IDENTITY_KEY); // also in completion thread
+        return OptionalThing.ofNullable(identity instanceof RequestIdentity ? (RequestIdentity) identity : null, () -> {
+            throw new IllegalStateException("Not found the request identity for the request: " + request.getRequestURI());
+        });
+    }
+
+    /**
+     * Get the resource usage of the request, e.g. CPU time, allocated bytes, SQL count.
+     * @return The optional usage measured in request thread. (NotNull, EmptyAllowed: e.g. asynchronous completion)
+     */
+    public OptionalThing<RequestResourceUsage> getResourceUsage() {
+        return OptionalThing.ofNullable(resourceUsage, () -> {
+            throw new IllegalStateException("Not found the resource usage for the request: " + request.getRequestURI());
+        });
+    }
 }
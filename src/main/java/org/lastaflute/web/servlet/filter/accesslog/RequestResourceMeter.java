@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.accesslog;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.dbflute.optional.OptionalThing;
+
+/**
+ * The meter of resource usage for the current request, bound to the request thread. <br>
+ * Begun and ended by request logging filter, and SQL info is registered by action (god-hand epilogue).
+ * <pre>
+ * CPU time and allocated bytes are of the request thread only,
+ * so asynchronous process in other threads is not included.
+ * </pre>
+ * @author jflute
+ */
+public class RequestResourceMeter {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final ThreadLocal<RequestResourceMeter> meterLocal = new ThreadLocal<RequestResourceMeter>();
+    protected static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    protected static final boolean cpuTimeEnabled = determineCpuTimeEnabled();
+    protected static final boolean allocatedBytesEnabled = determineAllocatedBytesEnabled();
+
+    protected static boolean determineCpuTimeEnabled() {
+        try {
+            return threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+        } catch (RuntimeException ignored) {
+            return false;
+        }
+    }
+
+    protected static boolean determineAllocatedBytesEnabled() {
+        try { // HotSpot extension, not found in some JVMs
+            if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) threadBean;
+                return sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled();
+            }
+            return false;
+        } catch (RuntimeException | LinkageError ignored) {
+            return false;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final long beforeMillis;
+    protected final long beginCpuNanos;
+    protected final long beginAllocatedBytes;
+    protected String actionKey; // null allowed: e.g. not action request
+    protected int sqlCount;
+    protected long sqlMillis;
+    protected RequestResourceUsage usage; // null allowed: fixed at first calculation
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    protected RequestResourceMeter(long beforeMillis) {
+        this.beforeMillis = beforeMillis;
+        this.beginCpuNanos = currentCpuNanos();
+        this.beginAllocatedBytes = currentAllocatedBytes();
+    }
+
+    protected static long currentCpuNanos() {
+        return cpuTimeEnabled ? threadBean.getCurrentThreadCpuTime() : -1L;
+    }
+
+    protected static long currentAllocatedBytes() {
+        if (!allocatedBytesEnabled) {
+            return -1L;
+        }
+        return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // ===================================================================================
+    //                                                                         Begin / End
+    //                                                                         ===========
+    /**
+     * Begin the meter for the current request. (called by request logging filter)
+     * @param beforeMillis The time milliseconds before request process.
+     */
+    public static void begin(long beforeMillis) {
+        meterLocal.set(new RequestResourceMeter(beforeMillis));
+    }
+
+    /**
+     * End the meter, registering the usage to statistics if action request.
+     * @param statistics The statistics to register the usage. (NullAllowed: if null, no registration e.g. no container)
+     */
+    public static void end(RequestResourceStatistics statistics) {
+        final RequestResourceMeter meter = meterLocal.get();
+        if (meter == null) {
+            return;
+        }
+        try {
+            if (statistics != null && meter.actionKey != null) {
+                statistics.register(meter.actionKey, meter.calculateUsage());
+            }
+        } finally {
+            meterLocal.remove();
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Register
+    //                                                                            ========
+    /**
+     * Register the action of the current request. (called by god-hand)
+     * @param actionKey The key of action execute, e.g. SeaAction@land(). (NotNull)
+     */
+    public static void registerAction(String actionKey) {
+        final RequestResourceMeter meter = meterLocal.get();
+        if (meter != null) {
+            meter.actionKey = actionKey;
+        }
+    }
+
+    /**
+     * Register the SQL executions of the current request. (called by god-hand)
+     * @param sqlCount The count of executed SQL.
+     * @param sqlMillis The total time of executed SQL.
+     */
+    public static void registerSql(int sqlCount, long sqlMillis) {
+        final RequestResourceMeter meter = meterLocal.get();
+        if (meter != null) {
+            meter.sqlCount += sqlCount;
+            meter.sqlMillis += sqlMillis;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                               Usage
+    //                                                                               =====
+    /**
+     * Find the usage of the current request, fixed at first calling.
+     * @return The optional usage. (NotNull, EmptyAllowed: when no meter e.g. asynchronous thread)
+     */
+    public static OptionalThing<RequestResourceUsage> findCurrentUsage() {
+        final RequestResourceMeter meter = meterLocal.get();
+        return OptionalThing.ofNullable(meter != null ? meter.calculateUsage() : null, () -> {
+            throw new IllegalStateException("Not found the resource meter for the current thread.");
+        });
+    }
+
+    protected RequestResourceUsage calculateUsage() {
+        if (usage == null) {
+            final long elapsed = System.currentTimeMillis() - beforeMillis;
+            final long cpu = beginCpuNanos >= 0L ? currentCpuNanos() - beginCpuNanos : -1L;
+            final long allocated = beginAllocatedBytes >= 0L ? currentAllocatedBytes() - beginAllocatedBytes : -1L;
+            usage = new RequestResourceUsage(elapsed, cpu, allocated, sqlCount, sqlMillis);
+        }
+        return usage;
+    }
+}
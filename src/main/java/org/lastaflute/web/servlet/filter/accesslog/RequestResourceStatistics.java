@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.accesslog;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The lock-free registry of cumulative resource usage per action execute, as DI component. <br>
+ * You can use it for capacity planning by real per-endpoint cost.
+ * <pre>
+ * e.g.
+ *  &#064;Resource
+ *  private RequestResourceStatistics requestResourceStatistics;
+ *
+ *  requestResourceStatistics.getActionStatisticsMap().forEach((key, stat) -&gt; ...);
+ * </pre>
+ * @author jflute
+ */
+public class RequestResourceStatistics {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** The map of action statistics, keyed by action execute expression. (NotNull) */
+    protected final Map<String, ActionResourceStatistics> actionStatisticsMap =
+            new ConcurrentHashMap<String, ActionResourceStatistics>();
+
+    // ===================================================================================
+    //                                                                            Register
+    //                                                                            ========
+    /**
+     * Register the usage of one request into the statistics.
+     * @param actionKey The key of action execute, e.g. SeaAction@land(). (NotNull)
+     * @param usage The resource usage of the request. (NotNull)
+     */
+    public void register(String actionKey, RequestResourceUsage usage) {
+        ActionResourceStatistics statistics = actionStatisticsMap.get(actionKey);
+        if (statistics == null) {
+            statistics = actionStatisticsMap.computeIfAbsent(actionKey, key -> new ActionResourceStatistics(key));
+        }
+        statistics.aggregate(usage);
+    }
+
+    /**
+     * Clear all statistics, e.g. after reporting.
+     */
+    public void clear() {
+        actionStatisticsMap.clear();
+    }
+
+    /**
+     * @return The read-only map of action statistics, keyed by action execute expression. (NotNull)
+     */
+    public Map<String, ActionResourceStatistics> getActionStatisticsMap() {
+        return Collections.unmodifiableMap(actionStatisticsMap);
+    }
+
+    // ===================================================================================
+    //                                                                   Statistics Object
+    //                                                                   =================
+    public static class ActionResourceStatistics {
+
+        protected final String actionKey;
+        protected final LongAdder requestCount = new LongAdder();
+        protected final LongAdder elapsedMillis = new LongAdder();
+        protected final LongAdder cpuNanos = new LongAdder();
+        protected final LongAdder allocatedBytes = new LongAdder();
+        protected final LongAdder sqlCount = new LongAdder();
+        protected final LongAdder sqlMillis = new LongAdder();
+
+        public ActionResourceStatistics(String actionKey) {
+            this.actionKey = actionKey;
+        }
+
+        public void aggregate(RequestResourceUsage usage) {
+            requestCount.increment();
+            elapsedMillis.add(usage.getElapsedMillis());
+            if (usage.getCpuNanos() >= 0L) {
+                cpuNanos.add(usage.getCpuNanos());
+            }
+            if (usage.getAllocatedBytes() >= 0L) {
+                allocatedBytes.add(usage.getAllocatedBytes());
+            }
+            sqlCount.add(usage.getSqlCount());
+            sqlMillis.add(usage.getSqlMillis());
+        }
+
+        @Override
+        public String toString() {
+            return "{" + actionKey + ", requests=" + requestCount.sum() + ", elapsed=" + elapsedMillis.sum() + "ms, cpu="
+                    + (cpuNanos.sum() / 1000000L) + "ms, allocated=" + allocatedBytes.sum() + "B, sql=" + sqlCount.sum() + "/"
+                    + sqlMillis.sum() + "ms}";
+        }
+
+        public String getActionKey() {
+            return actionKey;
+        }
+
+        public long getRequestCount() {
+            return requestCount.sum();
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis.sum();
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos.sum();
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        public long getSqlCount() {
+            return sqlCount.sum();
+        }
+
+        public long getSqlMillis() {
+            return sqlMillis.sum();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.accesslog;
+
+/**
+ * The resource usage of one request, measured in the request thread. <br>
+ * CPU time and allocated bytes are minus if the JVM does not support them.
+ * @author jflute
+ */
+public class RequestResourceUsage {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final long elapsedMillis;
+    protected final long cpuNanos; // minus if unsupported
+    protected final long allocatedBytes; // minus if unsupported
+    protected final int sqlCount;
+    protected final long sqlMillis;
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public RequestResourceUsage(long elapsedMillis, long cpuNanos, long allocatedBytes, int sqlCount, long sqlMillis) {
+        this.elapsedMillis = elapsedMillis;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.sqlCount = sqlCount;
+        this.sqlMillis = sqlMillis;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "{elapsed=" + elapsedMillis + "ms, cpu=" + getCpuMillis() + "ms, allocated=" + allocatedBytes + "B, sql=" + sqlCount + "/"
+                + sqlMillis + "ms}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getCpuMillis() {
+        return cpuNanos >= 0L ? cpuNanos / 1000000L : -1L;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int getSqlCount() {
+        return sqlCount;
+    }
+
+    public long getSqlMillis() {
+        return sqlMillis;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The concurrency limit adjusted by AIMD (additive increase, multiplicative decrease) from observed latency. <br>
+ * Whether the request is slow is judged by the latency baseline of its own action (see {@link LatencyBaseline}).
+ * <pre>
+ * o slow sample: limit = limit * 0.9 (not under min, at most once per round trip)
+ * o fast sample: limit = limit + 1 / limit (not over max, only when the limit is actually used)
+ * </pre>
+ * The requests admitted before the last backoff do not back off again, e.g. slow completions by one GC pause
+ * decrease the limit only once, so the backoff epoch at admission is given when releasing.
+ * Both acquiring and adjusting are lock-free.
+ * @author jflute
+ */
+public class AdaptiveConcurrencyLimit {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final double BACKOFF_RATIO = 0.9;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final String name; // not null
+    protected final int minLimit;
+    protected final int maxLimit;
+    protected final AtomicInteger inFlight = new AtomicInteger();
+    protected final LongAdder admittedCount = new LongAdder();
+    protected final LongAdder rejectedCount = new LongAdder();
+    protected final LongAdder slowCount = new LongAdder();
+    protected final AtomicLong limitBits; // double value, updated by compare-and-set
+    protected final AtomicInteger backoffEpoch = new AtomicInteger(); // incremented per backoff
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+    }
+
+    // ===================================================================================
+    //                                                                             Acquire
+    //                                                                             =======
+    /**
+     * Try to acquire the concurrency within the limit for the priority.
+     * @param priority The priority of the request. (NotNull)
+     * @return true if acquired, so you should release it after the request.
+     */
+    public boolean tryAcquire(AdmissionPriority priority) {
+        final int allowed = Math.max(1, (int) (currentLimit() * priority.getAdmissionRatio()));
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= allowed) {
+                rejectedCount.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admittedCount.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release the acquired concurrency without adjustment, e.g. when other limit rejects.
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+        admittedCount.decrement();
+    }
+
+    /**
+     * Release the acquired concurrency and adjust the limit by the judgement of latency.
+     * @param slow Is the request slow against the baseline of its action?
+     * @param admittedEpoch The backoff epoch when the request was admitted, from getBackoffEpoch().
+     */
+    public void release(boolean slow, int admittedEpoch) {
+        final int concurrency = inFlight.getAndDecrement(); // including this request
+        if (slow) {
+            slowCount.increment();
+            if (!backoffEpoch.compareAndSet(admittedEpoch, admittedEpoch + 1)) { // already backed off after admitted
+                return;
+            }
+        }
+        adjustLimit(slow, concurrency);
+    }
+
+    protected void adjustLimit(boolean slow, int concurrency) {
+        while (true) {
+            final long currentBits = limitBits.get();
+            final double currentLimit = Double.longBitsToDouble(currentBits);
+            final double nextLimit;
+            if (slow) {
+                nextLimit = Math.max(minLimit, currentLimit * BACKOFF_RATIO);
+            } else if (concurrency * 2 >= currentLimit) { // grow only when the limit is actually used
+                nextLimit = Math.min(maxLimit, currentLimit + 1.0 / currentLimit);
+            } else {
+                return;
+            }
+            if (nextLimit == currentLimit || limitBits.compareAndSet(currentBits, Double.doubleToRawLongBits(nextLimit))) {
+                return;
+            }
+        }
+    }
+
+    protected double currentLimit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(name).append(":{limit=").append(getLimit());
+        sb.append(", inFlight=").append(getInFlight());
+        sb.append(", admitted=").append(getAdmittedCount());
+        sb.append(", rejected=").append(getRejectedCount());
+        sb.append(", slow=").append(getSlowCount()).append("}");
+        return sb.toString();
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) currentLimit();
+    }
+
+    public int getBackoffEpoch() {
+        return backoffEpoch.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getSlowCount() {
+        return slowCount.sum();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.admission;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The option of admission control, which limits concurrent requests adaptively from observed latency.
+ * @author jflute
+ */
+public class AdmissionControlOption {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected int globalInitialLimit = 100;
+    protected int globalMinLimit = 10;
+    protected int globalMaxLimit = 1000;
+    protected int actionInitialLimit = 50; // zero means no limit per action
+    protected int actionMinLimit = 5;
+    protected int actionMaxLimit = 500;
+    protected double latencyTolerance = 2.0; // slow if latency is over baseline * tolerance
+    protected int rejectedStatus = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+    protected int retryAfterSeconds = 1;
+
+    // ===================================================================================
+    //                                                                         Easy-to-Use
+    //                                                                         ===========
+    /**
+     * Set the concurrency limit of all actions.
+     * @param initialLimit The initial count of concurrency limit. (NotMinus, NotZero)
+     * @param minLimit The minimum count that the adaptive limit never goes under. (NotMinus, NotZero)
+     * @param maxLimit The maximum count that the adaptive limit never goes over. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public AdmissionControlOption globalLimit(int initialLimit, int minLimit, int maxLimit) {
+        assertLimitValid(initialLimit, minLimit, maxLimit);
+        globalInitialLimit = initialLimit;
+        globalMinLimit = minLimit;
+        globalMaxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * Set the concurrency limit per action execute.
+     * @param initialLimit The initial count of concurrency limit. (NotMinus, NotZero)
+     * @param minLimit The minimum count that the adaptive limit never goes under. (NotMinus, NotZero)
+     * @param maxLimit The maximum count that the adaptive limit never goes over. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public AdmissionControlOption actionLimit(int initialLimit, int minLimit, int maxLimit) {
+        assertLimitValid(initialLimit, minLimit, maxLimit);
+        actionInitialLimit = initialLimit;
+        actionMinLimit = minLimit;
+        actionMaxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * Limit only globally, no concurrency limit per action execute.
+     * @return this. (NotNull)
+     */
+    public AdmissionControlOption withoutActionLimit() {
+        actionInitialLimit = 0;
+        return this;
+    }
+
+    /**
+     * Set the tolerance of latency, the limit decreases when latency is over the baseline multiplied by it.
+     * @param latencyTolerance The ratio to baseline latency. (GreaterThanOne)
+     * @return this. (NotNull)
+     */
+    public AdmissionControlOption latencyTolerance(double latencyTolerance) {
+        if (latencyTolerance <= 1.0) {
+            throw new IllegalArgumentException("The argument 'latencyTolerance' should be greater than 1.0: " + latencyTolerance);
+        }
+        this.latencyTolerance = latencyTolerance;
+        return this;
+    }
+
+    /**
+     * Reject excess requests as '429 Too Many Requests' instead of '503 Service Unavailable'.
+     * @return this. (NotNull)
+     */
+    public AdmissionControlOption asTooManyRequests() {
+        rejectedStatus = 429; // no constant in servlet API
+        return this;
+    }
+
+    /**
+     * Set the seconds of 'Retry-After' header for rejected requests.
+     * @param retryAfterSeconds The seconds for client retry. (NotMinus: if zero, no header)
+     * @return this. (NotNull)
+     */
+    public AdmissionControlOption retryAfterSeconds(int retryAfterSeconds) {
+        if (retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("The argument 'retryAfterSeconds' should not be minus: " + retryAfterSeconds);
+        }
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    protected void assertLimitValid(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            String msg = "The limits should be 0 < min <= initial <= max: " + minLimit + ", " + initialLimit + ", " + maxLimit;
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        final String globalExp = globalInitialLimit + "(" + globalMinLimit + "-" + globalMaxLimit + ")";
+        final String actionExp = actionInitialLimit > 0 ? actionInitialLimit + "(" + actionMinLimit + "-" + actionMaxLimit + ")" : "none";
+        return "{global=" + globalExp + ", action=" + actionExp + ", tolerance=" + latencyTolerance + ", rejected=" + rejectedStatus
+                + ", retryAfter=" + retryAfterSeconds + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public int getGlobalInitialLimit() {
+        return globalInitialLimit;
+    }
+
+    public int getGlobalMinLimit() {
+        return globalMinLimit;
+    }
+
+    public int getGlobalMaxLimit() {
+        return globalMaxLimit;
+    }
+
+    public boolean hasActionLimit() {
+        return actionInitialLimit > 0;
+    }
+
+    public int getActionInitialLimit() {
+        return actionInitialLimit;
+    }
+
+    public int getActionMinLimit() {
+        return actionMinLimit;
+    }
+
+    public int getActionMaxLimit() {
+        return actionMaxLimit;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public int getRejectedStatus() {
+        return rejectedStatus;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
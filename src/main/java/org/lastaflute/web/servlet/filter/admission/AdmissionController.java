@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.admission;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletContext;
+
+import org.dbflute.optional.OptionalThing;
+import org.lastaflute.web.LastaWebKey;
+
+/**
+ * The controller of request admission by global and per-action adaptive concurrency limits. <br>
+ * Excess requests are rejected immediately instead of queuing in the container.
+ * <pre>
+ * e.g. metrics
+ *  AdmissionController.findActiveController(servletContext).ifPresent(controller -&gt; {
+ *      controller.getGlobalLimit().getLimit(); ...
+ *  });
+ * </pre>
+ * @author jflute
+ */
+public class AdmissionController {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final AdmissionControlOption option; // not null
+    protected final AdaptiveConcurrencyLimit globalLimit; // not null
+    protected final Map<String, AdaptiveConcurrencyLimit> actionLimitMap = new ConcurrentHashMap<String, AdaptiveConcurrencyLimit>();
+    protected final Map<String, LatencyBaseline> actionBaselineMap = new ConcurrentHashMap<String, LatencyBaseline>();
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public AdmissionController(AdmissionControlOption option) {
+        this.option = option;
+        this.globalLimit = createConcurrencyLimit("global", option.getGlobalInitialLimit(), option.getGlobalMinLimit(),
+                option.getGlobalMaxLimit());
+    }
+
+    protected AdaptiveConcurrencyLimit createConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit) {
+        return new AdaptiveConcurrencyLimit(name, initialLimit, minLimit, maxLimit);
+    }
+
+    // ===================================================================================
+    //                                                                               Admit
+    //                                                                               =====
+    /**
+     * Admit the request if both global and action limits have room for the priority.
+     * @param actionKey The key of action execute, e.g. SeaAction@land(). (NotNull)
+     * @param priority The priority of the request. (NotNull)
+     * @return The optional ticket that should be released after the request. (NotNull, EmptyAllowed: when rejected)
+     */
+    public OptionalThing<AdmissionTicket> admit(String actionKey, AdmissionPriority priority) {
+        final AdaptiveConcurrencyLimit actionLimit = option.hasActionLimit() ? findActionLimit(actionKey) : null;
+        if (actionLimit != null && !actionLimit.tryAcquire(priority)) {
+            return OptionalThing.empty();
+        }
+        if (!globalLimit.tryAcquire(priority)) {
+            if (actionLimit != null) {
+                actionLimit.cancel();
+            }
+            return OptionalThing.empty();
+        }
+        final LatencyBaseline baseline = findActionBaseline(actionKey);
+        return OptionalThing.of(new AdmissionTicket(globalLimit, actionLimit, baseline, System.currentTimeMillis()));
+    }
+
+    protected AdaptiveConcurrencyLimit findActionLimit(String actionKey) {
+        AdaptiveConcurrencyLimit limit = actionLimitMap.get(actionKey);
+        if (limit == null) {
+            limit = actionLimitMap.computeIfAbsent(actionKey, key -> {
+                return createConcurrencyLimit(key, option.getActionInitialLimit(), option.getActionMinLimit(), option.getActionMaxLimit());
+            });
+        }
+        return limit;
+    }
+
+    protected LatencyBaseline findActionBaseline(String actionKey) { // also for global limit, judged per action
+        LatencyBaseline baseline = actionBaselineMap.get(actionKey);
+        if (baseline == null) {
+            baseline = actionBaselineMap.computeIfAbsent(actionKey, key -> new LatencyBaseline(option.getLatencyTolerance()));
+        }
+        return baseline;
+    }
+
+    /**
+     * The ticket of admitted request, should be released once.
+     */
+    public static class AdmissionTicket {
+
+        protected final AdaptiveConcurrencyLimit globalLimit; // not null
+        protected final AdaptiveConcurrencyLimit actionLimit; // null allowed
+        protected final LatencyBaseline baseline; // not null, of the action
+        protected final long beginMillis;
+        protected final int globalEpoch; // backoff epoch at admission
+        protected final int actionEpoch;
+        protected final AtomicBoolean released = new AtomicBoolean(); // request thread or async listener
+
+        public AdmissionTicket(AdaptiveConcurrencyLimit globalLimit, AdaptiveConcurrencyLimit actionLimit, LatencyBaseline baseline,
+                long beginMillis) {
+            this.globalLimit = globalLimit;
+            this.actionLimit = actionLimit;
+            this.baseline = baseline;
+            this.beginMillis = beginMillis;
+            this.globalEpoch = globalLimit.getBackoffEpoch(); // just after acquired
+            this.actionEpoch = actionLimit != null ? actionLimit.getBackoffEpoch() : 0;
+        }
+
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            final boolean slow = baseline.observe(System.currentTimeMillis() - beginMillis);
+            if (actionLimit != null) {
+                actionLimit.release(slow, actionEpoch);
+            }
+            globalLimit.release(slow, globalEpoch);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                   Active Controller
+    //                                                                   =================
+    /**
+     * Find the controller active in the application, e.g. for metrics. <br>
+     * It is kept in the servlet context (not static) so it does not remain after redeploy.
+     * @param servletContext The context of the application. (NotNull)
+     * @return The optional controller. (NotNull, EmptyAllowed: when disabled)
+     */
+    public static OptionalThing<AdmissionController> findActiveController(ServletContext servletContext) {
+        final AdmissionController controller = (AdmissionController) servletContext.getAttribute(LastaWebKey.ADMISSION_CONTROLLER_KEY);
+        return OptionalThing.ofNullable(controller, () -> {
+            throw new IllegalStateException("Not found the active admission controller, it is not enabled.");
+        });
+    }
+
+    public static void registerActiveController(ServletContext servletContext, AdmissionController controller) { // null to unregister
+        if (controller != null) {
+            servletContext.setAttribute(LastaWebKey.ADMISSION_CONTROLLER_KEY, controller);
+        } else {
+            servletContext.removeAttribute(LastaWebKey.ADMISSION_CONTROLLER_KEY);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "admission:{" + globalLimit + ", actions=" + actionLimitMap.size() + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public AdmissionControlOption getOption() {
+        return option;
+    }
+
+    public AdaptiveConcurrencyLimit getGlobalLimit() {
+        return globalLimit;
+    }
+
+    public Map<String, AdaptiveConcurrencyLimit> getActionLimitMap() {
+        return Collections.unmodifiableMap(actionLimitMap);
+    }
+
+    public Map<String, LatencyBaseline> getActionBaselineMap() {
+        return Collections.unmodifiableMap(actionBaselineMap);
+    }
+}
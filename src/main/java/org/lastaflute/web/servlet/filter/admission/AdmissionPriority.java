@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.admission;
+
+/**
+ * The priority of request admission, lower priority is shed first when overloaded.
+ * <pre>
+ * e.g. login, checkout: CRITICAL
+ *      reporting, export: SHEDDABLE
+ * </pre>
+ * @author jflute
+ */
+public enum AdmissionPriority {
+
+    /** Can use all of the concurrency limit. */
+    CRITICAL(1.0),
+
+    /** Leaves headroom for critical requests. (default) */
+    NORMAL(0.9),
+
+    /** Rejected first, can use only half of the limit. */
+    SHEDDABLE(0.5);
+
+    private final double admissionRatio;
+
+    private AdmissionPriority(double admissionRatio) {
+        this.admissionRatio = admissionRatio;
+    }
+
+    /**
+     * @return The ratio of concurrency limit that the priority can use. (0.0 - 1.0)
+     */
+    public double getAdmissionRatio() {
+        return admissionRatio;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The latency baseline of one action execute, the long-term moving average of latency. <br>
+ * Each sample is judged against the baseline of its own action, so slow actions are not regarded as overload
+ * just because they are slower than other actions. <br>
+ * Observing is lock-free (compare-and-set of the average).
+ * @author jflute
+ */
+public class LatencyBaseline {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final double BASELINE_SMOOTHING = 0.01; // weight of new sample for long-term average
+    protected static final double NO_SAMPLE = -1.0;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final double latencyTolerance;
+    protected final AtomicLong baselineBits = new AtomicLong(Double.doubleToRawLongBits(NO_SAMPLE)); // minus means no sample yet
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param latencyTolerance The ratio to baseline that the sample over it is regarded as overload. (GreaterThanOne)
+     */
+    public LatencyBaseline(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    // ===================================================================================
+    //                                                                             Observe
+    //                                                                             =======
+    /**
+     * Observe the latency, judging it against the current baseline and then learning it.
+     * @param elapsedMillis The latency of the finished request.
+     * @return true if the sample is slow (over baseline * tolerance), false if fast or the first sample.
+     */
+    public boolean observe(long elapsedMillis) {
+        final long millis = Math.max(elapsedMillis, 0L);
+        while (true) {
+            final long currentBits = baselineBits.get();
+            final double baseline = Double.longBitsToDouble(currentBits);
+            final boolean slow;
+            final double nextBaseline;
+            if (baseline < 0) { // first sample
+                slow = false;
+                nextBaseline = millis;
+            } else {
+                slow = millis > baseline * latencyTolerance && millis - baseline >= 1.0; // ignore jitter of fast requests
+                nextBaseline = baseline + (millis - baseline) * BASELINE_SMOOTHING;
+            }
+            if (baselineBits.compareAndSet(currentBits, Double.doubleToRawLongBits(nextBaseline))) {
+                return slow;
+            }
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "baseline:{" + Math.round(Math.max(getBaselineMillis(), 0.0)) + "ms}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    /**
+     * @return The moving average of latency. (MinusAllowed: if no sample yet)
+     */
+    public double getBaselineMillis() {
+        return Double.longBitsToDouble(baselineBits.get());
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.cors;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.dbflute.optional.OptionalThing;
+import org.lastaflute.core.direction.FwAssistantDirector;
+import org.lastaflute.core.util.ContainerUtil;
+import org.lastaflute.di.core.smart.hot.HotdeployUtil;
+import org.lastaflute.web.path.ActionPathResolver;
+import org.lastaflute.web.ruts.config.ActionExecute;
+import org.lastaflute.web.servlet.request.RequestManager;
+import org.lastaflute.web.util.LaActionExecuteUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The engine of CORS (Cross-Origin Resource Sharing) with precompiled origin matcher and per-route policies. <br>
+ * Preflight requests are answered here (before routing) and actual requests get the allow headers.
+ * <pre>
+ * e.g.
+ *  CorsEngine engine = new CorsEngine(Arrays.asList("https://example.com", "https://*.example.com"));
+ *  engine.policy(new CorsPolicy().allowMethods("GET", "POST").maxAge(600).withCredentials());
+ *  direction.directCors(new CorsHook(engine));
+ * </pre>
+ * The policy of route can be provided by ActionAdjustmentProvider.provideCorsPolicy() from the action execute.
+ * @author jflute
+ */
+public class CorsEngine {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(CorsEngine.class);
+
+    protected static final String ORIGIN = "Origin";
+    protected static final String REQUEST_METHOD = "Access-Control-Request-Method";
+    protected static final String REQUEST_HEADERS = "Access-Control-Request-Headers";
+    protected static final String ALLOW_ORIGIN = "Access-Control-Allow-Origin";
+    protected static final String ALLOW_METHODS = "Access-Control-Allow-Methods";
+    protected static final String ALLOW_HEADERS = "Access-Control-Allow-Headers";
+    protected static final String ALLOW_CREDENTIALS = "Access-Control-Allow-Credentials";
+    protected static final String EXPOSE_HEADERS = "Access-Control-Expose-Headers";
+    protected static final String MAX_AGE = "Access-Control-Max-Age";
+    protected static final String VARY = "Vary";
+    protected static final String VARY_ORIGIN = ORIGIN;
+    protected static final String VARY_PREFLIGHT = ORIGIN + ", " + REQUEST_METHOD + ", " + REQUEST_HEADERS;
+
+    /** The limit of cached request paths, e.g. paths with path parameters are not cached over it. */
+    public static final int PATH_CACHE_LIMIT = 2000;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final CorsOriginMatcher originMatcher; // not null
+    protected CorsPolicy defaultPolicy = new CorsPolicy(); // not null
+    protected int preflightStatus = HttpServletResponse.SC_NO_CONTENT;
+    protected int deniedPreflightStatus = HttpServletResponse.SC_FORBIDDEN;
+
+    /** The cache of route policy by action execute, bounded by action definitions. (NotNull) */
+    protected final Map<ActionExecute, CorsPolicy> routePolicyMap = new ConcurrentHashMap<ActionExecute, CorsPolicy>();
+
+    /** The cache of route policy by request path not to resolve the action path per request. (NotNull) */
+    protected final Map<String, CorsPolicy> pathPolicyMap = new ConcurrentHashMap<String, CorsPolicy>();
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param originPatterns The collection of allowed origin patterns, exact or wildcard sub-domains or '*'. (NotNull, NotEmpty)
+     */
+    public CorsEngine(Collection<String> originPatterns) {
+        this(new CorsOriginMatcher(originPatterns));
+    }
+
+    /**
+     * @param originMatcher The precompiled matcher of allowed origins. (NotNull)
+     */
+    public CorsEngine(CorsOriginMatcher originMatcher) {
+        if (originMatcher == null) {
+            throw new IllegalArgumentException("The argument 'originMatcher' should not be null.");
+        }
+        this.originMatcher = originMatcher;
+    }
+
+    // ===================================================================================
+    //                                                                         Easy-to-Use
+    //                                                                         ===========
+    /**
+     * Set the default policy for routes that have no specific policy.
+     * @param defaultPolicy The policy of CORS. (NotNull)
+     * @return this. (NotNull)
+     */
+    public CorsEngine policy(CorsPolicy defaultPolicy) {
+        if (defaultPolicy == null) {
+            throw new IllegalArgumentException("The argument 'defaultPolicy' should not be null.");
+        }
+        verifyPolicy(defaultPolicy);
+        this.defaultPolicy = defaultPolicy;
+        return this;
+    }
+
+    /**
+     * @param preflightStatus The HTTP status of answered preflight, 204 as default. (NotMinus)
+     * @return this. (NotNull)
+     */
+    public CorsEngine preflightStatus(int preflightStatus) {
+        this.preflightStatus = preflightStatus;
+        return this;
+    }
+
+    // ===================================================================================
+    //                                                                               Share
+    //                                                                               =====
+    /**
+     * Share the resource with the origin of the request.
+     * @param request The request of servlet. (NotNull)
+     * @param response The response of servlet, allow headers are set. (NotNull)
+     * @return Is it answered here? (true: preflight so no more process)
+     */
+    public boolean share(HttpServletRequest request, HttpServletResponse response) {
+        final String origin = request.getHeader(ORIGIN);
+        if (origin == null) { // not cross origin, e.g. same origin GET
+            // shared caches should not serve this response (without allow headers) to cross origin requests
+            response.addHeader(VARY, VARY_ORIGIN);
+            return false;
+        }
+        final boolean preflight = isPreflightRequest(request);
+        if (!originMatcher.matches(origin)) {
+            return rejectOrigin(request, response, origin, preflight);
+        }
+        final CorsPolicy policy = findRoutePolicy(request);
+        if (policy.isDenied()) {
+            return rejectOrigin(request, response, origin, preflight);
+        }
+        if (preflight) {
+            answerPreflight(request, response, origin, policy);
+            return true;
+        } else { // actual request
+            setupActualHeader(response, origin, policy);
+            return false;
+        }
+    }
+
+    protected boolean isPreflightRequest(HttpServletRequest request) {
+        return "OPTIONS".equals(request.getMethod()) && request.getHeader(REQUEST_METHOD) != null;
+    }
+
+    protected boolean rejectOrigin(HttpServletRequest request, HttpServletResponse response, String origin, boolean preflight) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("...Rejecting the cross origin: {} {}", origin, request.getRequestURI());
+        }
+        if (preflight) {
+            response.setHeader(VARY, VARY_PREFLIGHT);
+            response.setStatus(deniedPreflightStatus); // without allow headers
+            return true;
+        } else {
+            if (!originMatcher.isAnyOrigin()) { // answer depends on origin
+                response.addHeader(VARY, VARY_ORIGIN);
+            }
+            return false; // browser blocks the response by no allow header
+        }
+    }
+
+    // -----------------------------------------------------
+    //                                             Preflight
+    //                                             ---------
+    protected void answerPreflight(HttpServletRequest request, HttpServletResponse response, String origin, CorsPolicy policy) {
+        response.setHeader(ALLOW_ORIGIN, prepareAllowOrigin(origin, policy));
+        response.setHeader(ALLOW_METHODS, policy.getAllowMethodsExp());
+        if (policy.isAllowAnyHeaders()) {
+            final String requestHeaders = request.getHeader(REQUEST_HEADERS);
+            if (requestHeaders != null && !requestHeaders.isEmpty()) {
+                response.setHeader(ALLOW_HEADERS, requestHeaders);
+            }
+        } else {
+            response.setHeader(ALLOW_HEADERS, policy.getAllowHeadersExp());
+        }
+        response.setHeader(MAX_AGE, policy.getMaxAgeExp());
+        if (policy.isAllowCredentials()) {
+            response.setHeader(ALLOW_CREDENTIALS, "true");
+        }
+        response.setHeader(VARY, VARY_PREFLIGHT); // allow headers depend on them
+        response.setStatus(preflightStatus);
+    }
+
+    // -----------------------------------------------------
+    //                                        Actual Request
+    //                                        --------------
+    protected void setupActualHeader(HttpServletResponse response, String origin, CorsPolicy policy) {
+        final String allowOrigin = prepareAllowOrigin(origin, policy);
+        response.setHeader(ALLOW_ORIGIN, allowOrigin);
+        if (policy.isAllowCredentials()) {
+            response.setHeader(ALLOW_CREDENTIALS, "true");
+        }
+        final String exposeHeadersExp = policy.getExposeHeadersExp();
+        if (exposeHeadersExp != null) {
+            response.setHeader(EXPOSE_HEADERS, exposeHeadersExp);
+        }
+        if (!"*".equals(allowOrigin)) { // echoed origin so shared caches should not mix them
+            response.addHeader(VARY, VARY_ORIGIN);
+        }
+    }
+
+    protected String prepareAllowOrigin(String origin, CorsPolicy policy) {
+        return originMatcher.isAnyOrigin() ? "*" : origin; // any origin is always without credentials (verified)
+    }
+
+    // ===================================================================================
+    //                                                                        Route Policy
+    //                                                                        ============
+    protected CorsPolicy findRoutePolicy(HttpServletRequest request) {
+        if (HotdeployUtil.isHotdeploy()) { // action definitions are reloaded per request
+            return findActionExecute(request).map(execute -> resolveRoutePolicy(execute)).orElse(defaultPolicy);
+        }
+        final String requestPath = extractRequestPath(request);
+        final CorsPolicy cached = pathPolicyMap.get(requestPath);
+        if (cached != null) {
+            return cached;
+        }
+        final CorsPolicy policy = findActionExecute(request).map(execute -> {
+            return routePolicyMap.computeIfAbsent(execute, key -> resolveRoutePolicy(key));
+        }).orElse(defaultPolicy); // e.g. not action path
+        if (pathPolicyMap.size() < PATH_CACHE_LIMIT) { // e.g. too many path parameters
+            pathPolicyMap.putIfAbsent(requestPath, policy);
+        }
+        return policy;
+    }
+
+    protected String extractRequestPath(HttpServletRequest request) {
+        return getRequestManager().getRequestPath();
+    }
+
+    protected OptionalThing<ActionExecute> findActionExecute(HttpServletRequest request) {
+        final String requestPath = extractRequestPath(request);
+        final ActionExecute[] found = new ActionExecute[1];
+        try {
+            getActionPathResolver().handleActionPath(requestPath, (reqPath, actionName, paramPath, execByParam) -> {
+                found[0] = execByParam != null ? execByParam : LaActionExecuteUtil.findActionExecute(actionName, paramPath).orElse(null);
+                return found[0] != null;
+            });
+        } catch (Exception e) { // e.g. unexpected path, routing filter handles it later
+            logger.debug("Failed to find the action execute for CORS: " + requestPath, e);
+        }
+        return OptionalThing.ofNullable(found[0], () -> {
+            throw new IllegalStateException("Not found the action execute for the path: " + requestPath);
+        });
+    }
+
+    protected CorsPolicy resolveRoutePolicy(ActionExecute execute) {
+        final FwAssistantDirector director = ContainerUtil.getComponent(FwAssistantDirector.class);
+        final CorsPolicy policy = director.assistWebDirection().assistActionAdjustmentProvider().provideCorsPolicy(execute);
+        if (policy == null) {
+            return defaultPolicy;
+        }
+        verifyPolicy(policy);
+        return policy;
+    }
+
+    // ===================================================================================
+    //                                                                       Verify Policy
+    //                                                                       =============
+    protected void verifyPolicy(CorsPolicy policy) {
+        if (originMatcher.isAnyOrigin() && policy.isAllowCredentials()) { // echoing any origin with credentials
+            String msg = "Cannot allow credentials with '*' origin pattern, list the origins instead: " + policy;
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    protected RequestManager getRequestManager() {
+        return ContainerUtil.getComponent(RequestManager.class);
+    }
+
+    protected ActionPathResolver getActionPathResolver() {
+        return ContainerUtil.getComponent(ActionPathResolver.class);
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "corsEngine:{" + originMatcher + ", " + defaultPolicy + ", routes=" + routePolicyMap.size() + ", paths=" + pathPolicyMap.size() + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public CorsOriginMatcher getOriginMatcher() {
+        return originMatcher;
+    }
+
+    public CorsPolicy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+}
@@ -30,10 +30,20 @@ import org.lastaflute.web.servlet.filter.hook.FilterHookSimply;
  */
 public class CorsHook extends FilterHookSimply {
 
-    protected final CrossOriginResourceSharing sharing;
+    protected final CrossOriginResourceSharing sharing; // null allowed: when engine
+    protected final CorsEngine engine; // null allowed: when simple sharing
 
     public CorsHook(String allowOrigin) {
         this.sharing = newCrossOriginResourceSharing(allowOrigin);
+        this.engine = null;
+    }
+
+    public CorsHook(CorsEngine engine) { // e.g. plural origins, route policies
+        if (engine == null) {
+            throw new IllegalArgumentException("The argument 'engine' should not be null.");
+        }
+        this.sharing = null;
+        this.engine = engine;
     }
 
     protected CrossOriginResourceSharing newCrossOriginResourceSharing(String allowOrigin) {
@@ -42,7 +52,8 @@ public class CorsHook extends FilterHookSimply {
 
     @Override
     public void hook(HttpServletRequest request, HttpServletResponse response, FilterHookChain chain) throws IOException, ServletException {
-        if (sharing.share(request, response)) { // options
+        final boolean answered = engine != null ? engine.share(request, response) : sharing.share(request, response);
+        if (answered) { // options (preflight)
             return;
         } else { // normal request with allow headers
             chain.doNext(request, response);
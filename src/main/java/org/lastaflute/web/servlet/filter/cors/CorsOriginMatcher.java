@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.cors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The precompiled matcher of CORS origins, exact origins by hash set and wildcard sub-domains.
+ * <pre>
+ * e.g.
+ *  https://example.com     : exact origin
+ *  https://*.example.com   : sub-domains e.g. https://www.example.com, https://dev.api.example.com
+ *  *                       : any origin
+ * </pre>
+ * @author jflute
+ */
+public class CorsOriginMatcher {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final String ANY_ORIGIN = "*";
+    protected static final String WILDCARD_MARK = "://*.";
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final boolean anyOrigin;
+    protected final Set<String> exactOriginSet; // not null, lower case
+    protected final List<WildcardOrigin> wildcardOriginList; // not null, small basically
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param originPatterns The collection of allowed origin patterns, exact or wildcard sub-domains or '*'. (NotNull, NotEmpty)
+     */
+    public CorsOriginMatcher(Collection<String> originPatterns) {
+        if (originPatterns == null || originPatterns.isEmpty()) {
+            throw new IllegalArgumentException("The argument 'originPatterns' should not be null or empty: " + originPatterns);
+        }
+        boolean any = false;
+        final Set<String> exactSet = new HashSet<String>();
+        final List<WildcardOrigin> wildcardList = new ArrayList<WildcardOrigin>();
+        for (String pattern : originPatterns) {
+            if (pattern == null || pattern.trim().isEmpty()) {
+                throw new IllegalArgumentException("The origin pattern should not be null or empty: " + originPatterns);
+            }
+            final String normalized = normalize(pattern.trim());
+            if (ANY_ORIGIN.equals(normalized)) {
+                any = true;
+            } else if (normalized.contains(WILDCARD_MARK)) { // e.g. https://*.example.com
+                final int markIndex = normalized.indexOf(WILDCARD_MARK);
+                final String scheme = normalized.substring(0, markIndex + "://".length()); // e.g. https://
+                final String suffix = normalized.substring(markIndex + "://*".length()); // e.g. .example.com
+                wildcardList.add(new WildcardOrigin(scheme, suffix));
+            } else if (normalized.contains("*")) {
+                throw new IllegalArgumentException("Wildcard is allowed only as sub-domains e.g. https://*.example.com: " + pattern);
+            } else {
+                exactSet.add(normalized);
+            }
+        }
+        this.anyOrigin = any;
+        this.exactOriginSet = Collections.unmodifiableSet(exactSet);
+        this.wildcardOriginList = Collections.unmodifiableList(wildcardList);
+    }
+
+    protected static String normalize(String origin) { // origin is case-insensitive about scheme and host
+        final String lower = origin.toLowerCase(Locale.ENGLISH);
+        return lower.endsWith("/") ? lower.substring(0, lower.length() - 1) : lower;
+    }
+
+    protected static class WildcardOrigin {
+
+        protected final String scheme; // e.g. https://
+        protected final String suffix; // e.g. .example.com
+
+        public WildcardOrigin(String scheme, String suffix) {
+            this.scheme = scheme;
+            this.suffix = suffix;
+        }
+
+        public boolean matches(String origin) { // already normalized
+            if (origin.length() <= scheme.length() + suffix.length()) { // needs sub-domain
+                return false;
+            }
+            if (!origin.startsWith(scheme) || !origin.endsWith(suffix)) {
+                return false;
+            }
+            final String subDomain = origin.substring(scheme.length(), origin.length() - suffix.length());
+            return subDomain.indexOf('/') < 0 && subDomain.indexOf(':') < 0 && subDomain.indexOf('@') < 0;
+        }
+
+        @Override
+        public String toString() {
+            return scheme + "*" + suffix;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                               Match
+    //                                                                               =====
+    /**
+     * @param origin The value of Origin header. (NullAllowed: then false)
+     * @return Is the origin allowed?
+     */
+    public boolean matches(String origin) {
+        if (origin == null || origin.isEmpty() || "null".equals(origin)) { // e.g. sandboxed iframe
+            return false;
+        }
+        if (anyOrigin) {
+            return true;
+        }
+        final String normalized = normalize(origin);
+        if (exactOriginSet.contains(normalized)) { // mainly here
+            return true;
+        }
+        for (WildcardOrigin wildcard : wildcardOriginList) {
+            if (wildcard.matches(normalized)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "{" + (anyOrigin ? "*, " : "") + exactOriginSet + ", " + wildcardOriginList + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public boolean isAnyOrigin() {
+        return anyOrigin;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.cors;
+
+/**
+ * The policy of CORS for routes, whose header values are rendered when it is set up (not per request).
+ * <pre>
+ * e.g.
+ *  new CorsPolicy().allowMethods("GET", "POST").allowHeaders("Content-Type", "Authorization").maxAge(600)
+ * </pre>
+ * @author jflute
+ */
+public class CorsPolicy {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected boolean denied; // e.g. route that is not shared
+    protected String allowMethodsExp = "GET, POST, OPTIONS, DELETE, PUT"; // not null
+    protected String allowHeadersExp = "Origin, Content-Type, Accept, Authorization"; // null means echo request headers
+    protected String exposeHeadersExp; // null allowed
+    protected String maxAgeExp = "3600"; // seconds
+    protected boolean allowCredentials; // false as default, explicitly allowed by withCredentials()
+
+    // ===================================================================================
+    //                                                                         Easy-to-Use
+    //                                                                         ===========
+    /**
+     * Create the policy that denies cross origin requests, e.g. for HTML routes.
+     * @return The new-created policy. (NotNull)
+     */
+    public static CorsPolicy denied() {
+        final CorsPolicy policy = new CorsPolicy();
+        policy.denied = true;
+        return policy;
+    }
+
+    /**
+     * @param methods The array of allowed HTTP methods e.g. GET, POST. (NotNull, NotEmpty)
+     * @return this. (NotNull)
+     */
+    public CorsPolicy allowMethods(String... methods) {
+        allowMethodsExp = renderList("methods", methods);
+        return this;
+    }
+
+    /**
+     * @param headers The array of allowed request headers e.g. Content-Type. (NotNull, NotEmpty)
+     * @return this. (NotNull)
+     */
+    public CorsPolicy allowHeaders(String... headers) {
+        allowHeadersExp = renderList("headers", headers);
+        return this;
+    }
+
+    /**
+     * Allow any request headers by echoing Access-Control-Request-Headers in preflight.
+     * @return this. (NotNull)
+     */
+    public CorsPolicy allowAnyHeaders() {
+        allowHeadersExp = null;
+        return this;
+    }
+
+    /**
+     * @param headers The array of response headers that scripts can read e.g. X-Total-Count. (NotNull, NotEmpty)
+     * @return this. (NotNull)
+     */
+    public CorsPolicy exposeHeaders(String... headers) {
+        exposeHeadersExp = renderList("headers", headers);
+        return this;
+    }
+
+    /**
+     * @param maxAgeSeconds The seconds that browsers can cache the preflight answer. (NotMinus)
+     * @return this. (NotNull)
+     */
+    public CorsPolicy maxAge(int maxAgeSeconds) {
+        if (maxAgeSeconds < 0) {
+            throw new IllegalArgumentException("The argument 'maxAgeSeconds' should not be minus: " + maxAgeSeconds);
+        }
+        maxAgeExp = String.valueOf(maxAgeSeconds);
+        return this;
+    }
+
+    /**
+     * Allow credentials e.g. cookies, authorization headers. <br>
+     * It cannot be used with '*' origin pattern because any site could read the user's response.
+     * @return this. (NotNull)
+     */
+    public CorsPolicy withCredentials() {
+        allowCredentials = true;
+        return this;
+    }
+
+    /**
+     * Not allow credentials e.g. cookies (default), then wildcard origin can be returned as '*'.
+     * @return this. (NotNull)
+     */
+    public CorsPolicy withoutCredentials() {
+        allowCredentials = false;
+        return this;
+    }
+
+    protected String renderList(String title, String... elements) {
+        if (elements == null || elements.length == 0) {
+            throw new IllegalArgumentException("The argument '" + title + "' should not be null or empty.");
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (String element : elements) {
+            if (element == null || element.trim().isEmpty()) {
+                throw new IllegalArgumentException("The element of '" + title + "' should not be null or empty.");
+            }
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(element.trim());
+        }
+        return sb.toString();
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        if (denied) {
+            return "{denied}";
+        }
+        final String headersExp = allowHeadersExp != null ? allowHeadersExp : "(any)";
+        return "{methods=[" + allowMethodsExp + "], headers=[" + headersExp + "], expose=[" + exposeHeadersExp + "], maxAge="
+                + maxAgeExp + ", credentials=" + allowCredentials + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public boolean isDenied() {
+        return denied;
+    }
+
+    public String getAllowMethodsExp() {
+        return allowMethodsExp;
+    }
+
+    public boolean isAllowAnyHeaders() {
+        return allowHeadersExp == null;
+    }
+
+    public String getAllowHeadersExp() {
+        return allowHeadersExp;
+    }
+
+    public String getExposeHeadersExp() {
+        return exposeHeadersExp;
+    }
+
+    public String getMaxAgeExp() {
+        return maxAgeExp;
+    }
+
+    public boolean isAllowCredentials() {
+        return allowCredentials;
+    }
+}
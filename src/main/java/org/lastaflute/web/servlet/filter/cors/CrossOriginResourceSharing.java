@@ -15,6 +15,7 @@
  */
 package org.lastaflute.web.servlet.filter.cors;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,6 +32,7 @@ public class CrossOriginResourceSharing {
     //                                                                           Attribute
     //                                                                           =========
     protected final String allowOrigin;
+    protected volatile Map<String, String> cachedAllowHeaderMap; // lazy-loaded, read-only
 
     // ===================================================================================
     //                                                                         Constructor
@@ -53,7 +55,16 @@ public class CrossOriginResourceSharing {
     }
 
     protected void setupAllowHeader(HttpServletResponse response) {
-        prepareAllowHeaderMap().forEach((key, value) -> response.addHeader(key, value));
+        getAllowHeaderMap().forEach((key, value) -> response.addHeader(key, value));
+    }
+
+    protected Map<String, String> getAllowHeaderMap() { // fixed values so rendered only once
+        Map<String, String> headerMap = cachedAllowHeaderMap;
+        if (headerMap == null) { // no synchronized, may be duplicate but same values
+            headerMap = Collections.unmodifiableMap(prepareAllowHeaderMap());
+            cachedAllowHeaderMap = headerMap;
+        }
+        return headerMap;
     }
 
     // -----------------------------------------------------
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.hook;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The immutable chain of filter hooks compiled at filter initialization. <br>
+ * The hooks are fixed as array so the hook list is not copied per request,
+ * and the filter chain of the request is passed explicitly by the chain node of each hook.
+ * @author jflute
+ */
+public class FilterHookPipeline {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(FilterHookPipeline.class);
+    public static final String SLOW_HOOK_MILLIS_KEY = "slowHookMillis"; // init-param for opt-in hook timing, e.g. 100
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final FilterHook[] hooks; // not null, read-only, empty allowed
+    protected final FilterHookTerminal terminal; // not null, called after the last hook
+
+    // -----------------------------------------------------
+    //                                                Timing
+    //                                                ------
+    protected final HookTiming[] timings; // null allowed: when no timing
+    protected final long slowHookNanos; // minus if no timing
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param hookList The list of filter hooks in calling order. (NotNull, EmptyAllowed)
+     * @param terminal The terminal process called after the last hook. (NotNull)
+     * @param slowHookMillis The milliseconds to log the hook as slow, enables timing. (MinusAllowed: if minus, no timing)
+     */
+    public FilterHookPipeline(List<FilterHook> hookList, FilterHookTerminal terminal, long slowHookMillis) {
+        this.hooks = hookList.toArray(new FilterHook[hookList.size()]);
+        this.terminal = terminal;
+        if (slowHookMillis >= 0) {
+            this.timings = new HookTiming[hooks.length];
+            for (int i = 0; i < hooks.length; i++) {
+                timings[i] = new HookTiming(hooks[i].getClass().getName());
+            }
+            this.slowHookNanos = TimeUnit.MILLISECONDS.toNanos(slowHookMillis);
+        } else {
+            this.timings = null;
+            this.slowHookNanos = -1L;
+        }
+    }
+
+    /**
+     * Extract the milliseconds of slow hook from the init-param of filter.
+     * @param filterConfig The config of filter that has the hooks. (NotNull)
+     * @return The milliseconds to log the hook as slow. (MinusAllowed: if minus, no timing)
+     */
+    public static long extractSlowHookMillis(FilterConfig filterConfig) {
+        final String millis = filterConfig.getInitParameter(SLOW_HOOK_MILLIS_KEY); // e.g. 100
+        return millis != null && millis.trim().length() > 0 ? Long.parseLong(millis.trim()) : -1L;
+    }
+
+    /**
+     * Is this pipeline compiled from the same hooks as the list? (e.g. to reuse it in hot deploy)
+     * @param hookList The list of filter hooks in calling order. (NotNull, EmptyAllowed)
+     * @return The determination, true or false.
+     */
+    public boolean isCompiledFrom(List<FilterHook> hookList) {
+        if (hookList.size() != hooks.length) {
+            return false;
+        }
+        for (int i = 0; i < hooks.length; i++) {
+            if (hookList.get(i) != hooks[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ===================================================================================
+    //                                                                             Execute
+    //                                                                             =======
+    /**
+     * Execute the hooks and the terminal process.
+     * @param request The request of servlet. (NotNull)
+     * @param response The response of servlet. (NotNull)
+     * @param chain The filter chain of the request, passed to the terminal. (NotNull)
+     * @throws IOException When the I/O error occurs.
+     * @throws ServletException When the servlet error occurs.
+     */
+    public void execute(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (hooks.length == 0) { // no chain node needed
+            terminal.terminate(request, response, chain);
+            return;
+        }
+        final long[] downstreamNanos = timings != null ? new long[hooks.length] : null; // per request
+        proceed(0, request, response, chain, downstreamNanos);
+    }
+
+    protected void proceed(int index, HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+            long[] downstreamNanos) throws IOException, ServletException {
+        if (index < hooks.length) {
+            final FilterHookChain next = newPipelineChain(index, chain, downstreamNanos);
+            if (downstreamNanos != null) {
+                hookWithTiming(index, request, response, next, downstreamNanos);
+            } else {
+                hooks[index].hook(request, response, next);
+            }
+        } else {
+            terminal.terminate(request, response, chain);
+        }
+    }
+
+    protected FilterHookChain newPipelineChain(int index, FilterChain chain, long[] downstreamNanos) {
+        return new PipelineChain(index, chain, downstreamNanos);
+    }
+
+    protected class PipelineChain implements FilterHookChain { // per hook calling, holds the request's filter chain
+
+        protected final int index; // of the hook that has this chain
+        protected final FilterChain chain; // not null
+        protected final long[] downstreamNanos; // null allowed: when no timing
+
+        public PipelineChain(int index, FilterChain chain, long[] downstreamNanos) {
+            this.index = index;
+            this.chain = chain;
+            this.downstreamNanos = downstreamNanos;
+        }
+
+        @Override
+        public void doNext(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            if (downstreamNanos == null) {
+                proceed(index + 1, request, response, chain, null);
+                return;
+            }
+            final long begin = System.nanoTime();
+            try {
+                proceed(index + 1, request, response, chain, downstreamNanos);
+            } finally {
+                downstreamNanos[index] += System.nanoTime() - begin;
+            }
+        }
+    }
+
+    // ===================================================================================
+    //                                                                              Timing
+    //                                                                              ======
+    protected void hookWithTiming(int index, HttpServletRequest request, HttpServletResponse response, FilterHookChain next,
+            long[] downstreamNanos) throws IOException, ServletException {
+        final long begin = System.nanoTime();
+        try {
+            hooks[index].hook(request, response, next);
+        } finally {
+            final long selfNanos = System.nanoTime() - begin - downstreamNanos[index];
+            timings[index].record(selfNanos);
+            if (selfNanos >= slowHookNanos) {
+                showSlowHook(timings[index], selfNanos, request);
+            }
+        }
+    }
+
+    protected void showSlowHook(HookTiming timing, long selfNanos, HttpServletRequest request) {
+        if (logger.isInfoEnabled()) {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(selfNanos);
+            logger.info("#slow_hook {} took {}ms (self) for {}", timing.getHookName(), millis, request.getRequestURI());
+        }
+    }
+
+    /**
+     * Show the timing statistics of hooks as summary, e.g. when destroyed. (nothing if no timing)
+     */
+    public void showHookTiming() {
+        if (logger.isInfoEnabled()) {
+            getHookTimingList().forEach(timing -> logger.info("#hook_timing {}", timing));
+        }
+    }
+
+    /**
+     * Get the timing statistics of hooks.
+     * @return The read-only list of hook timing in calling order. (NotNull, EmptyAllowed: when no timing)
+     */
+    public List<HookTiming> getHookTimingList() {
+        if (timings == null) {
+            return Collections.emptyList();
+        }
+        final List<HookTiming> timingList = new ArrayList<HookTiming>(timings.length);
+        for (HookTiming timing : timings) {
+            timingList.add(timing);
+        }
+        return Collections.unmodifiableList(timingList);
+    }
+
+    public static class HookTiming {
+
+        protected final String hookName; // not null
+        protected final LongAdder count = new LongAdder();
+        protected final LongAdder totalSelfNanos = new LongAdder();
+        protected final LongAccumulator maxSelfNanos = new LongAccumulator(Long::max, 0L);
+
+        public HookTiming(String hookName) {
+            this.hookName = hookName;
+        }
+
+        public void record(long selfNanos) {
+            count.increment();
+            totalSelfNanos.add(selfNanos);
+            maxSelfNanos.accumulate(selfNanos);
+        }
+
+        @Override
+        public String toString() {
+            final long countValue = count.sum();
+            final long avgMicros = countValue > 0 ? TimeUnit.NANOSECONDS.toMicros(totalSelfNanos.sum() / countValue) : 0L;
+            final long maxMicros = TimeUnit.NANOSECONDS.toMicros(maxSelfNanos.get());
+            return "timing:{" + hookName + ", count=" + countValue + ", avg=" + avgMicros + "us, max=" + maxMicros + "us}";
+        }
+
+        public String getHookName() {
+            return hookName;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalSelfNanos() {
+            return totalSelfNanos.sum();
+        }
+
+        public long getMaxSelfNanos() {
+            return maxSelfNanos.get();
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Terminal
+    //                                                                            ========
+    @FunctionalInterface
+    public static interface FilterHookTerminal {
+
+        void terminate(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (FilterHook hook : hooks) {
+            sb.append(sb.length() > 0 ? ", " : "").append(hook.getClass().getSimpleName());
+        }
+        return "pipeline:{" + sb + (timings != null ? ", timing" : "") + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public int getHookCount() {
+        return hooks.length;
+    }
+}
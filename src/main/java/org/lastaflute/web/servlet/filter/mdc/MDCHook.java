@@ -58,6 +58,10 @@ public class MDCHook implements FilterHook {
         MDC.put(key, value);
     }
 
+    public static boolean isInMDCScope() { // e.g. to register directly if possible
+        return !inTopLevelScope();
+    }
+
     protected static boolean inTopLevelScope() {
         return begunLocal.get() == null;
     }
@@ -19,6 +19,9 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Function;
 
+import org.lastaflute.core.magic.identity.RequestIdentity;
+import org.lastaflute.core.magic.identity.RequestIdentityContext;
+import org.lastaflute.core.magic.identity.RequestIdentityGenerator;
 import org.lastaflute.web.servlet.cookie.CookieManager;
 
 /**
@@ -37,6 +40,12 @@ public class TypicalMDCHookFactory {
     public static final String LA_REMOTE_IP = "la.remoteIp";
     public static final String LA_REQUEST_ID = "la.requestId";
     public static final String LA_USER_TRACE_ID = "la.userTraceId";
+    public static final String LA_ELAPSED_MILLIS = "la.elapsedMillis"; // put at start, updated at access log
+    public static final String LA_CPU_MILLIS = "la.cpuMillis"; // me too
+    public static final String LA_ALLOCATED_BYTES = "la.allocatedBytes"; // me too
+    public static final String LA_SQL_COUNT = "la.sqlCount"; // me too
+    public static final String LA_SQL_MILLIS = "la.sqlMillis"; // me too
+    public static final String RESOURCE_USAGE_UNKNOWN = "-"; // until access log
     public static final String DEFAULT_USER_TRACE_COOKIE_KEY = "USTRCID";
 
     // ===================================================================================
@@ -69,15 +78,26 @@ public class TypicalMDCHookFactory {
         mdcMap.put(LA_REMOTE_IP, res -> res.getRequestManager().getRemoteIp().orElse(null));
         mdcMap.put(LA_REQUEST_ID, res -> buildRequestId(res));
         mdcMap.put(LA_USER_TRACE_ID, res -> handleUserTrace(res)); // should be after request ID putting
+        setupResourceUsageMDC(mdcMap);
         return mdcMap;
     }
 
-    protected String buildRequestId(MDCSetupResource res) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append(res.getRequestManager().getTimeManager().currentMillis());
-        sb.append(Thread.currentThread().getName());
-        sb.append(new Object().hashCode()); // to be (best effort) unique in plural application servers
-        return Integer.toHexString(sb.toString().hashCode());
+    protected void setupResourceUsageMDC(Map<String, Function<MDCSetupResource, String>> mdcMap) {
+        // put at request start for stable keys of log pattern, and the values are updated at access log
+        mdcMap.put(LA_ELAPSED_MILLIS, res -> RESOURCE_USAGE_UNKNOWN);
+        mdcMap.put(LA_CPU_MILLIS, res -> RESOURCE_USAGE_UNKNOWN);
+        mdcMap.put(LA_ALLOCATED_BYTES, res -> RESOURCE_USAGE_UNKNOWN);
+        mdcMap.put(LA_SQL_COUNT, res -> RESOURCE_USAGE_UNKNOWN);
+        mdcMap.put(LA_SQL_MILLIS, res -> RESOURCE_USAGE_UNKNOWN);
+    }
+
+    protected String buildRequestId(MDCSetupResource res) { // shared with e.g. access log, transaction, asynchronous process
+        final RequestIdentity identity = RequestIdentityContext.getIdentityOnThread(); // prepared by filter
+        if (identity != null) {
+            return identity.toString();
+        }
+        final long currentMillis = res.getRequestManager().getTimeManager().currentMillis();
+        return RequestIdentityGenerator.generate(currentMillis).toString(); // e.g. out of prepare filter
     }
 
     protected String handleUserTrace(MDCSetupResource res) {
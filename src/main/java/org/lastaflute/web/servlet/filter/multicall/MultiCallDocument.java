@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.multicall;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JSON document of multi-call request.
+ * <pre>
+ * {"requests": [
+ *     {"path": "/member/list/", "params": {"pageNumber": "1"}}
+ *   , {"path": "/product/purchase/", "method": "POST", "body": {"productId": 3}}
+ * ]}
+ * </pre>
+ * @author jflute
+ */
+public class MultiCallDocument {
+
+    /** The list of sub-requests executed in the order. (NullAllowed: if no property) */
+    public List<MultiCallSubRequest> requests;
+
+    public static class MultiCallSubRequest {
+
+        /** The request path of action, which can have query string. (NotNull: required) */
+        public String path;
+
+        /** The HTTP method of the sub-request. (NullAllowed: GET as default) */
+        public String method;
+
+        /** The request parameters, the value can be string or list. (NullAllowed) */
+        public Map<String, Object> params;
+
+        /** The JSON body of the sub-request. (NullAllowed) */
+        public Object body;
+
+        @Override
+        public String toString() {
+            return (method != null ? method : "GET") + " " + path;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.multicall;
+
+/**
+ * The option of multi-call endpoint, which executes several sub-requests in one HTTP request.
+ * @author jflute
+ */
+public class MultiCallOption {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final String multiCallPath; // not null
+    protected int subRequestLimit = 20;
+    protected int parallelism; // zero means serial
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param multiCallPath The request path of multi-call endpoint, e.g. /multicall (NotNull)
+     */
+    public MultiCallOption(String multiCallPath) {
+        if (multiCallPath == null || !multiCallPath.startsWith("/")) {
+            throw new IllegalArgumentException("The argument 'multiCallPath' should start with slash: " + multiCallPath);
+        }
+        this.multiCallPath = multiCallPath;
+    }
+
+    // ===================================================================================
+    //                                                                         Easy-to-Use
+    //                                                                         ===========
+    /**
+     * Set the limit count of sub-requests in one multi-call, the request over it is '400 Bad Request'.
+     * @param subRequestLimit The count of sub-requests. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public MultiCallOption limitSubRequest(int subRequestLimit) {
+        if (subRequestLimit <= 0) {
+            throw new IllegalArgumentException("The argument 'subRequestLimit' should be positive: " + subRequestLimit);
+        }
+        this.subRequestLimit = subRequestLimit;
+        return this;
+    }
+
+    /**
+     * Execute sub-requests in parallel by the asynchronous executor, serial as default. <br>
+     * Actions of the sub-requests should be thread-safe about e.g. session attributes,
+     * and it is always serial in hot deploy.
+     * @param parallelism The count of sub-requests running at the same time. (NotMinus, NotZero)
+     * @return this. (NotNull)
+     */
+    public MultiCallOption asParallel(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The argument 'parallelism' should be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "{" + multiCallPath + ", limit=" + subRequestLimit + ", parallelism=" + parallelism + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public String getMultiCallPath() {
+        return multiCallPath;
+    }
+
+    public int getSubRequestLimit() {
+        return subRequestLimit;
+    }
+
+    public boolean isParallel() {
+        return parallelism > 0;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+}
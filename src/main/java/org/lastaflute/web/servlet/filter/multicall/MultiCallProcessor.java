@@ -0,0 +1,451 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.multicall;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.dbflute.helper.message.ExceptionMessageBuilder;
+import org.dbflute.util.Srl;
+import org.lastaflute.core.json.JsonManager;
+import org.lastaflute.core.magic.ThreadCacheContext;
+import org.lastaflute.core.magic.async.AsyncManager;
+import org.lastaflute.core.magic.async.ConcurrentFork;
+import org.lastaflute.core.magic.async.ConcurrentForked;
+import org.lastaflute.core.magic.deadline.exception.RequestDeadlineExceededException;
+import org.lastaflute.core.util.ContainerUtil;
+import org.lastaflute.di.core.ExternalContext;
+import org.lastaflute.di.core.smart.hot.HotdeployUtil;
+import org.lastaflute.web.exception.ForcedRequest400BadRequestException;
+import org.lastaflute.web.servlet.filter.RequestLoggingFilter;
+import org.lastaflute.web.servlet.filter.RequestLoggingFilter.RequestClientErrorException;
+import org.lastaflute.web.servlet.filter.RequestLoggingFilter.RequestClientErrorHandler;
+import org.lastaflute.web.servlet.filter.RequestLoggingFilter.RequestServerErrorHandler;
+import org.lastaflute.web.servlet.filter.multicall.MultiCallDocument.MultiCallSubRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The processor of multi-call, which executes sub-requests by the router and writes their responses as one JSON.
+ * <pre>
+ * {"responses": [
+ *     {"index": 0, "path": "/member/list/", "status": 200, "elapsedMillis": 12, "contentType": "application/json", "body": {...}}
+ *   , {"index": 1, "path": "/product/purchase/", "status": 400, ...}
+ * ]}
+ * </pre>
+ * Each sub-request has its own status so the multi-call itself is '200 OK' even if some sub-requests fail.
+ * @author jflute
+ */
+public class MultiCallProcessor {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(MultiCallProcessor.class);
+
+    protected static final String JSON_CONTENT_TYPE = "application/json";
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final MultiCallOption option; // not null
+    protected final JsonManager jsonManager; // not null
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    public MultiCallProcessor(MultiCallOption option, JsonManager jsonManager) {
+        this.option = option;
+        this.jsonManager = jsonManager;
+    }
+
+    // ===================================================================================
+    //                                                                              Router
+    //                                                                              ======
+    /**
+     * The router of sub-request to action, provided by routing filter.
+     */
+    @FunctionalInterface
+    public static interface MultiCallSubRouter {
+
+        /**
+         * @param request The wrapper of sub-request. (NotNull)
+         * @param response The wrapper of sub-response. (NotNull)
+         * @param requestPath The request path of the sub-request, without query string. (NotNull)
+         * @return Is the sub-request routed to action? (false: not found)
+         * @throws Exception When the action fails.
+         */
+        boolean route(HttpServletRequest request, HttpServletResponse response, String requestPath) throws Exception;
+    }
+
+    // ===================================================================================
+    //                                                                           Determine
+    //                                                                           =========
+    /**
+     * @param requestPath The request path of the request, without context path. (NotNull)
+     * @return Is the request for multi-call endpoint?
+     */
+    public boolean isMultiCallRequest(String requestPath) {
+        return option.getMultiCallPath().equals(requestPath);
+    }
+
+    // ===================================================================================
+    //                                                                             Process
+    //                                                                             =======
+    /**
+     * Process the multi-call request, executing sub-requests and writing the multiplexed response.
+     * @param request The request of multi-call. (NotNull)
+     * @param response The response of multi-call. (NotNull)
+     * @param router The router of sub-request to action. (NotNull)
+     * @throws IOException When it fails to read the request or write the response.
+     */
+    public void process(HttpServletRequest request, HttpServletResponse response, MultiCallSubRouter router) throws IOException {
+        final List<MultiCallSubRequest> subRequestList = parseSubRequestList(request);
+        final boolean parallel = isParallelExecution(subRequestList);
+        if (logger.isDebugEnabled()) {
+            logger.debug("...Processing multi-call: count={}, parallel={}", subRequestList.size(), parallel);
+        }
+        final List<MultiCallSubResult> resultList;
+        if (parallel) {
+            resultList = executeParallel(request, response, router, subRequestList);
+        } else {
+            resultList = executeSerial(request, response, router, subRequestList);
+        }
+        writeMultiCallResponse(response, resultList);
+    }
+
+    protected boolean isParallelExecution(List<MultiCallSubRequest> subRequestList) {
+        // hot deploy class loader is bound to request thread
+        return option.isParallel() && subRequestList.size() > 1 && !HotdeployUtil.isHotdeploy();
+    }
+
+    // ===================================================================================
+    //                                                                      Parse Document
+    //                                                                      ==============
+    protected List<MultiCallSubRequest> parseSubRequestList(HttpServletRequest request) throws IOException {
+        if (!"POST".equalsIgnoreCase(request.getMethod())) {
+            throwMultiCallBadRequestException("The multi-call should be POST request: " + request.getMethod(), null);
+        }
+        final String json = readBody(request);
+        final MultiCallDocument document;
+        try {
+            document = jsonManager.fromJson(json, MultiCallDocument.class);
+        } catch (RuntimeException e) {
+            throwMultiCallBadRequestException("Failed to parse the multi-call JSON.", e);
+            return null; // unreachable
+        }
+        if (document == null || document.requests == null || document.requests.isEmpty()) {
+            throwMultiCallBadRequestException("No sub-request in the multi-call JSON.", null);
+        }
+        final List<MultiCallSubRequest> subRequestList = document.requests;
+        if (subRequestList.size() > option.getSubRequestLimit()) {
+            final String msg = "Too many sub-requests: count=" + subRequestList.size() + ", limit=" + option.getSubRequestLimit();
+            throwMultiCallBadRequestException(msg, null);
+        }
+        for (MultiCallSubRequest subRequest : subRequestList) {
+            if (subRequest == null || subRequest.path == null || !subRequest.path.startsWith("/")) {
+                throwMultiCallBadRequestException("The path of sub-request should start with slash: " + subRequest, null);
+            }
+            if (isMultiCallRequest(Srl.substringFirstFront(subRequest.path, "?"))) {
+                throwMultiCallBadRequestException("The sub-request cannot call multi-call recursively: " + subRequest, null);
+            }
+        }
+        return subRequestList;
+    }
+
+    protected String readBody(HttpServletRequest request) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final BufferedReader reader = request.getReader();
+        final char[] buffer = new char[4096];
+        int length;
+        while ((length = reader.read(buffer)) >= 0) {
+            sb.append(buffer, 0, length);
+        }
+        return sb.toString();
+    }
+
+    protected void throwMultiCallBadRequestException(String notice, Throwable cause) {
+        final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+        br.addNotice(notice);
+        br.addItem("Multi-call Option");
+        br.addElement(option);
+        final String msg = br.buildExceptionMessage();
+        throw cause != null ? new ForcedRequest400BadRequestException(msg, cause) : new ForcedRequest400BadRequestException(msg);
+    }
+
+    // ===================================================================================
+    //                                                                             Execute
+    //                                                                             =======
+    protected List<MultiCallSubResult> executeSerial(HttpServletRequest request, HttpServletResponse response, MultiCallSubRouter router,
+            List<MultiCallSubRequest> subRequestList) {
+        final List<MultiCallSubResult> resultList = new ArrayList<MultiCallSubResult>(subRequestList.size());
+        int index = 0;
+        for (MultiCallSubRequest subRequest : subRequestList) {
+            resultList.add(executeSubRequest(request, response, router, index, subRequest));
+            ++index;
+        }
+        return resultList;
+    }
+
+    protected List<MultiCallSubResult> executeParallel(HttpServletRequest request, HttpServletResponse response,
+            MultiCallSubRouter router, List<MultiCallSubRequest> subRequestList) {
+        try (ConcurrentFork fork = getAsyncManager().fork(op -> op.limitParallelism(option.getParallelism()))) {
+            final List<ConcurrentForked<MultiCallSubResult>> forkedList = new ArrayList<ConcurrentForked<MultiCallSubResult>>();
+            int index = 0;
+            for (MultiCallSubRequest subRequest : subRequestList) {
+                final int subIndex = index;
+                forkedList.add(fork.call(() -> {
+                    ThreadCacheContext.clear(); // each sub-request is top-level (not inherits)
+                    return executeSubRequest(request, response, router, subIndex, subRequest);
+                }));
+                ++index;
+            }
+            fork.join(); // sub-request handles its failure so no exception here basically
+            final List<MultiCallSubResult> resultList = new ArrayList<MultiCallSubResult>(forkedList.size());
+            for (ConcurrentForked<MultiCallSubResult> forked : forkedList) {
+                resultList.add(forked.get());
+            }
+            return resultList;
+        }
+    }
+
+    protected AsyncManager getAsyncManager() {
+        return ContainerUtil.getComponent(AsyncManager.class);
+    }
+
+    // -----------------------------------------------------
+    //                                           Sub-request
+    //                                           -----------
+    protected MultiCallSubResult executeSubRequest(HttpServletRequest request, HttpServletResponse response, MultiCallSubRouter router,
+            int index, MultiCallSubRequest subRequest) {
+        final long before = System.currentTimeMillis();
+        final MultiCallSubRequestWrapper subReq = createSubRequestWrapper(request, subRequest);
+        final MultiCallSubResponseWrapper subRes = createSubResponseWrapper(response);
+        final ExternalContext externalContext = ContainerUtil.retrieveExternalContext();
+        final Object previousRequest = externalContext.getRequest();
+        final Object previousResponse = externalContext.getResponse();
+        final RequestClientErrorHandler previousClientErrorHandler = RequestLoggingFilter.getClientErrorHandlerOnThread();
+        final RequestServerErrorHandler previousServerErrorHandler = RequestLoggingFilter.getServerErrorHandlerOnThread();
+        try {
+            externalContext.setRequest(subReq);
+            externalContext.setResponse(subRes);
+            if (!router.route(subReq, subRes, subReq.getSubRequestPath())) { // #to_action
+                handleSubRequestNotFound(subReq, subRes);
+            }
+        } catch (Throwable cause) {
+            handleSubRequestFailure(subReq, subRes, cause);
+        } finally { // error handlers might be registered in the action
+            RequestLoggingFilter.setClientErrorHandlerOnThread(previousClientErrorHandler);
+            RequestLoggingFilter.setServerErrorHandlerOnThread(previousServerErrorHandler);
+            externalContext.setRequest(previousRequest);
+            externalContext.setResponse(previousResponse);
+        }
+        return newMultiCallSubResult(index, subReq, subRes, System.currentTimeMillis() - before);
+    }
+
+    protected MultiCallSubRequestWrapper createSubRequestWrapper(HttpServletRequest request, MultiCallSubRequest subRequest) {
+        final String method = subRequest.method != null ? subRequest.method : "GET";
+        return new MultiCallSubRequestWrapper(request, method, subRequest.path, subRequest.params, prepareSubRequestBody(subRequest));
+    }
+
+    protected byte[] prepareSubRequestBody(MultiCallSubRequest subRequest) {
+        final Object body = subRequest.body;
+        if (body == null) {
+            return null;
+        }
+        final String json = body instanceof String ? (String) body : jsonManager.toJson(body); // string is treated as raw body
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    protected MultiCallSubResponseWrapper createSubResponseWrapper(HttpServletResponse response) {
+        return new MultiCallSubResponseWrapper(response);
+    }
+
+    protected MultiCallSubResult newMultiCallSubResult(int index, MultiCallSubRequestWrapper subReq, MultiCallSubResponseWrapper subRes,
+            long elapsedMillis) {
+        return new MultiCallSubResult(index, subReq, subRes, elapsedMillis);
+    }
+
+    // -----------------------------------------------------
+    //                                     Sub-request Error
+    //                                     -----------------
+    protected void handleSubRequestNotFound(MultiCallSubRequestWrapper subReq, MultiCallSubResponseWrapper subRes) throws IOException {
+        logger.debug("...Sending sub-request as not found: {}", subReq);
+        if (!subRes.isCommitted()) {
+            subRes.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    protected void handleSubRequestFailure(MultiCallSubRequestWrapper subReq, MultiCallSubResponseWrapper subRes, Throwable cause) {
+        final Throwable realCause = unwrapServletException(cause);
+        final RequestClientErrorException clientError = findCause(realCause, RequestClientErrorException.class);
+        if (clientError != null) {
+            logger.info("...Sending sub-request as '{}': {} {}", clientError.getTitle(), subReq, clientError.getMessage());
+            final RequestClientErrorHandler handler = RequestLoggingFilter.getClientErrorHandlerOnThread();
+            if (handler != null) {
+                try {
+                    handler.handle(subReq, subRes, clientError);
+                } catch (Throwable handlingEx) {
+                    logger.debug("Failed to handle 'Client Error' of sub-request by the handler: " + handler, handlingEx);
+                }
+            }
+            sendSubRequestError(subRes, clientError.getErrorStatus());
+            return;
+        }
+        if (findCause(realCause, RequestDeadlineExceededException.class) != null) {
+            logger.info("...Sending sub-request as '504 Gateway Timeout' by request deadline: {}", subReq);
+            sendSubRequestError(subRes, HttpServletResponse.SC_GATEWAY_TIMEOUT);
+            return;
+        }
+        logger.error("Failed to process the sub-request of multi-call: " + subReq, realCause);
+        final RequestServerErrorHandler handler = RequestLoggingFilter.getServerErrorHandlerOnThread();
+        if (handler != null) {
+            try {
+                handler.handle(subReq, subRes, realCause);
+            } catch (Throwable handlingEx) {
+                logger.error("Failed to handle '500 Error' of sub-request by the handler: " + handler, handlingEx);
+            }
+        }
+        sendSubRequestError(subRes, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+
+    protected Throwable unwrapServletException(Throwable cause) {
+        Throwable current = cause;
+        while (current instanceof ServletException && ((ServletException) current).getRootCause() != null) {
+            current = ((ServletException) current).getRootCause();
+        }
+        return current;
+    }
+
+    protected <CAUSE extends Throwable> CAUSE findCause(Throwable cause, Class<CAUSE> causeType) {
+        Throwable current = cause;
+        while (current != null) {
+            if (causeType.isInstance(current)) {
+                return causeType.cast(current);
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+
+    protected void sendSubRequestError(MultiCallSubResponseWrapper subRes, int status) {
+        if (subRes.isCommitted()) { // e.g. handled by error handler
+            return;
+        }
+        try {
+            subRes.sendError(status);
+        } catch (IOException ignored) { // no way, in memory
+        }
+    }
+
+    // ===================================================================================
+    //                                                                      Write Response
+    //                                                                      ==============
+    protected void writeMultiCallResponse(HttpServletResponse response, List<MultiCallSubResult> resultList) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\"responses\":[");
+        int index = 0;
+        for (MultiCallSubResult result : resultList) {
+            if (index > 0) {
+                sb.append(",");
+            }
+            buildSubResultJson(sb, result);
+            ++index;
+        }
+        sb.append("]}");
+        final byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(JSON_CONTENT_TYPE + "; charset=UTF-8");
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    protected void buildSubResultJson(StringBuilder sb, MultiCallSubResult result) {
+        final MultiCallSubResponseWrapper subRes = result.getSubResponse();
+        final String contentType = subRes.getContentType();
+        sb.append("{\"index\":").append(result.getIndex());
+        sb.append(",\"path\":").append(jsonManager.toJson(result.getSubRequest().getSubRequestPath()));
+        sb.append(",\"status\":").append(subRes.getStatus());
+        sb.append(",\"elapsedMillis\":").append(result.getElapsedMillis());
+        final String location = subRes.getHeader("Location");
+        if (location != null) { // e.g. redirect
+            sb.append(",\"location\":").append(jsonManager.toJson(location));
+        }
+        sb.append(",\"contentType\":").append(contentType != null ? jsonManager.toJson(contentType) : "null");
+        sb.append(",\"body\":").append(buildSubBodyJson(contentType, subRes.getCapturedBodyAsString()));
+        sb.append("}");
+    }
+
+    protected String buildSubBodyJson(String contentType, String body) {
+        final String trimmed = body.trim();
+        if (trimmed.isEmpty()) {
+            return "null";
+        }
+        if (contentType != null && contentType.contains("json")) { // embedded as it is
+            return trimmed;
+        }
+        return jsonManager.toJson(body); // as string literal e.g. HTML
+    }
+
+    // ===================================================================================
+    //                                                                          Sub Result
+    //                                                                          ==========
+    public static class MultiCallSubResult {
+
+        protected final int index;
+        protected final MultiCallSubRequestWrapper subRequest;
+        protected final MultiCallSubResponseWrapper subResponse;
+        protected final long elapsedMillis;
+
+        public MultiCallSubResult(int index, MultiCallSubRequestWrapper subRequest, MultiCallSubResponseWrapper subResponse,
+                long elapsedMillis) {
+            this.index = index;
+            this.subRequest = subRequest;
+            this.subResponse = subResponse;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public MultiCallSubRequestWrapper getSubRequest() {
+            return subRequest;
+        }
+
+        public MultiCallSubResponseWrapper getSubResponse() {
+            return subResponse;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public MultiCallOption getOption() {
+        return option;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.multicall;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.dbflute.util.Srl;
+
+/**
+ * The request wrapper of sub-request in multi-call. <br>
+ * Headers, session and cookies are delegated to the multi-call request,
+ * and path, method, parameters, body and attributes are for the sub-request.
+ * @author jflute
+ */
+public class MultiCallSubRequestWrapper extends HttpServletRequestWrapper {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final String JSON_CONTENT_TYPE = "application/json";
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final String method; // not null
+    protected final String requestPath; // not null, without query string e.g. /member/list/
+    protected final String queryString; // null allowed
+    protected final Map<String, String[]> parameterMap; // not null, read-only
+    protected final byte[] body; // null allowed
+    protected final Map<String, Object> attributeMap; // not null, concurrent (null value is not allowed)
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param request The request of multi-call. (NotNull)
+     * @param method The HTTP method of the sub-request e.g. GET, POST. (NotNull)
+     * @param pathWithQuery The request path of the sub-request, which can have query string. (NotNull)
+     * @param params The map of request parameters, the value is string or list. (NullAllowed)
+     * @param body The byte array of JSON body. (NullAllowed: if no body)
+     */
+    public MultiCallSubRequestWrapper(HttpServletRequest request, String method, String pathWithQuery, Map<String, Object> params,
+            byte[] body) {
+        super(request);
+        this.method = method.toUpperCase();
+        this.requestPath = Srl.substringFirstFront(pathWithQuery, "?");
+        this.queryString = pathWithQuery.contains("?") ? Srl.substringFirstRear(pathWithQuery, "?") : null;
+        this.parameterMap = Collections.unmodifiableMap(prepareParameterMap(queryString, params));
+        this.body = body;
+        this.attributeMap = prepareAttributeMap(request);
+    }
+
+    protected Map<String, String[]> prepareParameterMap(String queryString, Map<String, Object> params) {
+        final Map<String, String[]> map = new LinkedHashMap<String, String[]>();
+        if (queryString != null) {
+            for (String pair : Srl.splitList(queryString, "&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                final String key = decode(pair.contains("=") ? Srl.substringFirstFront(pair, "=") : pair);
+                final String value = pair.contains("=") ? decode(Srl.substringFirstRear(pair, "=")) : "";
+                addParameter(map, key, value);
+            }
+        }
+        if (params != null) {
+            for (Entry<String, Object> entry : params.entrySet()) {
+                final Object value = entry.getValue();
+                if (value instanceof List<?>) {
+                    for (Object element : (List<?>) value) {
+                        addParameter(map, entry.getKey(), element != null ? element.toString() : "");
+                    }
+                } else {
+                    addParameter(map, entry.getKey(), value != null ? value.toString() : "");
+                }
+            }
+        }
+        return map;
+    }
+
+    protected String decode(String encoded) {
+        try {
+            return URLDecoder.decode(encoded, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) { // no way
+            throw new IllegalStateException("Unknown encoding: " + encoded, e);
+        }
+    }
+
+    protected void addParameter(Map<String, String[]> map, String key, String value) {
+        final String[] existing = map.get(key);
+        if (existing == null) {
+            map.put(key, new String[] { value });
+        } else {
+            final String[] added = new String[existing.length + 1];
+            System.arraycopy(existing, 0, added, 0, existing.length);
+            added[existing.length] = value;
+            map.put(key, added);
+        }
+    }
+
+    protected Map<String, Object> prepareAttributeMap(HttpServletRequest request) {
+        final Map<String, Object> map = new ConcurrentHashMap<String, Object>();
+        final Enumeration<String> names = request.getAttributeNames();
+        while (names.hasMoreElements()) { // e.g. hot-deploy class loader, character encoding
+            final String name = names.nextElement();
+            final Object value = request.getAttribute(name);
+            if (value != null) {
+                map.put(name, value);
+            }
+        }
+        return map;
+    }
+
+    // ===================================================================================
+    //                                                                        Request Path
+    //                                                                        ============
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return getContextPath() + requestPath;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        final StringBuffer sb = new StringBuffer();
+        sb.append(getScheme()).append("://").append(getServerName()).append(":").append(getServerPort());
+        return sb.append(getRequestURI());
+    }
+
+    @Override
+    public String getServletPath() {
+        return requestPath;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return null;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    // ===================================================================================
+    //                                                                           Parameter
+    //                                                                           =========
+    @Override
+    public String getParameter(String name) {
+        final String[] values = parameterMap.get(name);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        final String[] values = parameterMap.get(name);
+        return values != null ? values.clone() : null;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return parameterMap;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameterMap.keySet());
+    }
+
+    // ===================================================================================
+    //                                                                         Body Stream
+    //                                                                         ===========
+    @Override
+    public String getContentType() {
+        return body != null ? JSON_CONTENT_TYPE : null;
+    }
+
+    @Override
+    public int getContentLength() {
+        return body != null ? body.length : -1;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return getContentLength();
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return StandardCharsets.UTF_8.name();
+    }
+
+    @Override
+    public void setCharacterEncoding(String env) { // fixed as UTF-8
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        final ByteArrayInputStream ins = new ByteArrayInputStream(body != null ? body : new byte[0]);
+        return new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return ins.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return ins.read(b, off, len);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return ins.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException("Non-blocking read is unsupported in multi-call: " + requestPath);
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    @Override
+    public Object getAttribute(String name) {
+        return attributeMap.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributeMap.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value != null) {
+            attributeMap.put(name, value);
+        } else {
+            attributeMap.remove(name);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributeMap.remove(name);
+    }
+
+    // ===================================================================================
+    //                                                                        Asynchronous
+    //                                                                        ============
+    @Override
+    public boolean isAsyncSupported() {
+        return false; // response is collected when the sub-request returns
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Asynchronous execute is unsupported in multi-call: " + requestPath);
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new IllegalStateException("Asynchronous execute is unsupported in multi-call: " + requestPath);
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    // ===================================================================================
+    //                                                                      Basic Override
+    //                                                                      ==============
+    @Override
+    public String toString() {
+        return "subRequest:{" + method + " " + requestPath + (queryString != null ? "?" + queryString : "") + "}";
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public String getSubRequestPath() {
+        return requestPath;
+    }
+}
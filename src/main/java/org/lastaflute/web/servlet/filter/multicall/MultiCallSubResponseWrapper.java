@@ -0,0 +1,328 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.multicall;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * The response wrapper of sub-request in multi-call, which captures status, headers and body in memory. <br>
+ * Cookies are written to the multi-call response because the client cannot receive them per sub-request.
+ * @author jflute
+ */
+public class MultiCallSubResponseWrapper extends HttpServletResponseWrapper {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final HttpServletResponse multiCallResponse; // not null, shared with other sub-requests
+    protected final ByteArrayOutputStream bodyStream = new ByteArrayOutputStream();
+    protected final Map<String, List<String>> headerMap = new LinkedHashMap<String, List<String>>(); // case-insensitive by lower key
+    protected int status = SC_OK;
+    protected String contentType; // null allowed
+    protected String characterEncoding = StandardCharsets.UTF_8.name();
+    protected boolean committed;
+    protected ServletOutputStream outputStream; // null allowed, lazy-loaded
+    protected PrintWriter writer; // null allowed, lazy-loaded
+
+    // ===================================================================================
+    //                                                                         Constructor
+    //                                                                         ===========
+    /**
+     * @param response The response of multi-call. (NotNull)
+     */
+    public MultiCallSubResponseWrapper(HttpServletResponse response) {
+        super(response);
+        this.multiCallResponse = response;
+    }
+
+    // ===================================================================================
+    //                                                                              Status
+    //                                                                              ======
+    @Override
+    public void setStatus(int sc) {
+        if (!committed) {
+            status = sc;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void setStatus(int sc, String sm) {
+        setStatus(sc);
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        assertNotCommitted("sendError");
+        resetBuffer();
+        status = sc;
+        committed = true;
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        assertNotCommitted("sendRedirect");
+        resetBuffer();
+        status = SC_FOUND;
+        setHeader("Location", location);
+        committed = true;
+    }
+
+    protected void assertNotCommitted(String operation) {
+        if (committed) {
+            throw new IllegalStateException("The sub-response is already committed so cannot " + operation + "().");
+        }
+    }
+
+    // ===================================================================================
+    //                                                                              Header
+    //                                                                              ======
+    @Override
+    public void setHeader(String name, String value) {
+        synchronized (headerMap) {
+            final List<String> valueList = new ArrayList<String>(1);
+            valueList.add(value);
+            headerMap.put(name.toLowerCase(Locale.ENGLISH), valueList);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        synchronized (headerMap) {
+            headerMap.computeIfAbsent(name.toLowerCase(Locale.ENGLISH), key -> new ArrayList<String>(1)).add(value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, String.valueOf(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, String.valueOf(date));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        synchronized (headerMap) {
+            return headerMap.containsKey(name.toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    @Override
+    public String getHeader(String name) {
+        synchronized (headerMap) {
+            final List<String> valueList = headerMap.get(name.toLowerCase(Locale.ENGLISH));
+            return valueList != null && !valueList.isEmpty() ? valueList.get(0) : null;
+        }
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        synchronized (headerMap) {
+            final List<String> valueList = headerMap.get(name.toLowerCase(Locale.ENGLISH));
+            return valueList != null ? new ArrayList<String>(valueList) : Collections.emptyList();
+        }
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        synchronized (headerMap) {
+            return new ArrayList<String>(headerMap.keySet());
+        }
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        synchronized (multiCallResponse) { // may be parallel
+            multiCallResponse.addCookie(cookie);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                        Content Type
+    //                                                                        ============
+    @Override
+    public void setContentType(String type) {
+        contentType = type;
+        if (type != null && type.toLowerCase(Locale.ENGLISH).contains("charset=")) {
+            characterEncoding = type.substring(type.toLowerCase(Locale.ENGLISH).indexOf("charset=") + "charset=".length()).trim();
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        if (charset != null) {
+            characterEncoding = charset;
+        }
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    @Override
+    public void setContentLength(int len) { // calculated from captured body
+    }
+
+    @Override
+    public void setContentLengthLong(long len) { // me too
+    }
+
+    // ===================================================================================
+    //                                                                                Body
+    //                                                                                ====
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for the sub-response.");
+        }
+        if (outputStream == null) {
+            outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    bodyStream.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    bodyStream.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    throw new UnsupportedOperationException("Non-blocking write is unsupported in multi-call.");
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (outputStream != null) {
+            throw new IllegalStateException("getOutputStream() has already been called for the sub-response.");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(bodyStream, Charset.forName(characterEncoding)));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        committed = true;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public void resetBuffer() {
+        assertNotCommitted("resetBuffer");
+        if (writer != null) {
+            writer.flush();
+        }
+        bodyStream.reset();
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        status = SC_OK;
+        contentType = null;
+        synchronized (headerMap) {
+            headerMap.clear();
+        }
+    }
+
+    // ===================================================================================
+    //                                                                             Capture
+    //                                                                             =======
+    /**
+     * Get the captured body as byte array, flushing the writer.
+     * @return The byte array of the body. (NotNull, EmptyAllowed)
+     */
+    public byte[] getCapturedBody() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return bodyStream.toByteArray();
+    }
+
+    /**
+     * Get the captured body as string by the character encoding.
+     * @return The string of the body. (NotNull, EmptyAllowed)
+     */
+    public String getCapturedBodyAsString() {
+        return new String(getCapturedBody(), Charset.forName(characterEncoding));
+    }
+}
@@ -0,0 +1,594 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.dbflute.helper.message.ExceptionMessageBuilder;
+import org.lastaflute.web.exception.SessionCookieOverflowException;
+import org.lastaflute.web.servlet.cookie.CookieCipher;
+import org.lastaflute.web.servlet.cookie.exception.CookieCipherDecryptFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The stateless session manager that saves session attributes in cookies. <br>
+ * The attributes are binary-serialized, compressed, MAC'd and encrypted (by cookie cipher),
+ * and chunked across several cookies so any server can handle any request without server memory.
+ * <pre>
+ * &lt;component name="sessionManager" class="org.lastaflute.web.servlet.session.CookieSessionManager"&gt;
+ *     &lt;property name="macSecret"&gt;"your secret"&lt;/property&gt; <span style="color: #3F7E5E">// required</span>
+ * &lt;/component&gt;
+ * </pre>
+ * Attribute values should be serializable and small. (e.g. user bean, messages, tokens) <br>
+ * Changes in the request (also in-place changes of attribute values) are written to cookies once
+ * just before the response is committed, by the response wrapped in LastaPrepareFilter.
+ * Changes after the commit cannot be saved (logged as warning).
+ * @author jflute
+ */
+public class CookieSessionManager extends SimpleSessionManager {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    private static final Logger logger = LoggerFactory.getLogger(CookieSessionManager.class);
+
+    /** The key of request attribute for the session state of current request. */
+    protected static final String SESSION_STATE_KEY = "lastaflute.session.cookie.state";
+
+    /** The algorithm of message authentication code. */
+    protected static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /** The length of MAC bytes saved in front of payload. */
+    protected static final int MAC_LENGTH = 32;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** The cipher of cookie to encrypt the session payload. (NotNull) */
+    @Resource
+    protected CookieCipher cookieCipher;
+
+    /** The name prefix of session cookies, suffixed by chunk index. (NotNull) */
+    protected String cookieName = "LASTASESSION";
+
+    /** The path of session cookies. (NotNull) */
+    protected String cookiePath = "/";
+
+    /** The max length of one cookie value. */
+    protected int chunkSize = 3800; // under 4KB per cookie
+
+    /** The max count of chunk cookies, session is overflow if over. */
+    protected int maxChunkCount = 5;
+
+    /** The expire seconds of session since last writing. */
+    protected int sessionExpireSeconds = 1800; // as HttpSession default
+
+    /** The secret for message authentication code, independent from cookie cipher. (NotNull: required) */
+    protected String macSecret;
+
+    /** The key of message authentication code. (NotNull: after initialization) */
+    protected SecretKeySpec macKey;
+
+    // ===================================================================================
+    //                                                                          Initialize
+    //                                                                          ==========
+    /**
+     * Initialize this component, the MAC secret is required. <br>
+     * This is basically called by DI setting file.
+     */
+    @PostConstruct
+    @Override
+    public void initialize() {
+        super.initialize();
+        assertMacSecretSpecified();
+        macKey = new SecretKeySpec(prepareMacKeyBytes(), MAC_ALGORITHM);
+        showBootLogging();
+    }
+
+    protected void assertMacSecretSpecified() {
+        if (macSecret == null || macSecret.trim().isEmpty()) {
+            final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+            br.addNotice("Not found the MAC secret for cookie session.");
+            br.addItem("Advice");
+            br.addElement("The cookie session needs its own secret to sign the session payload,");
+            br.addElement("which is deserialized so it should not be derived from other keys.");
+            br.addElement("Set it at the DI setting file of the session manager.");
+            br.addElement("For example:");
+            br.addElement("  <component name=\"sessionManager\" class=\"...CookieSessionManager\">");
+            br.addElement("      <property name=\"macSecret\">config.getCookieSessionMacSecret()</property>");
+            br.addElement("  </component>");
+            br.addItem("Cookie Name");
+            br.addElement(cookieName);
+            final String msg = br.buildExceptionMessage();
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    protected byte[] prepareMacKeyBytes() {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(macSecret.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to digest the MAC secret.", e);
+        }
+    }
+
+    protected void showBootLogging() {
+        if (logger.isInfoEnabled()) {
+            logger.info("[Cookie Session Manager]");
+            logger.info(" cookieName: " + cookieName + ", path=" + cookiePath);
+            logger.info(" chunk: size=" + chunkSize + ", max=" + maxChunkCount);
+            logger.info(" expire: " + sessionExpireSeconds + " seconds");
+            logger.info(" mac: " + MAC_ALGORITHM);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                  Attribute Handling
+    //                                                                  ==================
+    @Override
+    protected Object findOriginalAttribute(String key) {
+        final CookieSessionState state = findSessionState();
+        return state != null ? state.getAttributeMap().get(key) : null;
+    }
+
+    @Override
+    public List<String> getAttributeNameList() {
+        final CookieSessionState state = findSessionState();
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<String>(state.getAttributeMap().keySet()));
+    }
+
+    @Override
+    public void setAttribute(String key, Object value) {
+        assertArgumentNotNull("key", key);
+        assertArgumentNotNull("value", value);
+        assertAttributeSerializable(key, value);
+        final CookieSessionState state = prepareSessionStateCreated();
+        state.getAttributeMap().put(key, value);
+        state.markDirty(); // written before commit
+    }
+
+    @Override
+    public void removeAttribute(String key) {
+        assertArgumentNotNull("key", key);
+        final CookieSessionState state = findSessionState();
+        if (state != null && state.getAttributeMap().remove(key) != null) {
+            state.markDirty();
+        }
+    }
+
+    protected void assertAttributeSerializable(String key, Object value) {
+        if (!(value instanceof Serializable)) {
+            final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+            br.addNotice("Cannot save the non-serializable attribute in cookie session.");
+            br.addItem("Advice");
+            br.addElement("The attribute of cookie session should be serializable.");
+            br.addElement("And it should be small because it is saved in cookies.");
+            br.addItem("Attribute Key");
+            br.addElement(key);
+            br.addItem("Attribute Type");
+            br.addElement(value.getClass());
+            final String msg = br.buildExceptionMessage();
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                    Session Handling
+    //                                                                    ================
+    @Override
+    public String getSessionId() {
+        final CookieSessionState state = findSessionState();
+        if (state != null && state.exists()) {
+            return state.getSessionId();
+        }
+        final CookieSessionState created = prepareSessionStateCreated();
+        created.markDirty();
+        return created.getSessionId();
+    }
+
+    @Override
+    public void invalidate() {
+        final CookieSessionState state = findSessionState();
+        if (state != null && state.exists()) {
+            state.invalidate(); // written chunks are removed before commit
+        }
+    }
+
+    @Override
+    public void regenerateSessionId() {
+        final CookieSessionState state = findSessionState();
+        if (state != null && state.exists()) { // attributes are inherited as they are
+            state.renewSessionId(generateSessionId());
+            state.markDirty();
+        }
+    }
+
+    protected String generateSessionId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    // ===================================================================================
+    //                                                                       Session State
+    //                                                                       =============
+    protected CookieSessionState findSessionState() { // null allowed when e.g. asynchronous process
+        final HttpServletRequest request = getRequest();
+        if (request == null) {
+            return null;
+        }
+        CookieSessionState state = (CookieSessionState) request.getAttribute(SESSION_STATE_KEY);
+        if (state == null) { // first access in the request, read cookies only once (no writing here)
+            state = readSessionState(request);
+            request.setAttribute(SESSION_STATE_KEY, state);
+        }
+        return state;
+    }
+
+    protected CookieSessionState prepareSessionStateCreated() {
+        final CookieSessionState state = findSessionState();
+        if (state == null) {
+            throw new IllegalStateException("Not found the request for cookie session, e.g. asynchronous process.");
+        }
+        if (!state.exists()) {
+            state.renewSessionId(generateSessionId());
+        }
+        return state;
+    }
+
+    protected boolean needsExpireRefresh(CookieSessionState state) { // to keep active session alive
+        final long remaining = state.getExpireMillis() - currentMillis();
+        return remaining < (sessionExpireSeconds * 1000L) / 2;
+    }
+
+    protected long currentMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // ===================================================================================
+    //                                                                      Response Flush
+    //                                                                      ==============
+    /**
+     * Wrap the response to write the session cookies just before the response is committed. <br>
+     * This is basically called by LastaPrepareFilter at the beginning of request.
+     * @param request The current request of servlet. (NotNull)
+     * @param response The current response of servlet. (NotNull)
+     * @return The wrapped response that flushes the session before commit. (NotNull)
+     */
+    public HttpServletResponse wrapResponse(HttpServletRequest request, HttpServletResponse response) {
+        return new CookieSessionResponse(response, () -> flushSessionState(request, response));
+    }
+
+    /**
+     * Write the session cookies if the session is changed in the request, only once per change. <br>
+     * In-place changes of attribute values are detected by comparing the serialized bytes.
+     * @param request The current request of servlet. (NotNull)
+     * @param response The response to add cookies, should not be committed yet. (NotNull)
+     */
+    public void flushSessionState(HttpServletRequest request, HttpServletResponse response) {
+        final CookieSessionState state = (CookieSessionState) request.getAttribute(SESSION_STATE_KEY);
+        if (state == null) { // session is not used in the request
+            return;
+        }
+        if (!state.exists()) {
+            if (state.getWrittenChunkCount() > 0 && !isSessionResponseCommitted(state, response)) { // invalidated or broken
+                writeChunkCookies(state, Collections.emptyList(), request, response);
+            }
+            return;
+        }
+        if (!state.isDirty() && !needsExpireRefresh(state) && Arrays.equals(serializeBody(state), state.getSavedBody())) {
+            return; // no change
+        }
+        if (isSessionResponseCommitted(state, response)) {
+            return;
+        }
+        state.setExpireMillis(currentMillis() + sessionExpireSeconds * 1000L);
+        final byte[] body = serializeBody(state);
+        final List<String> chunkList = splitChunk(cookieCipher.encrypt(buildPayload(body)));
+        if (chunkList.size() > maxChunkCount) {
+            throwSessionCookieOverflowException(state, chunkList);
+        }
+        writeChunkCookies(state, chunkList, request, response);
+        state.saved(body);
+    }
+
+    protected boolean isSessionResponseCommitted(CookieSessionState state, HttpServletResponse response) {
+        if (response.isCommitted()) {
+            logger.warn("*Cannot save the cookie session changed after response commit: {}", state.getAttributeMap().keySet());
+            return true;
+        }
+        return false;
+    }
+
+    // ===================================================================================
+    //                                                                     Cookie Handling
+    //                                                                     ===============
+    protected CookieSessionState readSessionState(HttpServletRequest request) {
+        final Map<String, String> cookieValueMap = extractCookieValueMap(request);
+        final StringBuilder sb = new StringBuilder();
+        int chunkCount = 0;
+        while (chunkCount < maxChunkCount) {
+            final String value = cookieValueMap.get(buildChunkCookieName(chunkCount));
+            if (value == null || value.isEmpty()) {
+                break;
+            }
+            sb.append(value);
+            ++chunkCount;
+        }
+        final CookieSessionState state = new CookieSessionState(chunkCount);
+        if (chunkCount > 0) {
+            try {
+                restorePayload(state, cookieCipher.decrypt(sb.toString()));
+            } catch (CookieCipherDecryptFailureException | RuntimeException e) {
+                logger.debug("...Ignoring the invalid cookie session: {}", e.getMessage()); // might be hack
+                state.invalidate(); // chunks are removed before commit
+            }
+        }
+        return state;
+    }
+
+    protected Map<String, String> extractCookieValueMap(HttpServletRequest request) {
+        final Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> cookieValueMap = new HashMap<String, String>(cookies.length);
+        for (Cookie cookie : cookies) {
+            if (cookie.getName().startsWith(cookieName)) {
+                cookieValueMap.putIfAbsent(cookie.getName(), cookie.getValue()); // first one if duplicate
+            }
+        }
+        return cookieValueMap;
+    }
+
+    protected void writeChunkCookies(CookieSessionState state, List<String> chunkList, HttpServletRequest request,
+            HttpServletResponse response) {
+        for (int i = 0; i < chunkList.size(); i++) {
+            response.addCookie(createChunkCookie(buildChunkCookieName(i), chunkList.get(i), -1, request));
+        }
+        for (int i = chunkList.size(); i < state.getWrittenChunkCount(); i++) { // remove rest of previous chunks
+            response.addCookie(createChunkCookie(buildChunkCookieName(i), "", 0, request));
+        }
+        state.setWrittenChunkCount(chunkList.size());
+    }
+
+    protected String buildChunkCookieName(int index) {
+        return cookieName + index;
+    }
+
+    protected List<String> splitChunk(String value) {
+        final List<String> chunkList = new ArrayList<String>((value.length() / chunkSize) + 1);
+        for (int begin = 0; begin < value.length(); begin += chunkSize) {
+            chunkList.add(value.substring(begin, Math.min(begin + chunkSize, value.length())));
+        }
+        return chunkList;
+    }
+
+    protected Cookie createChunkCookie(String name, String value, int maxAge, HttpServletRequest request) {
+        final Cookie cookie = new Cookie(name, value);
+        cookie.setPath(cookiePath);
+        cookie.setMaxAge(maxAge); // -1 means until browser closing, expire is checked by the payload
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        return cookie;
+    }
+
+    protected void throwSessionCookieOverflowException(CookieSessionState state, List<String> chunkList) {
+        final ExceptionMessageBuilder br = new ExceptionMessageBuilder();
+        br.addNotice("The session attributes are too large to be saved in cookies.");
+        br.addItem("Advice");
+        br.addElement("Cookie session should have small attributes only.");
+        br.addElement("Remove large attributes from session or increase the max chunk count.");
+        br.addItem("Chunk");
+        br.addElement("size=" + chunkSize + ", max=" + maxChunkCount + ", actual=" + chunkList.size());
+        br.addItem("Attribute List");
+        br.addElement(state.getAttributeMap().keySet());
+        final String msg = br.buildExceptionMessage();
+        throw new SessionCookieOverflowException(msg);
+    }
+
+    // ===================================================================================
+    //                                                                       Serialization
+    //                                                                       =============
+    protected byte[] serializeBody(CookieSessionState state) { // deflate(serialized)
+        final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        try (ObjectOutputStream objOut = new ObjectOutputStream(new DeflaterOutputStream(bytesOut))) {
+            objOut.writeUTF(state.getSessionId());
+            objOut.writeLong(state.getExpireMillis());
+            objOut.writeObject(new LinkedHashMap<String, Object>(state.getAttributeMap()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize the cookie session: " + state.getAttributeMap().keySet(), e);
+        }
+        return bytesOut.toByteArray();
+    }
+
+    protected String buildPayload(byte[] body) { // base64( MAC + body )
+        final byte[] payload = new byte[MAC_LENGTH + body.length];
+        System.arraycopy(computeMac(body), 0, payload, 0, MAC_LENGTH);
+        System.arraycopy(body, 0, payload, MAC_LENGTH, body.length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload);
+    }
+
+    protected void restorePayload(CookieSessionState state, String decrypted) {
+        final byte[] payload = Base64.getUrlDecoder().decode(decrypted); // IllegalArgumentException if broken
+        if (payload.length <= MAC_LENGTH) {
+            throw new IllegalArgumentException("Too short cookie session payload: " + payload.length);
+        }
+        final byte[] mac = Arrays.copyOfRange(payload, 0, MAC_LENGTH);
+        final byte[] body = Arrays.copyOfRange(payload, MAC_LENGTH, payload.length);
+        if (!MessageDigest.isEqual(mac, computeMac(body))) { // deserialize only our own bytes
+            throw new SecurityException("Unmatched MAC of cookie session.");
+        }
+        try (ObjectInputStream objIn = new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(body)))) {
+            final String sessionId = objIn.readUTF();
+            final long expireMillis = objIn.readLong();
+            if (expireMillis <= currentMillis()) {
+                throw new IllegalArgumentException("Already expired cookie session: " + sessionId);
+            }
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> attributeMap = (Map<String, Object>) objIn.readObject();
+            state.restore(sessionId, expireMillis, attributeMap, body);
+        } catch (IOException | ClassNotFoundException e) { // e.g. class changed by new deployment
+            throw new IllegalArgumentException("Failed to deserialize the cookie session.", e);
+        }
+    }
+
+    protected byte[] computeMac(byte[] body) {
+        try {
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(macKey);
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to compute the MAC of cookie session.", e);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                        State Object
+    //                                                                        ============
+    protected static class CookieSessionState {
+
+        protected String sessionId; // null if no session
+        protected long expireMillis;
+        protected final Map<String, Object> attributeMap = new LinkedHashMap<String, Object>();
+        protected int writtenChunkCount; // existing chunks in browser
+        protected byte[] savedBody; // null if not saved yet, to detect in-place changes
+        protected boolean dirty; // changed by session manager
+
+        public CookieSessionState(int writtenChunkCount) {
+            this.writtenChunkCount = writtenChunkCount;
+        }
+
+        public boolean exists() {
+            return sessionId != null;
+        }
+
+        public void restore(String sessionId, long expireMillis, Map<String, Object> attributeMap, byte[] savedBody) {
+            this.sessionId = sessionId;
+            this.expireMillis = expireMillis;
+            this.attributeMap.putAll(attributeMap);
+            this.savedBody = savedBody;
+        }
+
+        public void renewSessionId(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        public void invalidate() {
+            sessionId = null;
+            attributeMap.clear();
+            savedBody = null;
+            dirty = false; // nothing to save, only chunks to be removed
+        }
+
+        public void markDirty() {
+            dirty = true;
+        }
+
+        public void saved(byte[] body) {
+            savedBody = body;
+            dirty = false;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public long getExpireMillis() {
+            return expireMillis;
+        }
+
+        public void setExpireMillis(long expireMillis) {
+            this.expireMillis = expireMillis;
+        }
+
+        public Map<String, Object> getAttributeMap() {
+            return attributeMap;
+        }
+
+        public int getWrittenChunkCount() {
+            return writtenChunkCount;
+        }
+
+        public void setWrittenChunkCount(int writtenChunkCount) {
+            this.writtenChunkCount = writtenChunkCount;
+        }
+
+        public byte[] getSavedBody() {
+            return savedBody;
+        }
+
+        public boolean isDirty() {
+            return dirty;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Accessor
+    //                                                                            ========
+    public void setCookieName(String cookieName) {
+        this.cookieName = cookieName;
+    }
+
+    public void setCookiePath(String cookiePath) {
+        this.cookiePath = cookiePath;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public void setMaxChunkCount(int maxChunkCount) {
+        this.maxChunkCount = maxChunkCount;
+    }
+
+    public void setSessionExpireSeconds(int sessionExpireSeconds) {
+        this.sessionExpireSeconds = sessionExpireSeconds;
+    }
+
+    public void setMacSecret(String macSecret) {
+        this.macSecret = macSecret;
+    }
+}
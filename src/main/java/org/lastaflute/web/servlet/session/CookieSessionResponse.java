@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.session;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * The response wrapper to save the cookie session just before the response is committed. <br>
+ * Writing body, redirect, error and flush can commit the response, so the hook is called before them.
+ * @author jflute
+ */
+public class CookieSessionResponse extends HttpServletResponseWrapper {
+
+    protected final Runnable beforeCommitHook; // not null
+
+    public CookieSessionResponse(HttpServletResponse response, Runnable beforeCommitHook) {
+        super(response);
+        this.beforeCommitHook = beforeCommitHook;
+    }
+
+    protected void hookBeforeCommit() {
+        if (!isCommitted()) {
+            beforeCommitHook.run();
+        }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        hookBeforeCommit();
+        return super.getWriter();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        hookBeforeCommit();
+        return super.getOutputStream();
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        hookBeforeCommit();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        hookBeforeCommit();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        hookBeforeCommit();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        hookBeforeCommit();
+        super.flushBuffer();
+    }
+}
@@ -67,8 +67,7 @@ public class SimpleSessionManager implements SessionManager {
     @Override
     public <ATTRIBUTE> OptionalThing<ATTRIBUTE> getAttribute(String key, Class<ATTRIBUTE> attributeType) {
         assertArgumentNotNull("key", key);
-        final HttpSession session = getSessionExisting();
-        final Object original = session != null ? session.getAttribute(key) : null;
+        final Object original = findOriginalAttribute(key);
         final ATTRIBUTE attribute;
         if (original != null) {
             try {
@@ -98,6 +97,11 @@ public class SimpleSessionManager implements SessionManager {
         });
     }
 
+    protected Object findOriginalAttribute(String key) { // null allowed
+        final HttpSession session = getSessionExisting();
+        return session != null ? session.getAttribute(key) : null;
+    }
+
     @Override
     public List<String> getAttributeNameList() {
         final HttpSession session = getSessionExisting();
@@ -27,12 +27,14 @@ import java.util.Map.Entry;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.validation.Configuration;
 import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
 import javax.validation.Validation;
 import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
 import javax.validation.bootstrap.GenericBootstrap;
 import javax.validation.constraints.NotNull;
 import javax.validation.groups.Default;
@@ -44,6 +46,7 @@ import org.hibernate.validator.messageinterpolation.ResourceBundleMessageInterpo
 import org.hibernate.validator.spi.resourceloading.ResourceBundleLocator;
 import org.lastaflute.core.magic.ThreadCacheContext;
 import org.lastaflute.core.message.MessageManager;
+import org.lastaflute.di.core.smart.hot.HotdeployUtil;
 import org.lastaflute.di.helper.beans.BeanDesc;
 import org.lastaflute.di.helper.beans.PropertyDesc;
 import org.lastaflute.di.helper.beans.factory.BeanDescFactory;
@@ -74,6 +77,9 @@ public class ActionValidator<MESSAGES extends ActionMessages> {
     protected static final String ITEM_VARIABLE = "{item}";
     protected static final String LABELS_PREFIX = "labels.";
 
+    /** The map of validator factory (thread-safe and heavy), keyed by type of action validator. (NotNull, not used in hot deploy) */
+    protected static final Map<Class<?>, ValidatorFactory> validatorFactoryMap = new ConcurrentHashMap<Class<?>, ValidatorFactory>();
+
     // ===================================================================================
     //                                                                           Attribute
     //                                                                           =========
@@ -172,9 +178,29 @@ public class ActionValidator<MESSAGES extends ActionMessages> {
     //                                    Validator Settings
     //                                    ------------------
     protected Validator comeOnHibernateValidator() {
+        return prepareValidatorFactory().getValidator();
+    }
+
+    protected ValidatorFactory prepareValidatorFactory() { // shared so constraint metadata is cached
+        if (HotdeployUtil.isHotdeploy()) { // classes may be changed
+            return buildValidatorFactory();
+        }
+        return validatorFactoryMap.computeIfAbsent(getClass(), key -> buildValidatorFactory());
+    }
+
+    protected ValidatorFactory buildValidatorFactory() {
         final Configuration<?> configure = newGenericBootstrap().configure();
         configure.messageInterpolator(newResourceBundleMessageInterpolator());
-        return configure.buildValidatorFactory().getValidator();
+        return configure.buildValidatorFactory();
+    }
+
+    /**
+     * Prepare the constraint metadata of the bean in the validator factory of this validator, e.g. warm-up at boot.
+     * @param beanType The type of bean validated by this validator, e.g. form, body. (NotNull)
+     */
+    public void prepareConstraintMetadata(Class<?> beanType) {
+        assertArgumentNotNull("beanType", beanType);
+        comeOnHibernateValidator().getConstraintsForClass(beanType).getConstrainedProperties(); // parses annotations
     }
 
     protected GenericBootstrap newGenericBootstrap() {
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.async;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class AsyncManagerTest extends PlainTestCase {
+
+    protected ExecutorService executorService;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        executorService = Executors.newCachedThreadPool();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        executorService.shutdownNow();
+        super.tearDown();
+    }
+
+    protected AsyncManager createAsyncManager() {
+        return new AsyncManager() { // only async() implemented to test default methods
+            public void async(ConcurrentAsyncCall noArgLambda) {
+                executorService.execute(() -> noArgLambda.callback());
+            }
+        };
+    }
+
+    // ===================================================================================
+    //                                                                  Inheriting Executor
+    //                                                                  ===================
+    public void test_inheritingExecutor_default_runByAsync() {
+        // ## Arrange ##
+        AsyncManager asyncManager = createAsyncManager();
+        Thread callerThread = Thread.currentThread();
+
+        // ## Act ##
+        Thread completedThread = CompletableFuture.supplyAsync(() -> "sea", executorService).thenApplyAsync(sea -> {
+            return Thread.currentThread();
+        } , asyncManager.inheritingExecutor()).join();
+
+        // ## Assert ##
+        assertNotNull(completedThread);
+        assertNotSame(callerThread, completedThread);
+    }
+
+    // ===================================================================================
+    //                                                                                Fork
+    //                                                                                ====
+    public void test_parallel_default_runByInheritingExecutor() {
+        // ## Arrange ##
+        AsyncManager asyncManager = createAsyncManager();
+        Thread callerThread = Thread.currentThread();
+        List<ConcurrentParallelCall<String>> callList = new ArrayList<ConcurrentParallelCall<String>>();
+        callList.add(() -> "sea:" + (Thread.currentThread() != callerThread));
+        callList.add(() -> "land:" + (Thread.currentThread() != callerThread));
+
+        // ## Act ##
+        List<String> resultList = asyncManager.parallel(callList);
+
+        // ## Assert ##
+        assertEquals(Arrays.asList("sea:true", "land:true"), resultList);
+        assertEquals(0L, asyncManager.getParallelCallLatency().getCount());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.async;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.core.magic.async.ConcurrentFork.ConcurrentForkDispatcher;
+import org.lastaflute.core.magic.async.exception.ConcurrentParallelTimeoutException;
+
+/**
+ * @author jflute
+ */
+public class ConcurrentForkTest extends PlainTestCase {
+
+    protected ExecutorService executorService;
+    protected ConcurrentCallLatency latency;
+    protected AtomicInteger handledFailureCount;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        executorService = Executors.newCachedThreadPool();
+        latency = new ConcurrentCallLatency();
+        handledFailureCount = new AtomicInteger();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        executorService.shutdownNow();
+        super.tearDown();
+    }
+
+    public void test_join_results_limitedParallelism() {
+        // ## Arrange ##
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ConcurrentFork fork = createFork(new ConcurrentForkOption().limitParallelism(2));
+
+        // ## Act ##
+        ConcurrentForked<?>[] forkedAry = new ConcurrentForked<?>[5];
+        for (int i = 0; i < forkedAry.length; i++) {
+            final int index = i;
+            forkedAry[i] = fork.call(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                return "sea" + index;
+            });
+        }
+        fork.join();
+
+        // ## Assert ##
+        for (int i = 0; i < forkedAry.length; i++) {
+            assertEquals("sea" + i, forkedAry[i].get());
+        }
+        assertTrue(maxRunning.get() <= 2);
+        assertEquals(5L, latency.getCount());
+        assertTrue(latency.estimatePercentileMillis(50.0) >= 20L);
+        log(latency);
+    }
+
+    public void test_join_firstFailure_and_timeout() {
+        // ## Arrange ##
+        ConcurrentFork failureFork = createFork(new ConcurrentForkOption());
+        ConcurrentForked<String> sleeping = failureFork.call(() -> {
+            sleep(3000);
+            return "land";
+        });
+        failureFork.call(() -> {
+            throw new IllegalStateException("piari");
+        });
+
+        // ## Act ##
+        // ## Assert ##
+        try {
+            failureFork.join();
+            fail();
+        } catch (IllegalStateException e) { // thrown as it is
+            assertEquals("piari", e.getMessage());
+        }
+        assertTrue(sleeping.isCancelled());
+        try {
+            sleeping.get();
+            fail();
+        } catch (IllegalStateException e) {
+            log(e.getMessage());
+        }
+
+        ConcurrentFork timeoutFork = createFork(new ConcurrentForkOption().timeout(50));
+        timeoutFork.call(() -> {
+            sleep(3000);
+            return "bonvo";
+        });
+        try {
+            timeoutFork.join();
+            fail();
+        } catch (ConcurrentParallelTimeoutException e) {
+            log(e.getMessage());
+        }
+    }
+
+    protected ConcurrentFork createFork(ConcurrentForkOption option) {
+        return new ConcurrentFork(option, new ConcurrentForkDispatcher() {
+            public Future<?> dispatch(Runnable childProcess) {
+                return executorService.submit(childProcess);
+            }
+
+            public <RESULT> RESULT invoke(ConcurrentParallelCall<RESULT> call) {
+                return call.callback();
+            }
+
+            public void handleFailure(ConcurrentForked<?> forked, Throwable cause) {
+                handledFailureCount.incrementAndGet();
+            }
+
+            public void recordLatency(long elapsedMillis) {
+                latency.record(elapsedMillis);
+            }
+        });
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.async;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.dbflute.bhv.core.BehaviorCommandHook;
+import org.dbflute.hook.CallbackContext;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.core.magic.async.SimpleAsyncManager.CallerContext;
+import org.lastaflute.core.magic.deadline.RequestDeadline;
+import org.lastaflute.core.magic.deadline.RequestDeadlineContext;
+import org.lastaflute.db.dbflute.callbackcontext.RequestDeadlineBehaviorCommandHook;
+
+/**
+ * @author jflute
+ */
+public class SimpleAsyncManagerTest extends PlainTestCase {
+
+    // ===================================================================================
+    //                                                                    Callback Context
+    //                                                                    ================
+    public void test_createRunnable_callbackContextPerRunnable_inheritedDeadlineHook() throws Exception {
+        // ## Arrange ##
+        SimpleAsyncManager asyncManager = createAsyncManager(new ConcurrentAsyncOption().inheritBehaviorCommandHook());
+        RequestDeadline deadline = new RequestDeadline("SeaAction@land()", 60000L);
+        BehaviorCommandHook deadlineHook = new RequestDeadlineBehaviorCommandHook(deadline);
+        List<CallbackContext> contextList = new CopyOnWriteArrayList<CallbackContext>();
+        ConcurrentAsyncCall call = () -> contextList.add(CallbackContext.getCallbackContextOnThread());
+        CallerContext callerContext = captureCallerContext(asyncManager, call, deadline, deadlineHook);
+
+        // ## Act ##
+        runByOtherThread(asyncManager.createRunnable(call, "sea", callerContext)); // e.g. fork children
+        runByOtherThread(asyncManager.createRunnable(call, "land", callerContext));
+
+        // ## Assert ##
+        assertEquals(2, contextList.size());
+        assertNotSame(contextList.get(0), contextList.get(1));
+        assertNotSame(callerContext.getCallbackContext(), contextList.get(0));
+        BehaviorCommandHook inheritedHook = callerContext.getCallbackContext().getBehaviorCommandHook(); // contains deadline hook
+        assertNotNull(inheritedHook);
+        assertSame(inheritedHook, contextList.get(0).getBehaviorCommandHook()); // not wrapped again
+        assertSame(inheritedHook, contextList.get(1).getBehaviorCommandHook());
+    }
+
+    public void test_createRunnable_callbackContextPerRunnable_separateDeadlineHook() throws Exception {
+        // ## Arrange ##
+        SimpleAsyncManager asyncManager = createAsyncManager(new ConcurrentAsyncOption().separateBehaviorCommandHook());
+        RequestDeadline deadline = new RequestDeadline("SeaAction@land()", 60000L);
+        BehaviorCommandHook deadlineHook = new RequestDeadlineBehaviorCommandHook(deadline);
+        List<CallbackContext> contextList = new CopyOnWriteArrayList<CallbackContext>();
+        ConcurrentAsyncCall call = () -> contextList.add(CallbackContext.getCallbackContextOnThread());
+        CallerContext callerContext = captureCallerContext(asyncManager, call, deadline, deadlineHook);
+
+        // ## Act ##
+        runByOtherThread(asyncManager.createRunnable(call, "sea", callerContext));
+        runByOtherThread(asyncManager.createRunnable(call, "land", callerContext));
+
+        // ## Assert ##
+        assertEquals(2, contextList.size());
+        BehaviorCommandHook firstHook = contextList.get(0).getBehaviorCommandHook(); // added for the worker only
+        assertNotNull(firstHook);
+        assertNotNull(contextList.get(1).getBehaviorCommandHook());
+        assertNotSame(firstHook, contextList.get(1).getBehaviorCommandHook());
+        assertNull(callerContext.getCallbackContext().getBehaviorCommandHook()); // not changed by workers
+    }
+
+    // ===================================================================================
+    //                                                                         Test Helper
+    //                                                                         ===========
+    protected SimpleAsyncManager createAsyncManager(ConcurrentAsyncOption defaultOption) {
+        SimpleAsyncManager asyncManager = new SimpleAsyncManager(); // no container so not initialized
+        asyncManager.defaultConcurrentAsyncOption = defaultOption;
+        return asyncManager;
+    }
+
+    protected CallerContext captureCallerContext(SimpleAsyncManager asyncManager, ConcurrentAsyncCall call, RequestDeadline deadline,
+            BehaviorCommandHook deadlineHook) {
+        RequestDeadlineContext.setDeadlineOnThread(deadline); // as action request processor
+        CallbackContext.setBehaviorCommandHookOnThread(deadlineHook);
+        try {
+            return asyncManager.inheritCallerContext(call);
+        } finally {
+            CallbackContext.clearCallbackContextOnThread();
+            RequestDeadlineContext.clear();
+        }
+    }
+
+    protected void runByOtherThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.deadline;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.core.magic.deadline.exception.RequestDeadlineExceededException;
+
+/**
+ * @author jflute
+ */
+public class RequestDeadlineTest extends PlainTestCase {
+
+    public void test_calculateQueryTimeoutSeconds() {
+        // ## Arrange ##
+        RequestDeadline deadline = new RequestDeadline("SeaAction@land()", 2500L);
+
+        // ## Act ##
+        int timeoutSeconds = deadline.calculateQueryTimeoutSeconds();
+
+        // ## Assert ##
+        assertEquals(3, timeoutSeconds); // rounded up
+        assertFalse(deadline.isExceeded());
+        deadline.checkExceeded("MEMBER.selectList()"); // no exception
+        assertEquals(1, new RequestDeadline("SeaAction@land()", 0L).calculateQueryTimeoutSeconds()); // at least one
+    }
+
+    public void test_checkExceeded_registerExceeded() {
+        // ## Arrange ##
+        RequestDeadline deadline = new RequestDeadline("SeaAction@land()", 0L);
+        RequestDeadlineStatistics statistics = new RequestDeadlineStatistics();
+
+        // ## Act ##
+        // ## Assert ##
+        assertTrue(deadline.isExceeded());
+        try {
+            deadline.checkExceeded("MEMBER.selectList()");
+            fail();
+        } catch (RequestDeadlineExceededException e) {
+            log(e.getMessage());
+            assertContains(e.getMessage(), "SeaAction@land()");
+            statistics.registerExceeded(deadline);
+        }
+        statistics.registerExceeded(deadline);
+        assertEquals(Long.valueOf(2L), statistics.getExceededCountMap().get("SeaAction@land()"));
+        assertTrue(new RequestDeadlineStatistics().getExceededCountMap().isEmpty()); // per component
+        statistics.clear();
+        assertTrue(statistics.getExceededCountMap().isEmpty());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.magic.identity;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class RequestIdentityTest extends PlainTestCase {
+
+    public void test_generate_unique_and_timeOrdered() {
+        // ## Arrange ##
+        long before = System.currentTimeMillis();
+
+        // ## Act ##
+        List<RequestIdentity> identityList = new ArrayList<RequestIdentity>();
+        for (int i = 0; i < 1000; i++) {
+            identityList.add(RequestIdentityGenerator.generate());
+        }
+        RequestIdentity later = RequestIdentityGenerator.generate(before + 1000L);
+
+        // ## Assert ##
+        Set<String> expSet = new HashSet<String>();
+        for (RequestIdentity identity : identityList) {
+            String exp = identity.toString();
+            assertEquals(26, exp.length());
+            assertTrue(exp.matches("[0-9A-HJKMNP-TV-Z]+"));
+            assertTrue(identity.getTimestampMillis() >= before);
+            assertTrue(later.compareTo(identity) > 0);
+            assertTrue(later.toString().compareTo(exp) > 0); // sortable as string
+            expSet.add(exp);
+        }
+        assertEquals(identityList.size(), expSet.size());
+        log(identityList.get(0), later);
+    }
+
+    public void test_generate_specifiedTime() {
+        // ## Arrange ##
+        long adjusted = 1893456000000L; // e.g. TimeManager's current time adjusted to future
+
+        // ## Act ##
+        RequestIdentity identity = RequestIdentityGenerator.generate(adjusted);
+
+        // ## Assert ##
+        assertEquals(adjusted, identity.getTimestampMillis());
+        assertTrue(identity.compareTo(RequestIdentityGenerator.generate()) > 0);
+    }
+
+    public void test_toString_base32() {
+        // ## Arrange ##
+        RequestIdentity zero = new RequestIdentity(0L, 0L);
+        RequestIdentity max = new RequestIdentity(-1L, -1L);
+        RequestIdentity boundary = new RequestIdentity(1L, 0L); // lowest bit of most straddles quintet
+
+        // ## Act ##
+        // ## Assert ##
+        assertEquals("00000000000000000000000000", zero.toString());
+        assertEquals("7ZZZZZZZZZZZZZZZZZZZZZZZZZ", max.toString());
+        assertEquals("000000000000G000000000000", boundary.toString().substring(1));
+        assertEquals(new RequestIdentity(1L, 2L), new RequestIdentity(1L, 2L));
+        assertTrue(max.compareTo(zero) > 0); // as unsigned
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.mail;
+
+import java.nio.file.Files;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.core.mail.outbox.MailOutbox;
+import org.lastaflute.core.mail.outbox.MailOutboxOption;
+
+/**
+ * @author jflute
+ */
+public class PostboxTest extends PlainTestCase {
+
+    public void test_dispose_keepOutbox() throws Exception {
+        // ## Arrange ##
+        MockMailOutbox outbox = new MockMailOutbox(new MailOutboxOption(Files.createTempDirectory("outbox").toString()));
+        Postbox postbox = new Postbox();
+        postbox.mailOutbox = outbox;
+
+        // ## Act ##
+        postbox.dispose(); // e.g. hot deploy
+
+        // ## Assert ##
+        assertEquals(0, outbox.closeCount);
+        assertSame(outbox, postbox.getMailOutbox().get());
+
+        // ## Act ##
+        postbox.destroy(); // real shutdown
+
+        // ## Assert ##
+        assertEquals(1, outbox.closeCount);
+    }
+
+    protected static class MockMailOutbox extends MailOutbox {
+
+        protected int closeCount;
+
+        public MockMailOutbox(MailOutboxOption option) {
+            super(option);
+        }
+
+        @Override
+        public synchronized void close() {
+            ++closeCount;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.mail.outbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Provider;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class MailOutboxTest extends PlainTestCase {
+
+    private static final List<String> sentSubjectList = new CopyOnWriteArrayList<String>();
+    private static volatile boolean smtpDown;
+    private static volatile int connectCount;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        sentSubjectList.clear();
+        smtpDown = false;
+        connectCount = 0;
+    }
+
+    // ===================================================================================
+    //                                                                            Dispatch
+    //                                                                            ========
+    public void test_outbox_sendInBatch() throws Exception {
+        // ## Arrange ##
+        Path journalDir = Files.createTempDirectory("outbox");
+        MailOutbox outbox = new StandInOutbox(new MailOutboxOption(journalDir.toString()).sendInBatchOf(10).pollEvery(50L));
+        Session session = prepareStandInSession();
+        outbox.start();
+        try {
+            // ## Act ##
+            outbox.equip(MailOutbox.MAIN_CATEGORY_KEY, session);
+            for (int i = 0; i < 3; i++) {
+                outbox.accept(session, createMime("sea" + i), new String[] { "to@example.com" }); // acknowledged by journal
+            }
+            awaitSent(outbox, 3);
+
+            // ## Assert ##
+            assertEquals(3, outbox.getAcceptedCount());
+            assertEquals(3, outbox.getSentCount());
+            assertEquals(0, outbox.getPendingCount());
+            assertTrue(sentSubjectList.contains("sea0"));
+            assertTrue(connectCount <= 3); // one connection per batch
+        } finally {
+            outbox.close();
+            deleteDir(journalDir);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                            Recovery
+    //                                                                            ========
+    public void test_outbox_recoverAfterCrash() throws Exception {
+        // ## Arrange ##
+        Path journalDir = Files.createTempDirectory("outbox");
+        MailOutboxOption option = new MailOutboxOption(journalDir.toString()).retryBackoff(5, 60000L, 60000L).pollEvery(50L);
+        smtpDown = true;
+        MailOutbox first = new StandInOutbox(option);
+        Session firstSession = prepareStandInSession();
+        first.start();
+        first.equip(MailOutbox.MAIN_CATEGORY_KEY, firstSession);
+        first.accept(firstSession, createMime("land"), new String[] { "to@example.com" });
+        Thread.sleep(300L); // failed once and waiting for retry
+        first.close();
+        Files.write(journalDir.resolve(MailOutboxJournal.JOURNAL_FILE_NAME), new byte[] { 0, 0, 1, 0, 9 }, StandardOpenOption.APPEND);
+        smtpDown = false;
+
+        // ## Act ##
+        MailOutbox second = new StandInOutbox(option);
+        second.start();
+        try {
+            second.equip(MailOutbox.MAIN_CATEGORY_KEY, prepareStandInSession());
+            awaitSent(second, 1);
+
+            // ## Assert ##
+            assertEquals(1, second.getSentCount());
+            assertEquals("land", sentSubjectList.get(0));
+        } finally {
+            second.close();
+            deleteDir(journalDir);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                         Test Helper
+    //                                                                         ===========
+    private Session prepareStandInSession() {
+        Properties props = new Properties();
+        props.setProperty("mail.transport.protocol", "standin");
+        Session session = Session.getInstance(props);
+        session.addProvider(new Provider(Provider.Type.TRANSPORT, "standin", StandInTransport.class.getName(), "test", "1.0"));
+        return session;
+    }
+
+    private byte[] createMime(String subject) { // as bytes, MimeMessage needs javax.activation (not in JDK since 11)
+        String mime = "From: from@example.com\r\nTo: to@example.com\r\nSubject: " + subject + "\r\n" //
+                + "MIME-Version: 1.0\r\nContent-Type: text/plain; charset=us-ascii\r\n\r\nmystic\r\n";
+        return mime.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void awaitSent(MailOutbox outbox, int count) throws InterruptedException { // counted after transport sending
+        long limit = System.currentTimeMillis() + 5000L;
+        while ((sentSubjectList.size() < count || outbox.getSentCount() < count) && System.currentTimeMillis() < limit) {
+            Thread.sleep(20L);
+        }
+    }
+
+    private void deleteDir(Path dir) throws IOException {
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(dir);
+    }
+
+    private static class StandInOutbox extends MailOutbox {
+
+        public StandInOutbox(MailOutboxOption option) {
+            super(option);
+        }
+
+        @Override
+        protected void sendEntry(Session session, Transport transport, MailOutboxEntry entry) throws MessagingException {
+            ((StandInTransport) transport).sendMime(entry.getMimeBytes()); // without parsing as MimeMessage
+        }
+    }
+
+    public static class StandInTransport extends Transport { // local SMTP stand-in
+
+        public StandInTransport(Session session, URLName urlname) {
+            super(session, urlname);
+        }
+
+        @Override
+        protected boolean protocolConnect(String host, int port, String user, String password) throws MessagingException {
+            if (smtpDown) {
+                throw new MessagingException("SMTP is down");
+            }
+            ++connectCount;
+            return true;
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+            sentSubjectList.add(message.getSubject());
+        }
+
+        public void sendMime(byte[] mimeBytes) {
+            String mime = new String(mimeBytes, StandardCharsets.US_ASCII);
+            int subjectIndex = mime.indexOf("Subject: ") + "Subject: ".length();
+            sentSubjectList.add(mime.substring(subjectIndex, mime.indexOf("\r\n", subjectIndex)));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.core.util;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.core.util.LaDBFluteUtil.ClassificationCodeTable;
+import org.lastaflute.core.util.LaDBFluteUtil.ClassificationUnknownCodeException;
+import org.lastaflute.unit.mock.db.MockCDef;
+
+/**
+ * @author jflute
+ */
+public class LaDBFluteUtilTest extends PlainTestCase {
+
+    public void test_invokeClassificationCodeOf_sameAsCodeOf() throws Exception {
+        // ## Arrange ##
+        String[] codes = { "1", "0", "true", "FALSE", "2", "FML" };
+
+        // ## Act ##
+        // ## Assert ##
+        for (String code : codes) {
+            assertEquals(MockCDef.Flg.codeOf(code), LaDBFluteUtil.invokeClassificationCodeOf(MockCDef.Flg.class, code));
+        }
+        assertEquals(MockCDef.MemberStatus.Formalized, LaDBFluteUtil.invokeClassificationCodeOf(MockCDef.MemberStatus.class, "fml"));
+        assertEquals(MockCDef.Flg.True, LaDBFluteUtil.invokeClassificationCodeOf(MockCDef.Flg.class, MockCDef.Flg.True));
+        assertEquals(MockCDef.Flg.False, LaDBFluteUtil.invokeClassificationCodeOf(MockCDef.Flg.class, 0));
+    }
+
+    public void test_prepareClassificationCodeTable_cached() throws Exception {
+        // ## Arrange ##
+        // ## Act ##
+        ClassificationCodeTable first = LaDBFluteUtil.prepareClassificationCodeTable(MockCDef.Flg.class);
+        ClassificationCodeTable second = LaDBFluteUtil.prepareClassificationCodeTable(MockCDef.Flg.class);
+
+        // ## Assert ##
+        assertNotNull(first);
+        assertSame(first, second);
+        assertNull(LaDBFluteUtil.prepareClassificationCodeTable(String.class));
+    }
+
+    public void test_toVerifiedClassification_unknown() throws Exception {
+        // ## Arrange ##
+        // ## Act ##
+        // ## Assert ##
+        assertNull(LaDBFluteUtil.toVerifiedClassification(MockCDef.Flg.class, ""));
+        try {
+            LaDBFluteUtil.toVerifiedClassification(MockCDef.Flg.class, "9");
+            fail();
+        } catch (ClassificationUnknownCodeException e) {
+            log(e.getMessage());
+        }
+    }
+}
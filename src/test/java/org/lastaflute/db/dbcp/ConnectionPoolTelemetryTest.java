@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbcp;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.Transaction;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.db.dbcp.ConnectionPoolTelemetrySnapshot.ConnectionLeakSuspect;
+import org.lastaflute.jta.dbcp.ConnectionWrapper;
+
+/**
+ * @author jflute
+ */
+public class ConnectionPoolTelemetryTest extends PlainTestCase {
+
+    protected final List<String> shownList = new ArrayList<String>();
+
+    // ===================================================================================
+    //                                                                                Hold
+    //                                                                                ====
+    public void test_hold_basic() {
+        // ## Arrange ##
+        ConnectionPoolTelemetry telemetry = new ConnectionPoolTelemetry();
+        ConnectionWrapper nonTxWrapper = createMockWrapper();
+        ConnectionWrapper txWrapper = createMockWrapper();
+        Transaction tx = createMockTransaction();
+
+        // ## Act ##
+        telemetry.recordBorrow(2000000L);
+        telemetry.recordHoldBegin(null, nonTxWrapper);
+        telemetry.recordBorrow(1000000L);
+        telemetry.recordHoldBegin(tx, txWrapper);
+        telemetry.recordBorrow(1000000L);
+        telemetry.recordHoldBegin(tx, txWrapper); // same transaction
+        ConnectionPoolTelemetrySnapshot holding = telemetry.snapshot(-1L, 7, 8);
+        telemetry.recordHoldEndByWrapper(nonTxWrapper);
+        telemetry.recordHoldEndByTransaction(tx);
+        telemetry.recordTimeout();
+        ConnectionPoolTelemetrySnapshot ended = telemetry.snapshot(-1L, 0, 0);
+
+        // ## Assert ##
+        log(holding);
+        assertEquals(3L, holding.getBorrowCount());
+        assertEquals(7, holding.getActiveSize()); // pool's own meaning
+        assertEquals(8, holding.getTxActiveSize());
+        assertEquals(1, holding.getHeldSize());
+        assertEquals(1, holding.getTxHeldSize());
+        assertEquals(2L, holding.getBorrowWait().getMaxMillis());
+        log(ended);
+        assertEquals(0, ended.getHeldSize());
+        assertEquals(0, ended.getTxHeldSize());
+        assertEquals(1, ended.getPeakHeldSize());
+        assertEquals(1, ended.getPeakTxHeldSize());
+        assertEquals(2L, ended.getHoldTime().getCount());
+        assertEquals(1L, ended.getTimeoutCount());
+    }
+
+    public void test_hold_endByRelease_inTransaction() {
+        // ## Arrange ##
+        ConnectionPoolTelemetry telemetry = new ConnectionPoolTelemetry();
+        ConnectionWrapper txWrapper = createMockWrapper();
+        telemetry.recordHoldBegin(createMockTransaction(), txWrapper);
+
+        // ## Act ##
+        telemetry.recordHoldEndByRelease(txWrapper);
+
+        // ## Assert ##
+        assertEquals(0, telemetry.snapshot(-1L, 0, 0).getTxHeldSize());
+    }
+
+    // ===================================================================================
+    //                                                                                Leak
+    //                                                                                ====
+    public void test_leak_detectedWithoutSnapshot() {
+        // ## Arrange ##
+        ConnectionPoolTelemetry telemetry = new ConnectionPoolTelemetry() {
+            @Override
+            protected void showLeakSuspect(ConnectionHolding holding, long heldMillis) {
+                shownList.add(holding.getThreadName());
+            }
+        };
+        telemetry.recordHoldBegin(null, createMockWrapper());
+
+        // ## Act ##
+        telemetry.detectLeakSuspectIfDue(0L); // due at first
+        telemetry.detectLeakSuspectIfDue(0L); // not due yet
+
+        // ## Assert ##
+        assertEquals(1, shownList.size());
+        List<ConnectionLeakSuspect> suspectList = telemetry.snapshot(0L, 1, 0).getLeakSuspectList();
+        assertEquals(1, suspectList.size());
+        assertFalse(suspectList.get(0).isTransactional());
+        assertEquals(1, shownList.size()); // logged once
+    }
+
+    public void test_leak_noDetection() {
+        // ## Arrange ##
+        ConnectionPoolTelemetry telemetry = new ConnectionPoolTelemetry();
+        telemetry.recordHoldBegin(null, createMockWrapper());
+
+        // ## Act ##
+        telemetry.detectLeakSuspectIfDue(-1L);
+
+        // ## Assert ##
+        assertTrue(telemetry.snapshot(-1L, 1, 0).getLeakSuspectList().isEmpty());
+    }
+
+    // ===================================================================================
+    //                                                                        Small Helper
+    //                                                                        ============
+    protected ConnectionWrapper createMockWrapper() {
+        return createIdentityProxy(ConnectionWrapper.class);
+    }
+
+    protected Transaction createMockTransaction() {
+        return createIdentityProxy(Transaction.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <OBJ> OBJ createIdentityProxy(Class<OBJ> type) { // only identity methods for map keys
+        return (OBJ) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            } else if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbcp;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class HookedConnectionPoolTest extends PlainTestCase {
+
+    // ===================================================================================
+    //                                                                          Keep-alive
+    //                                                                          ==========
+    public void test_destroy_stopKeepAlive() {
+        // ## Arrange ##
+        HookedConnectionPool pool = new HookedConnectionPool();
+        pool.setKeepAliveIntervalMillis(60000L);
+        pool.initialize();
+        ScheduledExecutorService scheduler = pool.keepAliveScheduler;
+        assertNotNull(scheduler);
+
+        // ## Act ##
+        pool.destroy();
+
+        // ## Assert ##
+        assertNull(pool.keepAliveScheduler);
+        assertTrue(scheduler.isShutdown());
+        pool.startKeepAlive(); // e.g. initialized again by mistake
+        assertNull(pool.keepAliveScheduler);
+    }
+
+    public void test_keepAlive_noRefillAfterDestroy() {
+        // ## Arrange ##
+        AtomicInteger deficitCount = new AtomicInteger();
+        HookedConnectionPool pool = new HookedConnectionPool() {
+            @Override
+            protected synchronized int calculateWarmUpDeficit() {
+                deficitCount.incrementAndGet();
+                return 0; // no real connection here
+            }
+        };
+        pool.setWarmUpSize(2);
+        pool.keepAlive();
+        assertEquals(1, deficitCount.get());
+
+        // ## Act ##
+        pool.destroy();
+        pool.keepAlive();
+        pool.warmUp();
+
+        // ## Assert ##
+        assertEquals(1, deficitCount.get()); // no refill
+    }
+}
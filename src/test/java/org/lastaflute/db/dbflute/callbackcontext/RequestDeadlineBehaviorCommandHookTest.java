@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbflute.callbackcontext;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbflute.bhv.core.BehaviorCommandMeta;
+import org.dbflute.bhv.core.context.InternalMapContext;
+import org.dbflute.cbean.ConditionBean;
+import org.dbflute.cbean.coption.StatementConfigCall;
+import org.dbflute.jdbc.StatementConfig;
+import org.dbflute.outsidesql.OutsideSqlOption;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.core.magic.deadline.RequestDeadline;
+
+/**
+ * @author jflute
+ */
+public class RequestDeadlineBehaviorCommandHookTest extends PlainTestCase {
+
+    @Override
+    public void tearDown() throws Exception {
+        InternalMapContext.clearInternalMapContextOnThread();
+        super.tearDown();
+    }
+
+    public void test_reflectQueryTimeout_outsideSql_copied() {
+        // ## Arrange ##
+        StatementConfig sharedConfig = new StatementConfig().queryTimeout(60).fetchSize(100);
+        OutsideSqlOption option = new OutsideSqlOption();
+        option.setStatementConfig(sharedConfig);
+        RequestDeadlineBehaviorCommandHook hook = new RequestDeadlineBehaviorCommandHook(new RequestDeadline("sea", 3000L));
+
+        // ## Act ##
+        hook.hookBefore(createMeta(false, null, option));
+
+        // ## Assert ##
+        assertEquals(Integer.valueOf(60), sharedConfig.getQueryTimeout()); // not mutated
+        StatementConfig reflected = option.getStatementConfig();
+        assertNotSame(sharedConfig, reflected);
+        assertEquals(Integer.valueOf(3), reflected.getQueryTimeout());
+        assertEquals(Integer.valueOf(100), reflected.getFetchSize());
+    }
+
+    public void test_reflectQueryTimeout_threadConfig_copied() {
+        // ## Arrange ##
+        StatementConfig sharedConfig = new StatementConfig().queryTimeout(60);
+        InternalMapContext.setUpdateStatementConfig(sharedConfig);
+        RequestDeadlineBehaviorCommandHook hook = new RequestDeadlineBehaviorCommandHook(new RequestDeadline("sea", 3000L));
+
+        // ## Act ##
+        hook.hookBefore(createMeta(false, null, null));
+
+        // ## Assert ##
+        assertEquals(Integer.valueOf(60), sharedConfig.getQueryTimeout()); // not mutated
+        assertEquals(Integer.valueOf(3), InternalMapContext.getUpdateStatementConfig().getQueryTimeout());
+    }
+
+    public void test_reflectQueryTimeout_conditionBean_configured() {
+        // ## Arrange ##
+        List<StatementConfig> configuredList = new ArrayList<StatementConfig>();
+        ConditionBean cb = (ConditionBean) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ConditionBean.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("configure")) {
+                        @SuppressWarnings("unchecked")
+                        StatementConfigCall<StatementConfig> call = (StatementConfigCall<StatementConfig>) args[0];
+                        StatementConfig config = new StatementConfig();
+                        call.callback(config);
+                        configuredList.add(config);
+                        return null;
+                    } else if (method.getName().equals("getStatementConfig")) {
+                        return configuredList.isEmpty() ? null : configuredList.get(0);
+                    }
+                    return null;
+                });
+        RequestDeadlineBehaviorCommandHook hook = new RequestDeadlineBehaviorCommandHook(new RequestDeadline("sea", 3000L));
+
+        // ## Act ##
+        hook.hookBefore(createMeta(true, cb, null));
+
+        // ## Assert ##
+        assertEquals(1, configuredList.size());
+        assertEquals(Integer.valueOf(3), configuredList.get(0).getQueryTimeout());
+        assertNull(InternalMapContext.getUpdateStatementConfig());
+    }
+
+    protected BehaviorCommandMeta createMeta(boolean conditionBean, ConditionBean cb, OutsideSqlOption option) {
+        return (BehaviorCommandMeta) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { BehaviorCommandMeta.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "isConditionBean":
+                        return conditionBean;
+                    case "isOutsideSql":
+                        return option != null;
+                    case "getConditionBean":
+                        return cb;
+                    case "getOutsideSqlOption":
+                        return option;
+                    case "getTableDbName":
+                        return "MEMBER";
+                    case "getCommandName":
+                        return "selectList";
+                    default:
+                        return method.getReturnType().equals(boolean.class) ? false : null;
+                    }
+                });
+    }
+}
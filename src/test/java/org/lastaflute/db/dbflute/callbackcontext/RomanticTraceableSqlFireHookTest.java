@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbflute.callbackcontext;
+
+import org.dbflute.hook.SqlFireResultInfo;
+import org.dbflute.jdbc.ExecutionTimeInfo;
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class RomanticTraceableSqlFireHookTest extends PlainTestCase {
+
+    public void test_getTotalSqlMillis_withoutProfile() {
+        // ## Arrange ##
+        RomanticTraceableSqlFireHook hook = new RomanticTraceableSqlFireHook(); // no pattern profile
+
+        // ## Act ##
+        hook.hookFinally(null, new SqlFireResultInfo(null, null, new ExecutionTimeInfo(null, null, 100L, 130L), null));
+        hook.hookFinally(null, new SqlFireResultInfo(null, null, new ExecutionTimeInfo(null, null, 200L, 205L), null));
+        hook.hookFinally(null, new SqlFireResultInfo(null, null, new ExecutionTimeInfo(null, null, null, null), null)); // e.g. failure
+
+        // ## Assert ##
+        assertEquals(35L, hook.getTotalSqlMillis());
+        assertFalse(hook.getSqlPatternProfile().isPresent());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.dbflute.callbackcontext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.db.dbflute.callbackcontext.SqlPatternProfile.PatternCounter;
+
+/**
+ * @author jflute
+ */
+public class SqlPatternProfileTest extends PlainTestCase {
+
+    public void test_normalizeSqlPattern_basic() throws Exception {
+        // ## Arrange ##
+        String sql = "/*SeaAction@land()*/\nselect dfloc.MEMBER_ID, dfloc.MEMBER_NAME\n  from MEMBER dfloc\n"
+                + " where dfloc.MEMBER_ID in (?, ?, ?) -- in-scope\n   and dfloc.MEMBER_NAME = 'it''s' and dfloc.VERSION_NO1 = 3";
+
+        // ## Act ##
+        String pattern = SqlPatternProfile.normalizeSqlPattern(sql);
+
+        // ## Assert ##
+        log(pattern);
+        assertEquals("select dfloc.MEMBER_ID, dfloc.MEMBER_NAME from MEMBER dfloc where dfloc.MEMBER_ID in (?..)"
+                + " and dfloc.MEMBER_NAME = ? and dfloc.VERSION_NO1 = ?", pattern);
+    }
+
+    public void test_findRepeatedPatterns_differentBindValues() throws Exception {
+        // ## Arrange ##
+        SqlPatternProfile profile = new SqlPatternProfile();
+        for (int i = 0; i < 5; i++) {
+            profile.record("select * from PURCHASE where MEMBER_ID = ?", new Object[] { i }, 2L);
+            profile.record("select * from MEMBER_STATUS where CODE = ?", new Object[] { "FML" }, 1L);
+        }
+
+        // ## Act ##
+        List<PatternCounter> repeatedList = profile.findRepeatedPatterns(3);
+
+        // ## Assert ##
+        log(repeatedList);
+        assertEquals(1, repeatedList.size());
+        assertEquals("select * from PURCHASE where MEMBER_ID = ?", repeatedList.get(0).getPattern());
+        assertEquals(5, repeatedList.get(0).getCount());
+        assertEquals(10L, repeatedList.get(0).getMillis());
+        assertEquals(10, profile.getTotalCount());
+        assertTrue(profile.findRepeatedPatterns(5).isEmpty());
+    }
+
+    public void test_record_concurrently() throws Exception {
+        // ## Arrange ##
+        SqlPatternProfile profile = new SqlPatternProfile(); // e.g. callback context inherited to async
+        List<Thread> threadList = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            final int threadNo = i;
+            threadList.add(new Thread(() -> {
+                for (int j = 0; j < 500; j++) {
+                    profile.record("select * from PURCHASE where MEMBER_ID = ?", new Object[] { threadNo * 1000 + j }, 1L);
+                    profile.record("select * from MEMBER where MEMBER_ID = " + j, null, 1L);
+                }
+            }));
+        }
+
+        // ## Act ##
+        for (Thread thread : threadList) {
+            thread.start();
+        }
+        for (Thread thread : threadList) {
+            thread.join();
+        }
+
+        // ## Assert ##
+        assertEquals(4000, profile.getTotalCount());
+        assertEquals(4000L, profile.getTotalMillis());
+        assertEquals(2, profile.getPatternCounters().size());
+        List<PatternCounter> repeatedList = profile.findRepeatedPatterns(100);
+        assertEquals(1, repeatedList.size());
+        assertEquals(2000, repeatedList.get(0).getCount());
+    }
+
+    public void test_statistics_register() throws Exception {
+        // ## Arrange ##
+        SqlPatternStatistics statistics = new SqlPatternStatistics();
+        SqlPatternProfile first = statistics.newProfile();
+        SqlPatternProfile second = statistics.newProfile();
+        for (int i = 0; i < 3; i++) {
+            first.record("select * from PURCHASE where MEMBER_ID = ?", new Object[] { i }, 5L);
+            second.record("select * from PURCHASE where MEMBER_ID = ?", new Object[] { 1 }, 1L);
+        }
+
+        // ## Act ##
+        statistics.register("SeaAction@land()", first, first.findRepeatedPatterns(2));
+        statistics.register("SeaAction@land()", second, second.findRepeatedPatterns(2));
+
+        // ## Assert ##
+        assertEquals(1, statistics.normalizedPatternCache.size()); // shared by profiles
+        assertEquals(2L, statistics.getActionStatisticsMap().get("SeaAction@land()").getRequestCount());
+        List<SqlPatternStatistics.PatternStatistics> worstList = statistics.findWorstOffenders(10);
+        log(statistics.buildWorstOffendersDisp(10));
+        assertEquals(1, worstList.size());
+        assertEquals(6L, worstList.get(0).getTotalCount());
+        assertEquals(18L, worstList.get(0).getTotalMillis());
+        assertEquals(1L, worstList.get(0).getRepeatedRequestCount()); // same bind values are not N+1
+        statistics.clear();
+        assertTrue(statistics.getActionStatisticsMap().isEmpty());
+        assertTrue(new SqlPatternStatistics().getActionStatisticsMap().isEmpty()); // not global
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.jta;
+
+import java.util.List;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.db.jta.TransactionTableCommandRecorder.TableCommandEntry;
+
+/**
+ * @author jflute
+ */
+public class TransactionTableCommandRecorderTest extends PlainTestCase {
+
+    public void test_record_basic() {
+        // ## Arrange ##
+        TransactionTableCommandRecorder recorder = new TransactionTableCommandRecorder();
+
+        // ## Act ##
+        recorder.recordSqlTime(recorder.record("MEMBER", "selectList"), 3L);
+        recorder.recordSqlTime(recorder.record("MEMBER", "selectList"), 4L);
+        recorder.recordSqlTime(recorder.record("PURCHASE", "insert"), 5L);
+        recorder.recordSqlTime(recorder.record(new String("MEMBER"), new String("selectList")), 6L); // not same instance
+
+        // ## Assert ##
+        List<TransactionTableCommand> commandList = recorder.snapshot();
+        log(commandList);
+        assertEquals(2, commandList.size());
+        TransactionTableCommand first = commandList.get(0);
+        assertEquals("MEMBER", first.getTableName());
+        assertEquals("selectList", first.getCommand());
+        assertEquals(3L, first.getCount());
+        assertEquals(13L, first.getSqlMillis());
+        TransactionTableCommand second = commandList.get(1);
+        assertEquals("PURCHASE", second.getTableName());
+        assertEquals(1L, second.getCount());
+        assertEquals(4L, recorder.getTotalSqlCount());
+        assertEquals(18L, recorder.getTotalSqlMillis());
+    }
+
+    public void test_record_growEntries() {
+        // ## Arrange ##
+        TransactionTableCommandRecorder recorder = new TransactionTableCommandRecorder();
+        List<TransactionTableCommand> emptyList = recorder.snapshot();
+
+        // ## Act ##
+        for (int i = 0; i < 20; i++) {
+            TableCommandEntry entry = recorder.record("TABLE" + i, "update");
+            recorder.recordSqlTime(entry, -1L); // ignored
+        }
+
+        // ## Assert ##
+        assertTrue(emptyList.isEmpty());
+        List<TransactionTableCommand> commandList = recorder.snapshot();
+        assertEquals(20, commandList.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("TABLE" + i, commandList.get(i).getTableName());
+        }
+        assertEquals(0L, recorder.getTotalSqlMillis());
+    }
+
+    public void test_record_overNameIdLimit() {
+        // ## Arrange ##
+        TransactionTableCommandRecorder recorder = new TransactionTableCommandRecorder() {
+            @Override
+            protected int internId(String name) {
+                return NOT_INTERNED_ID; // as over the limit
+            }
+        };
+
+        // ## Act ##
+        recorder.record("MEMBER", "selectList");
+        recorder.record("PURCHASE", "selectList");
+        recorder.record(new String("MEMBER"), new String("selectList")); // not same instance
+
+        // ## Assert ##
+        List<TransactionTableCommand> commandList = recorder.snapshot();
+        assertEquals(2, commandList.size());
+        assertEquals(2L, commandList.get(0).getCount());
+        assertEquals("PURCHASE", commandList.get(1).getTableName());
+        assertTrue(TransactionTableCommandRecorder.nameIdMap.size() <= TransactionTableCommandRecorder.NAME_ID_LIMIT);
+    }
+}
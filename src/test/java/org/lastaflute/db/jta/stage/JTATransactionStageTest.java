@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.db.jta.stage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbflute.optional.OptionalThing;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.db.jta.TransactionReadOnlyContext;
+import org.lastaflute.db.replication.selectable.SelectableDataSourceHolder;
+import org.lastaflute.di.tx.TransactionCallback;
+import org.lastaflute.di.tx.TransactionManagerAdapter;
+
+/**
+ * @author jflute
+ */
+public class JTATransactionStageTest extends PlainTestCase {
+
+    @Override
+    public void tearDown() throws Exception {
+        TransactionReadOnlyContext.perfectlyClear();
+        super.tearDown();
+    }
+
+    protected JTATransactionStage createStage() {
+        final JTATransactionStage stage = new JTATransactionStage() {
+            @Override
+            protected SelectableDataSourceHolder findReadOnlyRoutingHolder() {
+                return null; // no replication here
+            }
+        };
+        stage.transactionManagerAdapter = new MockTransactionManagerAdapter();
+        return stage;
+    }
+
+    // ===================================================================================
+    //                                                                           Read-only
+    //                                                                           =========
+    public void test_readOnly_requiresNew_notReadOnly() {
+        // ## Arrange ##
+        JTATransactionStage stage = createStage();
+        List<Boolean> readOnlyList = new ArrayList<Boolean>();
+
+        // ## Act ##
+        stage.readOnly(tx -> {
+            readOnlyList.add(TransactionReadOnlyContext.isReadOnly());
+            stage.requiresNew(newTx -> {
+                readOnlyList.add(TransactionReadOnlyContext.isReadOnly());
+                stage.readOnly(nestedTx -> {
+                    readOnlyList.add(TransactionReadOnlyContext.isReadOnly());
+                });
+                readOnlyList.add(TransactionReadOnlyContext.isReadOnly());
+            });
+            stage.required(joinedTx -> {
+                readOnlyList.add(TransactionReadOnlyContext.isReadOnly()); // joins read-only
+            });
+            readOnlyList.add(TransactionReadOnlyContext.isReadOnly());
+        });
+
+        // ## Assert ##
+        assertEquals(newArrayList(true, false, true, false, true, true), readOnlyList);
+        assertFalse(TransactionReadOnlyContext.isReadOnly());
+    }
+
+    public void test_readOnly_requiresNew_failure_resumed() {
+        // ## Arrange ##
+        JTATransactionStage stage = createStage();
+
+        // ## Act ##
+        stage.readOnly(tx -> {
+            try {
+                stage.requiresNew(newTx -> {
+                    throw new IllegalStateException("sea");
+                });
+                fail();
+            } catch (IllegalStateException e) {
+                log(e.getMessage());
+            }
+            // ## Assert ##
+            assertTrue(TransactionReadOnlyContext.isReadOnly());
+        });
+        assertFalse(TransactionReadOnlyContext.isReadOnly());
+    }
+
+    public void test_readOnly_default() {
+        // ## Arrange ##
+        TransactionStage stage = new TransactionStage() { // only basic genres
+            public <RESULT> OptionalThing<RESULT> required(TransactionShow<RESULT> txLambda) {
+                final BegunTx<RESULT> tx = new BegunTx<RESULT>();
+                txLambda.perform(tx);
+                return OptionalThing.ofNullable(tx.getResult(), () -> {
+                    throw new IllegalStateException("no result");
+                });
+            }
+
+            public <RESULT> OptionalThing<RESULT> requiresNew(TransactionShow<RESULT> txLambda) {
+                return required(txLambda);
+            }
+
+            public <RESULT> OptionalThing<RESULT> selectable(TransactionShow<RESULT> txLambda, TransactionGenre genre) {
+                return required(txLambda);
+            }
+        };
+
+        // ## Act ##
+        Boolean readOnly = (Boolean) stage.readOnly(tx -> {
+            tx.returns(TransactionReadOnlyContext.isReadOnly());
+        }).get();
+
+        // ## Assert ##
+        assertTrue(readOnly);
+        assertFalse(TransactionReadOnlyContext.isReadOnly());
+    }
+
+    // ===================================================================================
+    //                                                                        Mock Adapter
+    //                                                                        ============
+    protected static class MockTransactionManagerAdapter implements TransactionManagerAdapter {
+
+        public Object required(TransactionCallback callback) throws Throwable {
+            return callback.execute(this);
+        }
+
+        public Object requiresNew(TransactionCallback callback) throws Throwable {
+            return callback.execute(this);
+        }
+
+        public Object mandatory(TransactionCallback callback) throws Throwable {
+            return callback.execute(this);
+        }
+
+        public Object notSupported(TransactionCallback callback) throws Throwable {
+            return callback.execute(this);
+        }
+
+        public Object never(TransactionCallback callback) throws Throwable {
+            return callback.execute(this);
+        }
+
+        public void setRollbackOnly() {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.container;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import javax.validation.metadata.BeanDescriptor;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.core.json.JsonManager;
+import org.lastaflute.di.naming.NamingConvention;
+import org.lastaflute.di.naming.StyledNamingConvention;
+import org.lastaflute.web.ruts.config.ModuleConfig;
+import org.lastaflute.web.ruts.message.ActionMessages;
+import org.lastaflute.web.servlet.request.RequestManager;
+import org.lastaflute.web.validation.ActionValidator;
+import org.lastaflute.web.validation.LaValidatable;
+
+/**
+ * @author jflute
+ */
+public class WebLastaWarmUpperTest extends PlainTestCase {
+
+    public void test_warmUp_enumerateActionsByNamingConvention() {
+        // ## Arrange ##
+        StyledNamingConvention namingConvention = new StyledNamingConvention();
+        namingConvention.addRootPackageName("org.lastaflute.web.container.warmup");
+        List<String> gottenList = new CopyOnWriteArrayList<String>();
+        WebLastaWarmUpper warmUpper = new WebLastaWarmUpper(new ModuleConfig(), null) { // no mapping yet as warm deploy
+            @Override
+            protected NamingConvention getNamingConvention() {
+                return namingConvention;
+            }
+
+            @Override
+            protected Object getActionComponent(String componentName) {
+                gottenList.add(componentName);
+                return null;
+            }
+
+            @Override
+            protected JsonManager getJsonManager() {
+                return null; // no JSON type here
+            }
+        };
+
+        // ## Act ##
+        Set<String> nameSet = warmUpper.extractActionComponentNameSet();
+        warmUpper.warmUp();
+
+        // ## Assert ##
+        log(nameSet, warmUpper.stageResultMap);
+        assertEquals(2, nameSet.size()); // form is not action
+        assertTrue(nameSet.contains(namingConvention.fromClassNameToComponentName(
+                "org.lastaflute.web.container.warmup.web.WarmSeaAction")));
+        assertTrue(nameSet.contains(namingConvention.fromClassNameToComponentName(
+                "org.lastaflute.web.container.warmup.web.land.WarmLandAction")));
+        assertEquals(2, gottenList.size());
+        assertTrue(gottenList.containsAll(nameSet));
+        assertTrue(warmUpper.stageResultMap.get("action").startsWith("2 "));
+    }
+
+    public void test_findActionValidator_sharedFactory() {
+        // ## Arrange ##
+        WebLastaWarmUpper warmUpper = new WebLastaWarmUpper(new ModuleConfig(), null);
+        RequestManager requestManager = (RequestManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { RequestManager.class }, (proxy, method, args) -> null);
+        MockValidatableAction action = new MockValidatableAction(requestManager);
+
+        // ## Act ##
+        ActionValidator<?> validator = warmUpper.findActionValidator(action).get();
+        validator.prepareConstraintMetadata(MockValidatedForm.class);
+
+        // ## Assert ##
+        assertEquals(MockActionValidator.class, validator.getClass()); // configured by application
+        assertEquals(MockValidatedForm.class, MockActionValidator.preparedTypeList.get(0));
+        assertNotNull(MockActionValidator.findSharedFactory());
+        assertSame(MockActionValidator.findSharedFactory(), new MockActionValidator(requestManager).findFactory()); // shared with request
+        assertEquals(1, MockActionValidator.buildCount.get());
+        assertFalse(warmUpper.findActionValidator(new Object()).isPresent());
+    }
+
+    protected static class MockValidatableAction implements LaValidatable<ActionMessages> {
+
+        protected final RequestManager requestManager;
+
+        public MockValidatableAction(RequestManager requestManager) {
+            this.requestManager = requestManager;
+        }
+
+        @Override
+        public ActionValidator<ActionMessages> createValidator() {
+            return new MockActionValidator(requestManager);
+        }
+
+        @Override
+        public ActionMessages createMessages() {
+            return new ActionMessages();
+        }
+    }
+
+    protected static class MockActionValidator extends ActionValidator<ActionMessages> {
+
+        protected static final AtomicInteger buildCount = new AtomicInteger();
+        protected static final List<Class<?>> preparedTypeList = new CopyOnWriteArrayList<Class<?>>();
+
+        public MockActionValidator(RequestManager requestManager) {
+            super(requestManager, () -> new ActionMessages());
+        }
+
+        @Override
+        protected ValidatorFactory buildValidatorFactory() { // no EL in unit test so mock factory
+            buildCount.incrementAndGet();
+            Validator validator = (Validator) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Validator.class },
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("getConstraintsForClass")) {
+                            preparedTypeList.add((Class<?>) args[0]);
+                            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { BeanDescriptor.class },
+                                    (descProxy, descMethod, descArgs) -> Collections.emptySet());
+                        }
+                        return null;
+                    });
+            return (ValidatorFactory) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ValidatorFactory.class },
+                    (proxy, method, args) -> method.getName().equals("getValidator") ? validator : null);
+        }
+
+        public static Object findSharedFactory() {
+            return validatorFactoryMap.get(MockActionValidator.class);
+        }
+
+        public Object findFactory() {
+            return prepareValidatorFactory();
+        }
+    }
+
+    public static class MockValidatedForm {
+
+        @javax.validation.constraints.NotNull
+        public String memberName;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.login;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dbflute.optional.OptionalEntity;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.web.login.LoginUserCache.LoginUserCacheStats;
+
+/**
+ * @author jflute
+ */
+public class LoginUserCacheTest extends PlainTestCase {
+
+    public void test_find_hitAndInvalidate() throws Exception {
+        // ## Arrange ##
+        LoginUserCache<Integer, String> cache = new LoginUserCache<Integer, String>(60000L, 10);
+        AtomicInteger loadCount = new AtomicInteger();
+
+        // ## Act ##
+        String first = cache.find(3, id -> {
+            loadCount.incrementAndGet();
+            return OptionalEntity.of("sea" + id);
+        }).get();
+        String second = cache.find(3, id -> {
+            loadCount.incrementAndGet();
+            return OptionalEntity.of("land" + id);
+        }).get();
+        cache.invalidate(3);
+        String third = cache.find(3, id -> {
+            loadCount.incrementAndGet();
+            return OptionalEntity.of("piari" + id);
+        }).get();
+
+        // ## Assert ##
+        assertEquals("sea3", first);
+        assertEquals("sea3", second);
+        assertEquals("piari3", third);
+        assertEquals(2, loadCount.get());
+        LoginUserCacheStats stats = cache.getStats();
+        log(stats);
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getInvalidationCount());
+    }
+
+    public void test_find_notFoundNotCached() throws Exception {
+        // ## Arrange ##
+        LoginUserCache<Integer, String> cache = new LoginUserCache<Integer, String>(60000L, 10);
+
+        // ## Act ##
+        boolean firstPresent = cache.find(7, id -> OptionalEntity.empty()).isPresent();
+        String second = cache.find(7, id -> OptionalEntity.of("bonvo" + id)).get();
+
+        // ## Assert ##
+        assertFalse(firstPresent);
+        assertEquals("bonvo7", second);
+        assertEquals(0, cache.getStats().getHitCount());
+    }
+
+    public void test_find_evictOverflow() throws Exception {
+        // ## Arrange ##
+        LoginUserCache<Integer, String> cache = new LoginUserCache<Integer, String>(60000L, 10);
+
+        // ## Act ##
+        for (int i = 0; i < 25; i++) {
+            cache.find(i, id -> OptionalEntity.of("dockside" + id));
+        }
+
+        // ## Assert ##
+        LoginUserCacheStats stats = cache.getStats();
+        log(stats);
+        assertTrue(stats.getCachedSize() <= 10);
+        assertTrue(stats.getEvictionCount() > 0);
+    }
+
+    public void test_find_singleFlight() throws Exception {
+        // ## Arrange ##
+        LoginUserCache<Integer, String> cache = new LoginUserCache<Integer, String>(60000L, 10);
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loadingLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> loading = executor.submit(() -> cache.find(1, id -> {
+                loadCount.incrementAndGet();
+                loadingLatch.countDown();
+                await(releaseLatch);
+                return OptionalEntity.of("hangar" + id);
+            }).get());
+            assertTrue(loadingLatch.await(5, TimeUnit.SECONDS));
+
+            // ## Act ##
+            Future<String> waiting = executor.submit(() -> cache.find(1, id -> {
+                loadCount.incrementAndGet();
+                return OptionalEntity.of("magiclamp" + id);
+            }).get());
+            while (cache.getStats().getSharedCount() == 0) {
+                Thread.sleep(5L);
+            }
+            releaseLatch.countDown();
+
+            // ## Assert ##
+            assertEquals("hangar1", loading.get(5, TimeUnit.SECONDS));
+            assertEquals("hangar1", waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loadCount.get());
+        } finally {
+            releaseLatch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    public void test_reload_singleFlight() throws Exception {
+        // ## Arrange ##
+        LoginUserCache<Integer, String> cache = new LoginUserCache<Integer, String>(60000L, 10);
+        cache.find(1, id -> OptionalEntity.of("sea" + id)); // cached old user
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loadingLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> reloading = executor.submit(() -> cache.reload(1, id -> {
+                loadCount.incrementAndGet();
+                loadingLatch.countDown();
+                await(releaseLatch);
+                return OptionalEntity.of("land" + id);
+            }).get());
+            assertTrue(loadingLatch.await(5, TimeUnit.SECONDS));
+
+            // ## Act ##
+            Future<String> waiting = executor.submit(() -> cache.reload(1, id -> {
+                loadCount.incrementAndGet();
+                return OptionalEntity.of("piari" + id);
+            }).get());
+            while (cache.getStats().getSharedCount() == 0) {
+                Thread.sleep(5L);
+            }
+            releaseLatch.countDown();
+
+            // ## Assert ##
+            assertEquals("land1", reloading.get(5, TimeUnit.SECONDS));
+            assertEquals("land1", waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loadCount.get());
+            assertEquals("land1", cache.find(1, id -> OptionalEntity.of("bonvo" + id)).get()); // refreshed
+            assertEquals(1, cache.getStats().getInvalidationCount());
+        } finally {
+            releaseLatch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.path;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class ActionUrlBuilderTest extends PlainTestCase {
+
+    public void test_build_urlPattern() {
+        // ## Arrange ##
+        Map<String, String> urlPatternMap = new LinkedHashMap<String, String>();
+        urlPatternMap.put("index", "{}");
+        urlPatternMap.put("sea", "sea/{}/land/{}");
+        urlPatternMap.put("piari", "piari");
+        ActionUrlBuilder builder = new ActionUrlBuilder(new ActionUrlTemplate("/product/list/", urlPatternMap));
+
+        // ## Act ##
+        // ## Assert ##
+        assertEquals("/product/list/", builder.build());
+        assertEquals("/product/list/3", builder.moreUrl(3).build());
+        assertEquals("/product/list/sea/a%20b/land/%2F%E3%81%82", builder.execute("sea").moreUrl("a b", "/あ").build());
+        assertEquals("/product/list/sea/mystic", builder.execute("sea").moreUrl("mystic").build()); // optional omitted
+        assertEquals("/product/list/piari?q=a%26b&empty=#top", builder.execute("piari").param("q", "a&b").param("empty", null)
+                .hash("top")
+                .build());
+        try {
+            builder.execute("piari").moreUrl(1).build();
+            fail();
+        } catch (IllegalArgumentException e) {
+            log(e.getMessage());
+        }
+    }
+
+    public void test_build_unknownPattern() {
+        // ## Arrange ##
+        ActionUrlBuilder builder = new ActionUrlBuilder(new ActionUrlTemplate("/member/edit/", new LinkedHashMap<String, String>()));
+        StringBuilder sb = new StringBuilder();
+
+        // ## Act ##
+        builder.execute("dockside").moreUrl(3, "x").buildTo(sb);
+
+        // ## Assert ##
+        assertEquals("/member/edit/dockside/3/x", sb.toString());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncListener;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.web.response.ActionResponse;
+
+/**
+ * @author jflute
+ */
+public class ActionRequestProcessorTest extends PlainTestCase {
+
+    // ===================================================================================
+    //                                                                      Async Response
+    //                                                                      ==============
+    public void test_asyncResponseListener_timeout_settlesWithoutInterruption() throws Exception {
+        // ## Arrange ##
+        ActionRequestProcessor processor = new ActionRequestProcessor();
+        CompletableFuture<ActionResponse> future = new CompletableFuture<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        AsyncListener listener = processor.createAsyncResponseListener(null, future, settled);
+
+        // ## Act ##
+        listener.onTimeout(null);
+
+        // ## Assert ##
+        assertTrue(settled.get());
+        assertTrue(future.isCancelled()); // dependent completion is abandoned
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    public void test_asyncResponseListener_timeout_afterCompletion() throws Exception {
+        // ## Arrange ##
+        ActionRequestProcessor processor = new ActionRequestProcessor();
+        CompletableFuture<ActionResponse> future = new CompletableFuture<>();
+        AtomicBoolean settled = new AtomicBoolean(true); // already completed
+        AsyncListener listener = processor.createAsyncResponseListener(null, future, settled);
+
+        // ## Act ##
+        listener.onTimeout(null);
+
+        // ## Assert ##
+        assertFalse(future.isCancelled());
+    }
+}
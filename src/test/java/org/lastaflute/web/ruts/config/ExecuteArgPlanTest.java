@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class ExecuteArgPlanTest extends PlainTestCase {
+
+    public void test_assembleArgs_basic() {
+        // ## Arrange ##
+        ExecuteArgPlan plan = new ExecuteArgPlan(2, true);
+        Map<Integer, Object> urlParamValueMap = new LinkedHashMap<Integer, Object>();
+        urlParamValueMap.put(0, 3);
+        urlParamValueMap.put(1, "dockside");
+        Object form = new Object();
+
+        // ## Act ##
+        Object[] args = plan.assembleArgs(urlParamValueMap, form);
+
+        // ## Assert ##
+        assertEquals(3, args.length);
+        assertEquals(3, args[0]);
+        assertEquals("dockside", args[1]);
+        assertEquals(form, args[2]);
+    }
+
+    public void test_assembleArgs_missingOptional() {
+        // ## Arrange ##
+        ExecuteArgPlan plan = new ExecuteArgPlan(2, false);
+        Map<Integer, Object> urlParamValueMap = new LinkedHashMap<Integer, Object>();
+        urlParamValueMap.put(0, "sea");
+
+        // ## Act ##
+        Object[] args = plan.assembleArgs(urlParamValueMap, null);
+
+        // ## Assert ##
+        assertEquals(2, args.length);
+        assertEquals("sea", args[0]);
+        assertNull(args[1]); // by index, not shifted
+    }
+
+    public void test_assembleArgs_empty() {
+        // ## Arrange ##
+        ExecuteArgPlan plan = new ExecuteArgPlan(0, false);
+
+        // ## Act ##
+        Object[] args = plan.assembleArgs(Collections.emptyMap(), null);
+
+        // ## Assert ##
+        assertEquals(0, args.length);
+        assertSame(args, plan.assembleArgs(Collections.emptyMap(), null)); // shared
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config.factory;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.di.core.ComponentDef;
+import org.lastaflute.di.core.LaContainer;
+import org.lastaflute.di.core.assembler.AccessTypeDefFactory;
+import org.lastaflute.di.core.factory.annohandler.AnnotationHandler;
+import org.lastaflute.di.core.factory.annohandler.AnnotationHandlerFactory;
+import org.lastaflute.di.core.meta.InstanceDef;
+import org.lastaflute.di.core.meta.impl.InstanceDefFactory;
+import org.lastaflute.di.core.meta.impl.LaContainerImpl;
+import org.lastaflute.di.core.meta.impl.PropertyDefImpl;
+
+/**
+ * @author jflute
+ */
+public class ActionFactoryBuilderTest extends PlainTestCase {
+
+    public void test_build_basic() {
+        // ## Arrange ##
+        LaContainer container = new LaContainerImpl();
+        ComponentDef actionDef = registerComponent(container, MockSeaAction.class, InstanceDefFactory.PROTOTYPE);
+        registerFieldInjection(actionDef, "docksideLogic");
+        registerFieldInjection(actionDef, "hangarBean");
+        registerComponent(container, MockDocksideLogic.class, InstanceDefFactory.SINGLETON);
+        registerComponent(container, MockHangarBean.class, InstanceDefFactory.PROTOTYPE);
+        container.init();
+        MockSeaAction recorded = (MockSeaAction) actionDef.getComponent();
+
+        // ## Act ##
+        ActionFactory factory = new ActionFactoryBuilder().build(actionDef, recorded).get();
+        MockSeaAction created = (MockSeaAction) factory.create();
+
+        // ## Assert ##
+        log(factory);
+        assertEquals(2, factory.getInjectionList().size());
+        assertSame(recorded.docksideLogic, created.docksideLogic); // pre-resolved singleton
+        assertNotNull(created.hangarBean);
+        assertNotSame(recorded.hangarBean, created.hangarBean); // prototype per creation
+    }
+
+    public void test_create_sameAsContainer() {
+        // ## Arrange ##
+        LaContainer container = new LaContainerImpl();
+        ComponentDef actionDef = registerComponent(container, MockSeaAction.class, InstanceDefFactory.PROTOTYPE);
+        registerFieldInjection(actionDef, "docksideLogic");
+        registerFieldInjection(actionDef, "hangarBean");
+        registerComponent(container, MockDocksideLogic.class, InstanceDefFactory.SINGLETON);
+        registerComponent(container, MockHangarBean.class, InstanceDefFactory.PROTOTYPE);
+        container.init();
+        ActionFactory factory = new ActionFactoryBuilder().build(actionDef, actionDef.getComponent()).get();
+
+        // ## Act ##
+        MockSeaAction reflective = (MockSeaAction) actionDef.getComponent(); // by container
+        MockSeaAction created = (MockSeaAction) factory.create();
+
+        // ## Assert ##
+        assertEquals(reflective.getClass(), created.getClass());
+        assertNotSame(reflective, created); // prototype
+        assertSame(reflective.docksideLogic, created.docksideLogic);
+        assertSame(container.getComponent(MockDocksideLogic.class), created.docksideLogic);
+        assertEquals(reflective.hangarBean.getClass(), created.hangarBean.getClass());
+        assertNotSame(reflective.hangarBean, created.hangarBean);
+        assertNotSame(created.hangarBean, ((MockSeaAction) factory.create()).hangarBean);
+    }
+
+    public void test_build_notEligible() {
+        // ## Arrange ##
+        LaContainer container = new LaContainerImpl();
+        ComponentDef actionDef = registerComponent(container, MockLandAction.class, InstanceDefFactory.PROTOTYPE);
+        registerFieldInjection(actionDef, "docksideLogic");
+        registerComponent(container, MockDocksideLogic.class, InstanceDefFactory.SINGLETON);
+        container.init();
+
+        // ## Act ##
+        // ## Assert ##
+        assertFalse(new ActionFactoryBuilder().build(actionDef, actionDef.getComponent()).isPresent());
+    }
+
+    protected ComponentDef registerComponent(LaContainer container, Class<?> componentType, InstanceDef instanceDef) {
+        AnnotationHandler handler = AnnotationHandlerFactory.getAnnotationHandler();
+        ComponentDef componentDef = handler.createComponentDef(componentType, instanceDef);
+        handler.appendDI(componentDef);
+        container.register(componentDef);
+        return componentDef;
+    }
+
+    // not by @Resource because it is not in JDK since Java11 (ignored at runtime if no annotation class)
+    protected void registerFieldInjection(ComponentDef componentDef, String fieldName) {
+        PropertyDefImpl propertyDef = new PropertyDefImpl(fieldName);
+        propertyDef.setAccessTypeDef(AccessTypeDefFactory.FIELD);
+        componentDef.addPropertyDef(propertyDef);
+    }
+
+    public static class MockSeaAction {
+
+        private MockDocksideLogic docksideLogic;
+
+        private MockHangarBean hangarBean;
+    }
+
+    public static class MockLandAction {
+
+        private MockDocksideLogic docksideLogic;
+
+        public void setPiari(String piari) { // property setter is not eligible
+        }
+    }
+
+    public static class MockDocksideLogic {
+    }
+
+    public static class MockHangarBean {
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.web.Execute;
+
+/**
+ * @author jflute
+ */
+public class ActionIndexProcessorTest extends PlainTestCase {
+
+    public void test_process_basic() throws Exception {
+        // ## Arrange ##
+        String source = "package sea.app.web;\n" //
+                + "import org.lastaflute.web.Execute;\n" //
+                + "public class SeaAction {\n" //
+                + "    @Execute public String index(Integer pageNumber, LandForm form) { return null; }\n" //
+                + "    @Execute public String dockside(String[] values, int count) { return null; }\n" //
+                + "    public String helper() { return null; }\n" // not execute
+                + "    public static class LandForm {}\n" //
+                + "}\n";
+
+        // ## Act ##
+        File outputDir = prepareOutputDir();
+        List<Diagnostic<? extends JavaFileObject>> errorList = compile(outputDir, "sea.app.web.SeaAction", source);
+
+        // ## Assert ##
+        assertTrue(errorList.isEmpty());
+        List<String> lineList = readIndex(outputDir);
+        log(lineList);
+        assertEquals(Arrays.asList("sea.app.web.SeaAction#index(java.lang.Integer,sea.app.web.SeaAction$LandForm)",
+                "sea.app.web.SeaAction#dockside(java.lang.String[],int)"), lineList);
+        File indexFile = new File(outputDir, ActionIndex.INDEX_PATH);
+        assertTrue(Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8).stream().anyMatch(line -> {
+            return line.startsWith(ActionIndex.BUILD_STAMP_MARK); // trusted at boot
+        }));
+    }
+
+    public void test_process_overload() throws Exception {
+        // ## Arrange ##
+        String source = "package sea.app.web;\n" //
+                + "import org.lastaflute.web.Execute;\n" //
+                + "public class SeaAction {\n" //
+                + "    @Execute public String index() { return null; }\n" //
+                + "    @Execute public String index(Integer pageNumber) { return null; }\n" //
+                + "}\n";
+
+        // ## Act ##
+        List<Diagnostic<? extends JavaFileObject>> errorList = compile(prepareOutputDir(), "sea.app.web.SeaAction", source);
+
+        // ## Assert ##
+        log(errorList);
+        assertEquals(1, errorList.size());
+        assertTrue(errorList.get(0).getMessage(null).contains("overload"));
+    }
+
+    public void test_process_superClass() throws Exception {
+        // ## Arrange ##
+        String source = "package sea.app.web;\n" //
+                + "import org.lastaflute.web.Execute;\n" //
+                + "public class SeaAction extends LandBaseAction {\n" //
+                + "    @Execute public String index() { return null; }\n" //
+                + "}\n" //
+                + "abstract class LandBaseAction {\n" //
+                + "    @Execute public String dockside() { return null; }\n" //
+                + "}\n";
+
+        // ## Act ##
+        List<Diagnostic<? extends JavaFileObject>> errorList = compile(prepareOutputDir(), "sea.app.web.SeaAction", source);
+
+        // ## Assert ##
+        log(errorList);
+        assertEquals(1, errorList.size());
+        assertTrue(errorList.get(0).getMessage(null).contains("super class"));
+    }
+
+    // ===================================================================================
+    //                                                                        Assist Logic
+    //                                                                        ============
+    protected File prepareOutputDir() throws IOException {
+        File outputDir = Files.createTempDirectory("action_index").toFile();
+        outputDir.deleteOnExit();
+        return outputDir;
+    }
+
+    protected List<Diagnostic<? extends JavaFileObject>> compile(File outputDir, String className, String source) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<JavaFileObject>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, null, StandardCharsets.UTF_8)) {
+            String classpath = new File(Execute.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            List<String> optionList = Arrays.asList("-d", outputDir.getPath(), "-classpath", classpath, "-proc:only");
+            JavaFileObject sourceObject = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, collector, optionList, null, Arrays.asList(sourceObject));
+            task.setProcessors(Arrays.asList(new ActionIndexProcessor()));
+            task.call();
+        }
+        List<Diagnostic<? extends JavaFileObject>> errorList = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errorList.add(diagnostic);
+            }
+        }
+        return errorList;
+    }
+
+    protected List<String> readIndex(File outputDir) throws IOException {
+        File indexFile = new File(outputDir, ActionIndex.INDEX_PATH);
+        return Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8).stream().filter(line -> !line.startsWith("#")).collect(
+                Collectors.toList());
+    }
+}
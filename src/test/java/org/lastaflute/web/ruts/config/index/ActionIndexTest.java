@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.ruts.config.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class ActionIndexTest extends PlainTestCase {
+
+    public void test_findExecuteMethodList_basic() {
+        // ## Arrange ##
+        Map<String, List<String>> executeMap = new HashMap<String, List<String>>();
+        String actionName = MockSeaAction.class.getName();
+        String indexExp = "index(java.lang.Integer," + MockLandForm.class.getName() + ")";
+        executeMap.put(actionName, Arrays.asList(indexExp, "dockside(java.lang.String[],int)"));
+        ActionIndex index = new ActionIndex(executeMap);
+
+        // ## Act ##
+        List<Method> methodList = index.findExecuteMethodList(MockSeaAction.class).get();
+
+        // ## Assert ##
+        assertEquals(2, methodList.size());
+        assertEquals("index", methodList.get(0).getName());
+        assertEquals(MockLandForm.class, methodList.get(0).getParameterTypes()[1]);
+        assertEquals(String[].class, methodList.get(1).getParameterTypes()[0]);
+        assertEquals(int.class, methodList.get(1).getParameterTypes()[1]);
+        assertFalse(index.findExecuteMethodList(String.class).isPresent());
+    }
+
+    public void test_findExecuteMethodList_stale() {
+        // ## Arrange ##
+        Map<String, List<String>> executeMap = new HashMap<String, List<String>>();
+        executeMap.put(MockSeaAction.class.getName(), Arrays.asList("hangar()"));
+        ActionIndex index = new ActionIndex(executeMap);
+
+        // ## Act ##
+        // ## Assert ##
+        assertFalse(index.findExecuteMethodList(MockSeaAction.class).isPresent());
+        executeMap.put(MockSeaAction.class.getName(), Arrays.asList("helper()")); // not public
+        assertFalse(index.findExecuteMethodList(MockSeaAction.class).isPresent());
+    }
+
+    public void test_load_buildStamp() throws Exception {
+        // ## Arrange ##
+        String line = MockSeaAction.class.getName() + "#dockside(java.lang.String[],int)";
+        File stampedDir = prepareIndexDir("# action index\n" + ActionIndex.BUILD_STAMP_MARK + "1729234567890\n" + line + "\n");
+        File unstampedDir = prepareIndexDir("# action index\n" + line + "\n");
+
+        // ## Act ##
+        ActionIndex stamped = load(stampedDir);
+        ActionIndex unstamped = load(unstampedDir);
+
+        // ## Assert ##
+        assertEquals(1, stamped.findExecuteMethodList(MockSeaAction.class).get().size());
+        assertTrue(unstamped.isEmpty()); // not trusted so scanning
+    }
+
+    protected File prepareIndexDir(String content) throws IOException {
+        File indexDir = Files.createTempDirectory("action_index").toFile();
+        indexDir.deleteOnExit();
+        File indexFile = new File(indexDir, ActionIndex.INDEX_PATH);
+        indexFile.getParentFile().mkdirs();
+        Files.write(indexFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return indexDir;
+    }
+
+    protected ActionIndex load(File indexDir) throws IOException {
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { indexDir.toURI().toURL() }, null)) {
+            return ActionIndex.load(classLoader);
+        }
+    }
+
+    public static class MockSeaAction {
+
+        public String index(Integer pageNumber, MockLandForm form) {
+            return null;
+        }
+
+        public String dockside(String[] values, int count) {
+            return null;
+        }
+
+        protected String helper() {
+            return null;
+        }
+    }
+
+    public static class MockLandForm {
+    }
+}
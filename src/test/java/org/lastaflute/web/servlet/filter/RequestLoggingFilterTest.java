@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter;
+
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.http.HttpServletRequest;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class RequestLoggingFilterTest extends PlainTestCase {
+
+    public void test_setupRequestDump_samplingRules() {
+        // ## Arrange ##
+        RequestLoggingFilter filter = new RequestLoggingFilter();
+        Map<String, String> paramMap = new LinkedHashMap<String, String>();
+        paramMap.put("dumpSamplingRate", "0.01");
+        paramMap.put("dumpSamplingRules", " ^/member/list=1.0\n ^/member/=0.5 ; ^/healthcheck=0 \n");
+
+        // ## Act ##
+        filter.setupRequestDump(mockFilterConfig(paramMap));
+
+        // ## Assert ##
+        try {
+            log(filter.dumpSamplingRuleList);
+            assertEquals(3, filter.dumpSamplingRuleList.size());
+            assertEquals(1.0, filter.findDumpSamplingRate("/member/list/"));
+            assertEquals(0.5, filter.findDumpSamplingRate("/member/detail/3")); // first matched rule
+            assertEquals(0.0, filter.findDumpSamplingRate("/healthcheck"));
+            assertEquals(0.01, filter.findDumpSamplingRate("/product/list/")); // default rate
+            assertTrue(filter.isDumpSampled(mockRequest("/member/list/")));
+            assertFalse(filter.isDumpSampled(mockRequest("/healthcheck")));
+            assertNotNull(filter.dumpExecutor);
+        } finally {
+            filter.destroy();
+        }
+    }
+
+    public void test_setupRequestDump_rulesOnly() {
+        // ## Arrange ##
+        RequestLoggingFilter filter = new RequestLoggingFilter();
+        Map<String, String> paramMap = new LinkedHashMap<String, String>();
+        paramMap.put("dumpSamplingRules", "^/member/=0.1");
+
+        // ## Act ##
+        filter.setupRequestDump(mockFilterConfig(paramMap));
+
+        // ## Assert ##
+        try {
+            assertEquals(0.1, filter.findDumpSamplingRate("/member/"));
+            assertEquals(0.0, filter.findDumpSamplingRate("/product/"));
+            assertNotNull(filter.dumpExecutor); // sampled by rule even if no default rate
+        } finally {
+            filter.destroy();
+        }
+    }
+
+    public void test_setupRequestDump_invalidRule() {
+        // ## Arrange ##
+        RequestLoggingFilter filter = new RequestLoggingFilter();
+        Map<String, String> paramMap = new LinkedHashMap<String, String>();
+        paramMap.put("dumpSamplingRules", "^/member/");
+
+        // ## Act ##
+        // ## Assert ##
+        try {
+            filter.setupRequestDump(mockFilterConfig(paramMap));
+            fail();
+        } catch (IllegalStateException e) {
+            log(e.getMessage());
+        }
+        assertNull(filter.dumpExecutor);
+    }
+
+    protected FilterConfig mockFilterConfig(Map<String, String> paramMap) {
+        return (FilterConfig) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { FilterConfig.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getInitParameter")) {
+                        return paramMap.get(args[0]);
+                    }
+                    return null;
+                });
+    }
+
+    protected HttpServletRequest mockRequest(String servletPath) {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getServletPath")) {
+                        return servletPath;
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.accesslog;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.web.servlet.filter.accesslog.RequestResourceStatistics.ActionResourceStatistics;
+
+/**
+ * @author jflute
+ */
+public class RequestResourceMeterTest extends PlainTestCase {
+
+    public void test_meter_registerAndEnd() {
+        // ## Arrange ##
+        RequestResourceStatistics resourceStatistics = new RequestResourceStatistics();
+        RequestResourceMeter.begin(System.currentTimeMillis());
+        RequestResourceMeter.registerAction("SeaAction@land()");
+        RequestResourceMeter.registerSql(3, 20L);
+
+        // ## Act ##
+        RequestResourceUsage usage = RequestResourceMeter.findCurrentUsage().get();
+        RequestResourceMeter.end(resourceStatistics);
+
+        // ## Assert ##
+        log(usage);
+        assertEquals(3, usage.getSqlCount());
+        assertEquals(20L, usage.getSqlMillis());
+        assertTrue(usage.getElapsedMillis() >= 0L);
+        assertFalse(RequestResourceMeter.findCurrentUsage().isPresent());
+        ActionResourceStatistics statistics = resourceStatistics.getActionStatisticsMap().get("SeaAction@land()");
+        assertEquals(1L, statistics.getRequestCount());
+        assertEquals(3L, statistics.getSqlCount());
+        assertTrue(new RequestResourceStatistics().getActionStatisticsMap().isEmpty()); // not global
+    }
+
+    public void test_meter_end_noStatistics() {
+        // ## Arrange ##
+        RequestResourceMeter.begin(System.currentTimeMillis());
+        RequestResourceMeter.registerAction("SeaAction@land()");
+
+        // ## Act ##
+        RequestResourceMeter.end(null); // e.g. no container
+
+        // ## Assert ##
+        assertFalse(RequestResourceMeter.findCurrentUsage().isPresent());
+    }
+
+    public void test_meter_noBegin() {
+        // ## Arrange ##
+        // ## Act ##
+        RequestResourceMeter.registerSql(3, 20L); // no exception
+
+        // ## Assert ##
+        assertFalse(RequestResourceMeter.findCurrentUsage().isPresent());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.admission;
+
+import org.dbflute.optional.OptionalThing;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.web.servlet.filter.admission.AdmissionController.AdmissionTicket;
+
+/**
+ * @author jflute
+ */
+public class AdmissionControllerTest extends PlainTestCase {
+
+    public void test_admit_priority_shedding() {
+        // ## Arrange ##
+        AdmissionController controller = new AdmissionController(new AdmissionControlOption().globalLimit(10, 2, 20).withoutActionLimit());
+
+        // ## Act ##
+        for (int i = 0; i < 5; i++) {
+            assertTrue(controller.admit("SeaAction@land()", AdmissionPriority.SHEDDABLE).isPresent());
+        }
+        OptionalThing<AdmissionTicket> sheddable = controller.admit("SeaAction@land()", AdmissionPriority.SHEDDABLE);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(controller.admit("SeaAction@land()", AdmissionPriority.NORMAL).isPresent());
+        }
+        OptionalThing<AdmissionTicket> normal = controller.admit("SeaAction@land()", AdmissionPriority.NORMAL);
+        OptionalThing<AdmissionTicket> critical = controller.admit("SeaAction@land()", AdmissionPriority.CRITICAL);
+
+        // ## Assert ##
+        assertFalse(sheddable.isPresent());
+        assertFalse(normal.isPresent());
+        assertTrue(critical.isPresent());
+        assertEquals(10, controller.getGlobalLimit().getInFlight());
+        assertEquals(2L, controller.getGlobalLimit().getRejectedCount());
+        critical.get().release();
+        critical.get().release(); // no duplicate
+        assertEquals(9, controller.getGlobalLimit().getInFlight());
+    }
+
+    public void test_adjustLimit_by_latency() {
+        // ## Arrange ##
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("sea", 10, 2, 12);
+        LatencyBaseline baseline = new LatencyBaseline(2.0);
+        limit.tryAcquire(AdmissionPriority.CRITICAL);
+        limit.release(baseline.observe(10L), limit.getBackoffEpoch()); // baseline
+
+        // ## Act ##
+        for (int i = 0; i < 10; i++) { // one by one so each is new round trip
+            limit.tryAcquire(AdmissionPriority.CRITICAL);
+            limit.release(baseline.observe(100L), limit.getBackoffEpoch()); // slow
+        }
+
+        // ## Assert ##
+        log(limit, baseline);
+        assertEquals(3, limit.getLimit());
+        assertEquals(10L, limit.getSlowCount());
+        for (int i = 0; i < 1000; i++) { // fully used
+            int acquired = 0;
+            while (limit.tryAcquire(AdmissionPriority.CRITICAL)) {
+                ++acquired;
+            }
+            int epoch = limit.getBackoffEpoch();
+            for (int j = 0; j < acquired; j++) {
+                limit.release(baseline.observe((long) baseline.getBaselineMillis()), epoch);
+            }
+        }
+        log(limit, baseline);
+        assertEquals(12, limit.getLimit()); // recovered up to max
+    }
+
+    public void test_adjustLimit_oncePerRoundTrip() {
+        // ## Arrange ##
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("sea", 10, 2, 12);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limit.tryAcquire(AdmissionPriority.CRITICAL));
+        }
+        int epoch = limit.getBackoffEpoch(); // admitted in the same round trip
+
+        // ## Act ##
+        for (int i = 0; i < 8; i++) { // e.g. all stalled by one GC pause
+            limit.release(true, epoch);
+        }
+
+        // ## Assert ##
+        log(limit);
+        assertEquals(9, limit.getLimit()); // decreased only once
+        assertEquals(8L, limit.getSlowCount());
+        assertEquals(0, limit.getInFlight());
+
+        // next round trip can decrease again
+        assertTrue(limit.tryAcquire(AdmissionPriority.CRITICAL));
+        limit.release(true, limit.getBackoffEpoch());
+        assertEquals(8, limit.getLimit());
+    }
+
+    public void test_release_judgedByOwnActionBaseline() {
+        // ## Arrange ##
+        AdmissionController controller = new AdmissionController(new AdmissionControlOption().globalLimit(10, 2, 20).withoutActionLimit());
+        admitAndRelease(controller, "SeaAction@land()", 5L); // first samples
+        admitAndRelease(controller, "SeaAction@dockside()", 500L);
+
+        // ## Act ##
+        for (int i = 0; i < 5; i++) {
+            admitAndRelease(controller, "SeaAction@land()", 5L);
+            admitAndRelease(controller, "SeaAction@dockside()", 500L); // slow action but as usual
+        }
+
+        // ## Assert ##
+        log(controller, controller.getActionBaselineMap());
+        assertEquals(0L, controller.getGlobalLimit().getSlowCount());
+        assertEquals(2, controller.getActionBaselineMap().size());
+        admitAndRelease(controller, "SeaAction@land()", 500L); // slow for the action
+        assertEquals(1L, controller.getGlobalLimit().getSlowCount());
+    }
+
+    protected void admitAndRelease(AdmissionController controller, String actionKey, long elapsedMillis) {
+        AdaptiveConcurrencyLimit globalLimit = controller.getGlobalLimit();
+        assertTrue(globalLimit.tryAcquire(AdmissionPriority.NORMAL));
+        long beginMillis = System.currentTimeMillis() - elapsedMillis; // as finished after the latency
+        new AdmissionTicket(globalLimit, null, controller.findActionBaseline(actionKey), beginMillis).release();
+    }
+}
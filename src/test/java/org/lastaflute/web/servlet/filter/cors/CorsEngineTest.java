@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.cors;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.dbflute.optional.OptionalThing;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.web.ruts.config.ActionExecute;
+
+/**
+ * @author jflute
+ */
+public class CorsEngineTest extends PlainTestCase {
+
+    public void test_originMatcher() {
+        // ## Arrange ##
+        CorsOriginMatcher matcher = new CorsOriginMatcher(Arrays.asList("https://sea.example.com", "https://*.land.example.com:8080"));
+
+        // ## Act ##
+        // ## Assert ##
+        assertTrue(matcher.matches("https://sea.example.com"));
+        assertTrue(matcher.matches("HTTPS://Sea.Example.com"));
+        assertFalse(matcher.matches("http://sea.example.com"));
+        assertFalse(matcher.matches("https://sea.example.com.evil.com"));
+        assertTrue(matcher.matches("https://oneman.land.example.com:8080"));
+        assertTrue(matcher.matches("https://dev.oneman.land.example.com:8080"));
+        assertFalse(matcher.matches("https://land.example.com:8080"));
+        assertFalse(matcher.matches("https://evil.com/.land.example.com:8080"));
+        assertFalse(matcher.matches("https://oneman.land.example.com"));
+        assertFalse(matcher.matches("null"));
+        assertFalse(matcher.matches(null));
+        try {
+            new CorsOriginMatcher(Arrays.asList("https://sea*.example.com"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            log(e.getMessage());
+        }
+    }
+
+    public void test_share_preflight_and_actual() {
+        // ## Arrange ##
+        CorsEngine engine = new CorsEngine(Arrays.asList("https://sea.example.com")) {
+            @Override
+            protected CorsPolicy findRoutePolicy(HttpServletRequest request) {
+                return defaultPolicy; // no container in unit test
+            }
+        }.policy(new CorsPolicy().allowMethods("GET", "POST").exposeHeaders("X-Total-Count").maxAge(600).withCredentials());
+        Map<String, String> preflightHeaders = new LinkedHashMap<String, String>();
+        Map<String, String> actualHeaders = new LinkedHashMap<String, String>();
+        Map<String, String> rejectedHeaders = new LinkedHashMap<String, String>();
+        Map<String, String> sameOriginHeaders = new LinkedHashMap<String, String>();
+        int[] status = new int[1];
+
+        // ## Act ##
+        boolean preflight = engine.share(mockRequest("OPTIONS", "https://sea.example.com", "POST"), mockResponse(preflightHeaders, status));
+        boolean actual = engine.share(mockRequest("POST", "https://sea.example.com", null), mockResponse(actualHeaders, new int[1]));
+        HttpServletRequest rejectedRequest = mockRequest("OPTIONS", "https://land.example.com", "POST");
+        boolean rejected = engine.share(rejectedRequest, mockResponse(rejectedHeaders, new int[1]));
+        boolean sameOrigin = engine.share(mockRequest("GET", null, null), mockResponse(sameOriginHeaders, new int[1]));
+
+        // ## Assert ##
+        assertTrue(preflight);
+        assertEquals(204, status[0]);
+        assertEquals("https://sea.example.com", preflightHeaders.get("Access-Control-Allow-Origin"));
+        assertEquals("GET, POST", preflightHeaders.get("Access-Control-Allow-Methods"));
+        assertEquals("600", preflightHeaders.get("Access-Control-Max-Age"));
+        assertEquals("true", preflightHeaders.get("Access-Control-Allow-Credentials"));
+        assertTrue(preflightHeaders.get("Vary").startsWith("Origin"));
+        assertFalse(actual);
+        assertEquals("https://sea.example.com", actualHeaders.get("Access-Control-Allow-Origin"));
+        assertEquals("X-Total-Count", actualHeaders.get("Access-Control-Expose-Headers"));
+        assertEquals("Origin", actualHeaders.get("Vary"));
+        assertTrue(rejected);
+        assertNull(rejectedHeaders.get("Access-Control-Allow-Origin"));
+        assertFalse(sameOrigin);
+        assertNull(sameOriginHeaders.get("Access-Control-Allow-Origin"));
+        assertEquals("Origin", sameOriginHeaders.get("Vary")); // not to be cached for cross origin
+    }
+
+    public void test_share_anyOrigin_credentials() {
+        // ## Arrange ##
+        CorsEngine engine = new CorsEngine(Arrays.asList("*")) {
+            @Override
+            protected CorsPolicy findRoutePolicy(HttpServletRequest request) {
+                return defaultPolicy; // no container in unit test
+            }
+        };
+        Map<String, String> actualHeaders = new LinkedHashMap<String, String>();
+
+        // ## Act ##
+        engine.share(mockRequest("GET", "https://evil.example.com", null), mockResponse(actualHeaders, new int[1]));
+
+        // ## Assert ##
+        assertFalse(engine.getDefaultPolicy().isAllowCredentials()); // as default
+        assertEquals("*", actualHeaders.get("Access-Control-Allow-Origin"));
+        assertNull(actualHeaders.get("Access-Control-Allow-Credentials"));
+        assertNull(actualHeaders.get("Vary"));
+        try {
+            engine.policy(new CorsPolicy().withCredentials());
+            fail();
+        } catch (IllegalStateException e) {
+            log(e.getMessage());
+        }
+        assertFalse(engine.getDefaultPolicy().isAllowCredentials()); // not changed
+    }
+
+    public void test_findRoutePolicy_cachedByPath() {
+        // ## Arrange ##
+        String[] requestPath = new String[1];
+        int[] lookupCount = new int[1];
+        CorsEngine engine = new CorsEngine(Arrays.asList("https://sea.example.com")) {
+            @Override
+            protected String extractRequestPath(HttpServletRequest request) {
+                return requestPath[0];
+            }
+
+            @Override
+            protected OptionalThing<ActionExecute> findActionExecute(HttpServletRequest request) {
+                ++lookupCount[0];
+                return OptionalThing.empty(); // no container in unit test
+            }
+        };
+        HttpServletRequest request = mockRequest("POST", "https://sea.example.com", null);
+
+        // ## Act ##
+        requestPath[0] = "/member/list/";
+        CorsPolicy first = engine.findRoutePolicy(request);
+        CorsPolicy second = engine.findRoutePolicy(request);
+        requestPath[0] = "/product/list/";
+        engine.findRoutePolicy(request);
+
+        // ## Assert ##
+        assertEquals(engine.getDefaultPolicy(), first);
+        assertEquals(first, second);
+        assertEquals(2, lookupCount[0]); // once per path
+    }
+
+    protected HttpServletRequest mockRequest(String method, String origin, String requestMethod) {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, invoked, args) -> {
+                    final String name = invoked.getName();
+                    if (name.equals("getMethod")) {
+                        return method;
+                    } else if (name.equals("getHeader")) {
+                        if ("Origin".equals(args[0])) {
+                            return origin;
+                        } else if ("Access-Control-Request-Method".equals(args[0])) {
+                            return requestMethod;
+                        }
+                    }
+                    return null;
+                });
+    }
+
+    protected HttpServletResponse mockResponse(Map<String, String> headerMap, int[] status) {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletResponse.class },
+                (proxy, invoked, args) -> {
+                    final String name = invoked.getName();
+                    if (name.equals("setHeader") || name.equals("addHeader")) {
+                        headerMap.put((String) args[0], (String) args[1]);
+                    } else if (name.equals("setStatus")) {
+                        status[0] = (Integer) args[0];
+                    }
+                    return null;
+                });
+    }
+}
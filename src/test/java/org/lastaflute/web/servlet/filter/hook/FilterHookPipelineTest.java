@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.hook;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class FilterHookPipelineTest extends PlainTestCase {
+
+    public void test_execute_basic() throws Exception {
+        // ## Arrange ##
+        List<String> markList = new ArrayList<String>();
+        List<FilterHook> hookList = Arrays.asList(new MockHook("sea", markList, true), new MockHook("land", markList, true));
+        FilterChain chain = (request, response) -> markList.add("chain");
+        FilterHookPipeline pipeline = new FilterHookPipeline(hookList, (request, response, terminalChain) -> {
+            markList.add("terminal");
+            terminalChain.doFilter(request, response);
+        }, -1L);
+
+        // ## Act ##
+        pipeline.execute(null, null, chain);
+        pipeline.execute(null, null, chain);
+
+        // ## Assert ##
+        assertEquals(Arrays.asList("sea", "land", "terminal", "chain", "sea", "land", "terminal", "chain"), markList);
+        assertTrue(pipeline.getHookTimingList().isEmpty());
+    }
+
+    public void test_execute_timing() throws Exception {
+        // ## Arrange ##
+        List<String> markList = new ArrayList<String>();
+        List<FilterHook> hookList = Arrays.asList(new MockHook("sea", markList, true), new MockHook("land", markList, false));
+        FilterHookPipeline pipeline = new FilterHookPipeline(hookList, (request, response, terminalChain) -> {
+            markList.add("terminal");
+        }, Long.MAX_VALUE);
+
+        // ## Act ##
+        pipeline.execute(null, null, (request, response) -> {});
+
+        // ## Assert ##
+        assertEquals(Arrays.asList("sea", "land"), markList); // land does not call next
+        List<FilterHookPipeline.HookTiming> timingList = pipeline.getHookTimingList();
+        log(timingList);
+        assertEquals(2, timingList.size());
+        assertEquals(1L, timingList.get(0).getCount());
+        assertEquals(1L, timingList.get(1).getCount());
+    }
+
+    public void test_execute_otherThread() throws Exception {
+        // ## Arrange ##
+        List<String> markList = new CopyOnWriteArrayList<String>();
+        FilterHook asyncHook = new MockHook("sea", markList, false) {
+            @Override
+            public void hook(HttpServletRequest request, HttpServletResponse response, FilterHookChain chain)
+                    throws IOException, ServletException {
+                markList.add(mark);
+                CompletableFuture.runAsync(() -> { // e.g. async servlet, the filter chain is held by chain node
+                    try {
+                        chain.doNext(request, response);
+                    } catch (IOException | ServletException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }).join();
+            }
+        };
+        FilterChain chain = (request, response) -> markList.add("chain");
+        FilterHookPipeline pipeline = new FilterHookPipeline(Arrays.asList(asyncHook), (request, response, terminalChain) -> {
+            terminalChain.doFilter(request, response);
+        }, -1L);
+
+        // ## Act ##
+        pipeline.execute(null, null, chain);
+
+        // ## Assert ##
+        assertEquals(Arrays.asList("sea", "chain"), markList);
+    }
+
+    public void test_isCompiledFrom() {
+        // ## Arrange ##
+        List<String> markList = new ArrayList<String>();
+        List<FilterHook> hookList = Arrays.asList(new MockHook("sea", markList, true), new MockHook("land", markList, true));
+        FilterHookPipeline pipeline = new FilterHookPipeline(hookList, (request, response, terminalChain) -> {}, -1L);
+
+        // ## Act ##
+        // ## Assert ##
+        assertTrue(pipeline.isCompiledFrom(new ArrayList<FilterHook>(hookList)));
+        assertFalse(pipeline.isCompiledFrom(hookList.subList(0, 1)));
+        assertFalse(pipeline.isCompiledFrom(Arrays.asList(hookList.get(0), new MockHook("land", markList, true))));
+    }
+
+    protected static class MockHook implements FilterHook {
+
+        protected final String mark;
+        protected final List<String> markList;
+        protected final boolean next;
+
+        public MockHook(String mark, List<String> markList, boolean next) {
+            this.mark = mark;
+            this.markList = markList;
+            this.next = next;
+        }
+
+        public void init(FilterConfig filterConfig) throws ServletException {
+        }
+
+        public void hook(HttpServletRequest request, HttpServletResponse response, FilterHookChain chain)
+                throws IOException, ServletException {
+            markList.add(mark);
+            if (next) {
+                chain.doNext(request, response);
+            }
+        }
+
+        public void destroy() {
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.mdc;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class TypicalMDCHookFactoryTest extends PlainTestCase {
+
+    public void test_prepareMDCMap_resourceUsageKeysAtStart() {
+        // ## Arrange ##
+        TypicalMDCHookFactory factory = new TypicalMDCHookFactory(3600);
+
+        // ## Act ##
+        Map<String, Function<MDCSetupResource, String>> mdcMap = factory.prepareMDCMap();
+
+        // ## Assert ##
+        log(mdcMap.keySet());
+        assertEquals(TypicalMDCHookFactory.RESOURCE_USAGE_UNKNOWN, mdcMap.get(TypicalMDCHookFactory.LA_ELAPSED_MILLIS).apply(null));
+        assertEquals(TypicalMDCHookFactory.RESOURCE_USAGE_UNKNOWN, mdcMap.get(TypicalMDCHookFactory.LA_CPU_MILLIS).apply(null));
+        assertEquals(TypicalMDCHookFactory.RESOURCE_USAGE_UNKNOWN, mdcMap.get(TypicalMDCHookFactory.LA_ALLOCATED_BYTES).apply(null));
+        assertEquals(TypicalMDCHookFactory.RESOURCE_USAGE_UNKNOWN, mdcMap.get(TypicalMDCHookFactory.LA_SQL_COUNT).apply(null));
+        assertEquals(TypicalMDCHookFactory.RESOURCE_USAGE_UNKNOWN, mdcMap.get(TypicalMDCHookFactory.LA_SQL_MILLIS).apply(null));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.filter.multicall;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.dbflute.utflute.core.PlainTestCase;
+
+/**
+ * @author jflute
+ */
+public class MultiCallSubWrapperTest extends PlainTestCase {
+
+    public void test_subRequest_path_and_parameter() throws Exception {
+        // ## Arrange ##
+        Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("land", Arrays.asList("oneman", "minio"));
+        params.put("piari", 3);
+        byte[] body = "{\"dstore\":\"bonvo\"}".getBytes(StandardCharsets.UTF_8);
+
+        // ## Act ##
+        MultiCallSubRequestWrapper wrapper = new MultiCallSubRequestWrapper(mockRequest(), "post", "/sea/mystic/?land=amba&x=a%2Fb",
+                params, body);
+
+        // ## Assert ##
+        assertEquals("POST", wrapper.getMethod());
+        assertEquals("/sea/mystic/", wrapper.getSubRequestPath());
+        assertEquals("/dockside/sea/mystic/", wrapper.getRequestURI());
+        assertEquals("land=amba&x=a%2Fb", wrapper.getQueryString());
+        assertEquals(Arrays.asList("amba", "oneman", "minio"), Arrays.asList(wrapper.getParameterValues("land")));
+        assertEquals("a/b", wrapper.getParameter("x"));
+        assertEquals("3", wrapper.getParameter("piari"));
+        assertEquals("application/json", wrapper.getContentType());
+        assertEquals("{\"dstore\":\"bonvo\"}", wrapper.getReader().readLine());
+        assertEquals("parent", wrapper.getAttribute("hangar"));
+        wrapper.setAttribute("hangar", null);
+        assertNull(wrapper.getAttribute("hangar"));
+        try {
+            wrapper.startAsync();
+            fail();
+        } catch (IllegalStateException e) {
+            log(e.getMessage());
+        }
+    }
+
+    public void test_subResponse_capture() throws Exception {
+        // ## Arrange ##
+        MultiCallSubResponseWrapper wrapper = new MultiCallSubResponseWrapper(mockResponse());
+
+        // ## Act ##
+        wrapper.setContentType("application/json; charset=UTF-8");
+        wrapper.addHeader("X-Sea", "mystic");
+        wrapper.getWriter().write("{\"land\":\"oneman\"}");
+        wrapper.setStatus(201);
+
+        // ## Assert ##
+        assertEquals(201, wrapper.getStatus());
+        assertEquals("mystic", wrapper.getHeader("x-sea"));
+        assertEquals("{\"land\":\"oneman\"}", wrapper.getCapturedBodyAsString());
+        assertFalse(wrapper.isCommitted());
+        wrapper.sendError(404);
+        assertEquals(404, wrapper.getStatus());
+        assertEquals("", wrapper.getCapturedBodyAsString());
+        assertTrue(wrapper.isCommitted());
+        wrapper.setStatus(200); // ignored after committed
+        assertEquals(404, wrapper.getStatus());
+    }
+
+    protected HttpServletRequest mockRequest() {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    final String name = method.getName();
+                    if (name.equals("getContextPath")) {
+                        return "/dockside";
+                    } else if (name.equals("getAttributeNames")) {
+                        return Collections.enumeration(Arrays.asList("hangar"));
+                    } else if (name.equals("getAttribute")) {
+                        return "parent";
+                    }
+                    return null;
+                });
+    }
+
+    protected HttpServletResponse mockResponse() {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletResponse.class },
+                (proxy, method, args) -> null);
+    }
+}
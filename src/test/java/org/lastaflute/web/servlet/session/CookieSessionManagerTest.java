@@ -0,0 +1,324 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.lastaflute.web.servlet.session;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.lastaflute.web.exception.SessionCookieOverflowException;
+import org.lastaflute.web.servlet.cookie.CookieCipher;
+
+/**
+ * @author jflute
+ */
+public class CookieSessionManagerTest extends PlainTestCase {
+
+    protected HttpServletRequest currentRequest;
+    protected final List<Cookie> browserCookieList = new ArrayList<Cookie>(); // cookies kept by browser
+    protected final List<Cookie> writtenCookieList = new ArrayList<Cookie>(); // Set-Cookie of current response
+    protected boolean committed;
+    protected long currentMillis = 1000000L;
+
+    // ===================================================================================
+    //                                                                          Initialize
+    //                                                                          ==========
+    public void test_initialize_macSecretRequired() {
+        // ## Arrange ##
+        CookieSessionManager manager = new CookieSessionManager();
+
+        // ## Act ##
+        // ## Assert ##
+        try {
+            manager.initialize();
+            fail();
+        } catch (IllegalStateException e) {
+            log(e.getMessage());
+        }
+    }
+
+    // ===================================================================================
+    //                                                                          Write Once
+    //                                                                          ==========
+    public void test_flush_writeOnce() {
+        // ## Arrange ##
+        CookieSessionManager manager = createManager();
+        HttpServletResponse response = nextRequest();
+
+        // ## Act ##
+        manager.setAttribute("sea", "mystic");
+        manager.setAttribute("land", "oneman");
+        manager.removeAttribute("land");
+        manager.regenerateSessionId();
+
+        // ## Assert ##
+        assertTrue(writtenCookieList.isEmpty()); // not yet
+        manager.flushSessionState(currentRequest, response);
+        assertEquals(1, writtenCookieList.size());
+        manager.flushSessionState(currentRequest, response); // no change
+        assertEquals(1, writtenCookieList.size());
+
+        response = nextRequest();
+        assertEquals("mystic", manager.getAttribute("sea", String.class).get());
+        assertFalse(manager.getAttribute("land", String.class).isPresent());
+        manager.flushSessionState(currentRequest, response);
+        assertTrue(writtenCookieList.isEmpty()); // only read
+    }
+
+    public void test_flush_inPlaceChange() {
+        // ## Arrange ##
+        CookieSessionManager manager = createManager();
+        HttpServletResponse response = nextRequest();
+        manager.setAttribute("sea", new ArrayList<String>());
+        manager.flushSessionState(currentRequest, response);
+        response = nextRequest();
+
+        // ## Act ##
+        @SuppressWarnings("unchecked")
+        List<String> seaList = manager.getAttribute("sea", List.class).get();
+        seaList.add("mystic"); // in-place
+        manager.flushSessionState(currentRequest, response);
+
+        // ## Assert ##
+        assertEquals(1, writtenCookieList.size());
+        nextRequest();
+        assertEquals(newArrayList("mystic"), manager.getAttribute("sea", List.class).get());
+    }
+
+    public void test_flush_byResponseCommit() throws Exception {
+        // ## Arrange ##
+        CookieSessionManager manager = createManager();
+        HttpServletResponse response = manager.wrapResponse(beginRequest(), beginResponse());
+        manager.setAttribute("sea", "mystic");
+
+        // ## Act ##
+        response.sendRedirect("/land/"); // written before commit
+        committed = true;
+        manager.setAttribute("land", "oneman"); // too late
+
+        // ## Assert ##
+        assertEquals(1, writtenCookieList.size());
+        manager.flushSessionState(currentRequest, response); // only warning
+        assertEquals(1, writtenCookieList.size());
+    }
+
+    // ===================================================================================
+    //                                                                              Tamper
+    //                                                                              ======
+    public void test_read_tampered() {
+        // ## Arrange ##
+        CookieSessionManager manager = createManager();
+        HttpServletResponse response = nextRequest();
+        manager.setAttribute("sea", "mystic");
+        manager.flushSessionState(currentRequest, response);
+        response = nextRequest();
+        Cookie cookie = browserCookieList.get(0);
+        String value = cookie.getValue();
+        char tampered = value.charAt(value.length() / 2) == 'A' ? 'B' : 'A';
+        cookie.setValue(value.substring(0, value.length() / 2) + tampered + value.substring(value.length() / 2 + 1));
+
+        // ## Act ##
+        boolean present = manager.getAttribute("sea", String.class).isPresent();
+        manager.flushSessionState(currentRequest, response);
+
+        // ## Assert ##
+        assertFalse(present);
+        assertEquals(1, writtenCookieList.size());
+        assertEquals(0, writtenCookieList.get(0).getMaxAge()); // removed
+    }
+
+    // ===================================================================================
+    //                                                                              Expire
+    //                                                                              ======
+    public void test_read_expired() {
+        // ## Arrange ##
+        CookieSessionManager manager = createManager();
+        HttpServletResponse response = nextRequest();
+        manager.setAttribute("sea", "mystic");
+        manager.flushSessionState(currentRequest, response);
+
+        // ## Act ##
+        currentMillis = currentMillis + 60 * 1000L; // expire is 60 seconds in this test
+        nextRequest();
+
+        // ## Assert ##
+        assertFalse(manager.getAttribute("sea", String.class).isPresent());
+    }
+
+    public void test_flush_expireRefresh() {
+        // ## Arrange ##
+        CookieSessionManager manager = createManager();
+        HttpServletResponse response = nextRequest();
+        manager.setAttribute("sea", "mystic");
+        manager.flushSessionState(currentRequest, response);
+
+        // ## Act ##
+        currentMillis = currentMillis + 40 * 1000L; // over half
+        response = nextRequest();
+        assertTrue(manager.getAttribute("sea", String.class).isPresent());
+        manager.flushSessionState(currentRequest, response);
+
+        // ## Assert ##
+        assertEquals(1, writtenCookieList.size()); // refreshed
+        currentMillis = currentMillis + 40 * 1000L; // alive by refresh
+        nextRequest();
+        assertTrue(manager.getAttribute("sea", String.class).isPresent());
+    }
+
+    // ===================================================================================
+    //                                                                               Chunk
+    //                                                                               =====
+    public void test_flush_chunk() {
+        // ## Arrange ##
+        CookieSessionManager manager = createManager();
+        manager.setChunkSize(64);
+        manager.setMaxChunkCount(20);
+        HttpServletResponse response = nextRequest();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append(Integer.toHexString(i * 7919)); // not compressed well
+        }
+
+        // ## Act ##
+        manager.setAttribute("sea", sb.toString());
+        manager.flushSessionState(currentRequest, response);
+
+        // ## Assert ##
+        int chunkCount = writtenCookieList.size();
+        log("chunkCount: " + chunkCount);
+        assertTrue(chunkCount > 1);
+        response = nextRequest();
+        assertEquals(sb.toString(), manager.getAttribute("sea", String.class).get());
+        manager.removeAttribute("sea");
+        manager.setAttribute("land", "oneman");
+        manager.flushSessionState(currentRequest, response);
+        int removedCount = 0;
+        for (Cookie cookie : writtenCookieList) {
+            if (cookie.getMaxAge() == 0) {
+                ++removedCount;
+            }
+        }
+        assertTrue(removedCount > 0); // rest of previous chunks
+        assertEquals(chunkCount, writtenCookieList.size());
+    }
+
+    public void test_flush_overflow() {
+        // ## Arrange ##
+        CookieSessionManager manager = createManager();
+        manager.setChunkSize(64);
+        manager.setMaxChunkCount(2);
+        HttpServletResponse response = nextRequest();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append(Integer.toHexString(i * 7919));
+        }
+        manager.setAttribute("sea", sb.toString());
+
+        // ## Act ##
+        // ## Assert ##
+        try {
+            manager.flushSessionState(currentRequest, response);
+            fail();
+        } catch (SessionCookieOverflowException e) {
+            log(e.getMessage());
+        }
+    }
+
+    // ===================================================================================
+    //                                                                        Small Helper
+    //                                                                        ============
+    protected CookieSessionManager createManager() {
+        CookieSessionManager manager = new CookieSessionManager() {
+            @Override
+            protected HttpServletRequest getRequest() {
+                return currentRequest;
+            }
+
+            @Override
+            protected long currentMillis() {
+                return currentMillis;
+            }
+        };
+        manager.cookieCipher = new CookieCipher() { // no encryption, MAC is tested here
+            public String encrypt(String plainText) {
+                return plainText;
+            }
+
+            public String decrypt(String cryptedText) {
+                return cryptedText;
+            }
+        };
+        manager.setMacSecret("sea");
+        manager.setSessionExpireSeconds(60);
+        manager.initialize();
+        return manager;
+    }
+
+    protected HttpServletRequest beginRequest() {
+        Map<String, Object> attributeMap = new HashMap<String, Object>();
+        Cookie[] cookies = browserCookieList.toArray(new Cookie[browserCookieList.size()]);
+        currentRequest = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+                    final String name = method.getName();
+                    if ("getAttribute".equals(name)) {
+                        return attributeMap.get(args[0]);
+                    } else if ("setAttribute".equals(name)) {
+                        attributeMap.put((String) args[0], args[1]);
+                    } else if ("getCookies".equals(name)) {
+                        return cookies;
+                    } else if ("isSecure".equals(name)) {
+                        return false;
+                    }
+                    return null;
+                });
+        return currentRequest;
+    }
+
+    protected HttpServletResponse beginResponse() {
+        writtenCookieList.clear();
+        committed = false;
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletResponse.class },
+                (proxy, method, args) -> {
+                    final String name = method.getName();
+                    if ("addCookie".equals(name)) {
+                        writtenCookieList.add((Cookie) args[0]);
+                        reflectToBrowser((Cookie) args[0]);
+                    } else if ("isCommitted".equals(name)) {
+                        return committed;
+                    }
+                    return null;
+                });
+    }
+
+    protected HttpServletResponse nextRequest() { // also for first request
+        beginRequest();
+        return beginResponse();
+    }
+
+    protected void reflectToBrowser(Cookie cookie) {
+        browserCookieList.removeIf(existing -> existing.getName().equals(cookie.getName()));
+        if (cookie.getMaxAge() != 0) {
+            browserCookieList.add(cookie);
+        }
+    }
+}